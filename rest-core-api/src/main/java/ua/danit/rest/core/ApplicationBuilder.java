@@ -7,13 +7,17 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.ext.RuntimeDelegate;
 
+import ua.danit.rest.core.annotations.MaxBodySize;
+import ua.danit.rest.core.convertors.Compression;
 import ua.danit.rest.core.convertors.ConvertersStore;
+import ua.danit.rest.core.convertors.MediaCodec;
 import ua.danit.rest.core.ext.RestRuntimeDelegate;
 import ua.danit.rest.core.parsing.Invocation;
 
@@ -32,6 +36,11 @@ public class ApplicationBuilder {
   private Collection<Class<?>> services;
   private Collection<Object> servicesInstances;
   private ConvertersStore convertersStore;
+  private long asyncTimeout = RestApplication.DEFAULT_ASYNC_TIMEOUT;
+  private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+  private ServerProfile serverProfile = ServerProfile.defaults();
+  private Compression compression;
+  private long maxBodySize = ConvertersStore.DEFAULT_MAX_BODY_SIZE;
 
   private ApplicationBuilder() {
   }
@@ -99,6 +108,78 @@ public class ApplicationBuilder {
     return this;
   }
 
+  /**
+   * Set timeout of asynchronous requests. Request not completed in this time is answered with
+   * 503 Service Unavailable. Zero timeout disables expiration of requests.
+   *
+   * @param timeout the timeout of asynchronous request.
+   * @param unit    the unit of the timeout.
+   * @return the application builder instance.
+   * @throws IllegalArgumentException when timeout is negative.
+   */
+  public ApplicationBuilder withAsyncTimeout(long timeout, TimeUnit unit) {
+    checkArgument(timeout >= 0, "Async timeout cannot be negative!");
+    checkNotNull(unit, "Time unit cannot be null!");
+    this.asyncTimeout = unit.toMillis(timeout);
+    return this;
+  }
+
+  /**
+   * Set threads service methods are executed on. By default methods are executed on threads of
+   * the server pool.
+   *
+   * @param executionMode the execution mode of service methods.
+   * @return the application builder instance.
+   * @throws IllegalArgumentException when mode is not supported by running JVM.
+   */
+  public ApplicationBuilder withExecutionMode(ExecutionMode executionMode) {
+    checkNotNull(executionMode, "Execution mode cannot be null!");
+    checkArgument(executionMode.isSupported(), "Execution mode %s is not supported by JVM!",
+        executionMode);
+    this.executionMode = executionMode;
+    return this;
+  }
+
+  /**
+   * Set settings of HTTP server, for example {@link ServerProfile#lowLatency()}. By default all
+   * settings of server are kept.
+   *
+   * @param serverProfile the server profile.
+   * @return the application builder instance.
+   */
+  public ApplicationBuilder withServerProfile(ServerProfile serverProfile) {
+    checkNotNull(serverProfile, "Server profile cannot be null!");
+    this.serverProfile = serverProfile;
+    return this;
+  }
+
+  /**
+   * Compress responses in encoding accepted by client, for example
+   * {@code Compression.compression().withLevel(1)}. By default responses are not compressed.
+   *
+   * @param compression the compression settings.
+   * @return the application builder instance.
+   */
+  public ApplicationBuilder withCompression(Compression compression) {
+    checkNotNull(compression, "Compression cannot be null!");
+    this.compression = compression;
+    return this;
+  }
+
+  /**
+   * Set maximal size of request body, larger requests are rejected with 413 Payload Too Large.
+   * Methods may declare their own limit by {@link MaxBodySize}.
+   *
+   * @param maxBodySize the maximal size of the body in bytes.
+   * @return the application builder instance.
+   * @throws IllegalArgumentException when size is not positive.
+   */
+  public ApplicationBuilder withMaxBodySize(long maxBodySize) {
+    checkArgument(maxBodySize > 0, "Max body size must be positive!");
+    this.maxBodySize = maxBodySize;
+    return this;
+  }
+
   /**
    * Register incoming parameter converter.
    *
@@ -140,6 +221,26 @@ public class ApplicationBuilder {
     return this;
   }
 
+  /**
+   * Register codec of request and response bodies, for example codec of compact binary format.
+   * Methods declaring media type of the codec in {@link javax.ws.rs.Produces} or
+   * {@link javax.ws.rs.Consumes} use it when the type is negotiated.
+   *
+   * @param codec the media codec.
+   * @return the application builder instance.
+   * @throws NullPointerException in case codec is null.
+   */
+  public ApplicationBuilder withMediaCodec(MediaCodec codec) {
+    checkNotNull(codec, "Codec cannot be null!");
+    checkArgument(!isNullOrEmpty(codec.getMediaType()), "Codec media type cannot be empty!");
+
+    if (convertersStore == null) {
+      convertersStore = new ConvertersStore();
+    }
+    convertersStore.registerMediaCodec(codec);
+    return this;
+  }
+
   /**
    * Build new instance of {@link RestApplication}.
    *
@@ -161,6 +262,10 @@ public class ApplicationBuilder {
     if (convertersStore == null) {
       convertersStore = new ConvertersStore();
     }
+    if (compression != null) {
+      convertersStore.enableCompression(compression);
+    }
+    convertersStore.setMaxBodySize(maxBodySize);
 
     ServicesStore servicesStore = new ServicesStore(convertersStore, objectSupplier, serviceParser);
     if (services != null) {
@@ -170,7 +275,8 @@ public class ApplicationBuilder {
       servicesInstances.forEach(servicesStore::addServiceInstance);
     }
 
-    return new RestApplication(port, matchingUrls, servicesStore);
+    return new RestApplication(port, matchingUrls, servicesStore, asyncTimeout,
+        executionMode, serverProfile);
   }
 
 
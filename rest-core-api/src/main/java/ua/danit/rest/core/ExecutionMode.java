@@ -0,0 +1,36 @@
+package ua.danit.rest.core;
+
+/**
+ * Enumeration of the threads service methods are executed on.
+ *
+ * @author Andrey Minov
+ */
+public enum ExecutionMode {
+  /**
+   * Methods are executed on threads of the server thread pool. Number of blocked requests
+   * processed concurrently is limited by the pool size.
+   */
+  PLATFORM,
+  /**
+   * Synchronous methods are executed each on its own virtual thread, threads of the server pool
+   * are used only for network selectors and routing of requests. Requires Java 21 or later.
+   */
+  VIRTUAL;
+
+  /**
+   * Check if execution mode is supported by the running JVM.
+   *
+   * @return true when mode can be used.
+   */
+  public boolean isSupported() {
+    if (this == PLATFORM) {
+      return true;
+    }
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
@@ -1,15 +1,27 @@
 package ua.danit.rest.core;
 
+import java.util.concurrent.TimeUnit;
+
+import ua.danit.rest.core.cache.ResponseCacheStats;
+import ua.danit.rest.core.convertors.CompressionStats;
+
 /**
  * Entry point for every REST application.
  *
  * @author Andrey Minov
  */
 public class RestApplication {
+  /**
+   * Default timeout of asynchronous requests in milliseconds.
+   */
+  public static final long DEFAULT_ASYNC_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
 
   private final int port;
   private final String matchingUrl;
   private final ServicesStore servicesStore;
+  private final long asyncTimeout;
+  private final ExecutionMode executionMode;
+  private final ServerProfile serverProfile;
 
   /**
    * Instantiates a new REST application.
@@ -17,11 +29,18 @@ public class RestApplication {
    * @param port          the port where application is running.
    * @param matchingUrl   the matching url to register servlet.
    * @param servicesStore the resources store for storing resources instances.
+   * @param asyncTimeout  the timeout of asynchronous requests in milliseconds.
+   * @param executionMode the mode of service methods execution.
+   * @param serverProfile the settings of HTTP server.
    */
-  RestApplication(int port, String matchingUrl, ServicesStore servicesStore) {
+  RestApplication(int port, String matchingUrl, ServicesStore servicesStore,
+                  long asyncTimeout, ExecutionMode executionMode, ServerProfile serverProfile) {
     this.port = port;
     this.matchingUrl = matchingUrl;
     this.servicesStore = servicesStore;
+    this.asyncTimeout = asyncTimeout;
+    this.executionMode = executionMode;
+    this.serverProfile = serverProfile;
   }
 
   /**
@@ -53,6 +72,34 @@ public class RestApplication {
   }
 
 
+  /**
+   * Gets current state of the server thread pool and connections.
+   *
+   * @return the snapshot of server telemetry.
+   */
+  public ServerTelemetry getTelemetry() {
+    throw new UnsupportedOperationException("Telemetry is not implemented!");
+  }
+
+  /**
+   * Gets statistics of response compression: ratio, CPU time and number of compressed responses.
+   *
+   * @return the snapshot of compression statistics.
+   */
+  public CompressionStats getCompressionStats() {
+    return servicesStore.getConvertersStore().getCompressionStats();
+  }
+
+  /**
+   * Gets statistics of response cache: hits, misses, evictions and invalidations.
+   *
+   * @param name the name of the cache, see {@link ua.danit.rest.core.annotations.Cacheable}.
+   * @return the snapshot of cache statistics or null when cache with such name does not exist.
+   */
+  public ResponseCacheStats getCacheStats(String name) {
+    return servicesStore.getResponseCaches().getStats(name);
+  }
+
   protected int getPort() {
     return port;
   }
@@ -64,4 +111,16 @@ public class RestApplication {
   protected ServicesStore getServicesStore() {
     return servicesStore;
   }
+
+  protected long getAsyncTimeout() {
+    return asyncTimeout;
+  }
+
+  protected ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  protected ServerProfile getServerProfile() {
+    return serverProfile;
+  }
 }
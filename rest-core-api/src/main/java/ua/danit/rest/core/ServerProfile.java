@@ -0,0 +1,258 @@
+package ua.danit.rest.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Settings of the HTTP server engine: threads of connector and request pool, accept queue and
+ * buffers. Values not set explicitly keep defaults of the server.
+ * <p/>
+ * HTTP/2 cleartext (h2c) can be enabled in addition to HTTP/1.1 on the same port by
+ * {@link #withHttp2Cleartext()}. Clients may start HTTP/2 with prior knowledge or upgrade HTTP/1.1
+ * connection, every request is dispatched by the same servlet whatever protocol it came with.
+ * <p/>
+ * Presets are available for typical workloads:
+ * <ul>
+ * <li>{@link #lowLatency()} - pool of pre-started threads not growing or shrinking under load,
+ * selector per core and small output buffer flushed early.</li>
+ * <li>{@link #highThroughput()} - large pool and accept queue, big output buffer and long idle
+ * timeout for keep-alive connections.</li>
+ * </ul>
+ *
+ * @author Andrey Minov
+ */
+public class ServerProfile {
+  /**
+   * Value of setting which is left to the server default.
+   */
+  public static final int DEFAULT = -1;
+
+  private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+  private int acceptors = DEFAULT;
+  private int selectors = DEFAULT;
+  private int minThreads = DEFAULT;
+  private int maxThreads = DEFAULT;
+  private int acceptQueueSize = DEFAULT;
+  private long idleTimeout = DEFAULT;
+  private int outputBufferSize = DEFAULT;
+  private int requestHeaderSize = DEFAULT;
+  private boolean http2Cleartext;
+  private int maxConcurrentStreams = DEFAULT;
+  private int initialStreamWindow = DEFAULT;
+
+  /**
+   * Create profile keeping all server defaults.
+   *
+   * @return the new server profile.
+   */
+  public static ServerProfile defaults() {
+    return new ServerProfile();
+  }
+
+  /**
+   * Create profile tuned for low response latency with moderate number of connections.
+   *
+   * @return the new server profile.
+   */
+  public static ServerProfile lowLatency() {
+    int threads = Math.max(16, CORES * 4);
+    return new ServerProfile().withAcceptors(1).withSelectors(CORES)
+                              .withThreads(threads, threads).withIdleTimeout(30_000)
+                              .withOutputBufferSize(8 * 1024).withRequestHeaderSize(8 * 1024);
+  }
+
+  /**
+   * Create profile tuned for high number of requests and connections.
+   *
+   * @return the new server profile.
+   */
+  public static ServerProfile highThroughput() {
+    return new ServerProfile().withAcceptors(Math.max(1, CORES / 4))
+                              .withSelectors(Math.max(2, CORES)).withThreads(16, 400)
+                              .withAcceptQueueSize(1024).withIdleTimeout(120_000)
+                              .withOutputBufferSize(64 * 1024).withRequestHeaderSize(16 * 1024);
+  }
+
+  private static void checkSetting(long value, String name) {
+    checkArgument(value > 0 || value == DEFAULT, "%s must be positive!", name);
+  }
+
+  /**
+   * Set number of threads accepting new connections.
+   *
+   * @param acceptors the number of acceptor threads.
+   * @return the server profile instance.
+   */
+  public ServerProfile withAcceptors(int acceptors) {
+    checkArgument(acceptors >= 0 || acceptors == DEFAULT, "Acceptors cannot be negative!");
+    this.acceptors = acceptors;
+    return this;
+  }
+
+  /**
+   * Set number of threads selecting connections ready for IO.
+   *
+   * @param selectors the number of selector threads.
+   * @return the server profile instance.
+   */
+  public ServerProfile withSelectors(int selectors) {
+    checkSetting(selectors, "Selectors");
+    this.selectors = selectors;
+    return this;
+  }
+
+  /**
+   * Set bounds of the server thread pool.
+   *
+   * @param minThreads the number of threads kept in pool when idle.
+   * @param maxThreads the maximal number of threads in pool.
+   * @return the server profile instance.
+   * @throws IllegalArgumentException when minimal number of threads is greater than maximal.
+   */
+  public ServerProfile withThreads(int minThreads, int maxThreads) {
+    checkSetting(minThreads, "Min threads");
+    checkSetting(maxThreads, "Max threads");
+    checkArgument(minThreads == DEFAULT || maxThreads == DEFAULT || minThreads <= maxThreads,
+        "Min threads cannot be greater than max threads!");
+    this.minThreads = minThreads;
+    this.maxThreads = maxThreads;
+    return this;
+  }
+
+  /**
+   * Set size of the operating system queue of connections not accepted yet.
+   *
+   * @param acceptQueueSize the size of accept queue.
+   * @return the server profile instance.
+   */
+  public ServerProfile withAcceptQueueSize(int acceptQueueSize) {
+    checkSetting(acceptQueueSize, "Accept queue size");
+    this.acceptQueueSize = acceptQueueSize;
+    return this;
+  }
+
+  /**
+   * Set timeout after which idle connection is closed.
+   *
+   * @param idleTimeout the idle timeout in milliseconds.
+   * @return the server profile instance.
+   */
+  public ServerProfile withIdleTimeout(long idleTimeout) {
+    checkSetting(idleTimeout, "Idle timeout");
+    this.idleTimeout = idleTimeout;
+    return this;
+  }
+
+  /**
+   * Set size of the response buffer, response is sent to client when buffer is full.
+   *
+   * @param outputBufferSize the size of output buffer in bytes.
+   * @return the server profile instance.
+   */
+  public ServerProfile withOutputBufferSize(int outputBufferSize) {
+    checkSetting(outputBufferSize, "Output buffer size");
+    this.outputBufferSize = outputBufferSize;
+    return this;
+  }
+
+  /**
+   * Set maximal size of request line and headers.
+   *
+   * @param requestHeaderSize the size of request headers in bytes.
+   * @return the server profile instance.
+   */
+  public ServerProfile withRequestHeaderSize(int requestHeaderSize) {
+    checkSetting(requestHeaderSize, "Request header size");
+    this.requestHeaderSize = requestHeaderSize;
+    return this;
+  }
+
+  /**
+   * Serve HTTP/2 cleartext connections together with HTTP/1.1 ones.
+   *
+   * @return the server profile instance.
+   */
+  public ServerProfile withHttp2Cleartext() {
+    this.http2Cleartext = true;
+    return this;
+  }
+
+  /**
+   * Set maximal number of concurrent streams client may open on one HTTP/2 connection.
+   *
+   * @param maxConcurrentStreams the maximal number of streams per connection.
+   * @return the server profile instance.
+   */
+  public ServerProfile withMaxConcurrentStreams(int maxConcurrentStreams) {
+    checkSetting(maxConcurrentStreams, "Max concurrent streams");
+    this.maxConcurrentStreams = maxConcurrentStreams;
+    return this;
+  }
+
+  /**
+   * Set initial flow control window of HTTP/2 stream, size of request body client may send
+   * before server confirms it.
+   *
+   * @param initialStreamWindow the initial stream window in bytes.
+   * @return the server profile instance.
+   */
+  public ServerProfile withInitialStreamWindow(int initialStreamWindow) {
+    checkSetting(initialStreamWindow, "Initial stream window");
+    this.initialStreamWindow = initialStreamWindow;
+    return this;
+  }
+
+  public int getAcceptors() {
+    return acceptors;
+  }
+
+  public int getSelectors() {
+    return selectors;
+  }
+
+  public int getMinThreads() {
+    return minThreads;
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+
+  public int getAcceptQueueSize() {
+    return acceptQueueSize;
+  }
+
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public int getOutputBufferSize() {
+    return outputBufferSize;
+  }
+
+  public int getRequestHeaderSize() {
+    return requestHeaderSize;
+  }
+
+  public boolean isHttp2Cleartext() {
+    return http2Cleartext;
+  }
+
+  public int getMaxConcurrentStreams() {
+    return maxConcurrentStreams;
+  }
+
+  public int getInitialStreamWindow() {
+    return initialStreamWindow;
+  }
+
+  @Override
+  public String toString() {
+    return "ServerProfile{acceptors=" + acceptors + ", selectors=" + selectors + ", minThreads="
+        + minThreads + ", maxThreads=" + maxThreads + ", acceptQueueSize=" + acceptQueueSize
+        + ", idleTimeout=" + idleTimeout + ", outputBufferSize=" + outputBufferSize
+        + ", requestHeaderSize=" + requestHeaderSize + ", http2Cleartext=" + http2Cleartext
+        + ", maxConcurrentStreams=" + maxConcurrentStreams + ", initialStreamWindow="
+        + initialStreamWindow + '}';
+  }
+}
@@ -0,0 +1,86 @@
+package ua.danit.rest.core;
+
+/**
+ * Snapshot of the HTTP server thread pool and connector state.
+ *
+ * @author Andrey Minov
+ */
+public class ServerTelemetry {
+  private final int threads;
+  private final int busyThreads;
+  private final int maxThreads;
+  private final int queueSize;
+  private final long connections;
+  private final long connectionsMax;
+  private final long connectionsTotal;
+
+  /**
+   * Instantiates a new server telemetry snapshot.
+   *
+   * @param threads          the number of threads in pool.
+   * @param busyThreads      the number of threads executing tasks.
+   * @param maxThreads       the maximal number of threads in pool.
+   * @param queueSize        the number of tasks waiting for free thread.
+   * @param connections      the number of open connections.
+   * @param connectionsMax   the maximal number of connections open at the same time.
+   * @param connectionsTotal the number of connections opened since start.
+   */
+  public ServerTelemetry(int threads, int busyThreads, int maxThreads, int queueSize,
+                         long connections, long connectionsMax, long connectionsTotal) {
+    this.threads = threads;
+    this.busyThreads = busyThreads;
+    this.maxThreads = maxThreads;
+    this.queueSize = queueSize;
+    this.connections = connections;
+    this.connectionsMax = connectionsMax;
+    this.connectionsTotal = connectionsTotal;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public int getBusyThreads() {
+    return busyThreads;
+  }
+
+  public int getIdleThreads() {
+    return threads - busyThreads;
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /**
+   * Gets utilization of the thread pool, the share of maximal number of threads busy now.
+   *
+   * @return the utilization of the pool from 0 to 1.
+   */
+  public double getPoolUtilization() {
+    return maxThreads > 0 ? (double) busyThreads / maxThreads : 0;
+  }
+
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  public long getConnections() {
+    return connections;
+  }
+
+  public long getConnectionsMax() {
+    return connectionsMax;
+  }
+
+  public long getConnectionsTotal() {
+    return connectionsTotal;
+  }
+
+  @Override
+  public String toString() {
+    return "ServerTelemetry{threads=" + threads + ", busyThreads=" + busyThreads + ", maxThreads="
+        + maxThreads + ", queueSize=" + queueSize + ", connections=" + connections
+        + ", connectionsMax=" + connectionsMax + ", connectionsTotal=" + connectionsTotal + '}';
+  }
+}
@@ -3,7 +3,6 @@ package ua.danit.rest.core;
 import static java.util.EnumSet.allOf;
 
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -11,9 +10,12 @@ import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import ua.danit.rest.core.cache.ResponseCaches;
 import ua.danit.rest.core.convertors.ConvertersStore;
 import ua.danit.rest.core.parsing.Invocation;
 import ua.danit.rest.core.parsing.MethodType;
+import ua.danit.rest.core.routing.PathMatch;
+import ua.danit.rest.core.routing.RouteTrie;
 
 /**
  * Stores resources together with metadata for calling the methods.
@@ -25,8 +27,9 @@ public class ServicesStore {
   private final ConvertersStore convertersStore;
   private final Function<Class<?>, Object> objectSupplier;
   private final BiFunction<ConvertersStore, Class<?>, List<Invocation>> serviceParser;
-  private final EnumMap<MethodType, Map<String, Invocation>> invocations;
+  private final EnumMap<MethodType, RouteTrie<Invocation>> invocations;
   private final Map<Class<?>, Object> cachedServices;
+  private final ResponseCaches responseCaches;
 
   /**
    * Instantiates a new Services store.
@@ -42,9 +45,10 @@ public class ServicesStore {
     this.objectSupplier = objectSupplier;
     this.serviceParser = serviceParser;
     this.invocations = new EnumMap<>(MethodType.class);
-    this.cachedServices = new HashMap<>();
+    this.cachedServices = new ConcurrentHashMap<>();
+    this.responseCaches = new ResponseCaches();
     invocations.putAll(allOf(MethodType.class).stream().collect(Collectors
-        .toMap(Function.identity(), k -> new ConcurrentHashMap<>())));
+        .toMap(Function.identity(), k -> new RouteTrie<>())));
   }
 
   /**
@@ -53,8 +57,11 @@ public class ServicesStore {
    * @param serviceClass the service class to register
    */
   public void addService(Class<?> serviceClass) {
+    // invocations are bound to the instance, so it is resolved once on registration.
+    Object instance = getServiceInstance(serviceClass);
     for (Invocation invocation : serviceParser.apply(convertersStore, serviceClass)) {
-      invocations.get(invocation.getMethodType()).put(invocation.getUrl(), invocation);
+      invocations.get(invocation.getMethodType())
+          .add(invocation.getUrl(), invocation.bind(instance, responseCaches));
     }
   }
 
@@ -64,8 +71,8 @@ public class ServicesStore {
    * @param serviceInstance the service to register
    */
   public void addServiceInstance(Object serviceInstance) {
-    addService(serviceInstance.getClass());
     cachedServices.put(serviceInstance.getClass(), serviceInstance);
+    addService(serviceInstance.getClass());
   }
 
   /**
@@ -76,7 +83,21 @@ public class ServicesStore {
    * @return the service invocation used for service to invoke or null if empty.
    */
   public Invocation getServiceMeta(MethodType methodType, String url) {
-    return invocations.get(methodType).get(url);
+    return getServiceMeta(methodType, url, 0, new PathMatch());
+  }
+
+  /**
+   * Gets service metadata from storage matching path templates of the services.
+   *
+   * @param methodType the HTTP method type to call. One of {@link MethodType}
+   * @param path       the path of the request
+   * @param from       the offset inside path where service url starts
+   * @param match      the holder for offsets of matched path variables
+   * @return the service invocation used for service to invoke or null if empty.
+   */
+  public Invocation getServiceMeta(MethodType methodType, CharSequence path, int from,
+                                   PathMatch match) {
+    return invocations.get(methodType).match(path, from, match);
   }
 
   /**
@@ -88,4 +109,12 @@ public class ServicesStore {
   public Object getServiceInstance(Class<?> clazz) {
     return cachedServices.computeIfAbsent(clazz, objectSupplier);
   }
+
+  public ConvertersStore getConvertersStore() {
+    return convertersStore;
+  }
+
+  public ResponseCaches getResponseCaches() {
+    return responseCaches;
+  }
 }
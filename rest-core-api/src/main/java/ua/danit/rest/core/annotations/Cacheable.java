@@ -0,0 +1,43 @@
+package ua.danit.rest.core.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Responses of annotated GET method are cached by the dispatcher. Response is cached for the
+ * route, bound values of method parameters and negotiated media type, cached response is sent
+ * without validation and call of the method. Method cannot have {@code @Context} parameters, as
+ * they are not values of the request the response can be cached for.
+ * <p/>
+ * Only successful responses without cookies are cached. Cache is cleared by methods annotated
+ * with {@link InvalidatesCache} of the cache name.
+ *
+ * @author Andrey Minov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cacheable {
+  /**
+   * Name of the cache, methods with the same name share the cache and must have the same
+   * settings. By default the url of the method is used.
+   *
+   * @return the name of the cache.
+   */
+  String value() default "";
+
+  /**
+   * Time the response is served from cache after it is cached.
+   *
+   * @return the time to live of cached response in milliseconds.
+   */
+  long ttl() default 1000;
+
+  /**
+   * Maximal number of responses in cache, responses used least recently are evicted first.
+   *
+   * @return the maximal number of cached responses.
+   */
+  int maxEntries() default 1024;
+}
@@ -0,0 +1,23 @@
+package ua.danit.rest.core.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Responses cached by {@link Cacheable} methods are cleared when annotated method returns without
+ * exception, before its own response is written. Only synchronous methods may invalidate caches.
+ *
+ * @author Andrey Minov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface InvalidatesCache {
+  /**
+   * Names of caches to clear.
+   *
+   * @return the names of caches.
+   */
+  String[] value();
+}
@@ -0,0 +1,26 @@
+package ua.danit.rest.core.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximal size of the request body accepted by service method, or by every method of annotated
+ * service class. Request with larger body is rejected with 413 Payload Too Large.
+ * <p/>
+ * Methods without annotation accept bodies up to limit of the application, see
+ * {@link ua.danit.rest.core.ApplicationBuilder#withMaxBodySize(long)}.
+ *
+ * @author Andrey Minov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface MaxBodySize {
+  /**
+   * Maximal size of the request body in bytes.
+   *
+   * @return the maximal size of the body.
+   */
+  long value();
+}
@@ -0,0 +1,54 @@
+package ua.danit.rest.core.binding;
+
+import ua.danit.rest.core.dispatch.RequestContext;
+
+/**
+ * Binds value of the single service method parameter from the request into argument slot of
+ * {@link RequestContext}. Binders are fully resolved when service is parsed, so binding does not
+ * look up converters on request.
+ *
+ * @author Andrey Minov
+ */
+public abstract class Binder {
+  private final int index;
+
+  /**
+   * Instantiates a new binder.
+   *
+   * @param index the index of the method parameter.
+   */
+  protected Binder(int index) {
+    this.index = index;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Check if binder writes value into primitive slot of context. Value of primitive slot is passed
+   * to the method without boxing.
+   *
+   * @return true when value is stored in primitive slot.
+   */
+  public boolean isPrimitive() {
+    return false;
+  }
+
+  /**
+   * Bind parameter value from request of the context.
+   *
+   * @param context the context of the current request.
+   */
+  public abstract void bind(RequestContext context);
+
+  /**
+   * Gets value bound before as an object, values of primitive slots are boxed.
+   *
+   * @param context the context of the current request.
+   * @return the value of the parameter or null if value is missing.
+   */
+  public Object box(RequestContext context) {
+    return context.getArgument(index);
+  }
+}
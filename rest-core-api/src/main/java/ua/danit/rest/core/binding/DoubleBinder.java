@@ -0,0 +1,52 @@
+package ua.danit.rest.core.binding;
+
+import ua.danit.rest.core.dispatch.RequestContext;
+
+/**
+ * Binder of the double parameter parsed directly from raw request characters.
+ *
+ * @author Andrey Minov
+ */
+public class DoubleBinder extends Binder {
+  private final ValueSource source;
+  private final boolean hasDefault;
+  private final double defaultValue;
+
+  /**
+   * Instantiates a new double binder.
+   *
+   * @param index        the index of the method parameter.
+   * @param source       the source of parameter value in request.
+   * @param defaultValue the default value used when request does not have value, may be null.
+   * @throws NumberFormatException when default value is not a number.
+   */
+  public DoubleBinder(int index, ValueSource source, String defaultValue) {
+    super(index);
+    this.source = source;
+    this.hasDefault = defaultValue != null;
+    this.defaultValue = hasDefault ? Double.parseDouble(defaultValue) : 0;
+  }
+
+  @Override
+  public boolean isPrimitive() {
+    return true;
+  }
+
+  @Override
+  public void bind(RequestContext context) {
+    CharSequence value = source.locate(context);
+    if (value != null) {
+      context.setDouble(getIndex(),
+          Numbers.parseDouble(value, context.getValueStart(), context.getValueEnd()));
+    } else if (hasDefault) {
+      context.setDouble(getIndex(), defaultValue);
+    } else {
+      context.setMissing(getIndex());
+    }
+  }
+
+  @Override
+  public Object box(RequestContext context) {
+    return context.isMissing(getIndex()) ? null : context.getDouble(getIndex());
+  }
+}
@@ -0,0 +1,52 @@
+package ua.danit.rest.core.binding;
+
+import ua.danit.rest.core.dispatch.RequestContext;
+
+/**
+ * Binder of the long parameter parsed directly from raw request characters.
+ *
+ * @author Andrey Minov
+ */
+public class LongBinder extends Binder {
+  private final ValueSource source;
+  private final boolean hasDefault;
+  private final long defaultValue;
+
+  /**
+   * Instantiates a new long binder.
+   *
+   * @param index        the index of the method parameter.
+   * @param source       the source of parameter value in request.
+   * @param defaultValue the default value used when request does not have value, may be null.
+   * @throws NumberFormatException when default value is not a number.
+   */
+  public LongBinder(int index, ValueSource source, String defaultValue) {
+    super(index);
+    this.source = source;
+    this.hasDefault = defaultValue != null;
+    this.defaultValue = hasDefault ? Long.parseLong(defaultValue) : 0;
+  }
+
+  @Override
+  public boolean isPrimitive() {
+    return true;
+  }
+
+  @Override
+  public void bind(RequestContext context) {
+    CharSequence value = source.locate(context);
+    if (value != null) {
+      context.setLong(getIndex(),
+          Numbers.parseLong(value, context.getValueStart(), context.getValueEnd()));
+    } else if (hasDefault) {
+      context.setLong(getIndex(), defaultValue);
+    } else {
+      context.setMissing(getIndex());
+    }
+  }
+
+  @Override
+  public Object box(RequestContext context) {
+    return context.isMissing(getIndex()) ? null : context.getLong(getIndex());
+  }
+}
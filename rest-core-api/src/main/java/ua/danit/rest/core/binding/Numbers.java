@@ -0,0 +1,121 @@
+package ua.danit.rest.core.binding;
+
+/**
+ * Parsing of numbers from region of characters without creating intermediate strings.
+ *
+ * @author Andrey Minov
+ */
+final class Numbers {
+  // maximal number of decimal digits exactly presented by double mantissa.
+  private static final int MAX_EXACT_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  private Numbers() {
+  }
+
+  private static NumberFormatException notNumber(CharSequence value, int start, int end) {
+    return new NumberFormatException(String
+        .format("For input string: \"%s\"", value.subSequence(start, end)));
+  }
+
+  /**
+   * Parse int value from region of characters.
+   *
+   * @param value the characters holding the number
+   * @param start the start of the number (inclusive)
+   * @param end   the end of the number (exclusive)
+   * @return the parsed number.
+   * @throws NumberFormatException when region is not a number or number is out of int range.
+   */
+  static int parseInt(CharSequence value, int start, int end) {
+    long result = parseLong(value, start, end);
+    if (result != (int) result) {
+      throw notNumber(value, start, end);
+    }
+    return (int) result;
+  }
+
+  /**
+   * Parse long value from region of characters.
+   *
+   * @param value the characters holding the number
+   * @param start the start of the number (inclusive)
+   * @param end   the end of the number (exclusive)
+   * @return the parsed number.
+   * @throws NumberFormatException when region is not a number or number is out of long range.
+   */
+  static long parseLong(CharSequence value, int start, int end) {
+    int pos = start;
+    boolean negative = false;
+    if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+      negative = value.charAt(pos) == '-';
+      pos++;
+    }
+    if (pos == end) {
+      throw notNumber(value, start, end);
+    }
+    // accumulate negative value as it has larger range.
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long result = 0;
+    for (; pos < end; pos++) {
+      int digit = value.charAt(pos) - '0';
+      if (digit < 0 || digit > 9 || result < (limit + digit) / 10) {
+        throw notNumber(value, start, end);
+      }
+      result = result * 10 - digit;
+    }
+    return negative ? result : -result;
+  }
+
+  /**
+   * Parse double value from region of characters. Plain decimal numbers with up to 15 significant
+   * digits are parsed directly, result is the same as of {@link Double#parseDouble(String)} as both
+   * digits and power of ten are exact doubles. Other forms, like exponent notation, are delegated
+   * to {@link Double#parseDouble(String)}.
+   *
+   * @param value the characters holding the number
+   * @param start the start of the number (inclusive)
+   * @param end   the end of the number (exclusive)
+   * @return the parsed number.
+   * @throws NumberFormatException when region is not a number.
+   */
+  static double parseDouble(CharSequence value, int start, int end) {
+    int pos = start;
+    boolean negative = false;
+    if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+      negative = value.charAt(pos) == '-';
+      pos++;
+    }
+    long mantissa = 0;
+    int scanned = 0;
+    int digits = 0;
+    int fraction = -1;
+    for (; pos < end; pos++) {
+      char current = value.charAt(pos);
+      if (current >= '0' && current <= '9') {
+        scanned++;
+        if (mantissa != 0 || current != '0') {
+          digits++;
+        }
+        if (digits > MAX_EXACT_DIGITS) {
+          break;
+        }
+        mantissa = mantissa * 10 + (current - '0');
+        if (fraction >= 0) {
+          fraction++;
+        }
+      } else if (current == '.' && fraction < 0) {
+        fraction = 0;
+      } else {
+        break;
+      }
+    }
+    if (pos != end || scanned == 0 || fraction >= POWERS_OF_TEN.length) {
+      return Double.parseDouble(value.subSequence(start, end).toString());
+    }
+    double result = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+    return negative ? -result : result;
+  }
+}
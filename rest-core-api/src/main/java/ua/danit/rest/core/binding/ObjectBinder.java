@@ -0,0 +1,30 @@
+package ua.danit.rest.core.binding;
+
+import java.util.function.Function;
+
+import ua.danit.rest.core.dispatch.RequestContext;
+
+/**
+ * Binder of the parameter converted into object by converter function.
+ *
+ * @author Andrey Minov
+ */
+public class ObjectBinder extends Binder {
+  private final Function<RequestContext, ?> converter;
+
+  /**
+   * Instantiates a new object binder.
+   *
+   * @param index     the index of the method parameter.
+   * @param converter the converter of request into parameter value.
+   */
+  public ObjectBinder(int index, Function<RequestContext, ?> converter) {
+    super(index);
+    this.converter = converter;
+  }
+
+  @Override
+  public void bind(RequestContext context) {
+    context.setArgument(getIndex(), converter.apply(context));
+  }
+}
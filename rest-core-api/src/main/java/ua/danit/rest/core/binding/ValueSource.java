@@ -0,0 +1,194 @@
+package ua.danit.rest.core.binding;
+
+import javax.servlet.http.HttpServletRequest;
+
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.routing.PathMatch;
+
+/**
+ * Source of the raw parameter value inside request.
+ * <p/>
+ * Value is located as region of characters, bounds of the region are stored in
+ * {@link RequestContext#getValueStart()} and {@link RequestContext#getValueEnd()}, so primitive
+ * values are parsed without creating strings. Query parameters are searched in raw query string
+ * of the request, values with escaped characters and parameters not present in query, for example
+ * form parameters, are taken from {@link HttpServletRequest#getParameter(String)}.
+ *
+ * @author Andrey Minov
+ */
+public abstract class ValueSource {
+
+  /**
+   * Create source of query (or form) parameter.
+   *
+   * @param name the name of the parameter
+   * @return the source of the parameter value.
+   */
+  public static ValueSource query(String name) {
+    return new QuerySource(name);
+  }
+
+  /**
+   * Create source of header value.
+   *
+   * @param name the name of the header
+   * @return the source of the header value.
+   */
+  public static ValueSource header(String name) {
+    return new StringSource() {
+      @Override
+      String value(RequestContext context) {
+        return context.getRequest().getHeader(name);
+      }
+    };
+  }
+
+  /**
+   * Create source of cookie value.
+   *
+   * @param slot the slot of the cookie. See {@link RequestContext#getCookie(int)}
+   * @return the source of the cookie value.
+   */
+  public static ValueSource cookie(int slot) {
+    return new StringSource() {
+      @Override
+      String value(RequestContext context) {
+        return context.getCookie(slot);
+      }
+    };
+  }
+
+  /**
+   * Create source of path variable.
+   *
+   * @param index the index of variable in path template.
+   * @return the source of the path variable value.
+   */
+  public static ValueSource path(int index) {
+    return new PathSource(index);
+  }
+
+  private static boolean isEscaped(CharSequence value, int start, int end, boolean query) {
+    for (int i = start; i < end; i++) {
+      char current = value.charAt(i);
+      // plus sign encodes space only in query.
+      if (current == '%' || query && current == '+') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Locate raw value inside request and store its bounds in context.
+   *
+   * @param context the context of the current request.
+   * @return the characters holding value or null if request does not have value.
+   */
+  public abstract CharSequence locate(RequestContext context);
+
+  /**
+   * Gets decoded value as string.
+   *
+   * @param context the context of the current request.
+   * @return the value or null if request does not have value.
+   */
+  public abstract String get(RequestContext context);
+
+  private abstract static class StringSource extends ValueSource {
+
+    abstract String value(RequestContext context);
+
+    @Override
+    public CharSequence locate(RequestContext context) {
+      String value = value(context);
+      if (value != null) {
+        context.setValueBounds(0, value.length());
+      }
+      return value;
+    }
+
+    @Override
+    public String get(RequestContext context) {
+      return value(context);
+    }
+  }
+
+  private static class QuerySource extends ValueSource {
+    private final String name;
+
+    private QuerySource(String name) {
+      this.name = name;
+    }
+
+    private static boolean regionEquals(String query, int start, int end, String name) {
+      return end - start == name.length() && query.regionMatches(start, name, 0, name.length());
+    }
+
+    @Override
+    public CharSequence locate(RequestContext context) {
+      HttpServletRequest request = context.getRequest();
+      String query = request.getQueryString();
+      int length = query != null ? query.length() : 0;
+      int start = 0;
+      while (start < length) {
+        int end = query.indexOf('&', start);
+        if (end < 0) {
+          end = length;
+        }
+        int separator = query.indexOf('=', start);
+        int nameEnd = separator >= 0 && separator < end ? separator : end;
+        if (regionEquals(query, start, nameEnd, name)) {
+          int valueStart = Math.min(nameEnd + 1, end);
+          if (isEscaped(query, valueStart, end, true)) {
+            break;
+          }
+          context.setValueBounds(valueStart, end);
+          return query;
+        }
+        start = end + 1;
+      }
+      String value = request.getParameter(name);
+      if (value != null) {
+        context.setValueBounds(0, value.length());
+      }
+      return value;
+    }
+
+    @Override
+    public String get(RequestContext context) {
+      return context.getRequest().getParameter(name);
+    }
+  }
+
+  private static class PathSource extends ValueSource {
+    private final int index;
+
+    private PathSource(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public CharSequence locate(RequestContext context) {
+      PathMatch match = context.getPathMatch();
+      if (index >= match.getCount()) {
+        return null;
+      }
+      int start = match.getStart(index);
+      int end = match.getEnd(index);
+      if (isEscaped(match.getPath(), start, end, false)) {
+        String value = match.getValue(index);
+        context.setValueBounds(0, value.length());
+        return value;
+      }
+      context.setValueBounds(start, end);
+      return match.getPath();
+    }
+
+    @Override
+    public String get(RequestContext context) {
+      PathMatch match = context.getPathMatch();
+      return index < match.getCount() ? match.getValue(index) : null;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package ua.danit.rest.core.cache;
+
+import java.util.Arrays;
+
+import ua.danit.rest.core.binding.Binder;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.parsing.Invocation;
+
+/**
+ * Key of the cached response: route of the request, bound values of method parameters and
+ * negotiated media type of the response.
+ *
+ * @author Andrey Minov
+ */
+public final class CacheKey {
+  private final Object route;
+  private final int mediaType;
+  private final Object[] values;
+  private final int hash;
+
+  /**
+   * Instantiates a new cache key.
+   *
+   * @param route     the route of the request, compared by identity.
+   * @param mediaType the index of negotiated media type of response.
+   * @param values    the values of method parameters.
+   */
+  public CacheKey(Object route, int mediaType, Object[] values) {
+    this.route = route;
+    this.mediaType = mediaType;
+    this.values = values;
+    this.hash = 31 * (31 * System.identityHashCode(route) + mediaType) + Arrays.hashCode(values);
+  }
+
+  /**
+   * Create key of the request with parameters bound into context.
+   *
+   * @param invocation the invocation of the request.
+   * @param context    the context of the current request.
+   * @param mediaType  the index of negotiated media type of response.
+   * @return the new cache key.
+   */
+  public static CacheKey of(Invocation invocation, RequestContext context, int mediaType) {
+    Binder[] binders = invocation.getBinders();
+    Object[] values = new Object[binders.length];
+    for (Binder binder : binders) {
+      values[binder.getIndex()] = binder.box(context);
+    }
+    return new CacheKey(invocation, mediaType, values);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CacheKey that = (CacheKey) o;
+    return hash == that.hash && route == that.route && mediaType == that.mediaType
+        && Arrays.equals(values, that.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+}
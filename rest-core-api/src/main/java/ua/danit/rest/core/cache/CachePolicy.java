@@ -0,0 +1,70 @@
+package ua.danit.rest.core.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Settings of the response cache declared by {@link ua.danit.rest.core.annotations.Cacheable}.
+ *
+ * @author Andrey Minov
+ */
+public class CachePolicy {
+  private final String name;
+  private final long ttl;
+  private final int maxEntries;
+
+  /**
+   * Instantiates a new cache policy.
+   *
+   * @param name       the name of the cache.
+   * @param ttl        the time to live of cached response in milliseconds.
+   * @param maxEntries the maximal number of cached responses.
+   */
+  public CachePolicy(String name, long ttl, int maxEntries) {
+    checkNotNull(name, "Cache name cannot be null!");
+    checkArgument(ttl > 0, "Time to live of cache %s must be positive!", name);
+    checkArgument(maxEntries > 0, "Max entries of cache %s must be positive!", name);
+    this.name = name;
+    this.ttl = ttl;
+    this.maxEntries = maxEntries;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getTtl() {
+    return ttl;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    CachePolicy that = (CachePolicy) o;
+
+    return ttl == that.ttl && maxEntries == that.maxEntries && name.equals(that.name);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = name.hashCode();
+    result = 31 * result + (int) (ttl ^ (ttl >>> 32));
+    result = 31 * result + maxEntries;
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "CachePolicy{name=" + name + ", ttl=" + ttl + ", maxEntries=" + maxEntries + '}';
+  }
+}
@@ -0,0 +1,77 @@
+package ua.danit.rest.core.cache;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletResponse;
+
+import ua.danit.rest.core.convertors.ConvertersStore;
+
+/**
+ * Response written by the method once: status, headers and encoded body, which can be sent to
+ * other requests without calling the method again.
+ *
+ * @author Andrey Minov
+ */
+public class CachedResponse {
+  private final int status;
+  private final String[] headers;
+  private final String contentType;
+  private final byte[] body;
+
+  /**
+   * Instantiates a new cached response.
+   *
+   * @param status      the status of the response.
+   * @param headers     the names and values of headers one by one.
+   * @param contentType the content type set by the method, or null when it is not changed.
+   * @param body        the encoded body, not compressed.
+   */
+  CachedResponse(int status, String[] headers, String contentType, byte[] body) {
+    this.status = status;
+    this.headers = headers;
+    this.contentType = contentType;
+    this.body = body;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * Gets value of the header written by the method.
+   *
+   * @param name the name of the header, case insensitive.
+   * @return the first value of the header or null when it is not written.
+   */
+  public String getHeader(String name) {
+    for (int i = 0; i < headers.length; i += 2) {
+      if (headers[i].equalsIgnoreCase(name)) {
+        return headers[i + 1];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Write response into HTTP response. Body is compressed by converters store when compression
+   * is negotiated for the response.
+   *
+   * @param response        the HTTP response
+   * @param convertersStore the converters store.
+   * @throws IOException when response cannot be written.
+   */
+  public void writeTo(HttpServletResponse response,
+                      ConvertersStore convertersStore) throws IOException {
+    response.setStatus(status);
+    for (int i = 0; i < headers.length; i += 2) {
+      response.addHeader(headers[i], headers[i + 1]);
+    }
+    if (contentType != null) {
+      response.setContentType(contentType);
+    }
+    convertersStore.writeBytes(response, body, response.getContentType());
+  }
+}
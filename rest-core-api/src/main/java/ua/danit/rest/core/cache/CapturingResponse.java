@@ -0,0 +1,227 @@
+package ua.danit.rest.core.cache;
+
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import ua.danit.rest.core.utils.Headers;
+
+/**
+ * Response recording status, headers and body written by response writer instead of sending them,
+ * so they are cached and sent by {@link CachedResponse}.
+ * <p/>
+ * Cookies and errors are passed to the wrapped response at once, such responses are not cached.
+ *
+ * @author Andrey Minov
+ */
+public class CapturingResponse extends HttpServletResponseWrapper {
+  private final List<String> headers;
+  private final Body body;
+  private int status;
+  private String contentType;
+  private PrintWriter writer;
+  private boolean cookies;
+  private boolean errorSent;
+
+  /**
+   * Instantiates a new capturing response.
+   *
+   * @param response the HTTP response to capture writing of.
+   */
+  public CapturingResponse(HttpServletResponse response) {
+    super(response);
+    this.headers = new ArrayList<>();
+    this.body = new Body();
+    this.status = SC_OK;
+  }
+
+  /**
+   * Finish capturing of the response.
+   *
+   * @return the captured response, or null when error is sent to the wrapped response.
+   */
+  public CachedResponse finish() {
+    if (errorSent) {
+      return null;
+    }
+    if (writer != null) {
+      writer.flush();
+    }
+    return new CachedResponse(status, headers.toArray(new String[headers.size()]), contentType,
+        body.toByteArray());
+  }
+
+  /**
+   * Check if captured response can be sent to other requests.
+   *
+   * @return true when response is successful and does not set cookies.
+   */
+  public boolean isCacheable() {
+    return status == SC_OK && !cookies && !errorSent;
+  }
+
+  @Override
+  public void setStatus(int status) {
+    this.status = status;
+  }
+
+  @Override
+  public int getStatus() {
+    return status;
+  }
+
+  @Override
+  public void sendError(int status) throws IOException {
+    errorSent = true;
+    super.sendError(status);
+  }
+
+  @Override
+  public void sendError(int status, String message) throws IOException {
+    errorSent = true;
+    super.sendError(status, message);
+  }
+
+  @Override
+  public void addCookie(Cookie cookie) {
+    cookies = true;
+    super.addCookie(cookie);
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    for (int i = headers.size() - 2; i >= 0; i -= 2) {
+      if (headers.get(i).equalsIgnoreCase(name)) {
+        headers.remove(i + 1);
+        headers.remove(i);
+      }
+    }
+    addHeader(name, value);
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    headers.add(name);
+    headers.add(value);
+  }
+
+  @Override
+  public void setIntHeader(String name, int value) {
+    setHeader(name, String.valueOf(value));
+  }
+
+  @Override
+  public void addIntHeader(String name, int value) {
+    addHeader(name, String.valueOf(value));
+  }
+
+  @Override
+  public void setDateHeader(String name, long date) {
+    setHeader(name, Headers.formatDate(date));
+  }
+
+  @Override
+  public void addDateHeader(String name, long date) {
+    addHeader(name, Headers.formatDate(date));
+  }
+
+  @Override
+  public void setContentType(String type) {
+    this.contentType = type;
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType != null ? contentType : super.getContentType();
+  }
+
+  @Override
+  public void setContentLength(int length) {
+    // length of the body is set when captured response is sent.
+  }
+
+  @Override
+  public void setContentLengthLong(long length) {
+    // length of the body is set when captured response is sent.
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    return body;
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+    }
+    return writer;
+  }
+
+  @Override
+  public void flushBuffer() {
+    // nothing is sent until response is finished.
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return errorSent;
+  }
+
+  @Override
+  public void resetBuffer() {
+    body.reset();
+  }
+
+  @Override
+  public void reset() {
+    body.reset();
+    headers.clear();
+    status = SC_OK;
+    contentType = null;
+  }
+
+  private static class Body extends ServletOutputStream {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      bytes.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      bytes.write(b, off, len);
+    }
+
+    private byte[] toByteArray() {
+      return bytes.toByteArray();
+    }
+
+    private void reset() {
+      bytes.reset();
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      throw new UnsupportedOperationException("Captured response does not support non-blocking "
+                                              + "IO!");
+    }
+  }
+}
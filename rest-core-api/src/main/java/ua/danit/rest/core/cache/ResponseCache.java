@@ -0,0 +1,101 @@
+package ua.danit.rest.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of responses of one name, shared by all methods declaring it.
+ * <p/>
+ * Responses expire after time to live of the policy and responses used least recently are
+ * evicted when cache is full. Invalidation starts new generation of the cache: response of the
+ * method called before invalidation is not cached after it, even when method completes later.
+ *
+ * @author Andrey Minov
+ */
+public class ResponseCache {
+  private final CachePolicy policy;
+  private final Cache<CacheKey, CachedResponse> responses;
+  private final AtomicLong generation;
+  private final LongAdder invalidations;
+
+  /**
+   * Instantiates a new response cache.
+   *
+   * @param policy the settings of the cache.
+   */
+  public ResponseCache(CachePolicy policy) {
+    this.policy = policy;
+    this.responses = CacheBuilder.newBuilder().maximumSize(policy.getMaxEntries())
+                                 .expireAfterWrite(policy.getTtl(), TimeUnit.MILLISECONDS)
+                                 .recordStats().build();
+    this.generation = new AtomicLong();
+    this.invalidations = new LongAdder();
+  }
+
+  public CachePolicy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Gets cached response.
+   *
+   * @param key the key of the response.
+   * @return the cached response or null when it is not cached or expired.
+   */
+  public CachedResponse get(CacheKey key) {
+    return responses.getIfPresent(key);
+  }
+
+  /**
+   * Gets current generation of the cache, it should be taken before method is called and passed
+   * to {@link #put(CacheKey, CachedResponse, long)} with the method response.
+   *
+   * @return the generation of the cache.
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Cache response when cache is not invalidated since generation is taken.
+   *
+   * @param key        the key of the response.
+   * @param response   the response to cache.
+   * @param generation the generation taken before response is created.
+   */
+  public void put(CacheKey key, CachedResponse response, long generation) {
+    if (this.generation.get() != generation) {
+      return;
+    }
+    responses.put(key, response);
+    // invalidation may start while response is put.
+    if (this.generation.get() != generation) {
+      responses.invalidate(key);
+    }
+  }
+
+  /**
+   * Remove all cached responses.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    responses.invalidateAll();
+    invalidations.increment();
+  }
+
+  /**
+   * Gets statistics of the cache.
+   *
+   * @return the statistics snapshot.
+   */
+  public ResponseCacheStats getStats() {
+    CacheStats stats = responses.stats();
+    return new ResponseCacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(),
+        invalidations.sum(), responses.size());
+  }
+}
@@ -0,0 +1,68 @@
+package ua.danit.rest.core.cache;
+
+/**
+ * Snapshot of response cache metrics.
+ *
+ * @author Andrey Minov
+ */
+public class ResponseCacheStats {
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final long invalidations;
+  private final long size;
+
+  /**
+   * Instantiates a new response cache stats snapshot.
+   *
+   * @param hits          the number of responses served from cache.
+   * @param misses        the number of responses not found in cache.
+   * @param evictions     the number of responses removed as expired or to free space.
+   * @param invalidations the number of times cache is cleared.
+   * @param size          the number of responses in cache.
+   */
+  public ResponseCacheStats(long hits, long misses, long evictions, long invalidations,
+                            long size) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.invalidations = invalidations;
+    this.size = size;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  public long getInvalidations() {
+    return invalidations;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Gets share of requests served from cache.
+   *
+   * @return the hit ratio from 0 to 1, 0 when cache is not requested yet.
+   */
+  public double getHitRatio() {
+    long requests = hits + misses;
+    return requests > 0 ? (double) hits / requests : 0;
+  }
+
+  @Override
+  public String toString() {
+    return "ResponseCacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+        + ", invalidations=" + invalidations + ", size=" + size + '}';
+  }
+}
@@ -0,0 +1,60 @@
+package ua.danit.rest.core.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Response caches of the application by name.
+ *
+ * @author Andrey Minov
+ */
+public class ResponseCaches {
+  private final Map<String, ResponseCache> caches = new ConcurrentHashMap<>();
+
+  /**
+   * Gets cache of the policy name, creating it on the first call.
+   *
+   * @param policy the settings of the cache.
+   * @return the response cache.
+   * @throws IllegalArgumentException when cache of the same name has other settings.
+   */
+  public ResponseCache getCache(CachePolicy policy) {
+    ResponseCache cache = caches.computeIfAbsent(policy.getName(), k -> new ResponseCache(policy));
+    checkArgument(cache.getPolicy().equals(policy), "Cache %s is declared with other settings %s!",
+        policy.getName(), cache.getPolicy());
+    return cache;
+  }
+
+  /**
+   * Remove all responses of caches. Caches not created yet are ignored.
+   *
+   * @param names the names of caches.
+   */
+  public void invalidate(String[] names) {
+    for (String name : names) {
+      ResponseCache cache = caches.get(name);
+      if (cache != null) {
+        cache.invalidate();
+      }
+    }
+  }
+
+  /**
+   * Gets statistics of the cache.
+   *
+   * @param name the name of the cache.
+   * @return the statistics snapshot or null when cache with such name does not exist.
+   */
+  public ResponseCacheStats getStats(String name) {
+    ResponseCache cache = caches.get(name);
+    return cache != null ? cache.getStats() : null;
+  }
+
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(caches.keySet());
+  }
+}
@@ -0,0 +1,65 @@
+package ua.danit.rest.core.convertors;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream of request body failing as soon as more bytes than limit are read, so oversized
+ * body is rejected before it is buffered completely. Exceeded limit is reported by
+ * {@link PayloadTooLargeException}.
+ *
+ * @author Andrey Minov
+ */
+public class BoundedInputStream extends FilterInputStream {
+  private final long limit;
+  private long count;
+
+  /**
+   * Instantiates a new bounded input stream.
+   *
+   * @param in    the stream of request body.
+   * @param limit the maximal number of bytes allowed to read.
+   */
+  public BoundedInputStream(InputStream in, long limit) {
+    super(in);
+    this.limit = limit;
+  }
+
+  private void count(long read) {
+    count += read;
+    if (count > limit) {
+      throw new PayloadTooLargeException(limit);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    int value = super.read();
+    if (value >= 0) {
+      count(1);
+    }
+    return value;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int read = super.read(buffer, offset, length);
+    if (read > 0) {
+      count(read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long length) throws IOException {
+    long skipped = super.skip(length);
+    count(skipped);
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
@@ -0,0 +1,22 @@
+package ua.danit.rest.core.convertors;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response of the request which accepts compressed body in negotiated encoding.
+ *
+ * @author Andrey Minov
+ */
+class CompressingResponse extends HttpServletResponseWrapper {
+  private final String encoding;
+
+  CompressingResponse(HttpServletResponse response, String encoding) {
+    super(response);
+    this.encoding = encoding;
+  }
+
+  String getEncoding() {
+    return encoding;
+  }
+}
@@ -0,0 +1,115 @@
+package ua.danit.rest.core.convertors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Settings of response compression negotiated by Accept-Encoding header of request.
+ * <p/>
+ * Response is compressed when its media type is allowed and size of the body is not less than
+ * threshold, smaller bodies are sent as is since compression does not pay off for them.
+ *
+ * @author Andrey Minov
+ */
+public class Compression {
+  /**
+   * Default minimal size of the body to compress in bytes.
+   */
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  private int threshold = DEFAULT_THRESHOLD;
+  private int level = Deflater.DEFAULT_COMPRESSION;
+  private int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+  private Set<String> mediaTypes = new HashSet<>();
+
+  private Compression() {
+    mediaTypes.add(MediaType.APPLICATION_JSON);
+    mediaTypes.add(MediaType.TEXT_PLAIN);
+  }
+
+  /**
+   * Create compression settings with defaults: threshold of {@value #DEFAULT_THRESHOLD} bytes,
+   * default level of zlib and JSON and plain text media types allowed.
+   *
+   * @return the new compression settings.
+   */
+  public static Compression compression() {
+    return new Compression();
+  }
+
+  /**
+   * Set minimal size of the body to compress.
+   *
+   * @param threshold the size of the body in bytes.
+   * @return the compression settings instance.
+   */
+  public Compression withThreshold(int threshold) {
+    checkArgument(threshold >= 0, "Threshold cannot be negative!");
+    this.threshold = threshold;
+    return this;
+  }
+
+  /**
+   * Set compression level from 1 (fastest) to 9 (best compression).
+   *
+   * @param level the compression level, or -1 for default level of zlib.
+   * @return the compression settings instance.
+   */
+  public Compression withLevel(int level) {
+    checkArgument(level == Deflater.DEFAULT_COMPRESSION
+        || level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION,
+        "Compression level %s is not correct!", level);
+    this.level = level;
+    return this;
+  }
+
+  /**
+   * Set media types of responses allowed to be compressed, replacing default ones.
+   *
+   * @param mediaTypes the media types, for example application/json
+   * @return the compression settings instance.
+   */
+  public Compression withMediaTypes(String... mediaTypes) {
+    checkNotNull(mediaTypes, "Media types cannot be null!");
+    this.mediaTypes = new HashSet<>();
+    for (String mediaType : mediaTypes) {
+      this.mediaTypes.add(mediaType.toLowerCase(Locale.ROOT));
+    }
+    return this;
+  }
+
+  /**
+   * Set maximal number of idle deflaters and output buffers kept for reuse.
+   *
+   * @param poolSize the size of deflaters and output buffers pools.
+   * @return the compression settings instance.
+   */
+  public Compression withPoolSize(int poolSize) {
+    checkArgument(poolSize >= 0, "Pool size cannot be negative!");
+    this.poolSize = poolSize;
+    return this;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public Set<String> getMediaTypes() {
+    return Collections.unmodifiableSet(mediaTypes);
+  }
+}
@@ -0,0 +1,84 @@
+package ua.danit.rest.core.convertors;
+
+/**
+ * Snapshot of response compression metrics.
+ *
+ * @author Andrey Minov
+ */
+public class CompressionStats {
+  private final long compressedResponses;
+  private final long skippedResponses;
+  private final long bytesIn;
+  private final long bytesOut;
+  private final long cpuNanos;
+  private final long deflatersCreated;
+
+  /**
+   * Instantiates a new compression stats snapshot.
+   *
+   * @param compressedResponses the number of compressed responses.
+   * @param skippedResponses    the number of responses below threshold sent as is.
+   * @param bytesIn             the size of compressed bodies before compression.
+   * @param bytesOut            the size of compressed bodies after compression.
+   * @param cpuNanos            the CPU time spent on compression in nanoseconds.
+   * @param deflatersCreated    the number of deflaters created, not taken from pool.
+   */
+  public CompressionStats(long compressedResponses, long skippedResponses, long bytesIn,
+                          long bytesOut, long cpuNanos, long deflatersCreated) {
+    this.compressedResponses = compressedResponses;
+    this.skippedResponses = skippedResponses;
+    this.bytesIn = bytesIn;
+    this.bytesOut = bytesOut;
+    this.cpuNanos = cpuNanos;
+    this.deflatersCreated = deflatersCreated;
+  }
+
+  public long getCompressedResponses() {
+    return compressedResponses;
+  }
+
+  public long getSkippedResponses() {
+    return skippedResponses;
+  }
+
+  public long getBytesIn() {
+    return bytesIn;
+  }
+
+  public long getBytesOut() {
+    return bytesOut;
+  }
+
+  /**
+   * Gets compression ratio, size of compressed bodies divided by their original size.
+   *
+   * @return the compression ratio, 1 when nothing is compressed yet.
+   */
+  public double getRatio() {
+    return bytesIn > 0 ? (double) bytesOut / bytesIn : 1;
+  }
+
+  public long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  /**
+   * Gets average CPU time spent on compression of single response.
+   *
+   * @return the CPU time in nanoseconds per compressed response.
+   */
+  public long getCpuNanosPerResponse() {
+    return compressedResponses > 0 ? cpuNanos / compressedResponses : 0;
+  }
+
+  public long getDeflatersCreated() {
+    return deflatersCreated;
+  }
+
+  @Override
+  public String toString() {
+    return "CompressionStats{compressedResponses=" + compressedResponses + ", skippedResponses="
+        + skippedResponses + ", bytesIn=" + bytesIn + ", bytesOut=" + bytesOut + ", cpuNanos="
+        + cpuNanos + ", deflatersCreated=" + deflatersCreated + '}';
+  }
+}
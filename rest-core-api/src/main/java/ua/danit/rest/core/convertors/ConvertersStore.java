@@ -1,14 +1,20 @@
 package ua.danit.rest.core.convertors;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.io.ByteStreams.toByteArray;
 import static java.util.Optional.ofNullable;
 
 import com.google.common.base.Strings;
+import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
@@ -16,6 +22,7 @@ import java.util.function.BiFunction;
 import java.util.function.Function;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -24,10 +31,33 @@ import javax.ws.rs.core.Response;
  * Storage used for convert string parameters into object types and visa versa.
  * <p/>
  * Support basic conventions from scratch: string, primitives.
+ * <p/>
+ * Entities are written into buffer taken from pool: JSON is streamed into it by
+ * {@link com.google.gson.stream.JsonWriter} and strings are encoded in UTF-8 without intermediate
+ * copies. Buffered entity is sent after headers with Content-Length in single write, entity larger
+ * than {@value #MAX_BUFFERED_ENTITY} bytes is streamed to client in chunks. Bytes of
+ * {@link EncodedEntity} in negotiated media type are written without serialization.
+ * <p/>
+ * Request bodies are decoded by media converters straight from the request stream, JSON is
+ * parsed by streaming reader without reading whole body into memory first.
+ * <p/>
+ * When compression is enabled by {@link #enableCompression(Compression)}, entities of responses
+ * negotiated by {@link #negotiateEncoding(HttpServletRequest, HttpServletResponse)} are written
+ * with gzip or deflate encoding. Entity larger than the buffer is compressed while it is streamed.
  *
  * @author Andrey Minov
  */
 public class ConvertersStore {
+  /**
+   * Maximal size of the entity sent with Content-Length, larger entities are sent in chunks.
+   */
+  public static final int MAX_BUFFERED_ENTITY = 64 * 1024;
+  /**
+   * Default maximal size of the request body in bytes.
+   */
+  public static final long DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+
+  private static final int BUFFER_POOL_SIZE = 64;
 
   private final Map<Class<?>, Function<String, ?>> inConverters;
   private final Map<Class<?>, BiConsumer<HttpServletResponse, ?>> outWriters;
@@ -35,6 +65,9 @@ public class ConvertersStore {
   private final Map<String, BiConsumer<?, ServletOutputStream>> mediaTypeOutWriters;
   private final BiConsumer<HttpServletResponse, Object> defaultWriter;
   private final Gson gson;
+  private final EntityBufferPool buffers = new EntityBufferPool(BUFFER_POOL_SIZE);
+  private volatile ResponseCompressor compressor;
+  private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
 
   /**
    * Instantiates a new Converters store.
@@ -49,26 +82,45 @@ public class ConvertersStore {
     registerBuildInConverters();
   }
 
-  private static void printAndFlush(ServletOutputStream stream, String data) {
+  private static Writer writer(ServletOutputStream stream) {
+    return stream instanceof EntityBuffer ? ((EntityBuffer) stream).asWriter()
+        : new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+  }
+
+  private static void print(ServletOutputStream stream, String data) {
     try {
-      stream.print(data);
-      stream.flush();
+      Writer writer = writer(stream);
+      writer.write(data);
+      writer.flush();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private static void printAndFlush(ServletOutputStream stream, byte[] data) {
+  private static void print(ServletOutputStream stream, byte[] data) {
     try {
       stream.write(data);
-      stream.flush();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private void printJson(ServletOutputStream stream, Object value) {
+    try {
+      Writer writer = writer(stream);
+      gson.toJson(value, value.getClass(), gson.newJsonWriter(writer));
+      writer.flush();
+    } catch (IOException | JsonIOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private static String streamToString(InputStream inputStream) {
-    return new String(streamToBytes(inputStream), Charset.forName("UTF-8"));
+    try {
+      return CharStreams.toString(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   private static byte[] streamToBytes(InputStream inputStream) {
@@ -97,16 +149,16 @@ public class ConvertersStore {
     outWriters.put(Response.class, fromRsResponseWriter());
 
     mediaTypeInConverters
-        .put(MediaType.APPLICATION_JSON, (v, c) -> gson.fromJson(streamToString(v), c));
+        .put(MediaType.APPLICATION_JSON,
+            (v, c) -> gson.fromJson(new InputStreamReader(v, StandardCharsets.UTF_8), c));
     mediaTypeInConverters.put(MediaType.TEXT_PLAIN, (v, c) -> streamToString(v));
     mediaTypeInConverters.put(MediaType.APPLICATION_OCTET_STREAM, (v, c) -> streamToBytes(v));
 
     mediaTypeOutWriters.put(MediaType.APPLICATION_JSON, (v, str) -> ofNullable(v)
-        .ifPresent(e -> printAndFlush(str, gson.toJson(e))));
-    mediaTypeOutWriters
-        .put(MediaType.TEXT_PLAIN, (v, str) -> printAndFlush(str, String.valueOf(v)));
+        .ifPresent(e -> printJson(str, e)));
+    mediaTypeOutWriters.put(MediaType.TEXT_PLAIN, (v, str) -> print(str, String.valueOf(v)));
     mediaTypeOutWriters
-        .put(MediaType.APPLICATION_OCTET_STREAM, (v, str) -> printAndFlush(str, (byte[]) v));
+        .put(MediaType.APPLICATION_OCTET_STREAM, (v, str) -> print(str, (byte[]) v));
   }
 
   /**
@@ -132,7 +184,87 @@ public class ConvertersStore {
   }
 
   /**
-   * Gets media converter which converts body of provided media type to object.
+   * Register codec of request and response bodies of its media type, replacing converters of the
+   * type registered before.
+   *
+   * @param codec the media codec.
+   */
+  public void registerMediaCodec(MediaCodec codec) {
+    mediaTypeInConverters.put(codec.getMediaType(), (stream, clazz) -> {
+      try {
+        return codec.read(stream, clazz);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    mediaTypeOutWriters.put(codec.getMediaType(), (entity, stream) -> {
+      if (entity == null) {
+        return;
+      }
+      try {
+        codec.write(entity, stream);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  /**
+   * Set maximal size of request body accepted by methods not declaring their own limit.
+   *
+   * @param maxBodySize the maximal size of the body in bytes.
+   * @throws IllegalArgumentException when size is not positive.
+   */
+  public void setMaxBodySize(long maxBodySize) {
+    checkArgument(maxBodySize > 0, "Max body size must be positive!");
+    this.maxBodySize = maxBodySize;
+  }
+
+  public long getMaxBodySize() {
+    return maxBodySize;
+  }
+
+  /**
+   * Compress entities of responses written by this store with provided settings.
+   *
+   * @param compression the compression settings.
+   */
+  public void enableCompression(Compression compression) {
+    this.compressor = new ResponseCompressor(compression);
+  }
+
+  /**
+   * Select content encoding of the response by Accept-Encoding header of the request. Response
+   * passed to writers of this store should be the one returned by this method.
+   *
+   * @param request  the HTTP request
+   * @param response the HTTP response
+   * @return response compressing entity in negotiated encoding, or the same response when
+   *         compression is disabled or not accepted by client.
+   */
+  public HttpServletResponse negotiateEncoding(HttpServletRequest request,
+                                               HttpServletResponse response) {
+    if (compressor == null) {
+      return response;
+    }
+    String encoding = ResponseCompressor.negotiate(request.getHeader("Accept-Encoding"));
+    return encoding != null ? new CompressingResponse(response, encoding) : response;
+  }
+
+  /**
+   * Gets statistics of response compression.
+   *
+   * @return the compression statistics, empty one when compression is disabled.
+   */
+  public CompressionStats getCompressionStats() {
+    ResponseCompressor current = compressor;
+    return current != null ? current.getStats() : new CompressionStats(0, 0, 0, 0, 0, 0);
+  }
+
+  /**
+   * Gets media converter which converts body of provided media type to object. Parameters of
+   * {@link InputStream} type get the body stream itself whatever media type is, so service method
+   * can read large bodies incrementally.
    *
    * @param <T>       the type parameter of response
    * @param clazz     the clazz to convert to
@@ -141,6 +273,9 @@ public class ConvertersStore {
    */
   @SuppressWarnings("unchecked")
   public <T> Function<InputStream, T> getMediaInConverter(Class<T> clazz, String mediaType) {
+    if (clazz == InputStream.class) {
+      return s -> (T) s;
+    }
     BiFunction<InputStream, Class<?>, ?> mediaConverter = mediaTypeInConverters.get(mediaType);
     if (mediaConverter != null) {
       return s -> (T) mediaConverter.apply(s, clazz);
@@ -190,13 +325,8 @@ public class ConvertersStore {
   private BiConsumer<HttpServletResponse, Object> fromRsResponseWriter() {
     return (resp, entity) -> {
       Response response = (Response) entity;
+      // headers are set before the entity, response is committed when entity is written.
       resp.setStatus(response.getStatus());
-      String contentType =
-          response.getMediaType() != null ? response.getMediaType().getType() : resp
-              .getContentType();
-      if (response.hasEntity()) {
-        writeEntity(resp, response.getEntity(), contentType);
-      }
       if (response.getHeaders() != null) {
         response.getHeaders().forEach((name, value) -> {
           for (Object header : value) {
@@ -208,14 +338,86 @@ public class ConvertersStore {
         response.getCookies().forEach((name, cookie) -> resp
             .addCookie(new Cookie(cookie.getName(), cookie.getValue())));
       }
+      String contentType = resp.getContentType();
+      if (response.getMediaType() != null) {
+        MediaType mediaType = response.getMediaType();
+        contentType = mediaType.getType() + '/' + mediaType.getSubtype();
+        resp.setContentType(contentType);
+      }
+      if (response.hasEntity()) {
+        writeEntity(resp, response.getEntity(), contentType);
+      }
     };
   }
 
+  /**
+   * Write body encoded before, for example cached one. Body is compressed when compression is
+   * negotiated for the response and content type is allowed to be compressed.
+   *
+   * @param response    the HTTP response returned by {@link #negotiateEncoding}.
+   * @param bytes       the encoded body.
+   * @param contentType the content type of the body.
+   * @throws IOException when body cannot be written.
+   */
+  public void writeBytes(HttpServletResponse response, byte[] bytes,
+                         String contentType) throws IOException {
+    ResponseCompressor current = compressor;
+    if (current == null || !(response instanceof CompressingResponse)
+        || !current.isCompressible(contentType)) {
+      response.setContentLength(bytes.length);
+      response.getOutputStream().write(bytes);
+      return;
+    }
+    EntityBuffer body = buffers.acquire();
+    try {
+      body.write(bytes, 0, bytes.length);
+      current.write((CompressingResponse) response, body);
+    } finally {
+      buffers.release(body);
+    }
+  }
+
   private void writeEntity(HttpServletResponse response, Object entity, String contentType) {
+    if (entity instanceof EncodedEntity) {
+      EncodedEntity encoded = (EncodedEntity) entity;
+      byte[] bytes = encoded.getBytes(contentType);
+      if (bytes != null) {
+        try {
+          writeBytes(response, bytes, contentType);
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        return;
+      }
+      entity = encoded.getEntity();
+    }
+    EntityBuffer body = buffers.acquire();
     try {
-      getEntityConverter(contentType).accept(entity, response.getOutputStream());
+      ResponseCompressor current = compressor;
+      if (current != null && response instanceof CompressingResponse
+          && current.isCompressible(contentType)) {
+        ResponseCompressor.StreamingResponse streaming =
+            current.streaming((CompressingResponse) response);
+        try {
+          body.bind(streaming, MAX_BUFFERED_ENTITY);
+          getEntityConverter(contentType).accept(entity, body);
+          if (body.isStreamed()) {
+            streaming.finish();
+          } else {
+            current.write((CompressingResponse) response, body);
+          }
+        } finally {
+          streaming.release();
+        }
+      } else {
+        body.bind(response, MAX_BUFFERED_ENTITY);
+        getEntityConverter(contentType).accept(entity, body);
+        body.sendTo(response);
+      }
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      buffers.release(body);
     }
   }
 
@@ -229,6 +431,6 @@ public class ConvertersStore {
         return consumer;
       }
     }
-    return (value, stream) -> printAndFlush(stream, String.valueOf(value));
+    return (value, stream) -> print(stream, String.valueOf(value));
   }
 }
@@ -0,0 +1,45 @@
+package ua.danit.rest.core.convertors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Response entity encoded before into bytes of some media types. When negotiated media type of
+ * the response is one of them, {@link ConvertersStore} writes the bytes as they are without
+ * serialization. Otherwise entity provided by supplier is encoded as usual.
+ *
+ * @author Andrey Minov
+ */
+public final class EncodedEntity {
+  private final Map<String, byte[]> encodings;
+  private final Supplier<?> entity;
+
+  /**
+   * Instantiates a new encoded entity.
+   *
+   * @param encodings the encoded bytes by media type, for example application/json.
+   * @param entity    the supplier of entity for media types not encoded.
+   */
+  public EncodedEntity(Map<String, byte[]> encodings, Supplier<?> entity) {
+    this.encodings = ImmutableMap.copyOf(encodings);
+    this.entity = checkNotNull(entity, "Entity supplier cannot be null!");
+  }
+
+  /**
+   * Gets entity encoded into media type.
+   *
+   * @param mediaType the media type of the response.
+   * @return the encoded bytes or null when entity is not encoded into this media type.
+   */
+  public byte[] getBytes(String mediaType) {
+    return mediaType != null ? encodings.get(mediaType) : null;
+  }
+
+  public Object getEntity() {
+    return entity.get();
+  }
+}
@@ -0,0 +1,237 @@
+package ua.danit.rest.core.convertors;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Growable in-memory output stream entities are written into before they are sent to response.
+ * Buffer is taken from {@link EntityBufferPool} for single response and reused by later responses.
+ * <p/>
+ * Buffer bound to response by {@link #bind(HttpServletResponse, int)} keeps at most limit bytes
+ * in memory, when entity is larger buffered part is written into response and the rest is streamed
+ * to response directly, so such response is sent in chunks.
+ *
+ * @author Andrey Minov
+ */
+class EntityBuffer extends ServletOutputStream {
+  private static final int INITIAL_CAPACITY = 4 * 1024;
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+  private final Utf8Writer writer = new Utf8Writer();
+  private byte[] bytes = new byte[INITIAL_CAPACITY];
+  private int size;
+  private int limit = Integer.MAX_VALUE;
+  private HttpServletResponse response;
+  private ServletOutputStream overflow;
+
+  /**
+   * Clear the buffer, memory of very large bodies is released. Surrogate left unpaired by
+   * previous entity is dropped, so it is not written into the next one.
+   */
+  void reset() {
+    size = 0;
+    writer.highSurrogate = 0;
+    limit = Integer.MAX_VALUE;
+    response = null;
+    overflow = null;
+    if (bytes.length > MAX_RETAINED_CAPACITY) {
+      bytes = new byte[INITIAL_CAPACITY];
+    }
+  }
+
+  /**
+   * Stream entity into response when it is larger than limit.
+   *
+   * @param response the response the entity is written for.
+   * @param limit    the maximal number of bytes kept in memory.
+   */
+  void bind(HttpServletResponse response, int limit) {
+    this.response = response;
+    this.limit = limit;
+  }
+
+  boolean isStreamed() {
+    return overflow != null;
+  }
+
+  /**
+   * Send buffered entity into response in single write with Content-Length, or complete entity
+   * streamed to response.
+   *
+   * @param target the response to write entity into.
+   * @throws IOException when entity cannot be written.
+   */
+  void sendTo(HttpServletResponse target) throws IOException {
+    if (overflow != null) {
+      overflow.flush();
+      return;
+    }
+    target.setContentLength(size);
+    ServletOutputStream stream = target.getOutputStream();
+    stream.write(bytes, 0, size);
+    stream.flush();
+  }
+
+  /**
+   * Gets writer encoding characters in UTF-8 into this buffer. Writer is reused by the buffer.
+   *
+   * @return the writer into this buffer.
+   */
+  Writer asWriter() {
+    return writer;
+  }
+
+  void ensureCapacity(int capacity) {
+    if (bytes.length < capacity) {
+      bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+    }
+  }
+
+  byte[] array() {
+    return bytes;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void setSize(int size) {
+    this.size = size;
+  }
+
+  private boolean overflows(int length) throws IOException {
+    if (overflow == null && response != null && size + length > limit) {
+      overflow = response.getOutputStream();
+      overflow.write(bytes, 0, size);
+      size = 0;
+    }
+    return overflow != null;
+  }
+
+  @Override
+  public void write(int value) throws IOException {
+    if (overflows(1)) {
+      overflow.write(value);
+      return;
+    }
+    ensureCapacity(size + 1);
+    bytes[size++] = (byte) value;
+  }
+
+  @Override
+  public void write(byte[] data, int offset, int length) throws IOException {
+    if (overflows(length)) {
+      overflow.write(data, offset, length);
+      return;
+    }
+    ensureCapacity(size + length);
+    System.arraycopy(data, offset, bytes, size, length);
+    size += length;
+  }
+
+  @Override
+  public void flush() {
+    // entity is sent by sendTo, when it is completely written.
+  }
+
+  @Override
+  public boolean isReady() {
+    return true;
+  }
+
+  @Override
+  public void setWriteListener(WriteListener writeListener) {
+    throw new UnsupportedOperationException("Entity buffer does not support non-blocking IO!");
+  }
+
+  /**
+   * Writer encoding characters in UTF-8 straight into the buffer without intermediate strings
+   * or byte arrays.
+   */
+  private class Utf8Writer extends Writer {
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    private char highSurrogate;
+
+    @Override
+    public void write(int value) throws IOException {
+      encode((char) value);
+    }
+
+    @Override
+    public void write(String value, int offset, int length) throws IOException {
+      for (int i = offset; i < offset + length; i++) {
+        char symbol = value.charAt(i);
+        if (symbol < 0x80 && highSurrogate == 0 && overflow == null && size < limit) {
+          ensureCapacity(size + 1);
+          bytes[size++] = (byte) symbol;
+        } else {
+          encode(symbol);
+        }
+      }
+    }
+
+    @Override
+    public void write(char[] value, int offset, int length) throws IOException {
+      for (int i = offset; i < offset + length; i++) {
+        encode(value[i]);
+      }
+    }
+
+    private void encode(char symbol) throws IOException {
+      // when entity is streamed, buffer keeps only bytes of the current character.
+      overflows(MAX_BYTES_PER_CHAR + 1);
+      ensureCapacity(size + MAX_BYTES_PER_CHAR + 1);
+      if (highSurrogate != 0) {
+        char high = highSurrogate;
+        highSurrogate = 0;
+        if (Character.isLowSurrogate(symbol)) {
+          int code = Character.toCodePoint(high, symbol);
+          bytes[size++] = (byte) (0xf0 | code >> 18);
+          bytes[size++] = (byte) (0x80 | code >> 12 & 0x3f);
+          bytes[size++] = (byte) (0x80 | code >> 6 & 0x3f);
+          bytes[size++] = (byte) (0x80 | code & 0x3f);
+          drain();
+          return;
+        }
+        bytes[size++] = '?';
+      }
+      if (symbol < 0x80) {
+        bytes[size++] = (byte) symbol;
+      } else if (symbol < 0x800) {
+        bytes[size++] = (byte) (0xc0 | symbol >> 6);
+        bytes[size++] = (byte) (0x80 | symbol & 0x3f);
+      } else if (Character.isHighSurrogate(symbol)) {
+        highSurrogate = symbol;
+      } else if (Character.isLowSurrogate(symbol)) {
+        bytes[size++] = '?';
+      } else {
+        bytes[size++] = (byte) (0xe0 | symbol >> 12);
+        bytes[size++] = (byte) (0x80 | symbol >> 6 & 0x3f);
+        bytes[size++] = (byte) (0x80 | symbol & 0x3f);
+      }
+      drain();
+    }
+
+    private void drain() throws IOException {
+      if (overflow != null) {
+        overflow.write(bytes, 0, size);
+        size = 0;
+      }
+    }
+
+    @Override
+    public void flush() {
+      // characters are encoded into the buffer immediately.
+    }
+
+    @Override
+    public void close() {
+      // buffer is reused by next entities.
+    }
+  }
+}
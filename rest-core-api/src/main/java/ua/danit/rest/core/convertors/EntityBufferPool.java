@@ -0,0 +1,66 @@
+package ua.danit.rest.core.convertors;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of entity buffers shared by all threads. Buffer is taken for single response and
+ * returned after the response is written, so buffers are reused by virtual threads as well,
+ * which run single request each and would never reuse buffer kept per thread.
+ * <p/>
+ * Idle buffers are kept in fixed array of slots taken and filled by compare-and-set, so neither
+ * acquire nor release allocates while the pool has room.
+ *
+ * @author Andrey Minov
+ */
+class EntityBufferPool {
+  private final AtomicReferenceArray<EntityBuffer> slots;
+
+  /**
+   * Instantiates a new empty pool.
+   *
+   * @param maxSize the maximal number of idle buffers kept for reuse.
+   */
+  EntityBufferPool(int maxSize) {
+    this.slots = new AtomicReferenceArray<>(maxSize);
+  }
+
+  private int firstSlot() {
+    // threads start probing from different slots, so they rarely compete for the same one.
+    return (int) (Thread.currentThread().getId() % slots.length());
+  }
+
+  /**
+   * Take idle buffer from the pool or create new one when pool is empty.
+   *
+   * @return the empty buffer.
+   */
+  EntityBuffer acquire() {
+    int length = slots.length();
+    int start = length > 0 ? firstSlot() : 0;
+    for (int i = 0; i < length; i++) {
+      int slot = (start + i) % length;
+      EntityBuffer buffer = slots.get(slot);
+      if (buffer != null && slots.compareAndSet(slot, buffer, null)) {
+        return buffer;
+      }
+    }
+    return new EntityBuffer();
+  }
+
+  /**
+   * Clear the buffer and return it into the pool, buffer is dropped when pool is full.
+   *
+   * @param buffer the buffer taken from the pool.
+   */
+  void release(EntityBuffer buffer) {
+    buffer.reset();
+    int length = slots.length();
+    int start = length > 0 ? firstSlot() : 0;
+    for (int i = 0; i < length; i++) {
+      int slot = (start + i) % length;
+      if (slots.get(slot) == null && slots.compareAndSet(slot, null, buffer)) {
+        return;
+      }
+    }
+  }
+}
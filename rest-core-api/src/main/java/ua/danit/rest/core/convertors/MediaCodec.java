@@ -0,0 +1,41 @@
+package ua.danit.rest.core.convertors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Codec of request and response bodies of the single media type. Codec registered in
+ * {@link ConvertersStore} is used for methods producing or consuming its media type, when the type
+ * is selected by content negotiation.
+ *
+ * @author Andrey Minov
+ */
+public interface MediaCodec {
+
+  /**
+   * Gets media type of the codec, for example application/json.
+   *
+   * @return the media type.
+   */
+  String getMediaType();
+
+  /**
+   * Decode request body into object.
+   *
+   * @param stream the stream of request body.
+   * @param clazz  the class of the method parameter.
+   * @return the decoded object.
+   * @throws IOException when body cannot be read or decoded.
+   */
+  Object read(InputStream stream, Class<?> clazz) throws IOException;
+
+  /**
+   * Encode response entity into stream.
+   *
+   * @param entity the response entity, never null.
+   * @param stream the stream of response body.
+   * @throws IOException when entity cannot be encoded or written.
+   */
+  void write(Object entity, OutputStream stream) throws IOException;
+}
@@ -0,0 +1,25 @@
+package ua.danit.rest.core.convertors;
+
+/**
+ * Thrown when request body is larger than the limit of invoked method. Dispatcher answers such
+ * request with 413 Payload Too Large.
+ *
+ * @author Andrey Minov
+ */
+public class PayloadTooLargeException extends RuntimeException {
+  private final long limit;
+
+  /**
+   * Instantiates a new exception.
+   *
+   * @param limit the maximal size of the body in bytes.
+   */
+  public PayloadTooLargeException(long limit) {
+    super(String.format("Request body exceeds %s bytes!", limit));
+    this.limit = limit;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+}
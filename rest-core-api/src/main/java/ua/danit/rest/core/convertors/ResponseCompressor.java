@@ -0,0 +1,389 @@
+package ua.danit.rest.core.convertors;
+
+import static ua.danit.rest.core.utils.Headers.isToken;
+import static ua.danit.rest.core.utils.Headers.quality;
+import static ua.danit.rest.core.utils.Headers.trimEnd;
+import static ua.danit.rest.core.utils.Headers.trimStart;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Compresses response bodies in gzip or deflate encoding.
+ * <p/>
+ * Deflaters hold native zlib state, so they are taken from pool and returned into it after
+ * compression instead of creating them for every response. Compressed data is written into buffer
+ * taken from bounded pool of the same size. Bodies larger than the buffer are compressed while they
+ * are written by {@link #streaming(CompressingResponse)} and sent in chunks.
+ *
+ * @author Andrey Minov
+ */
+class ResponseCompressor {
+  static final String GZIP = "gzip";
+  static final String DEFLATE = "deflate";
+
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String VARY_HEADER = "Vary";
+  private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0,
+      0, (byte) 0xff};
+  private static final int GZIP_TRAILER_SIZE = 8;
+  private static final int DEFLATE_CHUNK = 1024;
+  private static final int STREAM_CHUNK = 8 * 1024;
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final int threshold;
+  private final int level;
+  private final int poolSize;
+  private final Set<String> mediaTypes;
+  private final Queue<Deflater> gzipPool = new ConcurrentLinkedQueue<>();
+  private final Queue<Deflater> deflatePool = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger gzipPoolSize = new AtomicInteger();
+  private final AtomicInteger deflatePoolSize = new AtomicInteger();
+  private final EntityBufferPool outputs;
+  private final LongAdder compressed = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder bytesIn = new LongAdder();
+  private final LongAdder bytesOut = new LongAdder();
+  private final LongAdder cpuNanos = new LongAdder();
+  private final LongAdder deflatersCreated = new LongAdder();
+
+  ResponseCompressor(Compression compression) {
+    this.threshold = compression.getThreshold();
+    this.level = compression.getLevel();
+    this.poolSize = compression.getPoolSize();
+    this.mediaTypes = compression.getMediaTypes();
+    this.outputs = new EntityBufferPool(poolSize);
+  }
+
+  private static long cpuTime() {
+    return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime()
+        : System.nanoTime();
+  }
+
+  /**
+   * Select encoding of response from Accept-Encoding header by quality values. Gzip is preferred
+   * over deflate with the same quality.
+   *
+   * @param acceptEncoding the value of Accept-Encoding request header, may be null.
+   * @return gzip, deflate or null when client does not accept any of them.
+   */
+  static String negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    double gzip = -1;
+    double deflate = -1;
+    double any = -1;
+    int length = acceptEncoding.length();
+    int pos = 0;
+    while (pos < length) {
+      int end = acceptEncoding.indexOf(',', pos);
+      if (end < 0) {
+        end = length;
+      }
+      int params = acceptEncoding.indexOf(';', pos);
+      int nameEnd = params >= 0 && params < end ? params : end;
+      int start = trimStart(acceptEncoding, pos, nameEnd);
+      nameEnd = trimEnd(acceptEncoding, start, nameEnd);
+      double weight = params >= 0 && params < end ? quality(acceptEncoding, params + 1, end) : 1;
+      if (isToken(acceptEncoding, start, nameEnd, GZIP)) {
+        gzip = weight;
+      } else if (isToken(acceptEncoding, start, nameEnd, DEFLATE)) {
+        deflate = weight;
+      } else if (isToken(acceptEncoding, start, nameEnd, "*")) {
+        any = weight;
+      }
+      pos = end + 1;
+    }
+    gzip = gzip >= 0 ? gzip : any;
+    deflate = deflate >= 0 ? deflate : any;
+    if (gzip > 0 && gzip >= deflate) {
+      return GZIP;
+    }
+    return deflate > 0 ? DEFLATE : null;
+  }
+
+  /**
+   * Check if body of the media type may be compressed.
+   *
+   * @param contentType the content type of response, parameters are ignored.
+   * @return true when media type is allowed for compression.
+   */
+  boolean isCompressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    int params = contentType.indexOf(';');
+    String mediaType = (params >= 0 ? contentType.substring(0, params) : contentType).trim();
+    return mediaTypes.contains(mediaType.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Write body into response, body is compressed when its size is not less than threshold.
+   *
+   * @param response the response to write body into.
+   * @param body     the response body.
+   * @throws IOException when body cannot be written.
+   */
+  void write(CompressingResponse response, EntityBuffer body) throws IOException {
+    response.addHeader(VARY_HEADER, ACCEPT_ENCODING_HEADER);
+    if (body.size() < threshold) {
+      skipped.increment();
+      body.sendTo(response);
+      return;
+    }
+    final long start = cpuTime();
+    boolean gzip = GZIP.equals(response.getEncoding());
+    EntityBuffer output = outputs.acquire();
+    try {
+      Deflater deflater = acquire(gzip);
+      try {
+        if (gzip) {
+          output.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        }
+        deflate(deflater, body, output);
+      } finally {
+        release(deflater, gzip);
+      }
+      if (gzip) {
+        CRC32 checksum = new CRC32();
+        checksum.update(body.array(), 0, body.size());
+        writeIntLe(output, (int) checksum.getValue());
+        writeIntLe(output, body.size());
+      }
+      cpuNanos.add(cpuTime() - start);
+      compressed.increment();
+      bytesIn.add(body.size());
+      bytesOut.add(output.size());
+      response.setHeader(CONTENT_ENCODING_HEADER, response.getEncoding());
+      output.sendTo(response);
+    } finally {
+      outputs.release(output);
+    }
+  }
+
+  /**
+   * Gets response which compresses body written into its output stream. Entity buffer bound to
+   * this response streams body exceeding its limit through it, the body must be completed by
+   * {@link StreamingResponse#finish()} then. Buffered body is written by
+   * {@link #write(CompressingResponse, EntityBuffer)}.
+   *
+   * @param response the response accepting compressed body.
+   * @return the response compressing streamed body.
+   */
+  StreamingResponse streaming(CompressingResponse response) {
+    return new StreamingResponse(response);
+  }
+
+  private void deflate(Deflater deflater, EntityBuffer body, EntityBuffer output) {
+    deflater.setInput(body.array(), 0, body.size());
+    deflater.finish();
+    int size = output.size();
+    while (!deflater.finished()) {
+      output.ensureCapacity(size + DEFLATE_CHUNK + GZIP_TRAILER_SIZE);
+      size += deflater.deflate(output.array(), size, output.array().length - size);
+    }
+    output.setSize(size);
+  }
+
+  private static void writeIntLe(EntityBuffer output, int value) throws IOException {
+    output.write(value);
+    output.write(value >>> 8);
+    output.write(value >>> 16);
+    output.write(value >>> 24);
+  }
+
+  private Deflater acquire(boolean gzip) {
+    Deflater deflater = (gzip ? gzipPool : deflatePool).poll();
+    if (deflater == null) {
+      deflatersCreated.increment();
+      // gzip stream has its own header and trailer around raw deflate data.
+      return new Deflater(level, gzip);
+    }
+    (gzip ? gzipPoolSize : deflatePoolSize).decrementAndGet();
+    return deflater;
+  }
+
+  private void release(Deflater deflater, boolean gzip) {
+    AtomicInteger size = gzip ? gzipPoolSize : deflatePoolSize;
+    if (size.incrementAndGet() <= poolSize) {
+      deflater.reset();
+      (gzip ? gzipPool : deflatePool).offer(deflater);
+    } else {
+      size.decrementAndGet();
+      deflater.end();
+    }
+  }
+
+  CompressionStats getStats() {
+    return new CompressionStats(compressed.sum(), skipped.sum(), bytesIn.sum(), bytesOut.sum(),
+        cpuNanos.sum(), deflatersCreated.sum());
+  }
+
+  /**
+   * Response opening compressing stream when body is streamed into it. Deflater is taken from the
+   * pool when the stream is opened and returned by {@link #release()}.
+   */
+  class StreamingResponse extends HttpServletResponseWrapper {
+    private final CompressingResponse response;
+    private DeflatingStream stream;
+
+    private StreamingResponse(CompressingResponse response) {
+      super(response);
+      this.response = response;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (stream == null) {
+        response.addHeader(VARY_HEADER, ACCEPT_ENCODING_HEADER);
+        response.setHeader(CONTENT_ENCODING_HEADER, response.getEncoding());
+        stream = new DeflatingStream(response.getOutputStream(),
+            GZIP.equals(response.getEncoding()));
+      }
+      return stream;
+    }
+
+    /**
+     * Compress the rest of streamed body and write gzip trailer.
+     *
+     * @throws IOException when body cannot be written.
+     */
+    void finish() throws IOException {
+      if (stream != null) {
+        stream.finish();
+      }
+    }
+
+    /**
+     * Return deflater of the stream into the pool, stream is not usable after it.
+     */
+    void release() {
+      if (stream != null) {
+        stream.release();
+      }
+    }
+  }
+
+  /**
+   * Stream compressing body by chunks into response stream, gzip header and trailer are written
+   * around raw deflate data.
+   */
+  private class DeflatingStream extends ServletOutputStream {
+    private final ServletOutputStream out;
+    private final boolean gzip;
+    private final Deflater deflater;
+    private final CRC32 checksum = new CRC32();
+    private final byte[] input = new byte[STREAM_CHUNK];
+    private final byte[] output = new byte[STREAM_CHUNK];
+    private int size;
+    private long read;
+    private long written;
+    private long cpu;
+    private boolean released;
+
+    private DeflatingStream(ServletOutputStream out, boolean gzip) throws IOException {
+      this.out = out;
+      this.gzip = gzip;
+      if (gzip) {
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        written = GZIP_HEADER.length;
+      }
+      this.deflater = acquire(gzip);
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+      if (size == input.length) {
+        deflateInput();
+      }
+      input[size++] = (byte) value;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (size == input.length) {
+          deflateInput();
+        }
+        int count = Math.min(length, input.length - size);
+        System.arraycopy(data, offset, input, size, count);
+        size += count;
+        offset += count;
+        length -= count;
+      }
+    }
+
+    private void deflateInput() throws IOException {
+      final long start = cpuTime();
+      checksum.update(input, 0, size);
+      read += size;
+      deflater.setInput(input, 0, size);
+      while (!deflater.needsInput()) {
+        drain();
+      }
+      size = 0;
+      cpu += cpuTime() - start;
+    }
+
+    private void drain() throws IOException {
+      int count = deflater.deflate(output, 0, output.length);
+      out.write(output, 0, count);
+      written += count;
+    }
+
+    private void finish() throws IOException {
+      deflateInput();
+      final long start = cpuTime();
+      deflater.finish();
+      while (!deflater.finished()) {
+        drain();
+      }
+      if (gzip) {
+        int crc = (int) checksum.getValue();
+        int length = (int) read;
+        byte[] trailer = {(byte) crc, (byte) (crc >>> 8), (byte) (crc >>> 16),
+            (byte) (crc >>> 24), (byte) length, (byte) (length >>> 8), (byte) (length >>> 16),
+            (byte) (length >>> 24)};
+        out.write(trailer, 0, GZIP_TRAILER_SIZE);
+        written += GZIP_TRAILER_SIZE;
+      }
+      out.flush();
+      cpuNanos.add(cpu + cpuTime() - start);
+      compressed.increment();
+      bytesIn.add(read);
+      bytesOut.add(written);
+    }
+
+    private void release() {
+      if (!released) {
+        released = true;
+        ResponseCompressor.this.release(deflater, gzip);
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      throw new UnsupportedOperationException(
+          "Compressing stream does not support non-blocking IO!");
+    }
+  }
+}
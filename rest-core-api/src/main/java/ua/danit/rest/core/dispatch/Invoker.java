@@ -0,0 +1,397 @@
+package ua.danit.rest.core.dispatch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import ua.danit.rest.core.binding.Binder;
+
+/**
+ * Invoker of the service method bound to the service instance.
+ * <p/>
+ * Methods with up to {@value #MAX_LAMBDA_ARITY} parameters are called through class generated by
+ * {@link LambdaMetafactory}, it calls service method directly, so JIT is able to inline it into
+ * dispatching code. Arguments of primitive types are unboxed and primitive result is boxed by
+ * generated class itself without reflection checks. Void and static methods, methods with more
+ * parameters and service classes not visible for generated class are called through
+ * {@link MethodHandle} bound to the instance.
+ * <p/>
+ * Dispatcher calls method by {@link #invoke(RequestContext)}. Generated class is called with
+ * arguments taken from object slots of request context. Methods with parameters bound into int,
+ * long or double slots are called through method handle reading the slots by handle filters, so
+ * their arguments are not boxed: boxing them for generated class costs more than the handle call.
+ *
+ * @author Andrey Minov
+ */
+public abstract class Invoker {
+  private static final int MAX_LAMBDA_ARITY = 4;
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType SPREAD_TYPE =
+      MethodType.methodType(Object.class, Object.class, Object[].class);
+  private static final MethodType CONTEXT_TYPE =
+      MethodType.methodType(Object.class, RequestContext.class);
+  private static final Class<?>[] LAMBDA_TYPES =
+      {Call0.class, Call1.class, Call2.class, Call3.class, Call4.class};
+
+  private static final MethodHandle GET_ARGUMENT;
+  private static final MethodHandle GET_INT;
+  private static final MethodHandle GET_LONG;
+  private static final MethodHandle GET_DOUBLE;
+
+  static {
+    try {
+      GET_ARGUMENT = LOOKUP.findVirtual(RequestContext.class, "getArgument",
+          MethodType.methodType(Object.class, int.class));
+      GET_INT = LOOKUP.findVirtual(RequestContext.class, "getInt",
+          MethodType.methodType(int.class, int.class));
+      GET_LONG = LOOKUP.findVirtual(RequestContext.class, "getLong",
+          MethodType.methodType(long.class, int.class));
+      GET_DOUBLE = LOOKUP.findVirtual(RequestContext.class, "getDouble",
+          MethodType.methodType(double.class, int.class));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final Object instance;
+  private final Method method;
+
+  private Invoker(Object instance, Method method) {
+    this.instance = instance;
+    this.method = method;
+  }
+
+  /**
+   * Create invoker of the method bound to the service instance. All arguments are taken from
+   * object slots of request context.
+   *
+   * @param method   the service method
+   * @param instance the service instance, ignored for static methods.
+   * @return the invoker of the method.
+   * @throws IllegalArgumentException when instance is not of method declaring class.
+   * @throws IllegalStateException    when method can not be made accessible.
+   */
+  public static Invoker bind(Method method, Object instance) {
+    return bind(method, instance, null);
+  }
+
+  /**
+   * Create invoker of the method bound to the service instance. Arguments of the parameters bound
+   * by primitive binders are taken from primitive slots of request context.
+   *
+   * @param method   the service method
+   * @param instance the service instance, ignored for static methods.
+   * @param binders  the binders of method parameters, may be null.
+   * @return the invoker of the method.
+   * @throws IllegalArgumentException when instance is not of method declaring class.
+   * @throws IllegalStateException    when method can not be made accessible.
+   */
+  public static Invoker bind(Method method, Object instance, Binder[] binders) {
+    checkNotNull(method, "Method cannot be null!");
+    boolean isStatic = Modifier.isStatic(method.getModifiers());
+    checkArgument(isStatic || method.getDeclaringClass().isInstance(instance),
+        "Instance %s is not of class %s!", instance, method.getDeclaringClass());
+    try {
+      MethodHandle handle = unreflect(method);
+      if (!isStatic && method.getReturnType() != void.class
+          && method.getParameterCount() <= MAX_LAMBDA_ARITY && !hasPrimitiveSlots(binders)
+          && isVisible(method.getDeclaringClass())) {
+        Invoker invoker = bindLambda(method, instance, handle);
+        if (invoker != null) {
+          return invoker;
+        }
+      }
+      return bindHandle(method, instance, handle, binders, isStatic);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+    try {
+      return LOOKUP.unreflect(method);
+    } catch (IllegalAccessException e) {
+      // public method of not public service class.
+      method.setAccessible(true);
+      return LOOKUP.unreflect(method);
+    }
+  }
+
+  private static boolean isVisible(Class<?> clazz) {
+    for (Class<?> type = clazz; type != null; type = type.getEnclosingClass()) {
+      if (!Modifier.isPublic(type.getModifiers())) {
+        return false;
+      }
+    }
+    try {
+      // generated class resolves service class from class loader of this class.
+      return Class.forName(clazz.getName(), false, Invoker.class.getClassLoader()) == clazz;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static boolean hasPrimitiveSlots(Binder[] binders) {
+    if (binders != null) {
+      for (Binder binder : binders) {
+        if (binder != null && binder.isPrimitive()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static Invoker bindLambda(Method method, Object instance, MethodHandle handle) {
+    int arity = method.getParameterCount();
+    Class<?> lambdaType = LAMBDA_TYPES[arity];
+    try {
+      // instantiated type uses wrappers, so generated class unboxes arguments and boxes result.
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "call",
+          MethodType.methodType(lambdaType, method.getDeclaringClass()),
+          MethodType.genericMethodType(arity), handle,
+          MethodType.methodType(method.getReturnType(), method.getParameterTypes()).wrap());
+      Object lambda = site.getTarget().invoke(instance);
+      switch (arity) {
+        case 0:
+          return new Invoker0(instance, method, (Call0) lambda);
+        case 1:
+          return new Invoker1(instance, method, (Call1) lambda);
+        case 2:
+          return new Invoker2(instance, method, (Call2) lambda);
+        case 3:
+          return new Invoker3(instance, method, (Call3) lambda);
+        default:
+          return new Invoker4(instance, method, (Call4) lambda);
+      }
+    } catch (Throwable e) {
+      // method handle fallback is used for methods lambda can not be generated for.
+      return null;
+    }
+  }
+
+  private static Invoker bindHandle(Method method, Object instance, MethodHandle handle,
+                                    Binder[] binders, boolean isStatic) {
+    MethodHandle target = isStatic ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+    MethodHandle spread = target.asSpreader(Object[].class, method.getParameterCount())
+        .asType(SPREAD_TYPE);
+    return new HandleInvoker(instance, method, spread.bindTo(instance),
+        contextHandle(method, instance, handle, binders, isStatic));
+  }
+
+  private static MethodHandle contextHandle(Method method, Object instance, MethodHandle handle,
+                                            Binder[] binders, boolean isStatic) {
+    MethodHandle target = isStatic ? handle : handle.bindTo(instance);
+    Class<?>[] types = method.getParameterTypes();
+    MethodHandle[] getters = new MethodHandle[types.length];
+    for (int i = 0; i < types.length; i++) {
+      boolean primitive = binders != null && binders[i] != null && binders[i].isPrimitive();
+      MethodHandle getter = primitive ? primitiveGetter(types[i]) : GET_ARGUMENT;
+      getters[i] = MethodHandles.insertArguments(getter, 1, i)
+          .asType(MethodType.methodType(types[i], RequestContext.class));
+    }
+    MethodHandle filtered = MethodHandles.filterArguments(target, 0, getters);
+    // every argument is taken from the same request context.
+    MethodHandle result = MethodHandles.permuteArguments(filtered,
+        MethodType.methodType(method.getReturnType(), RequestContext.class), new int[types.length]);
+    return result.asType(CONTEXT_TYPE);
+  }
+
+  private static MethodHandle primitiveGetter(Class<?> type) {
+    if (type == int.class) {
+      return GET_INT;
+    }
+    if (type == long.class) {
+      return GET_LONG;
+    }
+    if (type == double.class) {
+      return GET_DOUBLE;
+    }
+    throw new IllegalArgumentException("Primitive slot is not supported for type " + type);
+  }
+
+  /**
+   * Invoke the service method with arguments bound into request context. Arguments of primitive
+   * slots are passed without boxing.
+   *
+   * @param context the context of the current request.
+   * @return the method result, boxed for primitive result and null for void methods.
+   * @throws Exception exception thrown by the service method.
+   */
+  public abstract Object invoke(RequestContext context) throws Exception;
+
+  /**
+   * Invoke the service method.
+   *
+   * @param arguments the method arguments, array length must be equal to number of method
+   *                  parameters.
+   * @return the method result, boxed for primitive result and null for void methods.
+   * @throws Exception exception thrown by the service method.
+   */
+  public abstract Object invoke(Object[] arguments) throws Exception;
+
+  public Object getInstance() {
+    return instance;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  interface Call0 {
+    Object call();
+  }
+
+  interface Call1 {
+    Object call(Object a0);
+  }
+
+  interface Call2 {
+    Object call(Object a0, Object a1);
+  }
+
+  interface Call3 {
+    Object call(Object a0, Object a1, Object a2);
+  }
+
+  interface Call4 {
+    Object call(Object a0, Object a1, Object a2, Object a3);
+  }
+
+  private static class Invoker0 extends Invoker {
+    private final Call0 lambda;
+
+    private Invoker0(Object instance, Method method, Call0 lambda) {
+      super(instance, method);
+      this.lambda = lambda;
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) {
+      return lambda.call();
+    }
+
+    @Override
+    public Object invoke(RequestContext context) {
+      return lambda.call();
+    }
+  }
+
+  private static class Invoker1 extends Invoker {
+    private final Call1 lambda;
+
+    private Invoker1(Object instance, Method method, Call1 lambda) {
+      super(instance, method);
+      this.lambda = lambda;
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) {
+      return lambda.call(arguments[0]);
+    }
+
+    @Override
+    public Object invoke(RequestContext context) {
+      return lambda.call(context.getArgument(0));
+    }
+  }
+
+  private static class Invoker2 extends Invoker {
+    private final Call2 lambda;
+
+    private Invoker2(Object instance, Method method, Call2 lambda) {
+      super(instance, method);
+      this.lambda = lambda;
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) {
+      return lambda.call(arguments[0], arguments[1]);
+    }
+
+    @Override
+    public Object invoke(RequestContext context) {
+      return lambda.call(context.getArgument(0), context.getArgument(1));
+    }
+  }
+
+  private static class Invoker3 extends Invoker {
+    private final Call3 lambda;
+
+    private Invoker3(Object instance, Method method, Call3 lambda) {
+      super(instance, method);
+      this.lambda = lambda;
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) {
+      return lambda.call(arguments[0], arguments[1], arguments[2]);
+    }
+
+    @Override
+    public Object invoke(RequestContext context) {
+      return lambda.call(context.getArgument(0), context.getArgument(1), context.getArgument(2));
+    }
+  }
+
+  private static class Invoker4 extends Invoker {
+    private final Call4 lambda;
+
+    private Invoker4(Object instance, Method method, Call4 lambda) {
+      super(instance, method);
+      this.lambda = lambda;
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) {
+      return lambda.call(arguments[0], arguments[1], arguments[2], arguments[3]);
+    }
+
+    @Override
+    public Object invoke(RequestContext context) {
+      return lambda.call(context.getArgument(0), context.getArgument(1), context.getArgument(2),
+          context.getArgument(3));
+    }
+  }
+
+  private static class HandleInvoker extends Invoker {
+    private final MethodHandle handle;
+    private final MethodHandle contextHandle;
+
+    private HandleInvoker(Object instance, Method method, MethodHandle handle,
+                          MethodHandle contextHandle) {
+      super(instance, method);
+      this.handle = handle;
+      this.contextHandle = contextHandle;
+    }
+
+    @Override
+    public Object invoke(RequestContext context) throws Exception {
+      try {
+        return (Object) contextHandle.invokeExact(context);
+      } catch (Exception | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public Object invoke(Object[] arguments) throws Exception {
+      try {
+        return (Object) handle.invokeExact(arguments);
+      } catch (Exception | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package ua.danit.rest.core.dispatch;
+
+import java.util.Arrays;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.AsyncResponse;
+
+import ua.danit.rest.core.parsing.Invocation;
+import ua.danit.rest.core.routing.PathMatch;
+
+/**
+ * Holds state of the single request dispatching.
+ * <p/>
+ * Context is reused between sequential requests of the same thread. It keeps path match of the
+ * request, arrays for service method arguments for every number of parameters and index of the
+ * request cookies, so binding of request into method arguments does not allocate objects on its
+ * own. Arguments of int, long and double parameters are stored in primitive slots and passed to
+ * the method without boxing, see {@link Invoker#invoke(RequestContext)}.
+ *
+ * @author Andrey Minov
+ */
+public class RequestContext {
+  private static final int INITIAL_ARITY = 8;
+  private static final int INITIAL_COOKIES = 4;
+
+  private final PathMatch pathMatch;
+  private Object[][] arguments;
+  private long[] primitives;
+  private boolean[] missing;
+  private int valueStart;
+  private int valueEnd;
+  private String[] cookies;
+  private boolean cookiesIndexed;
+  private HttpServletRequest request;
+  private Invocation invocation;
+  private AsyncResponse asyncResponse;
+  private int consumedType;
+
+  /**
+   * Instantiates a new empty request context.
+   */
+  public RequestContext() {
+    this(new PathMatch());
+  }
+
+  /**
+   * Instantiates a new request context for path matched before.
+   *
+   * @param pathMatch the path match of the request.
+   */
+  public RequestContext(PathMatch pathMatch) {
+    this.pathMatch = pathMatch;
+    this.arguments = new Object[INITIAL_ARITY][];
+    this.primitives = new long[INITIAL_ARITY];
+    this.missing = new boolean[INITIAL_ARITY];
+    this.cookies = new String[INITIAL_COOKIES];
+  }
+
+  /**
+   * Bind context to the request and invocation matched for it.
+   *
+   * @param request    the HTTP request
+   * @param invocation the invocation matched for request path.
+   */
+  public void begin(HttpServletRequest request, Invocation invocation) {
+    this.request = request;
+    this.invocation = invocation;
+    this.cookiesIndexed = false;
+    this.consumedType = 0;
+    int count = invocation.getParamCount();
+    if (primitives.length < count) {
+      primitives = new long[count];
+      missing = new boolean[count];
+    }
+    Arrays.fill(missing, 0, count, false);
+  }
+
+  /**
+   * Release references to request and arguments of the finished request.
+   */
+  public void end() {
+    if (invocation != null) {
+      Object[] values = arguments.length > invocation.getParamCount() ? arguments[invocation
+          .getParamCount()] : null;
+      if (values != null) {
+        Arrays.fill(values, null);
+      }
+      Arrays.fill(cookies, 0, Math.min(cookies.length, invocation.getCookieNames().length), null);
+    }
+    this.request = null;
+    this.invocation = null;
+    this.asyncResponse = null;
+  }
+
+  /**
+   * Check if context is bound to request now.
+   *
+   * @return true when context is used by request dispatching.
+   */
+  public boolean isActive() {
+    return request != null;
+  }
+
+  public HttpServletRequest getRequest() {
+    return request;
+  }
+
+  public Invocation getInvocation() {
+    return invocation;
+  }
+
+  public PathMatch getPathMatch() {
+    return pathMatch;
+  }
+
+  public AsyncResponse getAsyncResponse() {
+    return asyncResponse;
+  }
+
+  public void setAsyncResponse(AsyncResponse asyncResponse) {
+    this.asyncResponse = asyncResponse;
+  }
+
+  /**
+   * Gets index of the media type of request body negotiated from consumed types of invocation.
+   * See {@link ua.danit.rest.core.parsing.ContentNegotiation#selectConsumed(String)}.
+   *
+   * @return the index of consumed media type.
+   */
+  public int getConsumedType() {
+    return consumedType;
+  }
+
+  public void setConsumedType(int consumedType) {
+    this.consumedType = consumedType;
+  }
+
+  /**
+   * Gets array for method arguments of current invocation. Array is reused by next requests and
+   * has length equals to number of invocation parameters.
+   *
+   * @return the array for method arguments.
+   */
+  public Object[] getArguments() {
+    int count = invocation.getParamCount();
+    if (arguments.length <= count) {
+      arguments = Arrays.copyOf(arguments, count + 1);
+    }
+    Object[] values = arguments[count];
+    if (values == null) {
+      values = new Object[count];
+      arguments[count] = values;
+    }
+    return values;
+  }
+
+  /**
+   * Gets argument of the object parameter.
+   *
+   * @param index the index of the parameter.
+   * @return the argument value.
+   */
+  public Object getArgument(int index) {
+    return getArguments()[index];
+  }
+
+  public void setArgument(int index, Object value) {
+    getArguments()[index] = value;
+  }
+
+  public int getInt(int index) {
+    return (int) primitives[index];
+  }
+
+  public void setInt(int index, int value) {
+    primitives[index] = value;
+    missing[index] = false;
+  }
+
+  public long getLong(int index) {
+    return primitives[index];
+  }
+
+  public void setLong(int index, long value) {
+    primitives[index] = value;
+    missing[index] = false;
+  }
+
+  public double getDouble(int index) {
+    return Double.longBitsToDouble(primitives[index]);
+  }
+
+  public void setDouble(int index, double value) {
+    primitives[index] = Double.doubleToRawLongBits(value);
+    missing[index] = false;
+  }
+
+  /**
+   * Mark primitive parameter as missing in request. Such argument is presented as null, when
+   * arguments are boxed.
+   *
+   * @param index the index of the parameter.
+   */
+  public void setMissing(int index) {
+    primitives[index] = 0;
+    missing[index] = true;
+  }
+
+  public boolean isMissing(int index) {
+    return missing[index];
+  }
+
+  /**
+   * Check if any primitive parameter of the invocation is missing.
+   *
+   * @return true when some primitive parameter does not have value.
+   */
+  public boolean hasMissing() {
+    for (int i = 0; i < invocation.getParamCount(); i++) {
+      if (missing[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Set bounds of raw value located by {@link ua.danit.rest.core.binding.ValueSource}.
+   *
+   * @param start the start of the value (inclusive)
+   * @param end   the end of the value (exclusive)
+   */
+  public void setValueBounds(int start, int end) {
+    this.valueStart = start;
+    this.valueEnd = end;
+  }
+
+  public int getValueStart() {
+    return valueStart;
+  }
+
+  public int getValueEnd() {
+    return valueEnd;
+  }
+
+  /**
+   * Gets value of the cookie by slot assigned to cookie name in invocation. On the first call
+   * request cookies are indexed in one pass for all cookie names used by invocation.
+   *
+   * @param slot the slot of the cookie name. See {@link Invocation#getCookieNames()}
+   * @return the value of the cookie or null if request does not have it.
+   */
+  public String getCookie(int slot) {
+    if (!cookiesIndexed) {
+      indexCookies();
+    }
+    return cookies[slot];
+  }
+
+  private void indexCookies() {
+    String[] names = invocation.getCookieNames();
+    if (cookies.length < names.length) {
+      cookies = new String[names.length];
+    } else {
+      Arrays.fill(cookies, 0, names.length, null);
+    }
+    Cookie[] values = request.getCookies();
+    if (values != null) {
+      for (Cookie cookie : values) {
+        for (int i = 0; i < names.length; i++) {
+          if (cookies[i] == null && names[i].equals(cookie.getName())) {
+            cookies[i] = cookie.getValue();
+          }
+        }
+      }
+    }
+    cookiesIndexed = true;
+  }
+}
@@ -1,5 +1,8 @@
 package ua.danit.rest.core.ext;
 
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.LAST_MODIFIED;
+
 import java.lang.annotation.Annotation;
 import java.net.URI;
 import java.util.Collection;
@@ -20,6 +23,8 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
 
+import ua.danit.rest.core.utils.Headers;
+
 /**
  * Implementation for {@link javax.xml.ws.Response} object.
  *
@@ -153,7 +158,7 @@ public class RestResponse extends Response {
 
   @Override
   public EntityTag getEntityTag() {
-    throw new UnsupportedOperationException();
+    return Headers.parseEntityTag(getHeaderString(ETAG));
   }
 
   @Override
@@ -163,7 +168,8 @@ public class RestResponse extends Response {
 
   @Override
   public Date getLastModified() {
-    throw new UnsupportedOperationException();
+    long lastModified = Headers.parseDate(getHeaderString(LAST_MODIFIED));
+    return lastModified >= 0 ? new Date(lastModified) : null;
   }
 
   @Override
@@ -208,7 +214,7 @@ public class RestResponse extends Response {
 
   @Override
   public String getHeaderString(String name) {
-    if (headers == null) {
+    if (headers == null || headers.getFirst(name) == null) {
       return null;
     }
     return String.valueOf(headers.getFirst(name));
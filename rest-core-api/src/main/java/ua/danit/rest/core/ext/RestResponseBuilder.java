@@ -3,6 +3,10 @@ package ua.danit.rest.core.ext;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Arrays.asList;
+import static javax.ws.rs.core.HttpHeaders.CACHE_CONTROL;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.EXPIRES;
+import static javax.ws.rs.core.HttpHeaders.LAST_MODIFIED;
 
 import com.google.common.base.Strings;
 
@@ -25,6 +29,8 @@ import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Variant;
 
+import ua.danit.rest.core.utils.Headers;
+
 /**
  * Builder for {@link Response} objects.
  *
@@ -84,6 +90,16 @@ class RestResponseBuilder extends Response.ResponseBuilder {
   @Override
   public Response.ResponseBuilder cacheControl(CacheControl cacheControl) {
     this.cacheControl = cacheControl;
+    if (cacheControl == null) {
+      return removeHeader(CACHE_CONTROL);
+    }
+    return header(CACHE_CONTROL, Headers.formatCacheControl(cacheControl));
+  }
+
+  private Response.ResponseBuilder removeHeader(String name) {
+    if (headers != null) {
+      headers.remove(name);
+    }
     return this;
   }
 
@@ -156,12 +172,14 @@ class RestResponseBuilder extends Response.ResponseBuilder {
 
   @Override
   public Response.ResponseBuilder expires(Date expires) {
-    throw new UnsupportedOperationException();
+    return expires != null ? header(EXPIRES, Headers.formatDate(expires.getTime()))
+        : removeHeader(EXPIRES);
   }
 
   @Override
   public Response.ResponseBuilder lastModified(Date lastModified) {
-    throw new UnsupportedOperationException();
+    return lastModified != null ? header(LAST_MODIFIED, Headers
+        .formatDate(lastModified.getTime())) : removeHeader(LAST_MODIFIED);
   }
 
   @Override
@@ -171,12 +189,12 @@ class RestResponseBuilder extends Response.ResponseBuilder {
 
   @Override
   public Response.ResponseBuilder tag(EntityTag tag) {
-    throw new UnsupportedOperationException();
+    return tag != null ? header(ETAG, Headers.formatEntityTag(tag)) : removeHeader(ETAG);
   }
 
   @Override
   public Response.ResponseBuilder tag(String tag) {
-    throw new UnsupportedOperationException();
+    return tag(tag != null ? new EntityTag(tag) : null);
   }
 
   @Override
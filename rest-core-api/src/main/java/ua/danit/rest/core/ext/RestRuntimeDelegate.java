@@ -1,17 +1,22 @@
 package ua.danit.rest.core.ext;
 
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Link;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.Variant;
 import javax.ws.rs.ext.RuntimeDelegate;
 
+import ua.danit.rest.core.utils.Headers;
+
 /**
  * Runtime delegate for RS environments.
  * Uses to create {@link javax.ws.rs.core.Response.ResponseBuilder}
- * and for further creation of {@link javax.ws.rs.core.Response}. Other functionality is disabled
- * and will throw {@link UnsupportedOperationException}.
+ * and for further creation of {@link javax.ws.rs.core.Response}. Header delegates are provided
+ * for {@link EntityTag} and {@link CacheControl}, which require them to be loaded. Other
+ * functionality is disabled and will throw {@link UnsupportedOperationException}.
  *
  * @author Andrey Minov.
  */
@@ -38,7 +43,14 @@ public class RestRuntimeDelegate extends RuntimeDelegate {
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public <T> HeaderDelegate<T> createHeaderDelegate(Class<T> type) {
+    if (type == EntityTag.class) {
+      return (HeaderDelegate<T>) new EntityTagDelegate();
+    }
+    if (type == CacheControl.class) {
+      return (HeaderDelegate<T>) new CacheControlDelegate();
+    }
     throw new UnsupportedOperationException();
   }
 
@@ -47,5 +59,31 @@ public class RestRuntimeDelegate extends RuntimeDelegate {
     throw new UnsupportedOperationException();
   }
 
+  private static class EntityTagDelegate implements HeaderDelegate<EntityTag> {
+    @Override
+    public EntityTag fromString(String value) {
+      EntityTag tag = Headers.parseEntityTag(value);
+      if (tag == null) {
+        throw new IllegalArgumentException("Entity tag " + value + " is invalid!");
+      }
+      return tag;
+    }
+
+    @Override
+    public String toString(EntityTag value) {
+      return Headers.formatEntityTag(value);
+    }
+  }
 
+  private static class CacheControlDelegate implements HeaderDelegate<CacheControl> {
+    @Override
+    public CacheControl fromString(String value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString(CacheControl value) {
+      return Headers.formatCacheControl(value);
+    }
+  }
 }
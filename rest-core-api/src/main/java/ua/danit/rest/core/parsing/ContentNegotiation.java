@@ -0,0 +1,219 @@
+package ua.danit.rest.core.parsing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static ua.danit.rest.core.utils.Headers.quality;
+import static ua.danit.rest.core.utils.Headers.trimEnd;
+import static ua.danit.rest.core.utils.Headers.trimStart;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Negotiation table of the invocation built from all media types of {@link javax.ws.rs.Produces}
+ * and {@link javax.ws.rs.Consumes}.
+ * <p/>
+ * Media type of response is selected by Accept header of the request: every produced type gets
+ * quality of the most specific media range matching it (type/subtype, type/* or *&#47;*), type with
+ * the highest quality wins and types declared earlier win ties. Media type of request body is
+ * selected by Content-Type header, wildcards of declared types are matched as well. Body of type
+ * not declared by method is not accepted, while method not declaring consumed types decodes body
+ * of any type as its default type.
+ * <p/>
+ * Clients usually send the same header values in every request, so result of negotiation is
+ * cached by header value and negotiation costs single lookup in small map. Size of the cache is
+ * bounded, values not cached are negotiated on every request.
+ *
+ * @author Andrey Minov
+ */
+public class ContentNegotiation {
+  /**
+   * Result of negotiation when no produced media type is acceptable or request body type is not
+   * consumed.
+   */
+  public static final int NONE = -1;
+
+  private static final int MAX_CACHED = 64;
+
+  private final String[] produced;
+  private final String[] consumed;
+  private final boolean anyConsumed;
+  private final ConcurrentMap<String, Integer> producedCache;
+  private final ConcurrentMap<String, Integer> consumedCache;
+
+  /**
+   * Instantiates a new negotiation table.
+   *
+   * @param produced    the media types of response in order of preference.
+   * @param consumed    the media types of request body in order of preference.
+   * @param anyConsumed true when body of any type is accepted as the first consumed type, for
+   *                    methods not declaring consumed types explicitly.
+   */
+  public ContentNegotiation(String[] produced, String[] consumed, boolean anyConsumed) {
+    checkArgument(produced.length > 0, "Produced media types cannot be empty!");
+    checkArgument(consumed.length > 0, "Consumed media types cannot be empty!");
+    this.produced = normalize(produced);
+    this.consumed = normalize(consumed);
+    this.anyConsumed = anyConsumed;
+    this.producedCache = new ConcurrentHashMap<>();
+    this.consumedCache = new ConcurrentHashMap<>();
+  }
+
+  private static String[] normalize(String[] mediaTypes) {
+    String[] result = new String[mediaTypes.length];
+    for (int i = 0; i < mediaTypes.length; i++) {
+      String mediaType = mediaTypes[i];
+      int params = mediaType.indexOf(';');
+      result[i] = (params >= 0 ? mediaType.substring(0, params) : mediaType).trim()
+          .toLowerCase(Locale.ROOT);
+    }
+    return result;
+  }
+
+  private static void cache(ConcurrentMap<String, Integer> cache, String header, int index) {
+    if (cache.size() < MAX_CACHED) {
+      cache.putIfAbsent(header, index);
+    }
+  }
+
+  /**
+   * Gets specificity of media range matching the media type: 2 for exact match, 1 for type/*,
+   * 0 for *&#47;* and -1 when range does not match.
+   */
+  private static int match(String range, int start, int slash, int end, String mediaType) {
+    int typeLength = mediaType.indexOf('/');
+    boolean anyType = slash - start == 1 && range.charAt(start) == '*';
+    boolean anySubtype = end - slash - 1 == 1 && range.charAt(slash + 1) == '*';
+    if (anyType) {
+      return anySubtype ? 0 : -1;
+    }
+    if (slash - start != typeLength || !range.regionMatches(true, start, mediaType, 0,
+        typeLength)) {
+      return -1;
+    }
+    if (anySubtype) {
+      return 1;
+    }
+    int subtypeLength = mediaType.length() - typeLength - 1;
+    return end - slash - 1 == subtypeLength && range.regionMatches(true, slash + 1, mediaType,
+        typeLength + 1, subtypeLength) ? 2 : -1;
+  }
+
+  /**
+   * Select media type of response by Accept header of the request.
+   *
+   * @param accept the value of Accept header, null or empty accepts any type.
+   * @return the index of selected produced type or {@link #NONE} if no type is acceptable.
+   */
+  public int selectProduced(String accept) {
+    if (accept == null || accept.isEmpty()) {
+      return 0;
+    }
+    Integer cached = producedCache.get(accept);
+    if (cached != null) {
+      return cached;
+    }
+    int index = negotiateProduced(accept);
+    cache(producedCache, accept, index);
+    return index;
+  }
+
+  private int negotiateProduced(String accept) {
+    double[] qualities = new double[produced.length];
+    int[] specificity = new int[produced.length];
+    Arrays.fill(specificity, -1);
+    int length = accept.length();
+    int pos = 0;
+    while (pos < length) {
+      int end = accept.indexOf(',', pos);
+      if (end < 0) {
+        end = length;
+      }
+      int params = accept.indexOf(';', pos);
+      int rangeEnd = params >= 0 && params < end ? params : end;
+      int start = trimStart(accept, pos, rangeEnd);
+      rangeEnd = trimEnd(accept, start, rangeEnd);
+      if (start < rangeEnd) {
+        double weight = params >= 0 && params < end ? quality(accept, params + 1, end) : 1;
+        int slash = accept.indexOf('/', start);
+        for (int i = 0; i < produced.length; i++) {
+          int matched = slash >= 0 && slash < rangeEnd
+              ? match(accept, start, slash, rangeEnd, produced[i])
+              // single * is sent by some clients instead of */*.
+              : rangeEnd - start == 1 && accept.charAt(start) == '*' ? 0 : -1;
+          if (matched > specificity[i]) {
+            specificity[i] = matched;
+            qualities[i] = weight;
+          }
+        }
+      }
+      pos = end + 1;
+    }
+    int selected = NONE;
+    for (int i = 0; i < produced.length; i++) {
+      if (specificity[i] >= 0 && qualities[i] > 0
+          && (selected == NONE || qualities[i] > qualities[selected])) {
+        selected = i;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Select media type of request body by Content-Type header of the request.
+   *
+   * @param contentType the value of Content-Type header, null or empty for the first type.
+   * @return the index of selected consumed type or {@link #NONE} if type is not consumed.
+   */
+  public int selectConsumed(String contentType) {
+    if (anyConsumed || contentType == null || contentType.isEmpty()) {
+      return 0;
+    }
+    Integer cached = consumedCache.get(contentType);
+    if (cached != null) {
+      return cached;
+    }
+    int index = negotiateConsumed(contentType);
+    cache(consumedCache, contentType, index);
+    return index;
+  }
+
+  private int negotiateConsumed(String contentType) {
+    int params = contentType.indexOf(';');
+    int end = params >= 0 ? params : contentType.length();
+    int start = trimStart(contentType, 0, end);
+    end = trimEnd(contentType, start, end);
+    int slash = contentType.indexOf('/', start);
+    if (slash < 0 || slash >= end) {
+      return NONE;
+    }
+    String mediaType = contentType.substring(start, end).toLowerCase(Locale.ROOT);
+    for (int i = 0; i < consumed.length; i++) {
+      // declared type is matched as media range, so it may have wildcards.
+      String declared = consumed[i];
+      int declaredSlash = declared.indexOf('/');
+      if (declaredSlash > 0 && match(declared, 0, declaredSlash, declared.length(), mediaType)
+          >= 0) {
+        return i;
+      }
+    }
+    return NONE;
+  }
+
+  public String getProduced(int index) {
+    return produced[index];
+  }
+
+  public String getConsumed(int index) {
+    return consumed[index];
+  }
+
+  public int getProducedCount() {
+    return produced.length;
+  }
+
+  public int getConsumedCount() {
+    return consumed.length;
+  }
+}
@@ -1,12 +1,17 @@
 package ua.danit.rest.core.parsing;
 
 import java.lang.reflect.Method;
-import java.util.Map;
 import java.util.function.BiConsumer;
-import java.util.function.Function;
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import ua.danit.rest.core.binding.Binder;
+import ua.danit.rest.core.cache.CachePolicy;
+import ua.danit.rest.core.cache.ResponseCache;
+import ua.danit.rest.core.cache.ResponseCaches;
+import ua.danit.rest.core.dispatch.Invoker;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.validation.ValidationPlan;
+
 /**
  * Presented invocation that must be called when REST method must be called.
  *
@@ -15,34 +20,98 @@ import javax.servlet.http.HttpServletResponse;
 public class Invocation {
   private String url;
   private Method method;
-  private Map<Integer, Parameter> params;
+  private Binder[] binders;
   private int paramCount;
   private MethodType methodType;
   private String mediaType;
   private BiConsumer<HttpServletResponse, Object> responseWriter;
+  private String[] cookieNames;
+  private ValidationPlan validationPlan;
+  private ResponseMode responseMode;
+  private long maxBodySize;
+  private ContentNegotiation negotiation;
+  private CachePolicy cachePolicy;
+  private String[] invalidatedCaches;
+  private Invoker invoker;
+  private ResponseCache cache;
 
   /**
    * Instantiates a new Invocation.
    *
-   * @param url            the url on which to register invocation. For example /weather
-   * @param method         the method that must be called when calling service
-   * @param params         the params to pass to methods above and ones that
-   *                       must be get from request.
-   * @param paramCount     the number of method call parameters
-   * @param methodType     the HTTP method type invocation is bound to.
-   * @param mediaType      of response body
-   * @param responseWriter the response writer from entity to HTTP response entity
+   * @param url               the url on which to register invocation. For example /weather
+   * @param method            the method that must be called when calling service
+   * @param binders           the binders of method parameters from request, one for every
+   *                          parameter in order of parameters.
+   * @param paramCount        the number of method call parameters
+   * @param methodType        the HTTP method type invocation is bound to.
+   * @param mediaType         of response body, the first produced media type.
+   * @param responseWriter    the response writer from entity to HTTP response entity
+   * @param cookieNames       the names of cookies used by parameters, index of name is the slot of
+   *                          cookie value in {@link RequestContext}
+   * @param validationPlan    the plan of method parameters validation
+   * @param responseMode      the way method produces response, for asynchronous modes response
+   *                          writer accepts completed value of the method.
+   * @param maxBodySize       the maximal size of the request body in bytes.
+   * @param negotiation       the negotiation table of produced and consumed media types.
+   * @param cachePolicy       the settings of response cache, or null when responses are not
+   *                          cached.
+   * @param invalidatedCaches the names of response caches cleared by the method.
    */
-  Invocation(String url, Method method, Map<Integer, Parameter> params, int paramCount,
+  Invocation(String url, Method method, Binder[] binders, int paramCount,
              MethodType methodType, String mediaType,
-             BiConsumer<HttpServletResponse, Object> responseWriter) {
+             BiConsumer<HttpServletResponse, Object> responseWriter, String[] cookieNames,
+             ValidationPlan validationPlan, ResponseMode responseMode, long maxBodySize,
+             ContentNegotiation negotiation, CachePolicy cachePolicy,
+             String[] invalidatedCaches) {
     this.url = url;
     this.method = method;
-    this.params = params;
+    this.binders = binders;
     this.paramCount = paramCount;
     this.methodType = methodType;
     this.mediaType = mediaType;
     this.responseWriter = responseWriter;
+    this.cookieNames = cookieNames;
+    this.validationPlan = validationPlan;
+    this.responseMode = responseMode;
+    this.maxBodySize = maxBodySize;
+    this.negotiation = negotiation;
+    this.cachePolicy = cachePolicy;
+    this.invalidatedCaches = invalidatedCaches;
+  }
+
+  private Invocation(Invocation invocation, Invoker invoker, ResponseCache cache) {
+    this(invocation.url, invocation.method, invocation.binders, invocation.paramCount,
+        invocation.methodType, invocation.mediaType, invocation.responseWriter,
+        invocation.cookieNames, invocation.validationPlan, invocation.responseMode,
+        invocation.maxBodySize, invocation.negotiation, invocation.cachePolicy,
+        invocation.invalidatedCaches);
+    this.invoker = invoker;
+    this.cache = cache;
+  }
+
+  /**
+   * Create copy of the invocation bound to the service instance. Method of bound invocation is
+   * called through {@link #getInvoker()}.
+   *
+   * @param instance the service instance to call method on.
+   * @return the new invocation bound to the instance.
+   */
+  public Invocation bind(Object instance) {
+    return bind(instance, null);
+  }
+
+  /**
+   * Create copy of the invocation bound to the service instance and to response cache of its
+   * policy.
+   *
+   * @param instance the service instance to call method on.
+   * @param caches   the response caches of application, null to not cache responses.
+   * @return the new invocation bound to the instance.
+   */
+  public Invocation bind(Object instance, ResponseCaches caches) {
+    ResponseCache responseCache = caches != null && cachePolicy != null ? caches
+        .getCache(cachePolicy) : null;
+    return new Invocation(this, Invoker.bind(method, instance, binders), responseCache);
   }
 
   public MethodType getMethodType() {
@@ -57,8 +126,8 @@ public class Invocation {
     return method;
   }
 
-  public Map<Integer, Parameter> getParams() {
-    return params;
+  public Binder[] getBinders() {
+    return binders;
   }
 
   public int getParamCount() {
@@ -73,32 +142,53 @@ public class Invocation {
     return mediaType;
   }
 
+  public String[] getCookieNames() {
+    return cookieNames;
+  }
+
+  public boolean isConstrained() {
+    return validationPlan.isConstrained();
+  }
+
+  public ValidationPlan getValidationPlan() {
+    return validationPlan;
+  }
+
+  public ResponseMode getResponseMode() {
+    return responseMode;
+  }
+
+  public long getMaxBodySize() {
+    return maxBodySize;
+  }
+
+  public ContentNegotiation getNegotiation() {
+    return negotiation;
+  }
+
+  public CachePolicy getCachePolicy() {
+    return cachePolicy;
+  }
+
+  /**
+   * Gets response cache of the method.
+   *
+   * @return the response cache or null when responses of the method are not cached.
+   */
+  public ResponseCache getCache() {
+    return cache;
+  }
+
+  public String[] getInvalidatedCaches() {
+    return invalidatedCaches;
+  }
+
   /**
-   * Presents type of method call parameter.
+   * Gets invoker of the method bound to the service instance.
    *
-   * @author Andrey Minov
+   * @return the invoker of the method or null if invocation is not bound to instance yet.
    */
-  public static class Parameter {
-    private java.lang.reflect.Parameter parameter;
-    private Function<HttpServletRequest, ?> converter;
-
-    /**
-     * Instantiates a new Parameter.
-     *
-     * @param converter the converter for parameter value
-     * @param parameter the java parameter for this field.
-     */
-    Parameter(Function<HttpServletRequest, ?> converter, java.lang.reflect.Parameter parameter) {
-      this.converter = converter;
-      this.parameter = parameter;
-    }
-
-    public Function<HttpServletRequest, ?> getConverter() {
-      return converter;
-    }
-
-    public java.lang.reflect.Parameter getParameter() {
-      return parameter;
-    }
+  public Invoker getInvoker() {
+    return invoker;
   }
 }
@@ -0,0 +1,33 @@
+package ua.danit.rest.core.parsing;
+
+/**
+ * Enumeration of the ways service method produces its response.
+ *
+ * @author Andrey Minov
+ */
+public enum ResponseMode {
+  /**
+   * Response is the result of the method, it is written before container thread is returned.
+   */
+  SYNC(false),
+  /**
+   * Method returns {@link java.util.concurrent.CompletionStage}, response is written when stage
+   * is completed.
+   */
+  COMPLETION_STAGE(true),
+  /**
+   * Method has {@link javax.ws.rs.container.Suspended} parameter, response is written when
+   * method resumes {@link javax.ws.rs.container.AsyncResponse}.
+   */
+  SUSPENDED(true);
+
+  private boolean async;
+
+  ResponseMode(boolean async) {
+    this.async = async;
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
+}
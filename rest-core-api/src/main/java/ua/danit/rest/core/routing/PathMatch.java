@@ -0,0 +1,181 @@
+package ua.danit.rest.core.routing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Holds result of the path matching: matched path together with offsets of path variables.
+ * <p/>
+ * Object is mutable and may be reused for sequential matches, values are not copied from the path
+ * until {@link #getValue(int)} is called.
+ *
+ * @author Andrey Minov
+ */
+public class PathMatch {
+  private static final int INITIAL_VARIABLES = 4;
+  private static final int INITIAL_LENGTH = 128;
+
+  private CharSequence path;
+  private char[] chars;
+  private int[] bounds;
+  private int count;
+  private Object[] branchNodes;
+  private int[] branches;
+
+  /**
+   * Instantiates a new empty path match.
+   */
+  public PathMatch() {
+    this.chars = new char[INITIAL_LENGTH];
+    this.bounds = new int[INITIAL_VARIABLES * 2];
+    this.branchNodes = new Object[INITIAL_VARIABLES];
+    this.branches = new int[INITIAL_VARIABLES * 3];
+  }
+
+  private static int hexValue(char value) {
+    int digit = Character.digit(value, 16);
+    if (digit < 0) {
+      throw new IllegalArgumentException("Not correct escape character in path: " + value);
+    }
+    return digit;
+  }
+
+  char[] reset(CharSequence path) {
+    this.path = path;
+    this.count = 0;
+    int length = path.length();
+    if (chars.length < length) {
+      chars = new char[Math.max(length, chars.length * 2)];
+    }
+    if (path instanceof String) {
+      ((String) path).getChars(0, length, chars, 0);
+    } else {
+      for (int i = 0; i < length; i++) {
+        chars[i] = path.charAt(i);
+      }
+    }
+    return chars;
+  }
+
+  void set(int index, int start, int end) {
+    if (bounds.length <= index * 2 + 1) {
+      bounds = Arrays.copyOf(bounds, bounds.length * 2);
+    }
+    bounds[index * 2] = start;
+    bounds[index * 2 + 1] = end;
+  }
+
+  void pushBranch(int index, Object node, int start, int end, int variable) {
+    if (branchNodes.length <= index) {
+      branchNodes = Arrays.copyOf(branchNodes, branchNodes.length * 2);
+      branches = Arrays.copyOf(branches, branches.length * 2);
+    }
+    branchNodes[index] = node;
+    branches[index * 3] = start;
+    branches[index * 3 + 1] = end;
+    branches[index * 3 + 2] = variable;
+  }
+
+  Object getBranchNode(int index) {
+    return branchNodes[index];
+  }
+
+  int getBranchStart(int index) {
+    return branches[index * 3];
+  }
+
+  int getBranchEnd(int index) {
+    return branches[index * 3 + 1];
+  }
+
+  int getBranchVariable(int index) {
+    return branches[index * 3 + 2];
+  }
+
+  void setCount(int count) {
+    this.count = count;
+  }
+
+  public CharSequence getPath() {
+    return path;
+  }
+
+  /**
+   * Gets number of path variables matched.
+   *
+   * @return the number of path variables.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Gets start offset of path variable inside matched path.
+   *
+   * @param index the index of the variable in template.
+   * @return the start offset (inclusive) of the variable.
+   */
+  public int getStart(int index) {
+    checkIndex(index);
+    return bounds[index * 2];
+  }
+
+  /**
+   * Gets end offset of path variable inside matched path.
+   *
+   * @param index the index of the variable in template.
+   * @return the end offset (exclusive) of the variable.
+   */
+  public int getEnd(int index) {
+    checkIndex(index);
+    return bounds[index * 2 + 1];
+  }
+
+  /**
+   * Gets decoded value of the path variable.
+   *
+   * @param index the index of the variable in template.
+   * @return the decoded value of the path variable.
+   * @throws IllegalArgumentException when variable contains not correct escape sequence.
+   */
+  public String getValue(int index) {
+    int start = getStart(index);
+    int end = getEnd(index);
+    for (int i = start; i < end; i++) {
+      if (path.charAt(i) == '%') {
+        return decode(start, end);
+      }
+    }
+    return path.subSequence(start, end).toString();
+  }
+
+  private String decode(int start, int end) {
+    byte[] bytes = new byte[(end - start) * 3];
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      char value = path.charAt(i);
+      if (value == '%') {
+        if (i + 2 >= end) {
+          throw new IllegalArgumentException("Not completed escape sequence in path!");
+        }
+        bytes[length++] = (byte) ((hexValue(path.charAt(i + 1)) << 4) | hexValue(path
+            .charAt(i + 2)));
+        i += 2;
+      } else if (value < 0x80) {
+        bytes[length++] = (byte) value;
+      } else {
+        byte[] encoded = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+      }
+    }
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException(String
+          .format("Path variable %d is not matched, matched %d!", index, count));
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package ua.danit.rest.core.routing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed presentation of the resource path, for example <code>/weather/{country}/{city}</code>.
+ * <p/>
+ * Every segment is either literal or template one. Template segment takes whole segment and
+ * contains only variable name. Regular expressions inside templates are not supported.
+ *
+ * @author Andrey Minov
+ */
+public class PathTemplate {
+  private static final char SEPARATOR = '/';
+  private static final char VARIABLE_START = '{';
+  private static final char VARIABLE_END = '}';
+
+  private final String template;
+  private final List<String> segments;
+  private final List<String> variables;
+
+  private PathTemplate(String template, List<String> segments, List<String> variables) {
+    this.template = template;
+    this.segments = segments;
+    this.variables = variables;
+  }
+
+  /**
+   * Parse path template from string.
+   *
+   * @param template the template in form /segment/{variable}/segment
+   * @return the parsed path template.
+   * @throws IllegalArgumentException when template is empty, does not start with '/' or contains
+   *                                  not supported template segments.
+   */
+  public static PathTemplate parse(String template) {
+    checkArgument(!isNullOrEmpty(template), "Path template cannot be empty!");
+    checkArgument(template.charAt(0) == SEPARATOR, "Path template %s must start with '/'!",
+        template);
+    List<String> segments = new ArrayList<>();
+    List<String> variables = new ArrayList<>();
+    int start = 1;
+    while (start <= template.length()) {
+      int end = template.indexOf(SEPARATOR, start);
+      if (end < 0) {
+        end = template.length();
+      }
+      String segment = template.substring(start, end);
+      String variable = variableName(template, segment);
+      if (variable != null) {
+        checkArgument(!variables.contains(variable), "Path variable %s is duplicated in %s!",
+            variable, template);
+        variables.add(variable);
+      }
+      segments.add(segment);
+      start = end + 1;
+    }
+    return new PathTemplate(template, Collections.unmodifiableList(segments),
+        Collections.unmodifiableList(variables));
+  }
+
+  /**
+   * Check if path segment is template variable.
+   *
+   * @param segment the segment of the template
+   * @return true if segment is path variable.
+   */
+  static boolean isVariable(String segment) {
+    return !segment.isEmpty() && segment.charAt(0) == VARIABLE_START;
+  }
+
+  private static String variableName(String template, String segment) {
+    int open = segment.indexOf(VARIABLE_START);
+    int close = segment.indexOf(VARIABLE_END);
+    if (open < 0 && close < 0) {
+      return null;
+    }
+    checkArgument(open == 0 && close == segment.length() - 1,
+        "Path template %s must contain variable as whole segment!", template);
+    String name = segment.substring(1, close).trim();
+    checkArgument(!name.isEmpty(), "Path variable name in %s cannot be empty!", template);
+    checkArgument(name.indexOf(':') < 0 && name.indexOf(VARIABLE_START) < 0,
+        "Regular expressions in path template %s are not supported!", template);
+    return name;
+  }
+
+  /**
+   * Gets index of variable in matched path.
+   *
+   * @param variable the name of the variable.
+   * @return index of the variable or -1 when template does not contain variable.
+   */
+  public int indexOf(String variable) {
+    return variables.indexOf(variable);
+  }
+
+  public String getTemplate() {
+    return template;
+  }
+
+  public List<String> getSegments() {
+    return segments;
+  }
+
+  public List<String> getVariables() {
+    return variables;
+  }
+
+  @Override
+  public String toString() {
+    return template;
+  }
+}
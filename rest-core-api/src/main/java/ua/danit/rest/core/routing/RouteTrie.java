@@ -0,0 +1,230 @@
+package ua.danit.rest.core.routing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Segment trie for routing request paths to registered values.
+ * <p/>
+ * Templates are registered in form of {@link PathTemplate}. Before first lookup trie is compiled
+ * into open addressing tables of literal segments for every node, so path is matched in one pass
+ * over its characters without regular expressions and without creating substrings. Characters
+ * of the path are copied once into reusable buffer of {@link PathMatch} before matching. Literal
+ * segments have priority over template ones, template segment is tried only when literal branch
+ * does not match the rest of the path.
+ * <p/>
+ * Registration is synchronized and invalidates compiled trie, lookups are lock free.
+ *
+ * @param <T> the type of the routed values.
+ * @author Andrey Minov
+ */
+public class RouteTrie<T> {
+  private static final char SEPARATOR = '/';
+
+  private final Builder<T> root;
+  private volatile Node<T> compiled;
+  private int size;
+
+  /**
+   * Instantiates a new empty route trie.
+   */
+  public RouteTrie() {
+    this.root = new Builder<>();
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T matchNode(Node<T> root, char[] path, int from, int end, PathMatch match) {
+    Node<T> node = root;
+    int pos = from;
+    int variable = 0;
+    int branches = 0;
+    while (true) {
+      if (pos == end) {
+        if (node.value != null) {
+          match.setCount(variable);
+          return node.value;
+        }
+      } else if (path[pos] == SEPARATOR) {
+        int start = pos + 1;
+        int stop = start;
+        int hash = 0;
+        while (stop < end) {
+          char value = path[stop];
+          if (value == SEPARATOR) {
+            break;
+          }
+          hash = 31 * hash + value;
+          stop++;
+        }
+        if (node.variable != null && stop > start) {
+          // remember where template segment may be tried if literal branch fails.
+          match.pushBranch(branches++, node, start, stop, variable);
+        }
+        Node<T> literal = node.literal(path, start, stop, hash);
+        if (literal != null) {
+          node = literal;
+          pos = stop;
+          continue;
+        }
+      }
+      if (branches == 0) {
+        return null;
+      }
+      branches--;
+      node = ((Node<T>) match.getBranchNode(branches)).variable;
+      pos = match.getBranchEnd(branches);
+      variable = match.getBranchVariable(branches);
+      match.set(variable, match.getBranchStart(branches), pos);
+      variable++;
+    }
+  }
+
+  /**
+   * Register value for the path template. Value registered previously on the same template is
+   * replaced.
+   *
+   * @param template the path template, for example /weather/{country}/{city}
+   * @param value    the value to register
+   * @return the previous value registered for template or null.
+   * @throws IllegalArgumentException when template is not correct.
+   * @throws NullPointerException     when value is null.
+   */
+  public synchronized T add(String template, T value) {
+    checkNotNull(value, "Routed value cannot be null!");
+    Builder<T> node = root;
+    for (String segment : PathTemplate.parse(template).getSegments()) {
+      if (PathTemplate.isVariable(segment)) {
+        if (node.variable == null) {
+          node.variable = new Builder<>();
+        }
+        node = node.variable;
+      } else {
+        node = node.literals.computeIfAbsent(segment, s -> new Builder<>());
+      }
+    }
+    T previous = node.value;
+    node.value = value;
+    if (previous == null) {
+      size++;
+    }
+    compiled = null;
+    return previous;
+  }
+
+  /**
+   * Match the path to registered values.
+   *
+   * @param path  the path to match
+   * @param from  the offset in path where matching starts
+   * @param match the holder for the path variables offsets.
+   * @return the matched value or null if path is not registered.
+   */
+  public T match(CharSequence path, int from, PathMatch match) {
+    char[] chars = match.reset(path);
+    return matchNode(compiled(), chars, from, path.length(), match);
+  }
+
+  /**
+   * Gets number of routes registered.
+   *
+   * @return the number of registered routes.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private Node<T> compiled() {
+    Node<T> node = compiled;
+    if (node == null) {
+      synchronized (this) {
+        node = compiled;
+        if (node == null) {
+          node = root.compile();
+          compiled = node;
+        }
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Mutable node used during registration of templates.
+   */
+  private static class Builder<T> {
+    private final Map<String, Builder<T>> literals = new HashMap<>();
+    private Builder<T> variable;
+    private T value;
+
+    @SuppressWarnings("unchecked")
+    private Node<T> compile() {
+      int capacity = Integer.highestOneBit(Math.max(1, literals.size()) * 2) * 2;
+      char[][] keys = new char[literals.isEmpty() ? 0 : capacity][];
+      int[] hashes = new int[keys.length];
+      Node<T>[] children = new Node[keys.length];
+      for (Map.Entry<String, Builder<T>> entry : literals.entrySet()) {
+        String key = entry.getKey();
+        int hash = key.hashCode();
+        int mask = keys.length - 1;
+        int i = spread(hash) & mask;
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key.toCharArray();
+        hashes[i] = hash;
+        children[i] = entry.getValue().compile();
+      }
+      return new Node<>(keys, hashes, children, variable != null ? variable.compile() : null,
+          value);
+    }
+  }
+
+  /**
+   * Immutable compiled node of the trie.
+   */
+  private static class Node<T> {
+    private final char[][] keys;
+    private final int[] hashes;
+    private final Node<T>[] children;
+    private final Node<T> variable;
+    private final T value;
+
+    private Node(char[][] keys, int[] hashes, Node<T>[] children, Node<T> variable, T value) {
+      this.keys = keys;
+      this.hashes = hashes;
+      this.children = children;
+      this.variable = variable;
+      this.value = value;
+    }
+
+    private static boolean regionEquals(char[] key, char[] path, int start, int end) {
+      if (key.length != end - start) {
+        return false;
+      }
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != path[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private Node<T> literal(char[] path, int start, int end, int hash) {
+      if (keys.length == 0) {
+        return null;
+      }
+      int mask = keys.length - 1;
+      for (int i = spread(hash) & mask; keys[i] != null; i = (i + 1) & mask) {
+        if (hashes[i] == hash && regionEquals(keys[i], path, start, end)) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package ua.danit.rest.core.utils;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+
+/**
+ * Utility methods for parsing values of HTTP headers in place, without splitting header into
+ * strings.
+ *
+ * @author Andrey Minov
+ */
+public class Headers {
+  private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+      .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+  /**
+   * Check if header region equals to token ignoring case.
+   *
+   * @param header the header value
+   * @param start  the start of the region (inclusive)
+   * @param end    the end of the region (exclusive)
+   * @param token  the token to compare with.
+   * @return true when region is the token.
+   */
+  public static boolean isToken(String header, int start, int end, String token) {
+    return end - start == token.length()
+        && header.regionMatches(true, start, token, 0, end - start);
+  }
+
+  /**
+   * Gets quality value (q parameter) from parameters of the header element.
+   *
+   * @param header the header value
+   * @param start  the start of element parameters (inclusive)
+   * @param end    the end of element parameters (exclusive)
+   * @return the quality value, 1 when it is not present and 0 when it is not a number.
+   */
+  public static double quality(String header, int start, int end) {
+    for (int i = start; i < end - 1; i++) {
+      char value = header.charAt(i);
+      if ((value == 'q' || value == 'Q') && header.charAt(i + 1) == '='
+          && (i == start || header.charAt(i - 1) == ';' || header.charAt(i - 1) == ' ')) {
+        try {
+          int valueEnd = header.indexOf(';', i);
+          return Double.parseDouble(header.substring(i + 2, valueEnd >= 0 && valueEnd < end
+              ? valueEnd : end).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * Skip whitespaces of the header from the start of region.
+   *
+   * @param header the header value
+   * @param start  the start of the region (inclusive)
+   * @param end    the end of the region (exclusive)
+   * @return the index of the first not whitespace character or end.
+   */
+  public static int trimStart(String header, int start, int end) {
+    while (start < end && Character.isWhitespace(header.charAt(start))) {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * Skip whitespaces of the header from the end of region.
+   *
+   * @param header the header value
+   * @param start  the start of the region (inclusive)
+   * @param end    the end of the region (exclusive)
+   * @return the index after the last not whitespace character or start.
+   */
+  public static int trimEnd(String header, int start, int end) {
+    while (end > start && Character.isWhitespace(header.charAt(end - 1))) {
+      end--;
+    }
+    return end;
+  }
+
+  /**
+   * Format date as HTTP date, for example Sun, 06 Nov 1994 08:49:37 GMT.
+   *
+   * @param millis the date in milliseconds since epoch.
+   * @return the formatted date.
+   */
+  public static String formatDate(long millis) {
+    return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+  }
+
+  /**
+   * Parse HTTP date.
+   *
+   * @param date the formatted date.
+   * @return the date in milliseconds since epoch, or -1 when date is missing or not correct.
+   */
+  public static long parseDate(String date) {
+    if (date == null) {
+      return -1;
+    }
+    try {
+      return DateTimeFormatter.RFC_1123_DATE_TIME.parse(date.trim(), Instant::from).toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Format entity tag as value of ETag header, weak tag is prefixed by W/.
+   *
+   * @param tag the entity tag.
+   * @return the value of the header.
+   */
+  public static String formatEntityTag(EntityTag tag) {
+    return (tag.isWeak() ? "W/\"" : "\"") + tag.getValue() + '"';
+  }
+
+  /**
+   * Parse value of ETag header.
+   *
+   * @param value the value of the header.
+   * @return the entity tag or null when value is missing.
+   */
+  public static EntityTag parseEntityTag(String value) {
+    if (value == null) {
+      return null;
+    }
+    String tag = value.trim();
+    boolean weak = tag.startsWith("W/");
+    if (weak) {
+      tag = tag.substring(2);
+    }
+    if (tag.length() >= 2 && tag.charAt(0) == '"' && tag.charAt(tag.length() - 1) == '"') {
+      tag = tag.substring(1, tag.length() - 1);
+    }
+    return new EntityTag(tag, weak);
+  }
+
+  /**
+   * Check if entity tag matches If-None-Match header by weak comparison: tags are equal ignoring
+   * weakness, or header is *.
+   *
+   * @param header the value of If-None-Match header
+   * @param etag   the value of ETag header of the response.
+   * @return true when one of the header tags matches.
+   */
+  public static boolean matchesEntityTag(String header, String etag) {
+    int tagStart = etag.startsWith("W/") ? 2 : 0;
+    int tagLength = etag.length() - tagStart;
+    int start = 0;
+    while (start < header.length()) {
+      int end = header.indexOf(',', start);
+      if (end < 0) {
+        end = header.length();
+      }
+      int from = trimStart(header, start, end);
+      int to = trimEnd(header, from, end);
+      if (to - from == 1 && header.charAt(from) == '*') {
+        return true;
+      }
+      if (header.startsWith("W/", from)) {
+        from += 2;
+      }
+      if (to - from == tagLength && header.regionMatches(from, etag, tagStart, tagLength)) {
+        return true;
+      }
+      start = end + 1;
+    }
+    return false;
+  }
+
+  /**
+   * Format cache control directives as value of Cache-Control header.
+   *
+   * @param control the cache control.
+   * @return the value of the header.
+   */
+  public static String formatCacheControl(CacheControl control) {
+    StringBuilder value = new StringBuilder();
+    appendDirective(value, control.isPrivate(), "private");
+    appendDirective(value, control.isNoCache(), "no-cache");
+    appendDirective(value, control.isNoStore(), "no-store");
+    appendDirective(value, control.isNoTransform(), "no-transform");
+    appendDirective(value, control.isMustRevalidate(), "must-revalidate");
+    appendDirective(value, control.isProxyRevalidate(), "proxy-revalidate");
+    appendDirective(value, control.getMaxAge() >= 0, "max-age=" + control.getMaxAge());
+    appendDirective(value, control.getSMaxAge() >= 0, "s-maxage=" + control.getSMaxAge());
+    control.getCacheExtension().forEach((name, extension) -> appendDirective(value, true,
+        extension != null ? name + '=' + extension : name));
+    return value.toString();
+  }
+
+  private static void appendDirective(StringBuilder value, boolean present, String directive) {
+    if (present) {
+      if (value.length() > 0) {
+        value.append(", ");
+      }
+      value.append(directive);
+    }
+  }
+}
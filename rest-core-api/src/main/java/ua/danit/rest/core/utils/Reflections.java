@@ -1,8 +1,7 @@
 package ua.danit.rest.core.utils;
 
-import java.util.Map;
-import javax.servlet.http.HttpServletRequest;
-
+import ua.danit.rest.core.binding.Binder;
+import ua.danit.rest.core.dispatch.RequestContext;
 import ua.danit.rest.core.parsing.Invocation;
 
 /**
@@ -14,18 +13,45 @@ public class Reflections {
 
 
   /**
-   * Convert HTTP request into array of parameters of service method call.
+   * Convert HTTP request bound to context into array of parameters of service method call.
+   * Returned array is owned by context and reused by the next requests of the context.
+   *
+   * @param invocation the invocation
+   * @param context    the context of the current request.
+   * @return array of object used in {@link java.lang.reflect.Method} invoke method as parameters.
+   */
+  public static Object[] fillParameters(Invocation invocation, RequestContext context) {
+    bindParameters(invocation, context);
+    return boxParameters(invocation, context);
+  }
+
+  /**
+   * Bind HTTP request into argument slots of the context. Values of primitive parameters are
+   * stored without boxing.
+   *
+   * @param invocation the invocation
+   * @param context    the context of the current request.
+   */
+  public static void bindParameters(Invocation invocation, RequestContext context) {
+    for (Binder binder : invocation.getBinders()) {
+      binder.bind(context);
+    }
+  }
+
+  /**
+   * Gets array of method parameters bound into context before, primitive values are boxed.
+   * Returned array is owned by context and reused by the next requests of the context.
    *
    * @param invocation the invocation
-   * @param request    the HTTP request request
+   * @param context    the context of the current request.
    * @return array of object used in {@link java.lang.reflect.Method} invoke method as parameters.
    */
-  public static Object[] fillParameters(Invocation invocation, HttpServletRequest request) {
-    Object[] params = new Object[invocation.getParamCount()];
-    for (Map.Entry<Integer, Invocation.Parameter> reqParam : invocation.getParams().entrySet()) {
-      Invocation.Parameter parameter = reqParam.getValue();
-      Object param = parameter.getConverter().apply(request);
-      params[reqParam.getKey()] = param;
+  public static Object[] boxParameters(Invocation invocation, RequestContext context) {
+    Object[] params = context.getArguments();
+    for (Binder binder : invocation.getBinders()) {
+      if (binder.isPrimitive()) {
+        params[binder.getIndex()] = binder.box(context);
+      }
     }
     return params;
   }
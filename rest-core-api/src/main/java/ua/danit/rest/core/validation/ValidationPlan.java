@@ -0,0 +1,297 @@
+package ua.danit.rest.core.validation;
+
+import static ua.danit.rest.core.utils.Reflections.boxParameters;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.MessageInterpolator;
+import javax.validation.ValidationException;
+import javax.validation.ValidatorFactory;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.validation.executable.ExecutableValidator;
+import javax.validation.groups.Default;
+import javax.validation.metadata.ConstraintDescriptor;
+import javax.validation.metadata.MethodDescriptor;
+import javax.validation.metadata.ParameterDescriptor;
+
+import org.hibernate.validator.constraints.NotEmpty;
+import ua.danit.rest.core.binding.Binder;
+import ua.danit.rest.core.dispatch.RequestContext;
+
+/**
+ * Plan of the service method parameters validation compiled when service is parsed.
+ * <p/>
+ * Methods without parameter constraints are not validated at all. Constraints {@link NotNull},
+ * {@link NotEmpty}, {@link Min}, {@link Max} and {@link Size} are compiled into checks reading
+ * arguments directly from request context, their messages are interpolated in advance. When
+ * method has any other constraint, cascaded or cross parameter validation or message depending
+ * on validated value, the whole method is validated by Bean Validation
+ * {@link ExecutableValidator}.
+ *
+ * @author Andrey Minov
+ */
+public class ValidationPlan {
+  /**
+   * Plan of the method without parameter constraints.
+   */
+  public static final ValidationPlan NONE = new ValidationPlan(new Check[0], null, null);
+
+  private final Check[] checks;
+  private final ExecutableValidator validator;
+  private final Method method;
+
+  private ValidationPlan(Check[] checks, ExecutableValidator validator, Method method) {
+    this.checks = checks;
+    this.validator = validator;
+    this.method = method;
+  }
+
+  /**
+   * Compile validation plan of the method parameters.
+   *
+   * @param factory the validator factory holding constraints metadata and message interpolator.
+   * @param method  the service method
+   * @param binders the binders of method parameters.
+   * @return the validation plan of the method.
+   */
+  public static ValidationPlan compile(ValidatorFactory factory, Method method, Binder[] binders) {
+    MethodDescriptor descriptor = factory.getValidator()
+        .getConstraintsForClass(method.getDeclaringClass())
+        .getConstraintsForMethod(method.getName(), method.getParameterTypes());
+    if (descriptor == null) {
+      return NONE;
+    }
+    ValidationPlan fallback =
+        new ValidationPlan(null, factory.getValidator().forExecutables(), method);
+    if (descriptor.getCrossParameterDescriptor().hasConstraints()) {
+      return fallback;
+    }
+    Class<?>[] types = method.getParameterTypes();
+    List<Check> checks = new ArrayList<>();
+    for (ParameterDescriptor parameter : descriptor.getParameterDescriptors()) {
+      if (parameter.isCascaded()) {
+        return fallback;
+      }
+      int index = parameter.getIndex();
+      boolean primitive = binders[index].isPrimitive();
+      for (ConstraintDescriptor<?> constraint : parameter.getConstraintDescriptors()) {
+        if (!constraint.getGroups().contains(Default.class)) {
+          continue;
+        }
+        String message = interpolate(factory.getMessageInterpolator(), constraint);
+        Check check = message != null
+            ? compileCheck(index, types[index], primitive, constraint.getAnnotation(), message)
+            : null;
+        if (check == null) {
+          return fallback;
+        }
+        checks.add(check);
+      }
+    }
+    if (checks.isEmpty()) {
+      return NONE;
+    }
+    checks.sort(Comparator.comparingInt(c -> c.index));
+    return new ValidationPlan(checks.toArray(new Check[checks.size()]), null, method);
+  }
+
+  private static String interpolate(MessageInterpolator interpolator,
+                                    ConstraintDescriptor<?> constraint) {
+    String template = (String) constraint.getAttributes().get("message");
+    // expression language may refer validated value, so message is not known in advance.
+    if (template == null || template.contains("${")) {
+      return null;
+    }
+    return interpolator.interpolate(template, new MessageInterpolator.Context() {
+      @Override
+      public ConstraintDescriptor<?> getConstraintDescriptor() {
+        return constraint;
+      }
+
+      @Override
+      public Object getValidatedValue() {
+        return null;
+      }
+
+      @Override
+      public <T> T unwrap(Class<T> type) {
+        throw new ValidationException("Type " + type + " is not supported!");
+      }
+    });
+  }
+
+  private static Check compileCheck(int index, Class<?> type, boolean primitive,
+                                    Annotation annotation, String message) {
+    if (annotation instanceof NotNull) {
+      return new NotNullCheck(index, primitive, message);
+    }
+    if (annotation instanceof NotEmpty && isSized(type)) {
+      return new SizeCheck(index, message, 1, Integer.MAX_VALUE, false);
+    }
+    if (annotation instanceof Size && isSized(type)) {
+      Size size = (Size) annotation;
+      return new SizeCheck(index, message, size.min(), size.max(), true);
+    }
+    if (annotation instanceof Min && isIntegral(type)) {
+      return new RangeCheck(index, primitive, message, ((Min) annotation).value(), Long.MAX_VALUE);
+    }
+    if (annotation instanceof Max && isIntegral(type)) {
+      return new RangeCheck(index, primitive, message, Long.MIN_VALUE, ((Max) annotation).value());
+    }
+    return null;
+  }
+
+  private static boolean isSized(Class<?> type) {
+    return CharSequence.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+           || Map.class.isAssignableFrom(type) || type.isArray();
+  }
+
+  private static boolean isIntegral(Class<?> type) {
+    return type == int.class || type == long.class || type == short.class || type == byte.class
+           || type == Integer.class || type == Long.class || type == Short.class
+           || type == Byte.class;
+  }
+
+  public boolean isConstrained() {
+    return this != NONE;
+  }
+
+  /**
+   * Check if plan is executed by compiled checks without Bean Validation fallback.
+   *
+   * @return true when all constraints of the method are compiled.
+   */
+  public boolean isCompiled() {
+    return validator == null;
+  }
+
+  /**
+   * Validate arguments bound into context.
+   *
+   * @param context the context of the current request.
+   * @return the message of the first violated constraint or null if arguments are valid.
+   */
+  public String validate(RequestContext context) {
+    if (validator == null) {
+      for (Check check : checks) {
+        if (!check.isValid(context)) {
+          return check.message;
+        }
+      }
+      return null;
+    }
+    Object[] params = boxParameters(context.getInvocation(), context);
+    Object instance = context.getInvocation().getInvoker().getInstance();
+    Set<ConstraintViolation<Object>> errors =
+        validator.validateParameters(instance, method, params);
+    return errors != null && !errors.isEmpty() ? errors.iterator().next().getMessage() : null;
+  }
+
+  /**
+   * Compiled check of the single constraint.
+   */
+  private abstract static class Check {
+    final int index;
+    final String message;
+
+    private Check(int index, String message) {
+      this.index = index;
+      this.message = message;
+    }
+
+    abstract boolean isValid(RequestContext context);
+  }
+
+  private static class NotNullCheck extends Check {
+    private final boolean primitive;
+
+    private NotNullCheck(int index, boolean primitive, String message) {
+      super(index, message);
+      this.primitive = primitive;
+    }
+
+    @Override
+    boolean isValid(RequestContext context) {
+      return primitive ? !context.isMissing(index)
+          : context.getArgument(index) != null;
+    }
+  }
+
+  private static class SizeCheck extends Check {
+    private final int min;
+    private final int max;
+    private final boolean nullValid;
+
+    private SizeCheck(int index, String message, int min, int max, boolean nullValid) {
+      super(index, message);
+      this.min = min;
+      this.max = max;
+      this.nullValid = nullValid;
+    }
+
+    private static int sizeOf(Object value) {
+      if (value instanceof CharSequence) {
+        return ((CharSequence) value).length();
+      }
+      if (value instanceof Collection) {
+        return ((Collection<?>) value).size();
+      }
+      if (value instanceof Map) {
+        return ((Map<?, ?>) value).size();
+      }
+      return Array.getLength(value);
+    }
+
+    @Override
+    boolean isValid(RequestContext context) {
+      Object value = context.getArgument(index);
+      if (value == null) {
+        return nullValid;
+      }
+      int size = sizeOf(value);
+      return size >= min && size <= max;
+    }
+  }
+
+  private static class RangeCheck extends Check {
+    private final boolean primitive;
+    private final long min;
+    private final long max;
+
+    private RangeCheck(int index, boolean primitive, String message, long min, long max) {
+      super(index, message);
+      this.primitive = primitive;
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    boolean isValid(RequestContext context) {
+      long value;
+      if (primitive) {
+        if (context.isMissing(index)) {
+          return true;
+        }
+        value = context.getLong(index);
+      } else {
+        Object argument = context.getArgument(index);
+        if (argument == null) {
+          return true;
+        }
+        value = ((Number) argument).longValue();
+      }
+      return value >= min && value <= max;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package ua.danit.rest.core.binding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Random;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.parsing.Invocation;
+
+/**
+ * Test for primitive binders of request parameters.
+ *
+ * @author Andrey Minov
+ */
+public class BindersTest {
+
+  private HttpServletRequest request;
+  private RequestContext context;
+
+  @Before
+  public void setUp() {
+    request = mock(HttpServletRequest.class);
+    Invocation invocation = mock(Invocation.class);
+    when(invocation.getParamCount()).thenReturn(3);
+    when(invocation.getCookieNames()).thenReturn(new String[0]);
+    context = new RequestContext();
+    context.begin(request, invocation);
+  }
+
+  @Test
+  public void testRawQueryParsed() {
+    when(request.getQueryString()).thenReturn("lat=51.25&count=-42&id=9000000000&flag");
+    new DoubleBinder(0, ValueSource.query("lat"), null).bind(context);
+    new IntBinder(1, ValueSource.query("count"), null).bind(context);
+    new LongBinder(2, ValueSource.query("id"), null).bind(context);
+    assertEquals(51.25, context.getDouble(0), 0);
+    assertEquals(-42, context.getInt(1));
+    assertEquals(9000000000L, context.getLong(2));
+    assertEquals(-42, new IntBinder(1, null, null).box(context));
+  }
+
+  @Test
+  public void testEscapedAndFormValuesTakenFromParameters() {
+    when(request.getQueryString()).thenReturn("count=%2B7");
+    when(request.getParameter("count")).thenReturn("+7");
+    when(request.getParameter("form")).thenReturn("12");
+    new IntBinder(0, ValueSource.query("count"), null).bind(context);
+    new IntBinder(1, ValueSource.query("form"), null).bind(context);
+    assertEquals(7, context.getInt(0));
+    assertEquals(12, context.getInt(1));
+  }
+
+  @Test
+  public void testDefaultAndMissingValues() {
+    new IntBinder(0, ValueSource.query("count"), "5").bind(context);
+    new DoubleBinder(1, ValueSource.query("lat"), null).bind(context);
+    assertEquals(5, context.getInt(0));
+    assertTrue(context.isMissing(1));
+    assertTrue(context.hasMissing());
+    assertNull(new DoubleBinder(1, null, null).box(context));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testIntOverflow() {
+    Numbers.parseInt("2147483648", 0, 10);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testNotNumber() {
+    Numbers.parseLong("12a", 0, 3);
+  }
+
+  @Test
+  public void testDoubleSameAsJdk() {
+    String[] values = {"0", "-0", "1.", ".5", "31.0", "-122.4194", "1e3", "123456789012345678",
+        "0.1", "3.141592653589793", "NaN", "-Infinity", "0.000000000000000000000001"};
+    for (String value : values) {
+      assertEquals(value, Double.parseDouble(value), Numbers.parseDouble(value, 0, value.length()),
+          0);
+    }
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      String value = String.format("%.6f", (random.nextDouble() - 0.5) * 360);
+      assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+          Double.doubleToLongBits(Numbers.parseDouble(value, 0, value.length())));
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package ua.danit.rest.core.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+/**
+ * Test for response cache and capturing of responses.
+ *
+ * @author Andrey Minov
+ */
+public class ResponseCacheTest {
+  private static final Object ROUTE = new Object();
+
+  private static CacheKey key(Object... values) {
+    return new CacheKey(ROUTE, 0, values);
+  }
+
+  private static CachedResponse response(String body) {
+    return new CachedResponse(200, new String[0], null, body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testKeysComparedByRouteValuesAndMediaType() {
+    assertEquals(key("Kiev", 1), key("Kiev", 1));
+    assertEquals(key("Kiev", 1).hashCode(), key("Kiev", 1).hashCode());
+    assertFalse(key("Kiev", 1).equals(key("Kiev", 2)));
+    assertFalse(key("Kiev").equals(new CacheKey(ROUTE, 1, new Object[] {"Kiev"})));
+    assertFalse(key("Kiev").equals(new CacheKey(new Object(), 0, new Object[] {"Kiev"})));
+  }
+
+  @Test
+  public void testHitsAndMissesCounted() {
+    ResponseCache cache = new ResponseCache(new CachePolicy("weather", 60_000, 16));
+    CachedResponse response = response("{}");
+
+    assertNull(cache.get(key("Kiev")));
+    cache.put(key("Kiev"), response, cache.getGeneration());
+
+    assertSame(response, cache.get(key("Kiev")));
+    ResponseCacheStats stats = cache.getStats();
+    assertEquals(1, stats.getHits());
+    assertEquals(1, stats.getMisses());
+    assertEquals(1, stats.getSize());
+  }
+
+  @Test
+  public void testEvictedWhenFull() {
+    ResponseCache cache = new ResponseCache(new CachePolicy("weather", 60_000, 2));
+    for (int i = 0; i < 5; i++) {
+      cache.put(key(i), response(String.valueOf(i)), cache.getGeneration());
+    }
+
+    ResponseCacheStats stats = cache.getStats();
+    assertTrue(stats.getSize() <= 2);
+    assertEquals(5 - stats.getSize(), stats.getEvictions());
+  }
+
+  @Test
+  public void testResponseOfOldGenerationNotCached() {
+    ResponseCache cache = new ResponseCache(new CachePolicy("weather", 60_000, 16));
+    cache.put(key("Kiev"), response("old"), cache.getGeneration());
+    long generation = cache.getGeneration();
+    cache.invalidate();
+    cache.put(key("Lviv"), response("old"), generation);
+
+    assertNull(cache.get(key("Kiev")));
+    assertNull(cache.get(key("Lviv")));
+    assertEquals(1, cache.getStats().getInvalidations());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCacheDeclaredWithOtherSettings() {
+    ResponseCaches caches = new ResponseCaches();
+    caches.getCache(new CachePolicy("weather", 1000, 16));
+    caches.getCache(new CachePolicy("weather", 2000, 16));
+  }
+
+  @Test
+  public void testCapturedResponseNotSentUntilFinished() throws Exception {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    CapturingResponse capture = new CapturingResponse(response);
+    capture.setStatus(200);
+    capture.setHeader("ETag", "\"1\"");
+    capture.setHeader("ETag", "\"2\"");
+    capture.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+    CachedResponse captured = capture.finish();
+
+    assertTrue(capture.isCacheable());
+    assertArrayEquals("{}".getBytes(StandardCharsets.UTF_8), captured.getBody());
+    verify(response, never()).setStatus(200);
+    verify(response, never()).getOutputStream();
+
+    capture.addCookie(new Cookie("session", "1"));
+    assertFalse(capture.isCacheable());
+  }
+}
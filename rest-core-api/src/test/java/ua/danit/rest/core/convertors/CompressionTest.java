@@ -0,0 +1,172 @@
+package ua.danit.rest.core.convertors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for compression of response entities negotiated by Accept-Encoding header.
+ *
+ * @author Andrey Minov
+ */
+public class CompressionTest {
+  private static final String BODY = Strings.repeat("temperature=21.5;", 200);
+
+  private ConvertersStore store;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private EntityBuffer sent;
+
+  @Before
+  public void setUp() throws IOException {
+    store = new ConvertersStore();
+    store.enableCompression(Compression.compression().withThreshold(256).withPoolSize(1));
+    request = mock(HttpServletRequest.class);
+    response = mock(HttpServletResponse.class);
+    sent = new EntityBuffer();
+    when(response.getOutputStream()).thenReturn(sent);
+    when(response.getContentType()).thenReturn(MediaType.TEXT_PLAIN);
+  }
+
+  private byte[] sentBytes() {
+    byte[] bytes = new byte[sent.size()];
+    System.arraycopy(sent.array(), 0, bytes, 0, sent.size());
+    return bytes;
+  }
+
+  private String write(String acceptEncoding, Object entity) {
+    when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+    HttpServletResponse negotiated = store.negotiateEncoding(request, response);
+    store.getOutWriter(String.class).accept(negotiated, entity);
+    return negotiated instanceof CompressingResponse
+        ? ((CompressingResponse) negotiated).getEncoding() : null;
+  }
+
+  private static String read(InputStream stream) throws IOException {
+    return new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testEncodingNegotiated() {
+    assertEquals("gzip", ResponseCompressor.negotiate("gzip, deflate, br"));
+    assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0.5, deflate"));
+    assertEquals("gzip", ResponseCompressor.negotiate(" GZIP ; q=1.0 "));
+    assertEquals("gzip", ResponseCompressor.negotiate("*"));
+    assertEquals("deflate", ResponseCompressor.negotiate("*;q=0.3, gzip;q=0"));
+    assertNull(ResponseCompressor.negotiate("identity, br"));
+    assertNull(ResponseCompressor.negotiate("gzip;q=0"));
+    assertNull(ResponseCompressor.negotiate(null));
+  }
+
+  @Test
+  public void testGzipBody() throws IOException {
+    assertEquals("gzip", write("gzip", BODY));
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).addHeader("Vary", "Accept-Encoding");
+    verify(response).setContentLength(sent.size());
+    assertTrue(sent.size() < BODY.length());
+    assertEquals(BODY, read(new GZIPInputStream(new ByteArrayInputStream(sentBytes()))));
+  }
+
+  @Test
+  public void testDeflateBody() throws IOException {
+    assertEquals("deflate", write("deflate", BODY));
+    verify(response).setHeader("Content-Encoding", "deflate");
+    assertEquals(BODY, read(new InflaterInputStream(new ByteArrayInputStream(sentBytes()))));
+  }
+
+  @Test
+  public void testLargeBodyCompressedWhileStreamed() throws IOException {
+    String body = Strings.repeat(BODY, ConvertersStore.MAX_BUFFERED_ENTITY / BODY.length() * 3);
+    assertEquals("gzip", write("gzip", body));
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).addHeader("Vary", "Accept-Encoding");
+    verify(response, never()).setContentLength(anyInt());
+    assertTrue(sent.size() < ConvertersStore.MAX_BUFFERED_ENTITY);
+    assertEquals(body, read(new GZIPInputStream(new ByteArrayInputStream(sentBytes()))));
+
+    CompressionStats stats = store.getCompressionStats();
+    assertEquals(1, stats.getCompressedResponses());
+    assertEquals(body.length(), stats.getBytesIn());
+    assertEquals(sent.size(), stats.getBytesOut());
+  }
+
+  @Test
+  public void testSmallBodyNotCompressed() {
+    write("gzip", "21.5");
+    verify(response, never()).setHeader("Content-Encoding", "gzip");
+    verify(response).addHeader("Vary", "Accept-Encoding");
+    assertArrayEquals("21.5".getBytes(StandardCharsets.UTF_8), sentBytes());
+    assertEquals(1, store.getCompressionStats().getSkippedResponses());
+  }
+
+  @Test
+  public void testMediaTypeNotAllowed() {
+    when(response.getContentType()).thenReturn(MediaType.APPLICATION_OCTET_STREAM);
+    write("gzip", BODY.getBytes(StandardCharsets.UTF_8));
+    verify(response, never()).setHeader("Content-Encoding", "gzip");
+    assertEquals(BODY.length(), sent.size());
+  }
+
+  @Test
+  public void testNotAcceptedResponseNotWrapped() {
+    when(request.getHeader("Accept-Encoding")).thenReturn("identity");
+    assertSame(response, store.negotiateEncoding(request, response));
+    assertSame(response, new ConvertersStore().negotiateEncoding(request, response));
+  }
+
+  @Test
+  public void testStatsCollected() {
+    for (int i = 0; i < 3; i++) {
+      sent.reset();
+      write("gzip", BODY);
+    }
+    CompressionStats stats = store.getCompressionStats();
+    assertEquals(3, stats.getCompressedResponses());
+    assertEquals(3L * BODY.length(), stats.getBytesIn());
+    assertTrue(stats.getRatio() < 0.1);
+    assertEquals(1, stats.getDeflatersCreated());
+  }
+
+  @Test
+  public void testBufferPoolSharedByThreads() throws Exception {
+    EntityBufferPool pool = new EntityBufferPool(1);
+    EntityBuffer first = pool.acquire();
+    first.write(1);
+    Thread thread = new Thread(() -> pool.release(first));
+    thread.start();
+    thread.join();
+
+    assertSame(first, pool.acquire());
+    assertEquals(0, first.size());
+    EntityBuffer second = pool.acquire();
+    pool.release(first);
+    pool.release(second);
+    assertSame(first, pool.acquire());
+    assertNotSame(second, pool.acquire());
+  }
+}
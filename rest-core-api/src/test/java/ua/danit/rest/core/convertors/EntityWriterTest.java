@@ -0,0 +1,133 @@
+package ua.danit.rest.core.convertors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Strings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.RuntimeDelegate;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.InOrder;
+import ua.danit.rest.core.ext.RestRuntimeDelegate;
+
+/**
+ * Test for writing response entities through the buffer of the thread.
+ *
+ * @author Andrey Minov
+ */
+public class EntityWriterTest {
+  private ConvertersStore store;
+  private HttpServletResponse response;
+  private CapturingStream sent;
+
+  @BeforeClass
+  public static void setUpRuntime() {
+    RuntimeDelegate.setInstance(new RestRuntimeDelegate());
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    store = new ConvertersStore();
+    response = mock(HttpServletResponse.class);
+    sent = new CapturingStream();
+    when(response.getOutputStream()).thenReturn(sent);
+    when(response.getContentType()).thenReturn(MediaType.APPLICATION_JSON);
+  }
+
+  @Test
+  public void testJsonSentWithContentLength() throws IOException {
+    Map<String, String> entity = Collections.singletonMap("city", "Київ 🌧");
+    store.getOutWriter(Map.class).accept(response, entity);
+
+    String expected = "{\"city\":\"Київ 🌧\"}";
+    byte[] bytes = expected.getBytes(StandardCharsets.UTF_8);
+    verify(response).setContentLength(bytes.length);
+    assertEquals(expected, sent.text());
+    assertEquals(1, sent.writes);
+  }
+
+  @Test
+  public void testLargeEntityStreamed() throws IOException {
+    when(response.getContentType()).thenReturn(MediaType.TEXT_PLAIN);
+    String entity = Strings.repeat("ü-12.5;", ConvertersStore.MAX_BUFFERED_ENTITY / 4);
+    store.getOutWriter(String.class).accept(response, entity);
+
+    verify(response, never()).setContentLength(anyInt());
+    assertEquals(entity, sent.text());
+  }
+
+  @Test
+  public void testUnpairedSurrogateNotCarriedIntoNextEntity() throws IOException {
+    when(response.getContentType()).thenReturn(MediaType.TEXT_PLAIN);
+    store.getOutWriter(String.class).accept(response, "rain \uD83C");
+    sent = new CapturingStream();
+    when(response.getOutputStream()).thenReturn(sent);
+    store.getOutWriter(String.class).accept(response, "snow");
+
+    assertEquals("snow", sent.text());
+  }
+
+  @Test
+  public void testResponseHeadersSetBeforeEntity() throws IOException {
+    Response entity = Response.status(201).header("X-Total", 3).type(MediaType.TEXT_PLAIN_TYPE)
+                              .entity("created").build();
+    store.getOutWriter(Response.class).accept(response, entity);
+
+    InOrder order = inOrder(response);
+    order.verify(response).setStatus(201);
+    order.verify(response).addHeader("X-Total", "3");
+    order.verify(response).setContentType(MediaType.TEXT_PLAIN);
+    order.verify(response).setContentLength(7);
+    order.verify(response).getOutputStream();
+    assertEquals("created", sent.text());
+  }
+
+  private static class CapturingStream extends ServletOutputStream {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private int writes;
+
+    String text() {
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(int value) {
+      writes++;
+      bytes.write(value);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+      writes++;
+      bytes.write(data, offset, length);
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
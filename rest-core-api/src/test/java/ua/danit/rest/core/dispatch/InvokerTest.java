@@ -0,0 +1,137 @@
+package ua.danit.rest.core.dispatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+import ua.danit.rest.core.binding.Binder;
+import ua.danit.rest.core.binding.DoubleBinder;
+import ua.danit.rest.core.binding.IntBinder;
+import ua.danit.rest.core.binding.ObjectBinder;
+import ua.danit.rest.core.parsing.Invocation;
+
+/**
+ * Test for service method invokers.
+ *
+ * @author Andrey Minov
+ */
+public class InvokerTest {
+
+  private static Method method(Class<?> clazz, String name) {
+    for (Method method : clazz.getMethods()) {
+      if (method.getName().equals(name)) {
+        return method;
+      }
+    }
+    throw new IllegalArgumentException(name);
+  }
+
+  @Test
+  public void testPrimitiveArguments() throws Exception {
+    Service service = new Service();
+    Invoker invoker = Invoker.bind(method(Service.class, "sum"), service);
+    assertEquals(7.5, invoker.invoke(new Object[] {3, 4.5}));
+    assertSame(service, invoker.getInstance());
+  }
+
+  @Test
+  public void testPrimitiveSlots() throws Exception {
+    Invocation invocation = mock(Invocation.class);
+    when(invocation.getParamCount()).thenReturn(2);
+    RequestContext context = new RequestContext();
+    context.begin(null, invocation);
+    context.setInt(0, 3);
+    context.setDouble(1, 4.5);
+    Binder[] binders = {new IntBinder(0, null, null), new DoubleBinder(1, null, null)};
+    Invoker invoker = Invoker.bind(method(Service.class, "sum"), new Service(), binders);
+    assertEquals(7.5, invoker.invoke(context));
+  }
+
+  @Test
+  public void testObjectSlots() throws Exception {
+    Invocation invocation = mock(Invocation.class);
+    when(invocation.getParamCount()).thenReturn(1);
+    RequestContext context = new RequestContext();
+    context.begin(null, invocation);
+    context.setArgument(0, "value");
+    Service service = new Service();
+    Invoker invoker = Invoker.bind(method(Service.class, "echo"), service,
+        new Binder[] {new ObjectBinder(0, null)});
+    assertEquals("value", invoker.invoke(context));
+  }
+
+  @Test
+  public void testManyArguments() throws Exception {
+    Invoker invoker = Invoker.bind(method(Service.class, "join"), new Service());
+    assertEquals("abcde", invoker.invoke(new Object[] {"a", "b", "c", "d", "e"}));
+  }
+
+  @Test
+  public void testVoidMethod() throws Exception {
+    Service service = new Service();
+    Invoker invoker = Invoker.bind(method(Service.class, "store"), service);
+    assertNull(invoker.invoke(new Object[] {"value"}));
+    assertEquals("value", service.stored);
+  }
+
+  @Test
+  public void testStaticMethod() throws Exception {
+    Invoker invoker = Invoker.bind(method(Service.class, "twice"), null);
+    assertEquals(4L, invoker.invoke(new Object[] {2L}));
+  }
+
+  @Test
+  public void testNotPublicClass() throws Exception {
+    Invoker invoker = Invoker.bind(method(HiddenService.class, "name"), new HiddenService());
+    assertEquals("hidden", invoker.invoke(new Object[0]));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testExceptionPropagated() throws Exception {
+    Invoker.bind(method(Service.class, "fail"), new Service()).invoke(new Object[0]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongInstance() {
+    Invoker.bind(method(Service.class, "sum"), new Object());
+  }
+
+  public static class Service {
+    private String stored;
+
+    public static long twice(long value) {
+      return value * 2;
+    }
+
+    public double sum(int first, double second) {
+      return first + second;
+    }
+
+    public String echo(String value) {
+      return value;
+    }
+
+    public String join(String a0, String a1, String a2, String a3, String a4) {
+      return a0 + a1 + a2 + a3 + a4;
+    }
+
+    public void store(String value) {
+      this.stored = value;
+    }
+
+    public String fail() {
+      throw new IllegalStateException("failed");
+    }
+  }
+
+  static class HiddenService {
+    public String name() {
+      return "hidden";
+    }
+  }
+}
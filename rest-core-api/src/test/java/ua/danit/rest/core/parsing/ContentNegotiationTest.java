@@ -0,0 +1,64 @@
+package ua.danit.rest.core.parsing;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Test;
+
+/**
+ * Test for negotiation of produced and consumed media types.
+ *
+ * @author Andrey Minov
+ */
+public class ContentNegotiationTest {
+  private static final String BINARY = "application/x-weather-binary";
+
+  private final ContentNegotiation negotiation = new ContentNegotiation(
+      new String[] {MediaType.APPLICATION_JSON, BINARY},
+      new String[] {MediaType.APPLICATION_JSON, "text/*"}, false);
+
+  @Test
+  public void testFirstProducedTypeByDefault() {
+    assertEquals(0, negotiation.selectProduced(null));
+    assertEquals(0, negotiation.selectProduced(""));
+    assertEquals(0, negotiation.selectProduced("*/*"));
+    assertEquals(0, negotiation.selectProduced("text/html, image/gif, *; q=.2, */*; q=.2"));
+  }
+
+  @Test
+  public void testProducedTypeSelectedByQuality() {
+    assertEquals(1, negotiation.selectProduced(BINARY));
+    assertEquals(1, negotiation.selectProduced("application/json;q=0.5, " + BINARY));
+    assertEquals(0, negotiation.selectProduced("application/*;q=0.9, " + BINARY + ";q=0.8"));
+    assertEquals(1, negotiation.selectProduced("Application/X-Weather-Binary; q=1, */*;q=0.1"));
+  }
+
+  @Test
+  public void testMostSpecificRangeApplies() {
+    assertEquals(1, negotiation.selectProduced("*/*, application/json;q=0"));
+    assertEquals(ContentNegotiation.NONE,
+        negotiation.selectProduced("application/*;q=0, text/html"));
+    assertEquals(ContentNegotiation.NONE, negotiation.selectProduced("text/html"));
+  }
+
+  @Test
+  public void testResultCached() {
+    String accept = "application/json;q=0.1, " + BINARY;
+    assertEquals(1, negotiation.selectProduced(accept));
+    assertEquals(1, negotiation.selectProduced(new String(accept)));
+  }
+
+  @Test
+  public void testConsumedTypeSelected() {
+    assertEquals(0, negotiation.selectConsumed(null));
+    assertEquals(0, negotiation.selectConsumed("application/json; charset=UTF-8"));
+    assertEquals(1, negotiation.selectConsumed("text/csv"));
+    assertEquals(ContentNegotiation.NONE, negotiation.selectConsumed(BINARY));
+    assertEquals(ContentNegotiation.NONE, negotiation.selectConsumed("json"));
+
+    ContentNegotiation any = new ContentNegotiation(new String[] {MediaType.TEXT_PLAIN},
+        new String[] {MediaType.TEXT_PLAIN}, true);
+    assertEquals(0, any.selectConsumed(MediaType.APPLICATION_FORM_URLENCODED));
+  }
+}
@@ -0,0 +1,95 @@
+package ua.danit.rest.core.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for segment trie routing.
+ *
+ * @author Andrey Minov
+ */
+public class RouteTrieTest {
+
+  private RouteTrie<String> trie;
+  private PathMatch match;
+
+  @Before
+  public void setUp() {
+    trie = new RouteTrie<>();
+    match = new PathMatch();
+    trie.add("/weather/get/byCity", "byCity");
+    trie.add("/weather/get/city/{country}/{city}", "city");
+    trie.add("/weather/get/city/{country}/latest", "latest");
+    trie.add("/weather/get/{kind}/history", "history");
+  }
+
+  @Test
+  public void testLiteralRoute() {
+    assertEquals("byCity", trie.match("/weather/get/byCity", 0, match));
+    assertEquals(0, match.getCount());
+  }
+
+  @Test
+  public void testTemplateRoute() {
+    String path = "/weather/get/city/Ukraine/Kiev";
+    assertEquals("city", trie.match(path, 0, match));
+    assertEquals(2, match.getCount());
+    assertEquals(18, match.getStart(0));
+    assertEquals(25, match.getEnd(0));
+    assertEquals("Ukraine", match.getValue(0));
+    assertEquals("Kiev", match.getValue(1));
+  }
+
+  @Test
+  public void testLiteralSegmentPreferred() {
+    assertEquals("latest", trie.match("/weather/get/city/Ukraine/latest", 0, match));
+    assertEquals(1, match.getCount());
+  }
+
+  @Test
+  public void testBacktrackToTemplate() {
+    // literal 'city' branch does not have 'history' so template branch must be used.
+    assertEquals("history", trie.match("/weather/get/city/history", 0, match));
+    assertEquals("city", match.getValue(0));
+  }
+
+  @Test
+  public void testMatchFromOffset() {
+    assertEquals("byCity", trie.match("/resources/weather/get/byCity", 10, match));
+  }
+
+  @Test
+  public void testEscapedValue() {
+    assertEquals("city", trie.match("/weather/get/city/USA/New%20York", 0, match));
+    assertEquals("New York", match.getValue(1));
+  }
+
+  @Test
+  public void testNotMatched() {
+    assertNull(trie.match("/weather/get", 0, match));
+    assertNull(trie.match("/weather/get/byCity/", 0, match));
+    assertNull(trie.match("/weather/get/city/Ukraine/", 0, match));
+    assertNull(trie.match("weather/get/byCity", 0, match));
+    assertNull(trie.match("", 0, match));
+  }
+
+  @Test
+  public void testRouteReplaced() {
+    assertEquals("byCity", trie.add("/weather/get/byCity", "replaced"));
+    assertEquals("replaced", trie.match("/weather/get/byCity", 0, match));
+    assertEquals(4, trie.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegularExpressionNotSupported() {
+    trie.add("/weather/{id: [0-9]+}", "regex");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPartialTemplateSegmentNotSupported() {
+    trie.add("/weather/city-{id}", "partial");
+  }
+}
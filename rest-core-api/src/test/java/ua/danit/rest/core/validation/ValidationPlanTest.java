@@ -0,0 +1,129 @@
+package ua.danit.rest.core.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+
+import org.hibernate.validator.constraints.NotEmpty;
+import org.junit.Before;
+import org.junit.Test;
+import ua.danit.rest.core.binding.Binder;
+import ua.danit.rest.core.binding.DoubleBinder;
+import ua.danit.rest.core.binding.IntBinder;
+import ua.danit.rest.core.binding.ObjectBinder;
+import ua.danit.rest.core.dispatch.Invoker;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.parsing.Invocation;
+
+/**
+ * Test for compiled validation plans.
+ *
+ * @author Andrey Minov
+ */
+public class ValidationPlanTest {
+  private static final ValidatorFactory FACTORY = Validation.buildDefaultValidatorFactory();
+
+  private Invocation invocation;
+  private RequestContext context;
+
+  private static Method method(String name) {
+    for (Method method : Service.class.getMethods()) {
+      if (method.getName().equals(name)) {
+        return method;
+      }
+    }
+    throw new IllegalArgumentException(name);
+  }
+
+  @Before
+  public void setUp() {
+    invocation = mock(Invocation.class);
+    when(invocation.getParamCount()).thenReturn(3);
+    context = new RequestContext();
+    context.begin(null, invocation);
+  }
+
+  @Test
+  public void testNotConstrainedMethodSkipped() {
+    assertSame(ValidationPlan.NONE,
+        ValidationPlan.compile(FACTORY, method("plain"), new Binder[1]));
+  }
+
+  @Test
+  public void testPrimitiveNotNull() {
+    Binder[] binders = {new DoubleBinder(0, null, null), new IntBinder(1, null, null)};
+    ValidationPlan plan = ValidationPlan.compile(FACTORY, method("location"), binders);
+    assertTrue(plan.isCompiled());
+    context.setDouble(0, 31.0);
+    context.setInt(1, 5);
+    assertNull(plan.validate(context));
+    context.setMissing(0);
+    assertEquals("Longitude cannot be empty!", plan.validate(context));
+    context.setDouble(0, 31.0);
+    context.setInt(1, 11);
+    assertEquals("must be less than or equal to 10", plan.validate(context));
+  }
+
+  @Test
+  public void testSizedConstraints() {
+    Binder[] binders = {new ObjectBinder(0, c -> null), new ObjectBinder(1, c -> null)};
+    ValidationPlan plan = ValidationPlan.compile(FACTORY, method("city"), binders);
+    assertTrue(plan.isCompiled());
+    context.setArgument(0, "Kiev");
+    context.setArgument(1, Collections.singletonList("a"));
+    assertNull(plan.validate(context));
+    context.setArgument(0, "");
+    assertEquals("may not be empty", plan.validate(context));
+    context.setArgument(0, "Kiev");
+    context.setArgument(1, Collections.emptyList());
+    assertEquals("size must be between 1 and 3", plan.validate(context));
+  }
+
+  @Test
+  public void testNotCompiledConstraintFallback() throws Exception {
+    Binder[] binders = {new ObjectBinder(0, c -> null)};
+    ValidationPlan plan = ValidationPlan.compile(FACTORY, method("code"), binders);
+    assertFalse(plan.isCompiled());
+    when(invocation.getBinders()).thenReturn(binders);
+    when(invocation.getInvoker()).thenReturn(Invoker.bind(method("code"), new Service()));
+    when(invocation.getParamCount()).thenReturn(1);
+    context.setArgument(0, "abc");
+    assertNull(plan.validate(context));
+    context.setArgument(0, "a1");
+    assertEquals("must match \"[a-z]+\"", plan.validate(context));
+  }
+
+  public static class Service {
+    public String plain(String value) {
+      return value;
+    }
+
+    public String location(@NotNull(message = "Longitude cannot be empty!") double longitude,
+                           @Min(1) @Max(10) int zoom) {
+      return null;
+    }
+
+    public String city(@NotEmpty String city, @Size(min = 1, max = 3) List<String> tags) {
+      return city;
+    }
+
+    public String code(@Pattern(regexp = "[a-z]+") String code) {
+      return code;
+    }
+  }
+}
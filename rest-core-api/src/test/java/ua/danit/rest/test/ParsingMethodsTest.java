@@ -20,6 +20,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import ua.danit.rest.core.ServicesStore;
 import ua.danit.rest.core.convertors.ConvertersStore;
+import ua.danit.rest.core.dispatch.RequestContext;
 import ua.danit.rest.core.parsing.Invocation;
 import ua.danit.rest.core.parsing.MethodType;
 import ua.danit.rest.core.parsing.ReflectionServiceParser;
@@ -47,6 +48,12 @@ public class ParsingMethodsTest {
     return result;
   }
 
+  private static Object[] fill(Invocation invocation, HttpServletRequest request) {
+    RequestContext context = new RequestContext();
+    context.begin(request, invocation);
+    return fillParameters(invocation, context);
+  }
+
   @Before
   public void setUp() throws Exception {
     request = mock(HttpServletRequest.class);
@@ -63,7 +70,7 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.GET, "/run/workouts");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {10, 1, 2017L}, parameters);
   }
 
@@ -76,7 +83,7 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/pace");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {10, "test"}, parameters);
   }
 
@@ -88,7 +95,7 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/map");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {new RunService.MapEntry("Kiev", new String[] {"1", "2", "3"})}, parameters);
   }
 
@@ -100,7 +107,7 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/binary");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {new byte[] {1, 2, 3}}, parameters);
   }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package ua.danit.rest.benchmarks;
+
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.CookieParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * Resource dispatched by benchmarks. Methods return constant values, so measurements show the
+ * cost of the dispatching itself rather than of the business logic.
+ *
+ * @author Andrey Minov
+ */
+@Path("/bench")
+public class BenchmarkResource {
+  private static final String RESULT = "OK";
+
+  @GET
+  @Path("/query")
+  @Produces(MediaType.TEXT_PLAIN)
+  public String query(@QueryParam("count") int count, @QueryParam("ratio") double ratio) {
+    return RESULT;
+  }
+
+  @GET
+  @Path("/items/{city}/{id}")
+  @Produces(MediaType.TEXT_PLAIN)
+  public String item(@PathParam("city") String city, @PathParam("id") long id,
+                     @CookieParam("session") String session) {
+    return RESULT;
+  }
+
+  @GET
+  @Path("/checked")
+  @Produces(MediaType.TEXT_PLAIN)
+  public String checked(@NotNull @QueryParam("city") String city) {
+    return RESULT;
+  }
+
+  @GET
+  @Path("/byCity")
+  @Produces(MediaType.TEXT_PLAIN)
+  public String byCity(@NotEmpty(message = "City cannot be empty!") @QueryParam("city") String city,
+                       @NotEmpty(message = "Country cannot be empty!") @QueryParam("country")
+                           String country) {
+    return RESULT;
+  }
+
+  @GET
+  @Path("/byLocation")
+  @Produces(MediaType.TEXT_PLAIN)
+  public String byLocation(
+      @NotNull(message = "Longitude cannot be empty!") @QueryParam("longitude") double longitude,
+      @NotNull(message = "Latitude cannot be empty!") @QueryParam("latitude") double latitude) {
+    return RESULT;
+  }
+
+  @GET
+  @Path("/blocking")
+  @Produces(MediaType.TEXT_PLAIN)
+  public String blocking(@QueryParam("millis") long millis) throws InterruptedException {
+    Thread.sleep(millis);
+    return RESULT;
+  }
+}
@@ -0,0 +1,101 @@
+package ua.danit.rest.benchmarks;
+
+import static ua.danit.rest.core.ApplicationBuilder.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.core.ExecutionMode;
+import ua.danit.rest.core.ReflectionServiceSupplier;
+import ua.danit.rest.core.RestApplication;
+import ua.danit.rest.core.RestApplicationDelegate;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Compares throughput of the server for resource blocking for 50 ms, when methods are executed on
+ * server thread pool and on virtual threads.
+ * <p/>
+ * Every benchmark thread is a client calling resource over keep-alive HTTP connection, number of
+ * clients is higher than the size of default server pool, so in platform mode requests wait for
+ * free thread of the pool. Virtual mode requires Java 21:
+ * <pre>
+ *   java -jar rest_benchmarks/target/benchmarks.jar BlockingLoadBenchmark
+ * </pre>
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(BlockingLoadBenchmark.CLIENTS)
+@Fork(1)
+public class BlockingLoadBenchmark {
+  static final int CLIENTS = 512;
+  private static final int PORT = 3480;
+  private static final int BLOCKING_MILLIS = 50;
+
+  @Param({"PLATFORM", "VIRTUAL"})
+  public ExecutionMode mode;
+
+  private RestApplication application;
+  private URL url;
+
+  /**
+   * Start application in the execution mode measured.
+   *
+   * @throws Exception when application cannot be started.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    System.setProperty("http.maxConnections", String.valueOf(CLIENTS));
+    application = new RestApplicationDelegate(
+        builder().withPort(PORT).withMatchingUrls("/resources/*").withExecutionMode(mode)
+                 .withService(BenchmarkResource.class)
+                 .build(new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse));
+    application.start(false);
+    url = new URL(String.format("http://localhost:%d/resources/bench/blocking?millis=%d", PORT,
+        BLOCKING_MILLIS));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    application.stop();
+  }
+
+  /**
+   * Call blocking resource and read response fully, so connection is reused by next call.
+   *
+   * @return the status of the response.
+   * @throws IOException when request fails.
+   */
+  @Benchmark
+  public int blockingResource() throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    int status = connection.getResponseCode();
+    try (InputStream stream = connection.getInputStream()) {
+      while (stream.read() >= 0) {
+        continue;
+      }
+    }
+    return status;
+  }
+}
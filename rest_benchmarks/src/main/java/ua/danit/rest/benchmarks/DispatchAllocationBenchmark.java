@@ -0,0 +1,89 @@
+package ua.danit.rest.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.core.DispatcherServlet;
+import ua.danit.rest.core.ReflectionServiceSupplier;
+import ua.danit.rest.core.ServicesStore;
+import ua.danit.rest.core.convertors.ConvertersStore;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Measures cost of dispatching single request through {@link DispatcherServlet} with in-memory
+ * request and response, so network stack and servlet container are excluded.
+ * <p/>
+ * Run with GC profiler to see number of bytes allocated per request:
+ * <pre>
+ *   java -jar rest_benchmarks/target/benchmarks.jar DispatchAllocationBenchmark -prof gc
+ * </pre>
+ * Value of gc.alloc.rate.norm is the number of bytes allocated per dispatched request.
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchAllocationBenchmark {
+  private static final String SERVLET_PATH = "/resources";
+
+  private DispatcherServlet servlet;
+  private StubHttpRequest queryRequest;
+  private StubHttpRequest pathRequest;
+  private StubHttpRequest checkedRequest;
+  private StubHttpResponse response;
+
+  /**
+   * Register benchmark resource and prepare requests.
+   */
+  @Setup
+  public void setUp() {
+    ServicesStore servicesStore = new ServicesStore(new ConvertersStore(),
+        new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse);
+    servicesStore.addService(BenchmarkResource.class);
+    servlet = new DispatcherServlet(servicesStore);
+    queryRequest = new StubHttpRequest("GET", SERVLET_PATH, SERVLET_PATH + "/bench/query")
+        .withParameter("count", "42").withParameter("ratio", "0.5");
+    pathRequest = new StubHttpRequest("GET", SERVLET_PATH, SERVLET_PATH + "/bench/items/Kiev/42")
+        .withCookies(new Cookie("locale", "uk"), new Cookie("session", "7f3a"));
+    checkedRequest = new StubHttpRequest("GET", SERVLET_PATH, SERVLET_PATH + "/bench/checked")
+        .withParameter("city", "Kiev");
+    response = new StubHttpResponse();
+  }
+
+  private int dispatch(StubHttpRequest request) throws ServletException, IOException {
+    response.reset();
+    servlet.service(request, response);
+    return response.getStatus();
+  }
+
+  @Benchmark
+  public int queryParams() throws ServletException, IOException {
+    return dispatch(queryRequest);
+  }
+
+  @Benchmark
+  public int pathParamsAndCookie() throws ServletException, IOException {
+    return dispatch(pathRequest);
+  }
+
+  @Benchmark
+  public int validatedParams() throws ServletException, IOException {
+    return dispatch(checkedRequest);
+  }
+}
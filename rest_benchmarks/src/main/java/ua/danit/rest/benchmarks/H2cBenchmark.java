@@ -0,0 +1,112 @@
+package ua.danit.rest.benchmarks;
+
+import static ua.danit.rest.core.ApplicationBuilder.builder;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.core.ReflectionServiceSupplier;
+import ua.danit.rest.core.RestApplication;
+import ua.danit.rest.core.RestApplicationDelegate;
+import ua.danit.rest.core.ServerProfile;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+import ua.danit.rest.weatherapp.impl.ext.InMemoryMeasureService;
+import ua.danit.rest.weatherapp.impl.resources.WeatherSelectResource;
+
+/**
+ * Compares multiplexed HTTP/2 cleartext connection against pool of HTTP/1.1 keep-alive
+ * connections for many small GET /weather/get/byCity requests over loopback.
+ * <p/>
+ * Every benchmark thread sends request and waits for the response. HTTP/1.1 client opens
+ * connection per concurrent request, h2c client sends all requests as streams of single
+ * connection. Number of connections opened by the client is printed after the trial.
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(H2cBenchmark.CLIENTS)
+@Fork(1)
+public class H2cBenchmark {
+  static final int CLIENTS = 64;
+  private static final int PORT = 3481;
+
+  @Param({"HTTP_1_1", "H2C"})
+  public String protocol;
+
+  private RestApplication application;
+  private HttpClient client;
+  private String uri;
+
+  /**
+   * Start weather application serving h2c and HTTP/1.1 and client of measured protocol.
+   *
+   * @throws Exception when application or client cannot be started.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    InMemoryMeasureService measureService = new InMemoryMeasureService();
+    measureService.storeMeasure("Kiev", "Ukraine",
+        new Measure(7, WeatherCode.CLOUDY, ZonedDateTime.now(ZoneOffset.UTC)));
+    application = new RestApplicationDelegate(
+        builder().withPort(PORT).withMatchingUrls("/resources/*")
+                 .withServerProfile(ServerProfile.defaults().withHttp2Cleartext()
+                                                 .withMaxConcurrentStreams(CLIENTS * 2))
+                 .withServiceInstance(new WeatherSelectResource(measureService))
+                 .build(new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse));
+    application.start(false);
+
+    if ("H2C".equals(protocol)) {
+      client = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()), null);
+      // all requests are multiplexed over single connection.
+      client.setMaxConnectionsPerDestination(1);
+    } else {
+      client = new HttpClient();
+      client.setMaxConnectionsPerDestination(CLIENTS);
+    }
+    client.start();
+    uri = String.format("http://localhost:%d/resources/weather/get/byCity?city=Kiev"
+        + "&country=Ukraine", PORT);
+  }
+
+  /**
+   * Stop client and application, print number of connections used.
+   *
+   * @throws Exception when client or application cannot be stopped.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    System.out.printf("%n%s connections opened: %d%n", protocol,
+        application.getTelemetry().getConnectionsTotal());
+    client.stop();
+    application.stop();
+  }
+
+  @Benchmark
+  public int byCity() throws Exception {
+    return client.GET(uri).getStatus();
+  }
+}
@@ -0,0 +1,140 @@
+package ua.danit.rest.benchmarks;
+
+import static ua.danit.rest.core.parsing.MethodType.GET;
+import static ua.danit.rest.core.utils.Reflections.bindParameters;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.core.ReflectionServiceSupplier;
+import ua.danit.rest.core.ServicesStore;
+import ua.danit.rest.core.convertors.ConvertersStore;
+import ua.danit.rest.core.dispatch.Invoker;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.parsing.Invocation;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Compares calling service method through {@link Invoker} with reflective
+ * {@link Method#invoke(Object, Object...)} used by dispatcher before. Method has primitive
+ * parameters, arguments are passed boxed in array as dispatcher does. Spread method handle bound to
+ * instance and direct call are given for reference.
+ * <p/>
+ * Dispatcher calls {@link Invoker#invoke(RequestContext)} of the invoker bound by service parser,
+ * with arguments bound into request context. It is measured for method with int and double
+ * parameters kept in primitive slots, for method with string parameters and for calls rotating
+ * over methods of 4 different signatures, as dispatcher calls them serving different resources.
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokerBenchmark {
+  private static final String SERVLET_PATH = "/resources";
+
+  private BenchmarkResource resource;
+  private Method method;
+  private Invoker invoker;
+  private MethodHandle handle;
+  private Object[] arguments;
+  private Invoker[] invokers;
+  private RequestContext[] contexts;
+  private int next;
+
+  /**
+   * Resolve method and create invokers.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    resource = new BenchmarkResource();
+    method = BenchmarkResource.class.getMethod("query", int.class, double.class);
+    invoker = Invoker.bind(method, resource);
+    handle = MethodHandles.lookup().unreflect(method).asSpreader(Object[].class, 2)
+        .asType(MethodType.methodType(Object.class, Object.class, Object[].class))
+        .bindTo(resource);
+    arguments = new Object[] {42, 0.5};
+
+    ServicesStore servicesStore = new ServicesStore(new ConvertersStore(),
+        new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse);
+    servicesStore.addService(BenchmarkResource.class);
+    StubHttpRequest[] requests = {
+        new StubHttpRequest("GET", SERVLET_PATH, "/bench/query").withParameter("count", "42")
+            .withParameter("ratio", "0.5"),
+        new StubHttpRequest("GET", SERVLET_PATH, "/bench/byLocation")
+            .withParameter("longitude", "31.0").withParameter("latitude", "51.0"),
+        new StubHttpRequest("GET", SERVLET_PATH, "/bench/items/Kiev/7")
+            .withCookies(new Cookie("session", "s1")),
+        new StubHttpRequest("GET", SERVLET_PATH, "/bench/byCity").withParameter("city", "Kiev")
+            .withParameter("country", "Ukraine")};
+    invokers = new Invoker[requests.length];
+    contexts = new RequestContext[requests.length];
+    for (int i = 0; i < requests.length; i++) {
+      contexts[i] = new RequestContext();
+      Invocation invocation = servicesStore.getServiceMeta(GET,
+          requests[i].getRequestURI(), 0, contexts[i].getPathMatch());
+      contexts[i].begin(requests[i], invocation);
+      bindParameters(invocation, contexts[i]);
+      invokers[i] = invocation.getInvoker();
+    }
+  }
+
+  @Benchmark
+  public Object direct() {
+    return resource.query((Integer) arguments[0], (Double) arguments[1]);
+  }
+
+  @Benchmark
+  public Object reflection() throws Exception {
+    return method.invoke(resource, arguments);
+  }
+
+  @Benchmark
+  public Object methodHandle() throws Throwable {
+    return (Object) handle.invokeExact(arguments);
+  }
+
+  @Benchmark
+  public Object invoker() throws Exception {
+    return invoker.invoke(arguments);
+  }
+
+  @Benchmark
+  public Object invokerContextPrimitive() throws Exception {
+    return invokers[0].invoke(contexts[0]);
+  }
+
+  @Benchmark
+  public Object invokerContextObject() throws Exception {
+    return invokers[3].invoke(contexts[3]);
+  }
+
+  /**
+   * Call methods of different signatures in turn, as dispatcher does for different resources.
+   *
+   * @return the method result.
+   * @throws Exception exception thrown by the service method.
+   */
+  @Benchmark
+  public Object invokerContextMixed() throws Exception {
+    next = (next + 1) & 3;
+    return invokers[next].invoke(contexts[next]);
+  }
+}
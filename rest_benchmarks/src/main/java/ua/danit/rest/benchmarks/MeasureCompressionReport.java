@@ -0,0 +1,200 @@
+package ua.danit.rest.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.entity.Weather;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+import ua.danit.rest.weatherapp.impl.ext.InMemoryMeasureService;
+import ua.danit.rest.weatherapp.impl.ext.MeasureRetention;
+
+/**
+ * Report of compression of measurement history in {@link InMemoryMeasureService}: heap taken per
+ * reading and scan throughput of history kept in primitive columns against history compressed
+ * into chunks. Columns are kept when reorder window covers whole history.
+ * <p/>
+ * Synthetic data is 1000 stations: regular station measures every 10 minutes with temperature
+ * following day cycle, irregular station measures with jitter of seconds and noisy temperature.
+ * Recorded data is read from file of weather records in JSON, one record per line, the same as
+ * body of <i>/weather/submit/measurements</i>.
+ * <p/>
+ * Run with heap large enough for both layouts, for example:
+ * <pre>
+ * java -Xmx2g -cp rest_benchmarks/target/benchmarks.jar \
+ *     ua.danit.rest.benchmarks.MeasureCompressionReport 1000000 recorded.ndjson
+ * </pre>
+ *
+ * @author Andrey Minov
+ */
+public class MeasureCompressionReport {
+  private static final int STATIONS = 1000;
+  private static final int SCANS = 5;
+  private static final long START = Instant.parse("2017-01-01T00:00:00Z").toEpochMilli();
+  private static final long INTERVAL = 600_000;
+  private static final WeatherCode[] CODES = WeatherCode.values();
+
+  /**
+   * Fill history of every data set in both layouts and print heap per reading and scan speed.
+   *
+   * @param args the number of synthetic readings, 1 000 000 by default, and optional file of
+   *             recorded weather records.
+   * @throws IOException          when recorded data cannot be read.
+   * @throws InterruptedException when interrupted waiting for GC.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int readings = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    Map<String, List<MeasureRecord>> datasets = new LinkedHashMap<>();
+    datasets.put("regular", synthetic(readings, false));
+    datasets.put("irregular", synthetic(readings, true));
+    if (args.length > 1) {
+      datasets.put("recorded", recorded(args[1]));
+    }
+
+    // warm up, so classes initialized by the first run are not counted as history.
+    List<MeasureRecord> warmUp = synthetic(STATIONS * 10, false);
+    measure(warmUp, MeasureRetention.defaults().withMaxCount(10).withReorderWindow(10));
+    measure(warmUp, MeasureRetention.defaults().withMaxCount(10));
+
+    List<String> rows = new ArrayList<>();
+    for (Map.Entry<String, List<MeasureRecord>> dataset : datasets.entrySet()) {
+      List<MeasureRecord> records = dataset.getValue();
+      int maxCount = maxPerPlace(records);
+      long[] columns = measure(records, MeasureRetention.defaults().withMaxCount(maxCount)
+          .withReorderWindow(maxCount));
+      long[] compressed = measure(records, MeasureRetention.defaults().withMaxCount(maxCount));
+      rows.add(row(dataset.getKey(), "columns", records.size(), columns, columns[0]));
+      rows.add(row(dataset.getKey(), "compressed", records.size(), compressed, columns[0]));
+    }
+    System.out.printf("%n%-10s %-10s %12s %14s %8s %18s%n", "Data", "Layout", "Readings",
+        "Bytes/reading", "Ratio", "Scan readings/s");
+    rows.forEach(System.out::println);
+  }
+
+  private static String row(String dataset, String layout, int readings, long[] result,
+                            long columnBytes) {
+    return String.format("%-10s %-10s %,12d %14.2f %8.1f %,18.0f", dataset, layout, readings,
+        (double) result[0] / readings, (double) columnBytes / result[0],
+        result[1] * 1e9 / result[2]);
+  }
+
+  private static long[] measure(List<MeasureRecord> records, MeasureRetention retention)
+      throws InterruptedException {
+    long before = usedHeap();
+    InMemoryMeasureService service = new InMemoryMeasureService(retention, false);
+    Map<String, MeasureRecord> places = new LinkedHashMap<>();
+    for (MeasureRecord record : records) {
+      if (record.isCityRecord()) {
+        service.storeMeasure(record.getCity(), record.getCountry(), record.getMeasure());
+      } else {
+        service.storeMeasure(record.getLocation().getLongitude(),
+            record.getLocation().getLatitude(), record.getMeasure());
+      }
+      places.putIfAbsent(key(record), record);
+    }
+    final long bytes = usedHeap() - before;
+
+    long scanned = 0;
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < SCANS; i++) {
+      long start = System.nanoTime();
+      scanned = 0;
+      for (MeasureRecord place : places.values()) {
+        scanned += (place.isCityRecord() ? service.getMeasures(place.getCity(),
+            place.getCountry()) : service.getMeasures(place.getLocation().getLongitude(),
+            place.getLocation().getLatitude())).size();
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    if (scanned + service.getDroppedMeasures() != records.size()) {
+      throw new IllegalStateException("Scanned " + scanned + " of " + records.size()
+          + " readings!");
+    }
+    return new long[] {bytes, scanned, best};
+  }
+
+  private static List<MeasureRecord> synthetic(int readings, boolean irregular) {
+    Random random = new Random(42);
+    List<MeasureRecord> records = new ArrayList<>(readings);
+    int perStation = readings / STATIONS;
+    for (int station = 0; station < STATIONS; station++) {
+      String city = "City" + station;
+      int code = station % CODES.length;
+      for (int i = 0; i < perStation; i++) {
+        long time = START + i * INTERVAL;
+        double temperature = 10 + station % 20 + 8 * Math.sin(2 * Math.PI * i / 144.0);
+        if (irregular) {
+          time += random.nextInt(40_000) - 20_000;
+          temperature += random.nextGaussian();
+          code = random.nextInt(20) == 0 ? random.nextInt(CODES.length) : code;
+        } else if (i % 36 == 0) {
+          code = (code + 1) % CODES.length;
+        }
+        records.add(MeasureRecord.forCity(city, "Ukraine", new Measure(
+            Math.round(temperature * 10) / 10.0, CODES[code],
+            Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC))));
+      }
+    }
+    return records;
+  }
+
+  private static List<MeasureRecord> recorded(String path) throws IOException {
+    Gson gson = new Gson();
+    List<MeasureRecord> records = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        Weather weather = gson.fromJson(line, Weather.class);
+        Measure measure = new Measure(weather.getTemperature(), weather.getWeatherCode(),
+            LocalDateTime.parse(weather.getMeasureTime()).atZone(ZoneOffset.UTC));
+        records.add(weather.getCity() != null
+            ? MeasureRecord.forCity(weather.getCity(), weather.getCountry(), measure)
+            : MeasureRecord.forLocation(weather.getLocation().getLongitude(),
+                weather.getLocation().getLatitude(), measure));
+      }
+    }
+    return records;
+  }
+
+  private static int maxPerPlace(List<MeasureRecord> records) {
+    Map<String, Integer> counts = new HashMap<>();
+    for (MeasureRecord record : records) {
+      counts.merge(key(record), 1, Integer::sum);
+    }
+    return counts.values().stream().mapToInt(Integer::intValue).max().orElse(1);
+  }
+
+  private static String key(MeasureRecord record) {
+    return record.isCityRecord() ? record.getCity() + '\0' + record.getCountry()
+        : Math.floor(record.getLocation().getLongitude()) + ","
+            + Math.floor(record.getLocation().getLatitude());
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(200);
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
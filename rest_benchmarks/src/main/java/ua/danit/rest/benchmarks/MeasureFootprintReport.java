@@ -0,0 +1,86 @@
+package ua.danit.rest.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+import ua.danit.rest.weatherapp.impl.ext.InMemoryMeasureService;
+import ua.danit.rest.weatherapp.impl.ext.MeasureRetention;
+
+/**
+ * Report of heap taken by measurement history: rings of {@link Measure} objects, as history was
+ * kept before, against columns of primitive arrays of {@link InMemoryMeasureService}. Readings are
+ * spread over 1000 cities, heap used after full GC is compared before and after history is filled.
+ * <p/>
+ * Run with heap large enough for object layout, for example:
+ * <pre>
+ * java -Xmx3g -cp rest_benchmarks/target/benchmarks.jar \
+ *     ua.danit.rest.benchmarks.MeasureFootprintReport 10000000
+ * </pre>
+ *
+ * @author Andrey Minov
+ */
+public class MeasureFootprintReport {
+  private static final int PLACES = 1000;
+  private static final long START = Instant.parse("2017-01-01T00:00:00Z").toEpochMilli();
+  private static final WeatherCode[] CODES = WeatherCode.values();
+
+  /**
+   * Fill history in both layouts and print bytes taken per reading.
+   *
+   * @param args the number of readings, 10 000 000 by default.
+   * @throws InterruptedException when interrupted waiting for GC.
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int readings = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    int perPlace = readings / PLACES;
+
+    long before = usedHeap();
+    // reorder window of whole history keeps it in columns, see MeasureCompressionReport.
+    InMemoryMeasureService service = new InMemoryMeasureService(MeasureRetention.defaults()
+        .withMaxCount(perPlace).withReorderWindow(perPlace), false);
+    for (int place = 0; place < PLACES; place++) {
+      String city = "City" + place;
+      for (int i = 0; i < perPlace; i++) {
+        service.storeMeasure(city, "Ukraine", measure(i));
+      }
+    }
+    final long columnBytes = usedHeap() - before;
+    System.out.println("Readings kept by place: " + service.getMeasures("City0", "Ukraine")
+        .size());
+    service = null;
+
+    before = usedHeap();
+    Measure[][] objects = new Measure[PLACES][perPlace];
+    for (int place = 0; place < PLACES; place++) {
+      for (int i = 0; i < perPlace; i++) {
+        objects[place][i] = measure(i);
+      }
+    }
+    final long objectBytes = usedHeap() - before;
+    System.out.println("Rings kept: " + objects.length);
+
+    long total = (long) perPlace * PLACES;
+    System.out.printf("%nReadings: %,d in %d places%n", total, PLACES);
+    System.out.printf("%-10s %16s %16s%n", "Layout", "Heap bytes", "Bytes/reading");
+    System.out.printf("%-10s %,16d %16.1f%n", "objects", objectBytes,
+        (double) objectBytes / total);
+    System.out.printf("%-10s %,16d %16.1f%n", "columns", columnBytes,
+        (double) columnBytes / total);
+  }
+
+  private static Measure measure(int index) {
+    return new Measure(-10 + index % 400 / 10.0, CODES[index % CODES.length],
+        Instant.ofEpochMilli(START + index * 60_000L).atZone(ZoneOffset.UTC));
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(200);
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
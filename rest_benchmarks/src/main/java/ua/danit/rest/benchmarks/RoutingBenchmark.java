@@ -0,0 +1,108 @@
+package ua.danit.rest.benchmarks;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.core.routing.PathMatch;
+import ua.danit.rest.core.routing.RouteTrie;
+
+/**
+ * Compares segment trie routing with exact match map used by services store before.
+ * <p/>
+ * Routes are spread over 16 services, every service has literal route and template route with
+ * path variable. Paths to lookup are picked randomly from registered ones and prefixed with servlet
+ * path as request URIs are. Exact map lookup is measured both with cached key hash (lower bound)
+ * and with key cut from request URI, which is the minimal work exact map needs per request.
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+  private static final int SERVICES = 16;
+  private static final int PATHS = 1024;
+  private static final String SERVLET_PATH = "/resources";
+
+  @Param({"10", "100", "1000", "10000"})
+  public int routes;
+
+  private Map<String, Object> exactRoutes;
+  private RouteTrie<Object> trieRoutes;
+  private PathMatch match;
+  private String[] literalPaths;
+  private String[] literalUris;
+  private String[] templateUris;
+  private int cursor;
+
+  /**
+   * Register routes and prepare paths for lookup.
+   */
+  @Setup
+  public void setUp() {
+    exactRoutes = new ConcurrentHashMap<>();
+    trieRoutes = new RouteTrie<>();
+    match = new PathMatch();
+    for (int i = 0; i < routes; i++) {
+      String literal = String.format("/service%d/resource%d/get", i % SERVICES, i);
+      Object value = new Object();
+      exactRoutes.put(literal, value);
+      trieRoutes.add(literal, value);
+      trieRoutes.add(String.format("/service%d/resource%d/{id}/details", i % SERVICES, i), value);
+    }
+    Random random = new Random(routes);
+    literalPaths = new String[PATHS];
+    literalUris = new String[PATHS];
+    templateUris = new String[PATHS];
+    for (int i = 0; i < PATHS; i++) {
+      int route = random.nextInt(routes);
+      literalPaths[i] = String.format("/service%d/resource%d/get", route % SERVICES, route);
+      literalUris[i] = SERVLET_PATH + literalPaths[i];
+      templateUris[i] = SERVLET_PATH + String
+          .format("/service%d/resource%d/%d/details", route % SERVICES, route, random.nextInt());
+    }
+    // compile trie before measurement
+    trieRoutes.match(literalPaths[0], 0, match);
+  }
+
+  private int next() {
+    cursor = (cursor + 1) & (PATHS - 1);
+    return cursor;
+  }
+
+  @Benchmark
+  public Object exactMap() {
+    return exactRoutes.get(literalPaths[next()]);
+  }
+
+  @Benchmark
+  public Object exactMapFromRequestUri() {
+    return exactRoutes.get(literalUris[next()].substring(SERVLET_PATH.length()));
+  }
+
+  @Benchmark
+  public Object trieLiteral() {
+    return trieRoutes.match(literalUris[next()], SERVLET_PATH.length(), match);
+  }
+
+  @Benchmark
+  public Object trieTemplate() {
+    return trieRoutes.match(templateUris[next()], SERVLET_PATH.length(), match);
+  }
+}
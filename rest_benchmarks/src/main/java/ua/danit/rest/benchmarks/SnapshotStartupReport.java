@@ -0,0 +1,158 @@
+package ua.danit.rest.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+import ua.danit.rest.weatherapp.impl.ext.InMemoryMeasureService;
+import ua.danit.rest.weatherapp.impl.ext.LoggedMeasureService;
+import ua.danit.rest.weatherapp.impl.ext.MeasureLogSettings;
+import ua.danit.rest.weatherapp.impl.ext.MeasureRetention;
+import ua.danit.rest.weatherapp.impl.ext.SyncPolicy;
+
+/**
+ * Report of startup time of measurement store with given number of city keys: full replay of
+ * measurement log against mapping of snapshot written at the log end. Time to the first read and
+ * time of random reads after start are measured as well, as places are restored from snapshot
+ * when they are read first time.
+ * <p/>
+ * Log is written into single segment, so it is not deleted by snapshots and can be replayed in
+ * full. Log and snapshot are written by chunks of one million keys, every chunk is stored into
+ * service started from snapshot of previous chunks, so writing does not hold all keys in memory.
+ * Full replay holds all keys in memory and is skipped when heap is not large enough for them.
+ * <p/>
+ * Run with large heap, for example:
+ * <pre>
+ * java -Xmx4g -cp rest_benchmarks/target/benchmarks.jar \
+ *     ua.danit.rest.benchmarks.SnapshotStartupReport 1000000 10000000
+ * </pre>
+ *
+ * @author Andrey Minov
+ */
+public class SnapshotStartupReport {
+  private static final int BATCH = 1024;
+  private static final int CHUNK = 1_000_000;
+  private static final long BYTES_PER_KEY = 500;
+  private static final int READS = 100_000;
+  private static final long START = Instant.parse("2017-01-01T00:00:00Z").toEpochMilli();
+  private static final WeatherCode[] CODES = WeatherCode.values();
+  private static final MeasureLogSettings SETTINGS = MeasureLogSettings.defaults()
+      .withSyncPolicy(SyncPolicy.NONE).withSnapshotInterval(0).withSegmentSize(Long.MAX_VALUE);
+
+  /**
+   * Write log and snapshot for every number of keys and print startup times.
+   *
+   * @param args the numbers of keys, 1 000 000 and 10 000 000 by default.
+   * @throws IOException when log or snapshot cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    String[] counts = args.length > 0 ? args : new String[] {"1000000", "10000000"};
+    List<String> rows = new ArrayList<>();
+    for (String count : counts) {
+      rows.add(report(Integer.parseInt(count)));
+    }
+    System.out.printf("%n%-12s %14s %14s %14s %14s%n", "Keys", "Replay ms", "Snapshot ms",
+        "First read ms", "Read us (cold)");
+    rows.forEach(System.out::println);
+  }
+
+  private static String report(int keys) throws IOException {
+    Path directory = Files.createTempDirectory("snapshot-startup");
+    Path log = directory.resolve("measures.log");
+    Path snapshot = directory.resolve("measures.snapshot");
+    try {
+      write(keys, log, snapshot);
+      System.out.printf("Keys: %,d, log: %,d bytes, snapshot: %,d bytes%n", keys,
+          size(directory, "measures.log"), Files.size(snapshot));
+
+      String replayTime = "skipped";
+      if (keys * BYTES_PER_KEY < Runtime.getRuntime().maxMemory()) {
+        long start = System.nanoTime();
+        InMemoryMeasureService replayed = new InMemoryMeasureService(false);
+        LoggedMeasureService.open(replayed, log, SETTINGS).close();
+        replayTime = String.format("%.1f", (System.nanoTime() - start) / 1e6);
+        check(replayed, keys - 1);
+        replayed = null;
+        System.gc();
+      }
+
+      long start = System.nanoTime();
+      InMemoryMeasureService mapped = new InMemoryMeasureService(MeasureRetention.defaults(),
+          false, snapshot);
+      final LoggedMeasureService service = LoggedMeasureService.open(mapped, log, SETTINGS);
+      final long snapshotTime = System.nanoTime() - start;
+      check(mapped, keys / 2);
+      final long firstReadTime = System.nanoTime() - start;
+
+      Random random = new Random(42);
+      start = System.nanoTime();
+      for (int i = 0; i < READS; i++) {
+        check(mapped, random.nextInt(keys));
+      }
+      final long readTime = System.nanoTime() - start;
+      service.close();
+
+      return String.format("%-12s %14s %14.1f %14.1f %14.2f", String.format("%,d", keys),
+          replayTime, snapshotTime / 1e6, firstReadTime / 1e6, readTime / 1e3 / READS);
+    } finally {
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          Files.delete(file);
+        }
+      }
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  private static long size(Path directory, String prefix) throws IOException {
+    long size = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (file.getFileName().toString().startsWith(prefix)) {
+          size += Files.size(file);
+        }
+      }
+    }
+    return size;
+  }
+
+  private static void write(int keys, Path log, Path snapshot) throws IOException {
+    for (int chunk = 0; chunk < keys; chunk += CHUNK) {
+      InMemoryMeasureService store = new InMemoryMeasureService(MeasureRetention.defaults(),
+          false, snapshot);
+      try (LoggedMeasureService service = LoggedMeasureService.open(store, log, SETTINGS)) {
+        List<MeasureRecord> batch = new ArrayList<>(BATCH);
+        int end = Math.min(keys, chunk + CHUNK);
+        for (int i = chunk; i < end; i++) {
+          batch.add(MeasureRecord.forCity("City" + i, "Ukraine", measure(i)));
+          if (batch.size() == BATCH || i == end - 1) {
+            service.storeMeasures(batch);
+            batch.clear();
+          }
+        }
+        service.snapshot();
+      }
+    }
+  }
+
+  private static void check(InMemoryMeasureService service, int key) {
+    Measure measure = service.getCurrentWeather("City" + key, "Ukraine");
+    if (measure == null || !measure.equals(measure(key))) {
+      throw new IllegalStateException("Measurement of City" + key + " is not restored!");
+    }
+  }
+
+  private static Measure measure(int index) {
+    return new Measure(-10 + index % 160 / 4.0, CODES[index % CODES.length],
+        Instant.ofEpochMilli(START + index * 60_000L).atZone(ZoneOffset.UTC));
+  }
+}
@@ -0,0 +1,103 @@
+package ua.danit.rest.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.weatherapp.impl.ext.SpatialIndex;
+
+/**
+ * Compares queries of the nearest places and places within radius in {@link SpatialIndex} with scan
+ * of all places, for stations spread uniformly on the Earth surface.
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SpatialIndexBenchmark {
+  private static final int QUERIES = 1024;
+  private static final int NEAREST = 10;
+  private static final double RADIUS = 50;
+
+  @Param({"10000", "1000000"})
+  private int stations;
+
+  private SpatialIndex<Integer> index;
+  private double[] longitudes;
+  private double[] latitudes;
+  private double[][] queries;
+  private int query;
+
+  private static double latitude(Random random) {
+    return Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+  }
+
+  /**
+   * Index stations and prepare query points.
+   */
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    index = new SpatialIndex<>();
+    longitudes = new double[stations];
+    latitudes = new double[stations];
+    for (int i = 0; i < stations; i++) {
+      longitudes[i] = random.nextDouble() * 360 - 180;
+      latitudes[i] = latitude(random);
+      index.add(longitudes[i], latitudes[i], i);
+    }
+    queries = new double[QUERIES][];
+    for (int i = 0; i < QUERIES; i++) {
+      queries[i] = new double[] {random.nextDouble() * 360 - 180, latitude(random)};
+    }
+  }
+
+  private double[] nextQuery() {
+    query = (query + 1) & (QUERIES - 1);
+    return queries[query];
+  }
+
+  @Benchmark
+  public List<Integer> nearestIndex() {
+    double[] point = nextQuery();
+    return index.nearest(point[0], point[1], NEAREST);
+  }
+
+  @Benchmark
+  public List<Integer> withinIndex() {
+    double[] point = nextQuery();
+    return index.within(point[0], point[1], RADIUS);
+  }
+
+  /**
+   * Count places within radius by distance to every place.
+   *
+   * @return the number of places within radius.
+   */
+  @Benchmark
+  public int withinScan() {
+    double[] point = nextQuery();
+    int found = 0;
+    for (int i = 0; i < stations; i++) {
+      if (SpatialIndex.distance(point[0], point[1], longitudes[i], latitudes[i]) <= RADIUS) {
+        found++;
+      }
+    }
+    return found;
+  }
+}
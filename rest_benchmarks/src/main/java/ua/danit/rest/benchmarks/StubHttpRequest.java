@@ -0,0 +1,177 @@
+package ua.danit.rest.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * In-memory HTTP request used for dispatching requests in benchmarks without network stack.
+ * <p/>
+ * Only methods used by dispatcher are implemented, other ones throw
+ * {@link UnsupportedOperationException}. Request is reusable: body stream is recreated on every
+ * call of {@link #getInputStream()} from the same bytes.
+ *
+ * @author Andrey Minov
+ */
+public class StubHttpRequest extends HttpServletRequestWrapper {
+  private static final HttpServletRequest UNSUPPORTED = (HttpServletRequest) Proxy
+      .newProxyInstance(StubHttpRequest.class.getClassLoader(),
+          new Class<?>[] {HttpServletRequest.class}, (proxy, method, args) -> {
+            throw new UnsupportedOperationException(method.getName());
+          });
+
+  private final String method;
+  private final String requestUri;
+  private final String servletPath;
+  private final Map<String, String> parameters;
+  private final Map<String, String> headers;
+  private final Map<String, Object> attributes;
+  private String queryString;
+  private Cookie[] cookies;
+  private byte[] body;
+
+  /**
+   * Instantiates a new stub request.
+   *
+   * @param method      the HTTP method, for example GET
+   * @param servletPath the servlet path, for example /resources
+   * @param requestUri  the request URI including servlet path.
+   */
+  public StubHttpRequest(String method, String servletPath, String requestUri) {
+    super(UNSUPPORTED);
+    this.method = method;
+    this.servletPath = servletPath;
+    this.requestUri = requestUri;
+    this.parameters = new HashMap<>();
+    this.headers = new HashMap<>();
+    this.attributes = new HashMap<>();
+    this.body = new byte[0];
+  }
+
+  /**
+   * Add query parameter to the request. Name and value are not escaped in query string.
+   *
+   * @param name  the name of the parameter
+   * @param value the value of the parameter
+   * @return this request.
+   */
+  public StubHttpRequest withParameter(String name, String value) {
+    parameters.put(name, value);
+    String parameter = name + "=" + value;
+    queryString = queryString == null ? parameter : queryString + "&" + parameter;
+    return this;
+  }
+
+  public StubHttpRequest withHeader(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  public StubHttpRequest withCookies(Cookie... cookies) {
+    this.cookies = cookies;
+    return this;
+  }
+
+  public StubHttpRequest withBody(byte[] body) {
+    this.body = body;
+    return this;
+  }
+
+  @Override
+  public String getMethod() {
+    return method;
+  }
+
+  @Override
+  public String getRequestURI() {
+    return requestUri;
+  }
+
+  @Override
+  public String getContextPath() {
+    return "";
+  }
+
+  @Override
+  public String getServletPath() {
+    return servletPath;
+  }
+
+  @Override
+  public String getQueryString() {
+    return queryString;
+  }
+
+  @Override
+  public String getParameter(String name) {
+    return parameters.get(name);
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  @Override
+  public String getContentType() {
+    return headers.get("Content-Type");
+  }
+
+  @Override
+  public Cookie[] getCookies() {
+    return cookies;
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public void setAttribute(String name, Object o) {
+    attributes.put(name, o);
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    attributes.remove(name);
+  }
+
+  @Override
+  public ServletInputStream getInputStream() throws IOException {
+    ByteArrayInputStream stream = new ByteArrayInputStream(body);
+    return new ServletInputStream() {
+      @Override
+      public boolean isFinished() {
+        return stream.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(ReadListener readListener) {
+        throw new UnsupportedOperationException("Blocking stream!");
+      }
+
+      @Override
+      public int read() throws IOException {
+        return stream.read();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return stream.read(b, off, len);
+      }
+    };
+  }
+}
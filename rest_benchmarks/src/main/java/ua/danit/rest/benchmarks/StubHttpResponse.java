@@ -0,0 +1,132 @@
+package ua.danit.rest.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * In-memory HTTP response used for dispatching requests in benchmarks without network stack.
+ * <p/>
+ * Body bytes are discarded, only their number is counted. Headers are not stored except content
+ * type, so writing the response does not allocate on its own. Call {@link #reset()} before reusing
+ * response for the next request.
+ *
+ * @author Andrey Minov
+ */
+public class StubHttpResponse extends HttpServletResponseWrapper {
+  private static final String CONTENT_TYPE = "Content-Type";
+  private static final HttpServletResponse UNSUPPORTED = (HttpServletResponse) Proxy
+      .newProxyInstance(StubHttpResponse.class.getClassLoader(),
+          new Class<?>[] {HttpServletResponse.class}, (proxy, method, args) -> {
+            throw new UnsupportedOperationException(method.getName());
+          });
+
+  private final ServletOutputStream outputStream;
+  private int status;
+  private String contentType;
+  private long written;
+
+  /**
+   * Instantiates a new stub response.
+   */
+  public StubHttpResponse() {
+    super(UNSUPPORTED);
+    this.status = SC_OK;
+    this.outputStream = new ServletOutputStream() {
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException("Blocking stream!");
+      }
+
+      @Override
+      public void write(int b) {
+        written++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        written += len;
+      }
+    };
+  }
+
+  /**
+   * Reset status, content type and number of written bytes.
+   */
+  @Override
+  public void reset() {
+    status = SC_OK;
+    contentType = null;
+    written = 0;
+  }
+
+  @Override
+  public int getStatus() {
+    return status;
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    this.status = sc;
+  }
+
+  public long getWritten() {
+    return written;
+  }
+
+  @Override
+  public void sendError(int sc) {
+    this.status = sc;
+  }
+
+  @Override
+  public void sendError(int sc, String msg) {
+    this.status = sc;
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+  @Override
+  public void setContentType(String type) {
+    this.contentType = type;
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    if (CONTENT_TYPE.equalsIgnoreCase(name)) {
+      contentType = value;
+    }
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    setHeader(name, value);
+  }
+
+  @Override
+  public void addCookie(Cookie cookie) {
+    // cookies are not stored.
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return written > 0;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    return outputStream;
+  }
+}
@@ -0,0 +1,102 @@
+package ua.danit.rest.benchmarks;
+
+import static ua.danit.rest.core.utils.Reflections.bindParameters;
+import static ua.danit.rest.core.utils.Reflections.boxParameters;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.executable.ExecutableValidator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.core.ReflectionServiceSupplier;
+import ua.danit.rest.core.ServicesStore;
+import ua.danit.rest.core.convertors.ConvertersStore;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.parsing.Invocation;
+import ua.danit.rest.core.parsing.MethodType;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Compares compiled validation plan with Bean Validation of method parameters used by dispatcher
+ * before. Methods have the same constraints as weather select resource: two not empty strings
+ * and two not null doubles. Arguments are bound into request context once, benchmark measures
+ * only validation of valid and invalid arguments.
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+  private static final String SERVLET_PATH = "/resources";
+  private static final ExecutableValidator VALIDATOR =
+      Validation.buildDefaultValidatorFactory().getValidator().forExecutables();
+
+  @Param({"byCity", "byLocation", "byCityInvalid"})
+  public String request;
+
+  private Invocation invocation;
+  private RequestContext context;
+  private Object[] arguments;
+
+  /**
+   * Parse resource and bind request arguments.
+   */
+  @Setup
+  public void setUp() {
+    ServicesStore servicesStore = new ServicesStore(new ConvertersStore(),
+        new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse);
+    servicesStore.addService(BenchmarkResource.class);
+    StubHttpRequest httpRequest;
+    switch (request) {
+      case "byLocation":
+        httpRequest = new StubHttpRequest("GET", SERVLET_PATH, "/bench/byLocation")
+            .withParameter("longitude", "31.0").withParameter("latitude", "51.0");
+        break;
+      case "byCityInvalid":
+        httpRequest = new StubHttpRequest("GET", SERVLET_PATH, "/bench/byCity")
+            .withParameter("city", "Kiev").withParameter("country", "");
+        break;
+      default:
+        httpRequest = new StubHttpRequest("GET", SERVLET_PATH, "/bench/byCity")
+            .withParameter("city", "Kiev").withParameter("country", "Ukraine");
+    }
+    context = new RequestContext();
+    invocation = servicesStore.getServiceMeta(MethodType.GET, httpRequest.getRequestURI(), 0,
+        context.getPathMatch());
+    context.begin(httpRequest, invocation);
+    bindParameters(invocation, context);
+    arguments = boxParameters(invocation, context).clone();
+  }
+
+  /**
+   * Validate arguments by Bean Validation as dispatcher did before.
+   */
+  @Benchmark
+  public String beanValidation() {
+    Set<ConstraintViolation<Object>> errors = VALIDATOR
+        .validateParameters(invocation.getInvoker().getInstance(), invocation.getMethod(),
+            arguments);
+    return errors.isEmpty() ? null : errors.iterator().next().getMessage();
+  }
+
+  @Benchmark
+  public String compiledPlan() {
+    return invocation.getValidationPlan().validate(context);
+  }
+}
@@ -0,0 +1,107 @@
+package ua.danit.rest.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.MediaType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
+import ua.danit.rest.weatherapp.codec.WeatherBinaryCodec;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.Weather;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Compares encoding and decoding of {@link Weather} in JSON by Gson, as it is done by default
+ * converters, with {@link WeatherBinaryCodec}. Sizes of both messages are printed on setup.
+ * <p/>
+ * Reading of measurement serialized on every request, as weather resources do by default, is
+ * compared with {@link EncodedWeather} encoded when measurement is stored.
+ *
+ * @author Andrey Minov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherCodecBenchmark {
+  private Gson gson;
+  private WeatherBinaryCodec codec;
+  private Weather weather;
+  private byte[] json;
+  private byte[] binary;
+  private Measure measure;
+  private EncodedWeather encodedCity;
+  private EncodedWeather encodedLocation;
+
+  /**
+   * Create codecs and encode sample weather in both formats.
+   */
+  @Setup
+  public void setUp() {
+    gson = new Gson();
+    codec = new WeatherBinaryCodec();
+    weather = new Weather("Kiev", "Ukraine", new Weather.Location(30.5234, 50.4501),
+        WeatherCode.PARTLY_CLOUDY, 21.3, "2017-11-14T10:00:00");
+    json = gson.toJson(weather).getBytes(UTF_8);
+    binary = codec.encode(weather);
+    measure = new Measure(21.3, WeatherCode.PARTLY_CLOUDY,
+        LocalDateTime.parse("2017-11-14T10:00:00").atZone(ZoneOffset.UTC));
+    encodedCity = EncodedWeather.ofCity("Kiev", "Ukraine", measure);
+    encodedLocation = EncodedWeather.ofLocation(measure);
+    System.out.println("JSON size: " + json.length + " bytes, binary size: " + binary.length
+        + " bytes");
+  }
+
+  @Benchmark
+  public byte[] encodeJson() {
+    return gson.toJson(weather).getBytes(UTF_8);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() {
+    return codec.encode(weather);
+  }
+
+  @Benchmark
+  public Weather decodeJson() {
+    return gson.fromJson(new String(json, UTF_8), Weather.class);
+  }
+
+  @Benchmark
+  public Weather decodeBinary() {
+    return codec.decode(binary);
+  }
+
+  @Benchmark
+  public byte[] serializeMeasure() {
+    return gson.toJson(EncodedWeather.toWeather("Kiev", "Ukraine", null, measure))
+               .getBytes(UTF_8);
+  }
+
+  @Benchmark
+  public byte[] encodedByCity() {
+    return encodedCity.toEntity().getBytes(MediaType.APPLICATION_JSON);
+  }
+
+  @Benchmark
+  public byte[] encodedByLocation() {
+    return encodedLocation.toEntity(30.5234, 50.4501).getBytes(MediaType.APPLICATION_JSON);
+  }
+}
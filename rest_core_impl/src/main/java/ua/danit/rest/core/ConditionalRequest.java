@@ -0,0 +1,101 @@
+package ua.danit.rest.core;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.ws.rs.core.HttpHeaders.CACHE_CONTROL;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.IF_MODIFIED_SINCE;
+import static javax.ws.rs.core.HttpHeaders.IF_NONE_MATCH;
+import static javax.ws.rs.core.HttpHeaders.LAST_MODIFIED;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
+
+import ua.danit.rest.core.cache.CachedResponse;
+import ua.danit.rest.core.utils.Headers;
+
+/**
+ * Evaluation of conditional GET request by validators of the response: ETag compared with
+ * If-None-Match and Last-Modified compared with If-Modified-Since, when If-None-Match is absent.
+ * Client having current representation is answered with 304 Not Modified and validators only, so
+ * entity is not serialized at all.
+ *
+ * @author Andrey Minov
+ */
+final class ConditionalRequest {
+
+  private ConditionalRequest() {
+  }
+
+  /**
+   * Answer request with 304 Not Modified when client has current version of response returned by
+   * service method.
+   *
+   * @param request  the HTTP request
+   * @param response the HTTP response
+   * @param result   the response returned by service method.
+   * @return true when response is not modified and nothing else should be written.
+   */
+  static boolean sendNotModified(HttpServletRequest request, HttpServletResponse response,
+                                 Response result) {
+    if (result.getStatus() != SC_OK) {
+      return false;
+    }
+    String etag = result.getHeaderString(ETAG);
+    String lastModified = result.getHeaderString(LAST_MODIFIED);
+    if (!isNotModified(request, etag, lastModified)) {
+      return false;
+    }
+    send(response, etag, lastModified, result.getHeaderString(CACHE_CONTROL));
+    return true;
+  }
+
+  /**
+   * Answer request with 304 Not Modified when client has current version of cached response.
+   *
+   * @param request  the HTTP request
+   * @param response the HTTP response
+   * @param cached   the cached response.
+   * @return true when response is not modified and nothing else should be written.
+   */
+  static boolean sendNotModified(HttpServletRequest request, HttpServletResponse response,
+                                 CachedResponse cached) {
+    String etag = cached.getHeader(ETAG);
+    String lastModified = cached.getHeader(LAST_MODIFIED);
+    if (!isNotModified(request, etag, lastModified)) {
+      return false;
+    }
+    send(response, etag, lastModified, cached.getHeader(CACHE_CONTROL));
+    return true;
+  }
+
+  private static boolean isNotModified(HttpServletRequest request, String etag,
+                                       String lastModified) {
+    if (etag == null && lastModified == null) {
+      return false;
+    }
+    String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      return etag != null && Headers.matchesEntityTag(ifNoneMatch, etag);
+    }
+    long since = Headers.parseDate(request.getHeader(IF_MODIFIED_SINCE));
+    long modified = Headers.parseDate(lastModified);
+    // HTTP dates have precision of seconds.
+    return since >= 0 && modified >= 0 && modified / 1000 <= since / 1000;
+  }
+
+  private static void send(HttpServletResponse response, String etag, String lastModified,
+                           String cacheControl) {
+    response.setStatus(SC_NOT_MODIFIED);
+    if (etag != null) {
+      response.setHeader(ETAG, etag);
+    }
+    if (lastModified != null) {
+      response.setHeader(LAST_MODIFIED, lastModified);
+    }
+    if (cacheControl != null) {
+      response.setHeader(CACHE_CONTROL, cacheControl);
+    }
+  }
+}
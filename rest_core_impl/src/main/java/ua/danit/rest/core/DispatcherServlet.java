@@ -2,46 +2,127 @@ package ua.danit.rest.core;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_ACCEPTABLE;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
-import static ua.danit.rest.core.utils.Reflections.fillParameters;
-
-import com.google.common.base.Strings;
+import static javax.servlet.http.HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+import static javax.servlet.http.HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE;
+import static ua.danit.rest.core.utils.Reflections.bindParameters;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
-import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.validation.ConstraintViolation;
-import javax.validation.Validation;
-import javax.validation.executable.ExecutableValidator;
+import javax.ws.rs.core.Response;
 
+import ua.danit.rest.core.cache.CacheKey;
+import ua.danit.rest.core.cache.CachedResponse;
+import ua.danit.rest.core.cache.CapturingResponse;
+import ua.danit.rest.core.cache.ResponseCache;
+import ua.danit.rest.core.convertors.PayloadTooLargeException;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.parsing.ContentNegotiation;
 import ua.danit.rest.core.parsing.Invocation;
 import ua.danit.rest.core.parsing.MethodType;
+import ua.danit.rest.core.parsing.ResponseMode;
 
 /**
  * Dispatcher servlet for handing all HTTP requests for some path and delegate
  * execution to resources.
+ * <p/>
+ * Methods returning {@link CompletionStage} and methods with
+ * {@link javax.ws.rs.container.Suspended} parameter are executed in servlet asynchronous mode:
+ * container thread is returned when method returns and response is written when stage is
+ * completed or response is resumed. Request not completed in configured timeout is answered with
+ * 503 Service Unavailable.
+ * <p/>
+ * When request executor is set, synchronous methods are called on the threads of the executor
+ * (for example virtual threads, see {@link ExecutionMode#VIRTUAL}) and container thread is
+ * returned right after the request is routed. Request failed on executor thread is answered with
+ * 500 Internal Server Error, when response is not committed yet, and completed.
+ * <p/>
+ * Response entity is compressed in encoding accepted by client when compression is enabled in
+ * converters store.
+ * <p/>
+ * Media type of response is negotiated by Accept header from all produced types of the method,
+ * media type of request body by Content-Type header, see {@link ContentNegotiation}. Request not
+ * accepting any produced type is rejected with 406 Not Acceptable, request with body of type not
+ * consumed by the method is rejected with 415 Unsupported Media Type.
+ * <p/>
+ * Request with body larger than limit of the invocation is rejected with 413 Payload Too Large:
+ * by Content-Length before method parameters are bound, or while the body is read.
+ * <p/>
+ * Responses of methods with response cache are looked up by bound parameters before validation
+ * and method call, cached responses are sent as is. Caches are cleared by method declaring them
+ * invalidated right after it returns. See {@link ua.danit.rest.core.annotations.Cacheable}.
+ * <p/>
+ * GET request is answered with 304 Not Modified before the entity is written, when ETag or
+ * Last-Modified of the response matches If-None-Match or If-Modified-Since of the request.
  *
  * @author Andrey Minov
  */
 public class DispatcherServlet extends HttpServlet {
 
   private static final String MEDIA_TYPE_HEADER = "Content-Type";
-  // from javadoc:  Implementations of this interface must be thread-safe.
-  private static final ExecutableValidator VALIDATOR =
-      Validation.buildDefaultValidatorFactory().getValidator().forExecutables();
+  private static final String ACCEPT_HEADER = "Accept";
+  private static final String VARY_HEADER = "Vary";
+  private final ThreadLocal<RequestContext> contexts = ThreadLocal.withInitial(RequestContext::new);
   private ServicesStore servicesStore;
+  private long asyncTimeout;
+  private Executor executor;
+  private ScheduledExecutorService timer;
 
   /**
    * Instantiates a new Dispatcher servlet.
    *
    * @param servicesStore the resources store
    */
-  DispatcherServlet(ServicesStore servicesStore) {
+  public DispatcherServlet(ServicesStore servicesStore) {
+    this(servicesStore, RestApplication.DEFAULT_ASYNC_TIMEOUT);
+  }
+
+  /**
+   * Instantiates a new Dispatcher servlet.
+   *
+   * @param servicesStore the resources store
+   * @param asyncTimeout  the timeout of asynchronous requests in milliseconds, zero for no
+   *                      timeout.
+   */
+  public DispatcherServlet(ServicesStore servicesStore, long asyncTimeout) {
+    this(servicesStore, asyncTimeout, null);
+  }
+
+  /**
+   * Instantiates a new Dispatcher servlet calling synchronous methods on the request executor.
+   *
+   * @param servicesStore the resources store
+   * @param asyncTimeout  the timeout of asynchronous requests in milliseconds, zero for no
+   *                      timeout.
+   * @param executor      the executor of synchronous methods, null to call methods on the
+   *                      container thread.
+   */
+  public DispatcherServlet(ServicesStore servicesStore, long asyncTimeout, Executor executor) {
     this.servicesStore = servicesStore;
+    this.asyncTimeout = asyncTimeout;
+    this.executor = executor;
+    this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "async-timeout");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void destroy() {
+    timer.shutdownNow();
+    super.destroy();
   }
 
   @Override
@@ -56,39 +137,182 @@ public class DispatcherServlet extends HttpServlet {
     doHttpCall(req, resp, MethodType.POST);
   }
 
+  private RequestContext acquireContext() {
+    RequestContext context = contexts.get();
+    // forwarded or included request is dispatched while context of the thread is still in use.
+    return context.isActive() ? new RequestContext() : context;
+  }
+
   private void doHttpCall(HttpServletRequest req, HttpServletResponse resp,
                           MethodType methodType) throws IOException {
     String path = req.getRequestURI();
-    String servletUri = req.getServletPath();
-    String uri = path.replaceAll(servletUri, "");
-    if (Strings.isNullOrEmpty(uri)) {
+    int from = req.getContextPath().length() + req.getServletPath().length();
+    if (path.length() <= from) {
       resp.setStatus(SC_NOT_FOUND);
       return;
     }
-    Invocation invocation = servicesStore.getServiceMeta(methodType, uri);
+    // context is passed to the executor thread together with the request.
+    RequestContext context = executor != null ? new RequestContext() : acquireContext();
+    Invocation invocation =
+        servicesStore.getServiceMeta(methodType, path, from, context.getPathMatch());
     if (invocation == null) {
       resp.sendError(SC_NOT_FOUND);
       return;
     }
+    if (executor != null && !invocation.getResponseMode().isAsync()) {
+      dispatchOnExecutor(req, resp, invocation, context);
+    } else {
+      dispatch(req, resp, invocation, context);
+    }
+  }
+
+  private void dispatchOnExecutor(HttpServletRequest req, HttpServletResponse resp,
+                                  Invocation invocation, RequestContext context)
+      throws IOException {
+    AsyncContext asyncContext = req.startAsync();
+    // blocking method is not interrupted, same as on container thread.
+    asyncContext.setTimeout(0);
+    try {
+      executor.execute(() -> {
+        try {
+          dispatch(req, resp, invocation, context);
+        } catch (IOException | RuntimeException e) {
+          // executor thread has no container to answer the failed request.
+          sendFailure(resp);
+        } finally {
+          asyncContext.complete();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      resp.sendError(SC_SERVICE_UNAVAILABLE);
+      asyncContext.complete();
+    }
+  }
+
+  private void dispatch(HttpServletRequest req, HttpServletResponse response,
+                        Invocation invocation, RequestContext context) throws IOException {
+    HttpServletResponse resp = servicesStore.getConvertersStore().negotiateEncoding(req, response);
+    if (req.getContentLengthLong() > invocation.getMaxBodySize()) {
+      resp.sendError(SC_REQUEST_ENTITY_TOO_LARGE);
+      return;
+    }
+    ContentNegotiation negotiation = invocation.getNegotiation();
+    int produced = negotiation.selectProduced(req.getHeader(ACCEPT_HEADER));
+    if (produced == ContentNegotiation.NONE) {
+      resp.sendError(SC_NOT_ACCEPTABLE);
+      return;
+    }
+    int consumed = invocation.getMethodType().isSupportBody()
+        ? negotiation.selectConsumed(req.getContentType()) : 0;
+    if (consumed == ContentNegotiation.NONE) {
+      resp.sendError(SC_UNSUPPORTED_MEDIA_TYPE);
+      return;
+    }
+    context.begin(req, invocation);
+    context.setConsumedType(consumed);
+    ResponseMode responseMode = invocation.getResponseMode();
+    ServletAsyncResponse asyncResponse = null;
     try {
-      Object[] params = fillParameters(invocation, req);
-      Method method = invocation.getMethod();
-      Object instance = servicesStore.getServiceInstance(method.getDeclaringClass());
-
-      Set<ConstraintViolation<Object>> errors =
-          VALIDATOR.validateParameters(instance, method, params);
-      if (errors != null && !errors.isEmpty()) {
-        ConstraintViolation<Object> violation = errors.iterator().next();
-        resp.sendError(SC_BAD_REQUEST, violation.getMessage());
+      if (responseMode.isAsync()) {
+        asyncResponse =
+            new ServletAsyncResponse(req, resp, invocation.getResponseWriter(),
+                servicesStore.getConvertersStore().getOutWriter(Response.class), asyncTimeout,
+                timer);
+        context.setAsyncResponse(asyncResponse);
+      }
+      bindParameters(invocation, context);
+      ResponseCache cache = invocation.getCache();
+      CacheKey cacheKey = null;
+      long generation = 0;
+      if (cache != null) {
+        cacheKey = CacheKey.of(invocation, context, produced);
+        CachedResponse cached = cache.get(cacheKey);
+        if (cached != null) {
+          setMediaType(resp, negotiation, produced);
+          if (!ConditionalRequest.sendNotModified(req, resp, cached)) {
+            cached.writeTo(resp, servicesStore.getConvertersStore());
+          }
+          return;
+        }
+        generation = cache.getGeneration();
+      }
+      if (invocation.isConstrained()) {
+        String violation = invocation.getValidationPlan().validate(context);
+        if (violation != null) {
+          resp.sendError(SC_BAD_REQUEST, violation);
+          return;
+        }
+      }
+      if (context.hasMissing()) {
+        resp.sendError(SC_BAD_REQUEST, "Required parameter is missing!");
         return;
       }
 
-      if (!Strings.isNullOrEmpty(invocation.getMediaType())) {
-        resp.setHeader(MEDIA_TYPE_HEADER, invocation.getMediaType());
+      setMediaType(resp, negotiation, produced);
+      if (asyncResponse == null) {
+        Object result = invocation.getInvoker().invoke(context);
+        invalidateCaches(invocation);
+        if (invocation.getMethodType() == MethodType.GET && result instanceof Response
+            && ConditionalRequest.sendNotModified(req, resp, (Response) result)) {
+          return;
+        }
+        if (cacheKey == null) {
+          invocation.getResponseWriter().accept(resp, result);
+          return;
+        }
+        CapturingResponse capture = new CapturingResponse(resp);
+        invocation.getResponseWriter().accept(capture, result);
+        CachedResponse captured = capture.finish();
+        if (captured != null) {
+          if (capture.isCacheable()) {
+            cache.put(cacheKey, captured, generation);
+          }
+          captured.writeTo(resp, servicesStore.getConvertersStore());
+        }
+        return;
+      }
+      // suspended response may be resumed by other thread before method returns.
+      asyncResponse.start();
+      Object result = invocation.getInvoker().invoke(context);
+      if (responseMode == ResponseMode.COMPLETION_STAGE) {
+        asyncResponse.resumeWhenComplete((CompletionStage<?>) result);
       }
-      invocation.getResponseWriter().accept(resp, method.invoke(instance, params));
+    } catch (PayloadTooLargeException e) {
+      // body of chunked request is found to be too large while it is read.
+      resp.sendError(SC_REQUEST_ENTITY_TOO_LARGE);
     } catch (Exception e) {
+      if (asyncResponse != null && asyncResponse.isStarted()) {
+        asyncResponse.resume(e);
+      } else {
+        resp.sendError(SC_INTERNAL_SERVER_ERROR);
+      }
+    } finally {
+      context.end();
+    }
+  }
+
+  private static void sendFailure(HttpServletResponse resp) {
+    if (resp.isCommitted()) {
+      return;
+    }
+    try {
       resp.sendError(SC_INTERNAL_SERVER_ERROR);
+    } catch (IOException e) {
+      // connection is broken, request is completed anyway.
+    }
+  }
+
+  private static void setMediaType(HttpServletResponse resp, ContentNegotiation negotiation,
+                                   int produced) {
+    resp.setHeader(MEDIA_TYPE_HEADER, negotiation.getProduced(produced));
+    if (negotiation.getProducedCount() > 1) {
+      resp.addHeader(VARY_HEADER, ACCEPT_HEADER);
+    }
+  }
+
+  private void invalidateCaches(Invocation invocation) {
+    if (invocation.getInvalidatedCaches().length > 0) {
+      servicesStore.getResponseCaches().invalidate(invocation.getInvalidatedCaches());
     }
   }
 }
@@ -1,17 +1,35 @@
 package ua.danit.rest.core;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 /**
  * Entry point for every REST application.
+ * <p/>
+ * Server thread pool and connector are built from {@link ServerProfile} of the application,
+ * their live state is available by {@link #getTelemetry()}.
  *
  * @author Andrey Minov
  */
 public class RestApplicationDelegate extends RestApplication {
   private Server server;
+  private QueuedThreadPool threadPool;
+  private ConnectionStatistics connectionStatistics;
   private DispatcherServlet dispatcherServlet;
+  private ExecutorService requestExecutor;
 
   /**
    * Instantiates a new Rest application from built application..
@@ -19,25 +37,108 @@ public class RestApplicationDelegate extends RestApplication {
    * @param application the application prepared to start.
    */
   public RestApplicationDelegate(RestApplication application) {
-    super(application.getPort(), application.getMatchingUrl(), application.getServicesStore());
-    this.dispatcherServlet = new DispatcherServlet(getServicesStore());
+    super(application.getPort(), application.getMatchingUrl(), application.getServicesStore(),
+        application.getAsyncTimeout(), application.getExecutionMode(),
+        application.getServerProfile());
+    if (getExecutionMode() == ExecutionMode.VIRTUAL) {
+      this.requestExecutor = newVirtualThreadExecutor();
+    }
+    this.dispatcherServlet =
+        new DispatcherServlet(getServicesStore(), getAsyncTimeout(), requestExecutor);
+  }
+
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      // project is compiled for Java 8, virtual threads are available at runtime only.
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                              .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Virtual threads are not supported by JVM!", e);
+    }
+  }
+
+  private static QueuedThreadPool createThreadPool(ServerProfile profile) {
+    QueuedThreadPool threadPool = new QueuedThreadPool();
+    if (profile.getMaxThreads() != ServerProfile.DEFAULT) {
+      threadPool.setMaxThreads(profile.getMaxThreads());
+    }
+    if (profile.getMinThreads() != ServerProfile.DEFAULT) {
+      threadPool.setMinThreads(profile.getMinThreads());
+    }
+    return threadPool;
+  }
+
+  private static ConnectionFactory createHttp2Factory(HttpConfiguration configuration,
+                                                      ServerProfile profile) {
+    // HTTP/1.1 connections are upgraded to h2c, prior knowledge preface is detected by HTTP/1.1
+    // connection too.
+    HTTP2CServerConnectionFactory factory = new HTTP2CServerConnectionFactory(configuration);
+    if (profile.getMaxConcurrentStreams() != ServerProfile.DEFAULT) {
+      factory.setMaxConcurrentStreams(profile.getMaxConcurrentStreams());
+    }
+    if (profile.getInitialStreamWindow() != ServerProfile.DEFAULT) {
+      factory.setInitialStreamRecvWindow(profile.getInitialStreamWindow());
+    }
+    return factory;
+  }
+
+  private ServerConnector createConnector(Server server, ServerProfile profile) {
+    HttpConfiguration configuration = new HttpConfiguration();
+    if (profile.getOutputBufferSize() != ServerProfile.DEFAULT) {
+      configuration.setOutputBufferSize(profile.getOutputBufferSize());
+    }
+    if (profile.getRequestHeaderSize() != ServerProfile.DEFAULT) {
+      configuration.setRequestHeaderSize(profile.getRequestHeaderSize());
+    }
+    ConnectionFactory http = new HttpConnectionFactory(configuration);
+    ConnectionFactory[] factories = profile.isHttp2Cleartext()
+        ? new ConnectionFactory[] {http, createHttp2Factory(configuration, profile)}
+        : new ConnectionFactory[] {http};
+    ServerConnector connector =
+        new ServerConnector(server, profile.getAcceptors(), profile.getSelectors(), factories);
+    connector.setPort(getPort());
+    if (profile.getAcceptQueueSize() != ServerProfile.DEFAULT) {
+      connector.setAcceptQueueSize(profile.getAcceptQueueSize());
+    }
+    if (profile.getIdleTimeout() != ServerProfile.DEFAULT) {
+      connector.setIdleTimeout(profile.getIdleTimeout());
+    }
+    connector.addBean(connectionStatistics);
+    return connector;
   }
 
   @Override
   public void start(boolean join) throws Exception {
-    server = new Server(getPort());
+    threadPool = createThreadPool(getServerProfile());
+    connectionStatistics = new ConnectionStatistics();
+    server = new Server(threadPool);
+    server.addConnector(createConnector(server, getServerProfile()));
     ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
     context.setContextPath("/");
     server.setHandler(context);
-    context.addServlet(new ServletHolder(dispatcherServlet), getMatchingUrl());
+    ServletHolder holder = new ServletHolder(dispatcherServlet);
+    holder.setAsyncSupported(true);
+    context.addServlet(holder, getMatchingUrl());
     server.start();
     if (join) {
       server.join();
     }
   }
 
+  @Override
+  public ServerTelemetry getTelemetry() {
+    checkState(server != null, "Application is not started!");
+    return new ServerTelemetry(threadPool.getThreads(), threadPool.getBusyThreads(),
+        threadPool.getMaxThreads(), threadPool.getQueueSize(),
+        connectionStatistics.getConnections(), connectionStatistics.getConnectionsMax(),
+        connectionStatistics.getConnectionsTotal());
+  }
+
   @Override
   public void stop() throws Exception {
     server.stop();
+    if (requestExecutor != null) {
+      requestExecutor.shutdown();
+    }
   }
 }
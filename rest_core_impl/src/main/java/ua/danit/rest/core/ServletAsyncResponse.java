@@ -0,0 +1,354 @@
+package ua.danit.rest.core;
+
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static javax.servlet.http.HttpServletResponse.SC_NO_CONTENT;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+
+/**
+ * Asynchronous response of the request processed in servlet asynchronous mode.
+ * <p/>
+ * Response is suspended by {@link #start()}, after that container thread returns from servlet
+ * and response is written by the thread which resumes it. Only the first of resume, cancel and
+ * timeout takes effect. On timeout registered {@link TimeoutHandler} is called, when response is
+ * still suspended after the handler and the handler did not set new timeout, or handler is not
+ * set, request is cancelled with 503 Service Unavailable.
+ * <p/>
+ * Response of {@link WebApplicationException} resuming the request is written with its status,
+ * headers and entity, the one without entity is sent as error of its status.
+ * <p/>
+ * Timeout is scheduled on the timer instead of the servlet container, as container fails the
+ * request after its timeout even when timeout is set again by the handler.
+ *
+ * @author Andrey Minov
+ */
+class ServletAsyncResponse implements AsyncResponse, AsyncListener {
+  private static final String RETRY_AFTER_HEADER = "Retry-After";
+  private static final int SUSPENDED = 0;
+  private static final int DONE = 1;
+  private static final int CANCELLED = 2;
+
+  private final HttpServletRequest request;
+  private final HttpServletResponse response;
+  private final BiConsumer<HttpServletResponse, Object> writer;
+  private final BiConsumer<HttpServletResponse, Object> errorWriter;
+  private final AtomicInteger state;
+  private final List<CompletionCallback> callbacks;
+  private final ScheduledExecutorService timer;
+  private volatile long timeout;
+  private volatile int timeoutChanges;
+  private ScheduledFuture<?> timeoutTask;
+  private volatile TimeoutHandler timeoutHandler;
+  private volatile AsyncContext asyncContext;
+
+  /**
+   * Instantiates a new asynchronous response, response is not suspended until started.
+   *
+   * @param request  the HTTP request
+   * @param response the HTTP response
+   * @param writer      the writer of resumed value into HTTP response.
+   * @param errorWriter the writer of {@link Response} of resumed error into HTTP response.
+   * @param timeout     the timeout of the response in milliseconds, zero or less for no timeout.
+   * @param timer       the timer of response timeouts.
+   */
+  ServletAsyncResponse(HttpServletRequest request, HttpServletResponse response,
+                       BiConsumer<HttpServletResponse, Object> writer,
+                       BiConsumer<HttpServletResponse, Object> errorWriter, long timeout,
+                       ScheduledExecutorService timer) {
+    this.request = request;
+    this.response = response;
+    this.writer = writer;
+    this.errorWriter = errorWriter;
+    this.timeout = timeout;
+    this.timer = timer;
+    this.state = new AtomicInteger(SUSPENDED);
+    this.callbacks = new CopyOnWriteArrayList<>();
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null ? error.getCause()
+        : error;
+  }
+
+  /**
+   * Put request into asynchronous mode, so container thread can return from the servlet.
+   */
+  void start() {
+    AsyncContext context = request.startAsync(request, response);
+    context.setTimeout(0);
+    context.addListener(this);
+    this.asyncContext = context;
+    scheduleTimeout();
+  }
+
+  private synchronized void scheduleTimeout() {
+    if (timeoutTask != null) {
+      timeoutTask.cancel(false);
+      timeoutTask = null;
+    }
+    if (timeout > 0 && isSuspended()) {
+      timeoutTask = timer.schedule(this::expire, timeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private synchronized void cancelTimeout() {
+    if (timeoutTask != null) {
+      timeoutTask.cancel(false);
+      timeoutTask = null;
+    }
+  }
+
+  private void expire() {
+    TimeoutHandler handler = timeoutHandler;
+    int changes = timeoutChanges;
+    if (handler != null) {
+      handler.handleTimeout(this);
+    }
+    // handler extending the timeout keeps response suspended.
+    if (isSuspended() && changes == timeoutChanges) {
+      cancel();
+    }
+  }
+
+  boolean isStarted() {
+    return asyncContext != null;
+  }
+
+  /**
+   * Resume response with value or error of completion stage, when stage is completed.
+   *
+   * @param stage the stage returned by service method, null is written as no content.
+   */
+  void resumeWhenComplete(CompletionStage<?> stage) {
+    if (stage == null) {
+      resume((Object) null);
+      return;
+    }
+    stage.whenComplete((value, error) -> {
+      if (error != null) {
+        resume(unwrap(error));
+      } else {
+        resume(value);
+      }
+    });
+  }
+
+  @Override
+  public boolean resume(Object value) {
+    if (!state.compareAndSet(SUSPENDED, DONE)) {
+      return false;
+    }
+    Throwable failure = null;
+    try {
+      if (value == null) {
+        response.setStatus(SC_NO_CONTENT);
+      } else {
+        writer.accept(response, value);
+      }
+    } catch (Exception e) {
+      failure = e;
+      sendError(SC_INTERNAL_SERVER_ERROR);
+    }
+    complete(failure);
+    return true;
+  }
+
+  @Override
+  public boolean resume(Throwable error) {
+    if (!state.compareAndSet(SUSPENDED, DONE)) {
+      return false;
+    }
+    if (error instanceof WebApplicationException) {
+      Response errorResponse = ((WebApplicationException) error).getResponse();
+      if (!errorResponse.hasEntity()) {
+        sendError(errorResponse.getStatus());
+        complete(null);
+        return true;
+      }
+      Throwable failure = null;
+      try {
+        errorWriter.accept(response, errorResponse);
+      } catch (Exception e) {
+        failure = e;
+        sendError(SC_INTERNAL_SERVER_ERROR);
+      }
+      complete(failure);
+    } else {
+      sendError(SC_INTERNAL_SERVER_ERROR);
+      complete(error);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean cancel() {
+    return cancel((String) null);
+  }
+
+  @Override
+  public boolean cancel(int retryAfter) {
+    return cancel(String.valueOf(retryAfter));
+  }
+
+  @Override
+  public boolean cancel(Date retryAfter) {
+    return cancel(DateTimeFormatter.RFC_1123_DATE_TIME
+        .format(retryAfter.toInstant().atOffset(ZoneOffset.UTC)));
+  }
+
+  private boolean cancel(String retryAfter) {
+    if (!state.compareAndSet(SUSPENDED, CANCELLED)) {
+      return state.get() == CANCELLED;
+    }
+    if (retryAfter != null) {
+      response.setHeader(RETRY_AFTER_HEADER, retryAfter);
+    }
+    sendError(SC_SERVICE_UNAVAILABLE);
+    complete(null);
+    return true;
+  }
+
+  private void sendError(int status) {
+    try {
+      if (!response.isCommitted()) {
+        response.sendError(status);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void complete(Throwable failure) {
+    cancelTimeout();
+    AsyncContext context = asyncContext;
+    if (context != null) {
+      context.complete();
+    }
+    for (CompletionCallback callback : callbacks) {
+      callback.onComplete(failure);
+    }
+  }
+
+  @Override
+  public boolean isSuspended() {
+    return state.get() == SUSPENDED;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return state.get() == CANCELLED;
+  }
+
+  @Override
+  public boolean isDone() {
+    return state.get() != SUSPENDED;
+  }
+
+  @Override
+  public boolean setTimeout(long time, TimeUnit unit) {
+    if (!isSuspended()) {
+      return false;
+    }
+    this.timeout = unit.toMillis(time);
+    timeoutChanges++;
+    if (isStarted()) {
+      scheduleTimeout();
+    }
+    return true;
+  }
+
+  @Override
+  public void setTimeoutHandler(TimeoutHandler handler) {
+    this.timeoutHandler = handler;
+  }
+
+  @Override
+  public Collection<Class<?>> register(Class<?> callback) {
+    try {
+      return register(callback.newInstance());
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+    Map<Class<?>, Collection<Class<?>>> registered = new HashMap<>();
+    registered.put(callback, register(callback));
+    for (Class<?> value : callbacks) {
+      registered.put(value, register(value));
+    }
+    return registered;
+  }
+
+  @Override
+  public Collection<Class<?>> register(Object callback) {
+    // connection callbacks are not supported by servlet container.
+    if (!(callback instanceof CompletionCallback)) {
+      return Collections.emptyList();
+    }
+    callbacks.add((CompletionCallback) callback);
+    Collection<Class<?>> contracts = new ArrayList<>();
+    contracts.add(CompletionCallback.class);
+    return contracts;
+  }
+
+  @Override
+  public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+    Map<Class<?>, Collection<Class<?>>> registered = new HashMap<>();
+    registered.put(callback.getClass(), register(callback));
+    for (Object value : callbacks) {
+      registered.put(value.getClass(), register(value));
+    }
+    return registered;
+  }
+
+  @Override
+  public void onTimeout(AsyncEvent event) {
+    // container timeout is disabled, response cannot stay suspended after it.
+    cancel();
+  }
+
+  @Override
+  public void onError(AsyncEvent event) {
+    resume(event.getThrowable());
+  }
+
+  @Override
+  public void onComplete(AsyncEvent event) {
+    // response is completed by resume or cancel.
+  }
+
+  @Override
+  public void onStartAsync(AsyncEvent event) {
+    // listener is registered after asynchronous mode is started.
+  }
+}
@@ -1,19 +1,20 @@
 package ua.danit.rest.core.parsing;
 
-import static java.util.Arrays.stream;
-import static java.util.Optional.ofNullable;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
-import javax.servlet.http.Cookie;
-import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.CookieParam;
 import javax.ws.rs.DefaultValue;
@@ -25,10 +26,27 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
+import ua.danit.rest.core.annotations.Cacheable;
+import ua.danit.rest.core.annotations.InvalidatesCache;
+import ua.danit.rest.core.annotations.MaxBodySize;
+import ua.danit.rest.core.binding.Binder;
+import ua.danit.rest.core.binding.DoubleBinder;
+import ua.danit.rest.core.binding.IntBinder;
+import ua.danit.rest.core.binding.LongBinder;
+import ua.danit.rest.core.binding.ObjectBinder;
+import ua.danit.rest.core.binding.ValueSource;
+import ua.danit.rest.core.cache.CachePolicy;
+import ua.danit.rest.core.convertors.BoundedInputStream;
 import ua.danit.rest.core.convertors.ConvertersStore;
+import ua.danit.rest.core.dispatch.RequestContext;
+import ua.danit.rest.core.routing.PathTemplate;
+import ua.danit.rest.core.validation.ValidationPlan;
 
 /**
  * Parse servlet presentation into {@link Invocation} structure.
@@ -36,6 +54,8 @@ import ua.danit.rest.core.convertors.ConvertersStore;
  * @author Andrey Minov
  */
 public class RealReflectionServiceParser extends ReflectionServiceParser {
+  private static final ValidatorFactory VALIDATOR_FACTORY =
+      Validation.buildDefaultValidatorFactory();
 
   private static MethodType getMethodType(Method method) {
     if (method.isAnnotationPresent(GET.class)) {
@@ -69,93 +89,229 @@ public class RealReflectionServiceParser extends ReflectionServiceParser {
     return uri.toString();
   }
 
-  private static Function<HttpServletRequest, ?> getParamConverter(Parameter parameter,
-                                                                   ConvertersStore convertersStore,
-                                                                   MethodType methodType,
-                                                                   String mediaType) {
+  private static Binder getBinder(int index, Parameter parameter,
+                                  ConvertersStore convertersStore, MethodType methodType,
+                                  String[] mediaTypes, long maxBodySize, PathTemplate template,
+                                  List<String> cookieNames) {
     if (parameter.isAnnotationPresent(Context.class)) {
-      return Function.identity();
-    }
-    if (parameter.isAnnotationPresent(QueryParam.class)) {
-      return getQueryParamConverter(parameter, convertersStore.getInConverter(parameter.getType()));
-    }
-    if (parameter.isAnnotationPresent(HeaderParam.class)) {
-      return getHeaderParamConverter(parameter,
-          convertersStore.getInConverter(parameter.getType()));
+      return new ObjectBinder(index, RequestContext::getRequest);
     }
-    if (parameter.isAnnotationPresent(PathParam.class)) {
-      throw new UnsupportedOperationException("Path param is not supported yet!");
+    if (parameter.isAnnotationPresent(Suspended.class)) {
+      if (parameter.getType() != AsyncResponse.class) {
+        throw new IllegalArgumentException(String
+            .format("Suspended param %s must be of type AsyncResponse!", parameter.getName()));
+      }
+      return new ObjectBinder(index, RequestContext::getAsyncResponse);
     }
     if (parameter.isAnnotationPresent(FormParam.class)) {
       throw new UnsupportedOperationException("Multipart param is not supported yet!");
     }
-    if (parameter.isAnnotationPresent(CookieParam.class)) {
-      return getCookieParamConverter(parameter,
-          convertersStore.getInConverter(parameter.getType()));
+    ValueSource source = getValueSource(parameter, template, cookieNames);
+    if (source != null) {
+      return getValueBinder(index, parameter, source, convertersStore);
     }
     if (!methodType.isSupportBody()) {
-      return r -> parameter.isNamePresent() ? r.getParameter(parameter.getName()) : null;
+      if (!parameter.isNamePresent()) {
+        return new ObjectBinder(index, c -> null);
+      }
+      String name = parameter.getName();
+      return new ObjectBinder(index, c -> c.getRequest().getParameter(name));
     }
-    // Otherwise parameter will be body specific
-    return r -> {
-      Function<InputStream, ?> mediaConverter =
-          convertersStore.getMediaInConverter(parameter.getType(), mediaType);
+    // Otherwise parameter will be body specific, converters are resolved once for the method.
+    List<Function<InputStream, ?>> mediaConverters = new ArrayList<>();
+    for (String mediaType : mediaTypes) {
+      mediaConverters.add(convertersStore.getMediaInConverter(parameter.getType(), mediaType));
+    }
+    return new ObjectBinder(index, c -> {
       try {
-        return mediaConverter.apply(r.getInputStream());
+        // body is decoded while it is read, so limit is checked before body is buffered.
+        return mediaConverters.get(c.getConsumedType())
+            .apply(new BoundedInputStream(c.getRequest().getInputStream(), maxBodySize));
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
-    };
+    });
   }
 
-  private static String getInMediaType(Class<?> clazz, Method method) {
-    String type = MediaType.TEXT_PLAIN;
+  private static ValueSource getValueSource(Parameter parameter, PathTemplate template,
+                                            List<String> cookieNames) {
+    if (parameter.isAnnotationPresent(QueryParam.class)) {
+      return ValueSource.query(parameter.getAnnotation(QueryParam.class).value());
+    }
+    if (parameter.isAnnotationPresent(HeaderParam.class)) {
+      return ValueSource.header(parameter.getAnnotation(HeaderParam.class).value());
+    }
+    if (parameter.isAnnotationPresent(PathParam.class)) {
+      String name = parameter.getAnnotation(PathParam.class).value();
+      int index = template.indexOf(name);
+      if (index < 0) {
+        throw new IllegalArgumentException(String
+            .format("Path param %s is not declared in %s!", name, template));
+      }
+      return ValueSource.path(index);
+    }
+    if (parameter.isAnnotationPresent(CookieParam.class)) {
+      String name = parameter.getAnnotation(CookieParam.class).value();
+      int slot = cookieNames.indexOf(name);
+      if (slot < 0) {
+        slot = cookieNames.size();
+        cookieNames.add(name);
+      }
+      return ValueSource.cookie(slot);
+    }
+    return null;
+  }
+
+  private static Binder getValueBinder(int index, Parameter parameter, ValueSource source,
+                                       ConvertersStore convertersStore) {
+    String defValue = parameter.isAnnotationPresent(DefaultValue.class) ? parameter
+        .getAnnotation(DefaultValue.class).value() : null;
+    Class<?> type = parameter.getType();
+    // primitives are parsed from raw request characters into primitive slots of context.
+    if (type == int.class) {
+      return new IntBinder(index, source, defValue);
+    }
+    if (type == long.class) {
+      return new LongBinder(index, source, defValue);
+    }
+    if (type == double.class) {
+      return new DoubleBinder(index, source, defValue);
+    }
+    Function<String, ?> inConverter = convertersStore.getInConverter(type);
+    return new ObjectBinder(index, c -> {
+      String value = source.get(c);
+      return inConverter.apply(value != null ? value : defValue);
+    });
+  }
+
+  private static boolean isConsumesDeclared(Class<?> clazz, Method method) {
+    return clazz.isAnnotationPresent(Consumes.class) || method.isAnnotationPresent(Consumes.class);
+  }
+
+  private static String[] getInMediaTypes(Class<?> clazz, Method method) {
+    String[] types = {MediaType.TEXT_PLAIN};
     if (clazz.isAnnotationPresent(Consumes.class)) {
-      type = clazz.getAnnotation(Consumes.class).value()[0];
+      types = splitMediaTypes(clazz.getAnnotation(Consumes.class).value());
     }
     if (method.isAnnotationPresent(Consumes.class)) {
-      type = method.getAnnotation(Consumes.class).value()[0];
+      types = splitMediaTypes(method.getAnnotation(Consumes.class).value());
     }
-    return type;
+    return types;
   }
 
-  private static String getOutMediaType(Class<?> clazz, Method method) {
-    String type = MediaType.TEXT_PLAIN;
+  private static String[] splitMediaTypes(String[] values) {
+    // every annotation value may hold several comma separated media types.
+    List<String> types = new ArrayList<>();
+    for (String value : values) {
+      for (String type : value.split(",")) {
+        if (!type.trim().isEmpty()) {
+          types.add(type.trim());
+        }
+      }
+    }
+    return types.isEmpty() ? new String[] {MediaType.WILDCARD} : types.toArray(new String[0]);
+  }
+
+  private static long getMaxBodySize(Class<?> clazz, Method method,
+                                     ConvertersStore convertersStore) {
+    if (method.isAnnotationPresent(MaxBodySize.class)) {
+      return method.getAnnotation(MaxBodySize.class).value();
+    }
+    if (clazz.isAnnotationPresent(MaxBodySize.class)) {
+      return clazz.getAnnotation(MaxBodySize.class).value();
+    }
+    return convertersStore.getMaxBodySize();
+  }
+
+  private static CachePolicy getCachePolicy(Method method, MethodType methodType,
+                                           ResponseMode responseMode, String url) {
+    if (!method.isAnnotationPresent(Cacheable.class)) {
+      return null;
+    }
+    if (methodType != MethodType.GET || responseMode != ResponseMode.SYNC) {
+      throw new IllegalArgumentException(String
+          .format("Cacheable method %s must be synchronous GET method!", method));
+    }
+    // context values are compared by identity, so every request would miss the cache.
+    for (Parameter parameter : method.getParameters()) {
+      if (parameter.isAnnotationPresent(Context.class)) {
+        throw new IllegalArgumentException(String
+            .format("Cacheable method %s cannot have context param!", method));
+      }
+    }
+    Cacheable cacheable = method.getAnnotation(Cacheable.class);
+    String name = cacheable.value().isEmpty() ? url : cacheable.value();
+    return new CachePolicy(name, cacheable.ttl(), cacheable.maxEntries());
+  }
+
+  private static String[] getInvalidatedCaches(Method method, ResponseMode responseMode) {
+    if (!method.isAnnotationPresent(InvalidatesCache.class)) {
+      return new String[0];
+    }
+    // asynchronous method is still running when it returns, caches would be cleared too early.
+    if (responseMode != ResponseMode.SYNC) {
+      throw new IllegalArgumentException(String
+          .format("Method %s invalidating cache must be synchronous!", method));
+    }
+    return method.getAnnotation(InvalidatesCache.class).value();
+  }
+
+  private static String[] getOutMediaTypes(Class<?> clazz, Method method) {
+    String[] types = {MediaType.TEXT_PLAIN};
     if (clazz.isAnnotationPresent(Produces.class)) {
-      type = clazz.getAnnotation(Produces.class).value()[0];
+      types = splitMediaTypes(clazz.getAnnotation(Produces.class).value());
     }
     if (method.isAnnotationPresent(Produces.class)) {
-      type = method.getAnnotation(Produces.class).value()[0];
+      types = splitMediaTypes(method.getAnnotation(Produces.class).value());
     }
-    return type;
+    return types;
   }
 
-  private static Function<HttpServletRequest, ?> getQueryParamConverter(Parameter parameter,
-                                                                 Function<String, ?> inConverter) {
-    String defValue = parameter.isAnnotationPresent(DefaultValue.class) ? parameter
-        .getAnnotation(DefaultValue.class).value() : null;
-    String name = parameter.getAnnotation(QueryParam.class).value();
-    return r -> inConverter.apply(ofNullable(r.getParameter(name)).orElse(defValue));
+  private static ResponseMode getResponseMode(Method method) {
+    for (Parameter parameter : method.getParameters()) {
+      if (parameter.isAnnotationPresent(Suspended.class)) {
+        return ResponseMode.SUSPENDED;
+      }
+    }
+    if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+      return ResponseMode.COMPLETION_STAGE;
+    }
+    return ResponseMode.SYNC;
   }
 
-  private static Function<HttpServletRequest, ?> getHeaderParamConverter(Parameter parameter,
-                                                                 Function<String, ?> inConverter) {
-    String defValue = parameter.isAnnotationPresent(DefaultValue.class) ? parameter
-        .getAnnotation(DefaultValue.class).value() : null;
-    String name = parameter.getAnnotation(HeaderParam.class).value();
-    return r -> inConverter.apply(ofNullable(r.getHeader(name)).orElse(defValue));
+  private static Class<?> getStageValueType(Method method) {
+    Type type = method.getGenericReturnType();
+    if (type instanceof ParameterizedType) {
+      ParameterizedType stage = (ParameterizedType) type;
+      if (stage.getRawType() == CompletionStage.class
+          || stage.getRawType() == CompletableFuture.class) {
+        Type value = stage.getActualTypeArguments()[0];
+        if (value instanceof Class) {
+          return (Class<?>) value;
+        }
+        if (value instanceof ParameterizedType) {
+          return (Class<?>) ((ParameterizedType) value).getRawType();
+        }
+      }
+    }
+    return null;
   }
 
-  private static Function<HttpServletRequest, ?> getCookieParamConverter(Parameter parameter,
-                                                                 Function<String, ?> inConverter) {
-    String defValue = parameter.isAnnotationPresent(DefaultValue.class) ? parameter
-        .getAnnotation(DefaultValue.class).value() : null;
-    String name = parameter.getAnnotation(CookieParam.class).value();
-    return r -> {
-      Cookie cookie =
-          stream(r.getCookies()).filter(c -> name.equals(c.getName())).findFirst().orElse(null);
-      return inConverter.apply(ofNullable(cookie).map(Cookie::getValue).orElse(defValue));
-    };
+  private static BiConsumer<HttpServletResponse, Object> getResponseWriter(
+      Method method, ResponseMode responseMode, ConvertersStore convertersStore) {
+    if (responseMode == ResponseMode.SYNC) {
+      return convertersStore.getOutWriter(method.getReturnType());
+    }
+    Class<?> type = responseMode == ResponseMode.COMPLETION_STAGE ? getStageValueType(method)
+        : null;
+    if (type != null && type != Object.class) {
+      return convertersStore
+          .getOutWriter(Response.class.isAssignableFrom(type) ? Response.class : type);
+    }
+    // type of the value is known only when response is resumed.
+    return (resp, value) -> convertersStore
+        .getOutWriter(value instanceof Response ? Response.class : value.getClass())
+        .accept(resp, value);
   }
 
   @Override
@@ -167,20 +323,34 @@ public class RealReflectionServiceParser extends ReflectionServiceParser {
         continue;
       }
       String url = getMethodUrl(serviceClazz, method);
-      Map<Integer, Invocation.Parameter> params = new HashMap<>();
+      PathTemplate template = PathTemplate.parse(url);
+      List<String> cookieNames = new ArrayList<>();
 
-      String inMediaType = getInMediaType(serviceClazz, method);
-      String outMediaType = getOutMediaType(serviceClazz, method);
+      String[] inMediaTypes = getInMediaTypes(serviceClazz, method);
+      String[] outMediaTypes = getOutMediaTypes(serviceClazz, method);
+      ContentNegotiation negotiation = new ContentNegotiation(outMediaTypes, inMediaTypes,
+          !isConsumesDeclared(serviceClazz, method));
+      long maxBodySize = getMaxBodySize(serviceClazz, method, convertersStore);
+      if (maxBodySize <= 0) {
+        throw new IllegalArgumentException(String
+            .format("Max body size of method %s must be positive!", method));
+      }
 
-      for (int i = 0; i < method.getParameterCount(); i++) {
-        Parameter parameter = method.getParameters()[i];
-        Function<HttpServletRequest, ?> converter =
-            getParamConverter(parameter, convertersStore, methodType, inMediaType);
-        params.put(i, new Invocation.Parameter(converter, parameter));
+      Parameter[] parameters = method.getParameters();
+      Binder[] binders = new Binder[parameters.length];
+      for (int i = 0; i < parameters.length; i++) {
+        binders[i] = getBinder(i, parameters[i], convertersStore, methodType, inMediaTypes,
+            maxBodySize, template, cookieNames);
       }
+      ResponseMode responseMode = getResponseMode(method);
       invocations.add(
-          new Invocation(url, method, params, method.getParameterCount(), methodType, outMediaType,
-              convertersStore.getOutWriter(method.getReturnType())));
+          new Invocation(url, method, binders, method.getParameterCount(), methodType,
+              negotiation.getProduced(0),
+              getResponseWriter(method, responseMode, convertersStore),
+              cookieNames.toArray(new String[cookieNames.size()]),
+              ValidationPlan.compile(VALIDATOR_FACTORY, method, binders), responseMode,
+              maxBodySize, negotiation, getCachePolicy(method, methodType, responseMode, url),
+              getInvalidatedCaches(method, responseMode)));
     }
     return invocations;
   }
@@ -0,0 +1,44 @@
+package ua.danit.rest.core;
+
+import javax.ws.rs.CookieParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Test service with methods reading request state bound into request context.
+ *
+ * @author Andrey Minov
+ */
+@Path("/context")
+@Produces(MediaType.TEXT_PLAIN)
+public class ContextService {
+  private Runnable forward = () -> { };
+
+  @GET
+  @Path("/session")
+  public String session(@CookieParam("session") String session,
+                        @CookieParam("locale") String locale) {
+    return session + "/" + locale;
+  }
+
+  @GET
+  @Path("/count")
+  public String count(@QueryParam("count") int count) {
+    return String.valueOf(count);
+  }
+
+  @GET
+  @Path("/forward")
+  public String forward(@QueryParam("value") String value,
+                        @CookieParam("session") String session) {
+    forward.run();
+    return value + "/" + session;
+  }
+
+  void setForward(Runnable forward) {
+    this.forward = forward;
+  }
+}
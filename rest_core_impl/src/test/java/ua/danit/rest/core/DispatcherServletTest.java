@@ -0,0 +1,155 @@
+package ua.danit.rest.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import ua.danit.rest.core.convertors.ConvertersStore;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Test for dispatching of requests by dispatcher servlet.
+ *
+ * @author Andrey Minov
+ */
+public class DispatcherServletTest {
+
+  private ContextService service;
+  private ServicesStore servicesStore;
+  private DispatcherServlet servlet;
+
+  private static HttpServletRequest request(String uri, Cookie... cookies) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getContextPath()).thenReturn("");
+    when(request.getServletPath()).thenReturn("/resources");
+    when(request.getRequestURI()).thenReturn("/resources" + uri);
+    when(request.getCookies()).thenReturn(cookies.length > 0 ? cookies : null);
+    return request;
+  }
+
+  private String call(HttpServletRequest request) throws IOException, ServletException {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    BodyStream body = new BodyStream();
+    when(response.getOutputStream()).thenReturn(body);
+    servlet.doGet(request, response);
+    return body.toString();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    service = new ContextService();
+    servicesStore = new ServicesStore(new ConvertersStore(), c -> service,
+        new RealReflectionServiceParser()::parse);
+    servicesStore.addService(ContextService.class);
+    servlet = new DispatcherServlet(servicesStore);
+  }
+
+  @Test
+  public void testFailureOnExecutorAnswered() throws Exception {
+    HttpServletRequest request = request("/context/session");
+    AsyncContext asyncContext = mock(AsyncContext.class);
+    when(request.startAsync()).thenReturn(asyncContext);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenThrow(new IOException("Connection reset"));
+
+    new DispatcherServlet(servicesStore, 0, Runnable::run).doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    verify(asyncContext).complete();
+  }
+
+  @Test
+  public void testMissingCookieBoundAsNull() throws Exception {
+    assertEquals("null/uk", call(request("/context/session", new Cookie("locale", "uk"))));
+    assertEquals("null/null", call(request("/context/session")));
+  }
+
+  @Test
+  public void testFirstOfDuplicatedCookiesBound() throws Exception {
+    assertEquals("7f3a/uk", call(request("/context/session", new Cookie("session", "7f3a"),
+        new Cookie("locale", "uk"), new Cookie("session", "9b21"))));
+  }
+
+  @Test
+  public void testSequentialRequestsOfThreadDoNotShareValues() throws Exception {
+    assertEquals("7f3a/uk", call(request("/context/session", new Cookie("session", "7f3a"),
+        new Cookie("locale", "uk"))));
+    assertEquals("null/en", call(request("/context/session", new Cookie("locale", "en"))));
+
+    HttpServletRequest counted = request("/context/count");
+    when(counted.getParameter("count")).thenReturn("42");
+    assertEquals("42", call(counted));
+    HttpServletRequest missing = request("/context/count");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    servlet.doGet(missing, response);
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST,
+        "Required parameter is missing!");
+  }
+
+  @Test
+  public void testForwardedRequestDispatchedWithOwnContext() throws Exception {
+    HttpServletRequest inner = request("/context/session", new Cookie("session", "inner"),
+        new Cookie("locale", "en"));
+    String[] forwarded = new String[1];
+    service.setForward(() -> {
+      try {
+        forwarded[0] = call(inner);
+      } catch (IOException | ServletException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    HttpServletRequest outer = request("/context/forward", new Cookie("session", "outer"));
+    when(outer.getParameter("value")).thenReturn("kyiv");
+
+    assertEquals("kyiv/outer", call(outer));
+    assertEquals("inner/en", forwarded[0]);
+    service.setForward(() -> { });
+    assertEquals("null/uk", call(request("/context/session", new Cookie("locale", "uk"))));
+  }
+
+  /**
+   * Output stream collecting body of the response.
+   */
+  private static class BodyStream extends ServletOutputStream {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      bytes.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      bytes.write(b, off, len);
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      // body is written synchronously.
+    }
+
+    @Override
+    public String toString() {
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package ua.danit.rest.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ua.danit.rest.core.ApplicationBuilder.builder;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+import ua.danit.rest.core.async.AsyncService;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Tests for applying server profile and reading server telemetry.
+ *
+ * @author Andrey Minov
+ */
+public class ServerProfileTest {
+  private static final int SERVICE_PORT = 3437;
+  private static final int HTTP2_PORT = 3438;
+  private static final String BLOCKING_PATH = "/resources/async/blocking?millis=1";
+  private static final String PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n";
+  private static final byte[] EMPTY_SETTINGS = {0, 0, 0, 4, 0, 0, 0, 0, 0};
+  private static final int SETTINGS_FRAME = 4;
+
+  private static RestApplication startApplication(int port, ServerProfile profile)
+      throws Exception {
+    RestApplication application = new RestApplicationDelegate(
+        builder().withPort(port).withMatchingUrls("/resources/*")
+                 .withServerProfile(profile)
+                 .withServiceInstance(new AsyncService())
+                 .build(new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse));
+    application.start(false);
+    return application;
+  }
+
+  private static int callGet(int port) throws Exception {
+    URL url = new URL("http://localhost:" + port + BLOCKING_PATH);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    int status = connection.getResponseCode();
+    try (InputStream stream = connection.getInputStream()) {
+      ByteStreams.exhaust(stream);
+    }
+    return status;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMinThreadsGreaterThanMax() {
+    ServerProfile.defaults().withThreads(20, 10);
+  }
+
+  @Test
+  public void testProfileAppliedAndTelemetryCollected() throws Exception {
+    RestApplication application =
+        startApplication(SERVICE_PORT, ServerProfile.lowLatency().withThreads(12, 12));
+    try {
+      assertEquals(200, callGet(SERVICE_PORT));
+      ServerTelemetry telemetry = application.getTelemetry();
+      assertEquals(12, telemetry.getMaxThreads());
+      assertEquals(12, telemetry.getThreads());
+      assertTrue(telemetry.getBusyThreads() > 0);
+      assertTrue(telemetry.getPoolUtilization() <= 1);
+      assertEquals(1, telemetry.getConnectionsTotal());
+      assertEquals(1, telemetry.getConnections());
+    } finally {
+      application.stop();
+    }
+  }
+
+  @Test
+  public void testHttp2CleartextServedWithHttp11() throws Exception {
+    RestApplication application = startApplication(HTTP2_PORT,
+        ServerProfile.defaults().withHttp2Cleartext().withMaxConcurrentStreams(16));
+    try {
+      assertEquals(200, callGet(HTTP2_PORT));
+      // prior knowledge: server answers connection preface with its settings frame.
+      try (Socket socket = new Socket("localhost", HTTP2_PORT)) {
+        OutputStream output = socket.getOutputStream();
+        output.write(PREFACE.getBytes(StandardCharsets.US_ASCII));
+        output.write(EMPTY_SETTINGS);
+        output.flush();
+        byte[] header = new byte[EMPTY_SETTINGS.length];
+        new DataInputStream(socket.getInputStream()).readFully(header);
+        assertEquals(SETTINGS_FRAME, header[3]);
+      }
+      try (Socket socket = new Socket("localhost", HTTP2_PORT)) {
+        OutputStream output = socket.getOutputStream();
+        output.write(("GET " + BLOCKING_PATH + " HTTP/1.1\r\nHost: localhost\r\n"
+            + "Connection: Upgrade, HTTP2-Settings\r\nUpgrade: h2c\r\n"
+            + "HTTP2-Settings: \r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        assertTrue(reader.readLine().startsWith("HTTP/1.1 101"));
+      }
+    } finally {
+      application.stop();
+    }
+  }
+}
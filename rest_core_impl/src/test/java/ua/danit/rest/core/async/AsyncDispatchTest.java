@@ -0,0 +1,106 @@
+package ua.danit.rest.core.async;
+
+import static org.junit.Assert.assertEquals;
+import static ua.danit.rest.core.ApplicationBuilder.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.io.ByteStreams;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ua.danit.rest.core.ReflectionServiceSupplier;
+import ua.danit.rest.core.RestApplication;
+import ua.danit.rest.core.RestApplicationDelegate;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Tests for dispatching of asynchronous service methods.
+ *
+ * @author Andrey Minov
+ */
+public class AsyncDispatchTest {
+  private static final int SERVICE_PORT = 3435;
+  private static final String SERVICE_URI = "http://localhost:" + SERVICE_PORT + "/resources";
+
+  private static AsyncService service;
+  private static RestApplication application;
+
+  @BeforeClass
+  public static void initApplication() throws Exception {
+    service = new AsyncService();
+    application = new RestApplicationDelegate(
+        builder().withPort(SERVICE_PORT).withMatchingUrls("/resources/*")
+                 .withAsyncTimeout(300, TimeUnit.MILLISECONDS)
+                 .withServiceInstance(service)
+                 .build(new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse));
+    application.start(false);
+  }
+
+  @AfterClass
+  public static void closeApplication() throws Exception {
+    application.stop();
+    service.shutdown();
+  }
+
+  private static String[] callGet(String uri) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(SERVICE_URI + uri).openConnection();
+    try {
+      int status = connection.getResponseCode();
+      InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      String body = stream != null ? new String(ByteStreams.toByteArray(stream),
+          StandardCharsets.UTF_8) : "";
+      return new String[] {String.valueOf(status), body};
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void testCompletionStage() throws Exception {
+    String[] response = callGet("/async/stage?value=kyiv");
+    assertEquals("200", response[0]);
+    assertEquals("stage kyiv", response[1]);
+  }
+
+  @Test
+  public void testFailedStage() throws Exception {
+    assertEquals("404", callGet("/async/failed")[0]);
+  }
+
+  @Test
+  public void testErrorResponseWritten() throws Exception {
+    String[] response = callGet("/async/rejected");
+    assertEquals("409", response[0]);
+    assertEquals("measurement is stored", response[1]);
+  }
+
+  @Test
+  public void testSuspendedResponse() throws Exception {
+    String[] response = callGet("/async/suspended?value=21");
+    assertEquals("200", response[0]);
+    assertEquals("42", response[1]);
+  }
+
+  @Test
+  public void testMissingParameterOfSuspended() throws Exception {
+    assertEquals("400", callGet("/async/suspended")[0]);
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    assertEquals("503", callGet("/async/never")[0]);
+  }
+
+  @Test
+  public void testTimeoutExtendedByHandler() throws Exception {
+    String[] response = callGet("/async/extended?millis=500");
+    assertEquals("200", response[0]);
+    assertEquals("extended", response[1]);
+  }
+}
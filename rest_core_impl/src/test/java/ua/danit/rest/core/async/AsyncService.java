@@ -0,0 +1,82 @@
+package ua.danit.rest.core.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Test service with asynchronous methods.
+ *
+ * @author Andrey Minov
+ */
+@Path("/async")
+@Produces(MediaType.TEXT_PLAIN)
+public class AsyncService {
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+  @GET
+  @Path("/stage")
+  public CompletionStage<String> stage(@QueryParam("value") String value) {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    executor.schedule(() -> future.complete("stage " + value), 50, TimeUnit.MILLISECONDS);
+    return future;
+  }
+
+  @GET
+  @Path("/failed")
+  public CompletableFuture<String> failed() {
+    return CompletableFuture.supplyAsync(() -> {
+      throw new NotFoundException();
+    }, executor);
+  }
+
+  @GET
+  @Path("/rejected")
+  public void rejected(@Suspended AsyncResponse response) {
+    executor.execute(() -> response.resume(new WebApplicationException(
+        Response.status(Response.Status.CONFLICT).type(MediaType.TEXT_PLAIN_TYPE)
+                .entity("measurement is stored").build())));
+  }
+
+  @GET
+  @Path("/suspended")
+  public void suspended(@QueryParam("value") int value, @Suspended AsyncResponse response) {
+    executor.schedule(() -> response.resume(value * 2), 50, TimeUnit.MILLISECONDS);
+  }
+
+  @GET
+  @Path("/extended")
+  public void extended(@QueryParam("millis") long millis, @Suspended AsyncResponse response) {
+    response.setTimeoutHandler(r -> r.setTimeout(millis, TimeUnit.MILLISECONDS));
+    executor.schedule(() -> response.resume("extended"), millis, TimeUnit.MILLISECONDS);
+  }
+
+  @GET
+  @Path("/never")
+  public CompletionStage<String> never() {
+    return new CompletableFuture<>();
+  }
+
+  @GET
+  @Path("/blocking")
+  public String blocking(@QueryParam("millis") long millis) throws InterruptedException {
+    Thread.sleep(millis);
+    return Thread.currentThread().toString();
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,78 @@
+package ua.danit.rest.core.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static ua.danit.rest.core.ApplicationBuilder.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.io.ByteStreams;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ua.danit.rest.core.ExecutionMode;
+import ua.danit.rest.core.ReflectionServiceSupplier;
+import ua.danit.rest.core.RestApplication;
+import ua.danit.rest.core.RestApplicationDelegate;
+import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+
+/**
+ * Tests for dispatching of service methods on virtual threads. Tests are skipped on JVM without
+ * virtual threads.
+ *
+ * @author Andrey Minov
+ */
+public class VirtualExecutionTest {
+  private static final int SERVICE_PORT = 3436;
+  private static final String SERVICE_URI = "http://localhost:" + SERVICE_PORT + "/resources";
+
+  private static AsyncService service;
+  private static RestApplication application;
+
+  @BeforeClass
+  public static void initApplication() throws Exception {
+    assumeTrue(ExecutionMode.VIRTUAL.isSupported());
+    service = new AsyncService();
+    application = new RestApplicationDelegate(
+        builder().withPort(SERVICE_PORT).withMatchingUrls("/resources/*")
+                 .withExecutionMode(ExecutionMode.VIRTUAL)
+                 .withServiceInstance(service)
+                 .build(new ReflectionServiceSupplier(), new RealReflectionServiceParser()::parse));
+    application.start(false);
+  }
+
+  @AfterClass
+  public static void closeApplication() throws Exception {
+    if (application != null) {
+      application.stop();
+      service.shutdown();
+    }
+  }
+
+  private static String callGet(String uri) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(SERVICE_URI + uri).openConnection();
+    try {
+      assertEquals(200, connection.getResponseCode());
+      try (InputStream stream = connection.getInputStream()) {
+        return new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void testBlockingMethodOnVirtualThread() throws Exception {
+    assertTrue(callGet("/async/blocking?millis=10").startsWith("VirtualThread"));
+  }
+
+  @Test
+  public void testAsyncMethodOnVirtualMode() throws Exception {
+    assertEquals("stage minsk", callGet("/async/stage?value=minsk"));
+  }
+}
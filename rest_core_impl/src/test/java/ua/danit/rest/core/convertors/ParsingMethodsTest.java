@@ -1,8 +1,13 @@
 package ua.danit.rest.core.convertors;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static ua.danit.rest.core.utils.Reflections.fillParameters;
@@ -11,16 +16,27 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import ua.danit.rest.core.ServicesStore;
+import ua.danit.rest.core.annotations.Cacheable;
+import ua.danit.rest.core.annotations.InvalidatesCache;
+import ua.danit.rest.core.dispatch.RequestContext;
 import ua.danit.rest.core.parsing.Invocation;
 import ua.danit.rest.core.parsing.MethodType;
 import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+import ua.danit.rest.core.routing.PathMatch;
 
 /**
  * Test for storage convertors.
@@ -40,10 +56,23 @@ public class ParsingMethodsTest {
     InputStream stream = new ByteArrayInputStream(value);
     ServletInputStream result = mock(ServletInputStream.class);
     when(result.read(any())).then(i -> stream.read(i.getArgument(0)));
+    when(result.read(any(), anyInt(), anyInt()))
+        .then(i -> stream.read(i.getArgument(0), i.getArgument(1), i.getArgument(2)));
     when(result.read()).then(i -> stream.read());
     return result;
   }
 
+  private static Object[] fill(Invocation invocation, HttpServletRequest request) {
+    return fill(invocation, request, new PathMatch());
+  }
+
+  private static Object[] fill(Invocation invocation, HttpServletRequest request,
+                               PathMatch match) {
+    RequestContext context = new RequestContext(match);
+    context.begin(request, invocation);
+    return fillParameters(invocation, context);
+  }
+
   @Before
   public void setUp() throws Exception {
     request = mock(HttpServletRequest.class);
@@ -60,10 +89,32 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.GET, "/run/workouts");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {10, 1, 2017L}, parameters);
   }
 
+  @Test
+  public void testPathParams() {
+    PathMatch match = new PathMatch();
+    Invocation invocation = servicesStore.getServiceMeta(MethodType.GET, "/run/routes/New%20York/42", 0, match);
+    assertNotNull(invocation);
+
+    Object[] parameters = fill(invocation, request, match);
+    assertArrayEquals(new Object[] {"New York", 42}, parameters);
+  }
+
+  @Test
+  public void testLiteralPathSegmentPreferred() {
+    Invocation latest = servicesStore.getServiceMeta(MethodType.GET, "/run/routes/Kiev/latest");
+    assertNotNull(latest);
+    assertEquals("getLatestRoute", latest.getMethod().getName());
+    assertSame(latest, servicesStore.getServiceMeta(MethodType.GET, "/run/routes/Lviv/latest"));
+    assertEquals("getRoute", servicesStore.getServiceMeta(MethodType.GET, "/run/routes/Kiev/7")
+                                          .getMethod().getName());
+    assertNull(servicesStore.getServiceMeta(MethodType.GET, "/run/routes/Kiev"));
+    assertNull(servicesStore.getServiceMeta(MethodType.GET, "/run/routes//latest"));
+  }
+
   @Test
   public void testSubmitPaceWithBodyParam() throws IOException {
     when(request.getParameter("pace")).thenReturn("10");
@@ -73,7 +124,7 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/pace");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {10, "test"}, parameters);
   }
 
@@ -85,7 +136,7 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/map");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {new RunService.MapEntry("Kiev", new String[] {"1", "2", "3"})}, parameters);
   }
 
@@ -97,7 +148,82 @@ public class ParsingMethodsTest {
     Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/binary");
     assertNotNull(invocation);
 
-    Object[] parameters = fillParameters(invocation, request);
+    Object[] parameters = fill(invocation, request);
     assertArrayEquals(new Object[] {new byte[] {1, 2, 3}}, parameters);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testBodyLimitEnforcedWhileReading() throws IOException {
+    ServletInputStream stream = fromString("{\"city\":\"Kiev\", \"route\": [\"1\", \"2\"]}");
+    when(request.getInputStream()).thenReturn(stream);
+
+    Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/limited");
+    assertNotNull(invocation);
+    assertEquals(16, invocation.getMaxBodySize());
+    assertEquals(ConvertersStore.DEFAULT_MAX_BODY_SIZE,
+        servicesStore.getServiceMeta(MethodType.POST, "/run/map").getMaxBodySize());
+    try {
+      fill(invocation, request);
+      fail("Body larger than limit must be rejected!");
+    } catch (PayloadTooLargeException e) {
+      assertEquals(16, e.getLimit());
+    }
+  }
+
+  @Test
+  public void testBodyConverterSelectedByContentType() throws IOException {
+    ServletInputStream json = fromString("{\"city\":\"Kiev\"}");
+    when(request.getInputStream()).thenReturn(json);
+    Invocation invocation = servicesStore.getServiceMeta(MethodType.POST, "/run/notes");
+    assertNotNull(invocation);
+
+    RequestContext context = new RequestContext();
+    context.begin(request, invocation);
+    context.setConsumedType(invocation.getNegotiation().selectConsumed("application/json"));
+    assertArrayEquals(new Object[] {new RunService.MapEntry("Kiev", null)},
+        fillParameters(invocation, context));
+
+    ServletInputStream text = fromString("Kiev");
+    when(request.getInputStream()).thenReturn(text);
+    context.begin(request, invocation);
+    context.setConsumedType(invocation.getNegotiation().selectConsumed("text/plain"));
+    assertArrayEquals(new Object[] {"Kiev"}, fillParameters(invocation, context));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCacheableWithContextParamRejected() {
+    new RealReflectionServiceParser().parse(new ConvertersStore(), ContextCachedService.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAsyncInvalidatesCacheRejected() {
+    new RealReflectionServiceParser().parse(new ConvertersStore(), AsyncInvalidatingService.class);
+  }
+
+  /**
+   * Service caching response of the method depending on the request.
+   */
+  @Path("/cached")
+  public static class ContextCachedService {
+    @GET
+    @Path("/weather")
+    @Cacheable
+    public String getWeather(@QueryParam("city") String city,
+                             @Context HttpServletRequest request) {
+      return city + request.getRemoteAddr();
+    }
+  }
+
+  /**
+   * Service clearing cache from the method completing after it returns.
+   */
+  @Path("/invalidating")
+  public static class AsyncInvalidatingService {
+    @POST
+    @Path("/weather")
+    @InvalidatesCache("weather")
+    public CompletionStage<String> storeWeather(@QueryParam("city") String city) {
+      return CompletableFuture.completedFuture(city);
+    }
+  }
+}
@@ -6,10 +6,13 @@ import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
+import ua.danit.rest.core.annotations.MaxBodySize;
+
 /**
  * Test run service class
  *
@@ -24,6 +27,18 @@ class RunService {
     return 1;
   }
 
+  @GET
+  @Path("/routes/{city}/{distance}")
+  public int getRoute(@PathParam("city") String city, @PathParam("distance") int distance) {
+    return 1;
+  }
+
+  @GET
+  @Path("/routes/{city}/latest")
+  public int getLatestRoute(@PathParam("city") String city) {
+    return 1;
+  }
+
   @POST
   @Path("/pace")
   public int submitPace(@QueryParam("pace") Integer pace, String time) {
@@ -44,6 +59,21 @@ class RunService {
     return 1;
   }
 
+  @POST
+  @Path("/limited")
+  @MaxBodySize(16)
+  @Consumes(MediaType.APPLICATION_JSON)
+  public int submitLimitedRunMap(MapEntry map) {
+    return 1;
+  }
+
+  @POST
+  @Path("/notes")
+  @Consumes({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+  public int submitNotes(MapEntry map) {
+    return 1;
+  }
+
   public static class MapEntry {
     private String city;
     private String[] route;
@@ -0,0 +1,123 @@
+package ua.danit.rest.weatherapp.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import javax.ws.rs.core.MediaType;
+
+import ua.danit.rest.core.convertors.EncodedEntity;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.Weather;
+
+/**
+ * Weather measurement encoded once into JSON and {@value WeatherBinaryCodec#MEDIA_TYPE}, so it
+ * is sent by copying bytes instead of building and serializing {@link Weather} on every read.
+ * <p/>
+ * Weather of the city is encoded completely. Weather by location contains location of the
+ * request, so measurement is encoded without it and location fields are added to the bytes
+ * when entity is created.
+ *
+ * @author Andrey Minov
+ */
+public final class EncodedWeather {
+  private static final Gson GSON = new Gson();
+  private static final WeatherBinaryCodec CODEC = new WeatherBinaryCodec();
+
+  private final Measure measure;
+  private final byte[] json;
+  private final byte[] binary;
+  private final EncodedEntity entity;
+
+  private EncodedWeather(String city, String country, Measure measure) {
+    this.measure = measure;
+    Weather weather = toWeather(city, country, null, measure);
+    this.json = GSON.toJson(weather).getBytes(StandardCharsets.UTF_8);
+    this.binary = CODEC.encode(weather);
+    this.entity = city != null ? new EncodedEntity(ImmutableMap.of(MediaType.APPLICATION_JSON,
+        json, WeatherBinaryCodec.MEDIA_TYPE, binary), () -> weather) : null;
+  }
+
+  /**
+   * Encode measurement in the city.
+   *
+   * @param city    the city of the measurement.
+   * @param country the country of the city.
+   * @param measure the measurement.
+   * @return the encoded weather.
+   */
+  public static EncodedWeather ofCity(String city, String country, Measure measure) {
+    return new EncodedWeather(city, country, measure);
+  }
+
+  /**
+   * Encode measurement at geo location, location is added when entity is created.
+   *
+   * @param measure the measurement.
+   * @return the encoded weather.
+   */
+  public static EncodedWeather ofLocation(Measure measure) {
+    return new EncodedWeather(null, null, measure);
+  }
+
+  /**
+   * Create weather of the measurement.
+   *
+   * @param city     the city of the measurement, or null.
+   * @param country  the country of the city, or null.
+   * @param location the location of the measurement, or null.
+   * @param measure  the measurement.
+   * @return the weather with measure time formatted in UTC.
+   */
+  public static Weather toWeather(String city, String country, Weather.Location location,
+                                  Measure measure) {
+    return new Weather(city, country, location, measure.getCode(), measure.getTemperature(),
+        measure.getMeasureTimeUtc().withZoneSameInstant(ZoneOffset.UTC)
+               .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+  }
+
+  public Measure getMeasure() {
+    return measure;
+  }
+
+  /**
+   * Gets entity of weather in the city.
+   *
+   * @return the entity encoded in JSON and binary format.
+   * @throws IllegalStateException when measurement is encoded by location.
+   */
+  public EncodedEntity toEntity() {
+    checkState(entity != null, "Weather is encoded without city!");
+    return entity;
+  }
+
+  /**
+   * Gets entity of weather at geo location.
+   *
+   * @param longitude the longitude of the location.
+   * @param latitude  the latitude of the location.
+   * @return the entity encoded in JSON and binary format.
+   * @throws IllegalStateException    when measurement is encoded for city.
+   * @throws IllegalArgumentException when location is not finite number.
+   */
+  public EncodedEntity toEntity(double longitude, double latitude) {
+    checkState(entity == null, "Weather is encoded for city!");
+    checkArgument(Double.isFinite(longitude) && Double.isFinite(latitude),
+        "Location %s, %s is not finite!", longitude, latitude);
+    byte[] location = ("{\"location\":{\"longitude\":" + longitude + ",\"latitude\":" + latitude
+                       + "}" + (json.length > 2 ? "," : "")).getBytes(StandardCharsets.UTF_8);
+    // JSON of measurement without location starts with {, it is replaced by location.
+    byte[] located = new byte[location.length + json.length - 1];
+    System.arraycopy(location, 0, located, 0, location.length);
+    System.arraycopy(json, 1, located, location.length, json.length - 1);
+    return new EncodedEntity(ImmutableMap
+        .of(MediaType.APPLICATION_JSON, located, WeatherBinaryCodec.MEDIA_TYPE,
+            CODEC.withLocation(binary, longitude, latitude)),
+        () -> toWeather(null, null, new Weather.Location(longitude, latitude), measure));
+  }
+}
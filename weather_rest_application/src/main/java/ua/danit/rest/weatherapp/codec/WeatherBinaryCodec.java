@@ -0,0 +1,336 @@
+package ua.danit.rest.weatherapp.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import ua.danit.rest.core.convertors.MediaCodec;
+import ua.danit.rest.weatherapp.entity.Weather;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Codec of {@link Weather} in compact self-describing binary format of media type
+ * {@value #MEDIA_TYPE}.
+ * <p/>
+ * Message starts with magic byte 'W' and format version, followed by fields and terminated by
+ * zero byte. Every field starts with varint key {@code number << 3 | wire type}, so decoder skips
+ * fields it does not know and absent fields are not written at all:
+ * <ul>
+ * <li>1 city, 2 country - length delimited (wire type 2): varint length and UTF-8 bytes.</li>
+ * <li>3 longitude, 4 latitude - 64-bit IEEE 754 (wire type 1), little endian.</li>
+ * <li>5 weather code - varint ordinal of {@link WeatherCode} (wire type 0).</li>
+ * <li>6 temperature - 32-bit IEEE 754 float (wire type 5), little endian.</li>
+ * <li>7 measure time - zig-zag varint of epoch milliseconds in UTC (wire type 0).</li>
+ * </ul>
+ * Temperature is transferred with float precision and decoded into the closest short decimal,
+ * for example 21.3 stays 21.3.
+ *
+ * @author Andrey Minov
+ */
+public class WeatherBinaryCodec implements MediaCodec {
+  /**
+   * Media type of the binary weather format.
+   */
+  public static final String MEDIA_TYPE = "application/x-weather-binary";
+
+  private static final int MAGIC = 'W';
+  private static final int VERSION = 1;
+  private static final int END = 0;
+
+  private static final int VARINT = 0;
+  private static final int FIXED64 = 1;
+  private static final int LENGTH_DELIMITED = 2;
+  private static final int FIXED32 = 5;
+
+  private static final int CITY = 1;
+  private static final int COUNTRY = 2;
+  private static final int LONGITUDE = 3;
+  private static final int LATITUDE = 4;
+  private static final int WEATHER_CODE = 5;
+  private static final int TEMPERATURE = 6;
+  private static final int MEASURE_TIME = 7;
+
+  private static final WeatherCode[] CODES = WeatherCode.values();
+
+  @Override
+  public String getMediaType() {
+    return MEDIA_TYPE;
+  }
+
+  @Override
+  public Object read(InputStream stream, Class<?> clazz) throws IOException {
+    checkArgument(clazz.isAssignableFrom(Weather.class), "Class %s is not supported by %s!",
+        clazz, MEDIA_TYPE);
+    return decode(ByteStreams.toByteArray(stream));
+  }
+
+  @Override
+  public void write(Object entity, OutputStream stream) throws IOException {
+    checkArgument(entity instanceof Weather, "Entity %s is not supported by %s!",
+        entity.getClass(), MEDIA_TYPE);
+    Encoder encoder = encoder((Weather) entity);
+    stream.write(encoder.bytes, 0, encoder.size);
+  }
+
+  /**
+   * Encode weather into binary message.
+   *
+   * @param weather the weather to encode.
+   * @return the binary message.
+   */
+  public byte[] encode(Weather weather) {
+    Encoder encoder = encoder(weather);
+    byte[] result = new byte[encoder.size];
+    System.arraycopy(encoder.bytes, 0, result, 0, encoder.size);
+    return result;
+  }
+
+  /**
+   * Add location fields to the message encoded without them, so measurement encoded once can be
+   * sent for different locations. Fields are inserted after the format version.
+   *
+   * @param message   the binary message without location.
+   * @param longitude the longitude of the location.
+   * @param latitude  the latitude of the location.
+   * @return the binary message with location.
+   * @throws IllegalArgumentException when message is not correct.
+   */
+  public byte[] withLocation(byte[] message, double longitude, double latitude) {
+    checkArgument(message.length >= 3 && message[0] == MAGIC, "Not a %s message!", MEDIA_TYPE);
+    // both keys are single byte varints.
+    Encoder encoder = new Encoder(message.length + 18);
+    System.arraycopy(message, 0, encoder.bytes, 0, 2);
+    encoder.size = 2;
+    encoder.writeKey(LONGITUDE, FIXED64);
+    encoder.writeFixed64(Double.doubleToRawLongBits(longitude));
+    encoder.writeKey(LATITUDE, FIXED64);
+    encoder.writeFixed64(Double.doubleToRawLongBits(latitude));
+    System.arraycopy(message, 2, encoder.bytes, encoder.size, message.length - 2);
+    return encoder.bytes;
+  }
+
+  private Encoder encoder(Weather weather) {
+    byte[] city = weather.getCity() != null ? weather.getCity().getBytes(StandardCharsets.UTF_8)
+        : null;
+    byte[] country = weather.getCountry() != null ? weather.getCountry()
+        .getBytes(StandardCharsets.UTF_8) : null;
+    // every field takes at most key, length varint and value bytes.
+    Encoder encoder = new Encoder(48 + (city != null ? city.length : 0)
+        + (country != null ? country.length : 0));
+    encoder.bytes[encoder.size++] = MAGIC;
+    encoder.bytes[encoder.size++] = VERSION;
+    if (city != null) {
+      encoder.writeBytes(CITY, city);
+    }
+    if (country != null) {
+      encoder.writeBytes(COUNTRY, country);
+    }
+    if (weather.getLocation() != null) {
+      encoder.writeKey(LONGITUDE, FIXED64);
+      encoder.writeFixed64(Double.doubleToRawLongBits(weather.getLocation().getLongitude()));
+      encoder.writeKey(LATITUDE, FIXED64);
+      encoder.writeFixed64(Double.doubleToRawLongBits(weather.getLocation().getLatitude()));
+    }
+    if (weather.getWeatherCode() != null) {
+      encoder.writeKey(WEATHER_CODE, VARINT);
+      encoder.writeVarint(weather.getWeatherCode().ordinal());
+    }
+    if (weather.getTemperature() != null) {
+      encoder.writeKey(TEMPERATURE, FIXED32);
+      encoder.writeFixed32(Float.floatToRawIntBits(weather.getTemperature().floatValue()));
+    }
+    if (weather.getMeasureTime() != null) {
+      long millis = LocalDateTime.parse(weather.getMeasureTime()).toInstant(ZoneOffset.UTC)
+                                 .toEpochMilli();
+      encoder.writeKey(MEASURE_TIME, VARINT);
+      encoder.writeVarint(millis << 1 ^ millis >> 63);
+    }
+    encoder.bytes[encoder.size++] = END;
+    return encoder;
+  }
+
+  /**
+   * Decode weather from binary message.
+   *
+   * @param message the binary message.
+   * @return the decoded weather.
+   * @throws IllegalArgumentException when message is not correct.
+   */
+  public Weather decode(byte[] message) {
+    checkArgument(message.length >= 3 && message[0] == MAGIC, "Not a %s message!", MEDIA_TYPE);
+    checkArgument(message[1] == VERSION, "Version %s of %s is not supported!", message[1],
+        MEDIA_TYPE);
+    Decoder decoder = new Decoder(message, 2);
+    String city = null;
+    String country = null;
+    Double longitude = null;
+    Double latitude = null;
+    WeatherCode code = null;
+    Double temperature = null;
+    String measureTime = null;
+    for (long key = decoder.readVarint(); key != END; key = decoder.readVarint()) {
+      int wireType = (int) (key & 7);
+      switch ((int) (key >>> 3)) {
+        case CITY:
+          city = decoder.readString();
+          break;
+        case COUNTRY:
+          country = decoder.readString();
+          break;
+        case LONGITUDE:
+          longitude = Double.longBitsToDouble(decoder.readFixed64());
+          break;
+        case LATITUDE:
+          latitude = Double.longBitsToDouble(decoder.readFixed64());
+          break;
+        case WEATHER_CODE:
+          int ordinal = (int) decoder.readVarint();
+          checkArgument(ordinal >= 0 && ordinal < CODES.length, "Unknown weather code %s!",
+              ordinal);
+          code = CODES[ordinal];
+          break;
+        case TEMPERATURE:
+          float value = Float.intBitsToFloat(decoder.readFixed32());
+          temperature = Double.parseDouble(Float.toString(value));
+          break;
+        case MEASURE_TIME:
+          long encoded = decoder.readVarint();
+          long millis = encoded >>> 1 ^ -(encoded & 1);
+          measureTime = LocalDateTime
+              .ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000)
+                  * 1_000_000, ZoneOffset.UTC).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+          break;
+        default:
+          decoder.skip(wireType);
+      }
+    }
+    Weather.Location location = longitude != null && latitude != null
+        ? new Weather.Location(longitude, latitude) : null;
+    return new Weather(city, country, location, code, temperature, measureTime);
+  }
+
+  private static class Encoder {
+    private final byte[] bytes;
+    private int size;
+
+    private Encoder(int capacity) {
+      this.bytes = new byte[capacity];
+    }
+
+    private void writeKey(int number, int wireType) {
+      writeVarint(number << 3 | wireType);
+    }
+
+    private void writeVarint(long value) {
+      while ((value & ~0x7fL) != 0) {
+        bytes[size++] = (byte) (value & 0x7f | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    private void writeFixed32(int value) {
+      for (int i = 0; i < 4; i++) {
+        bytes[size++] = (byte) (value >>> 8 * i);
+      }
+    }
+
+    private void writeFixed64(long value) {
+      for (int i = 0; i < 8; i++) {
+        bytes[size++] = (byte) (value >>> 8 * i);
+      }
+    }
+
+    private void writeBytes(int number, byte[] value) {
+      writeKey(number, LENGTH_DELIMITED);
+      writeVarint(value.length);
+      System.arraycopy(value, 0, bytes, size, value.length);
+      size += value.length;
+    }
+  }
+
+  private static class Decoder {
+    private final byte[] bytes;
+    private int position;
+
+    private Decoder(byte[] bytes, int position) {
+      this.bytes = bytes;
+      this.position = position;
+    }
+
+    private void require(int length) {
+      checkArgument(length >= 0 && position + length <= bytes.length,
+          "Message of %s is truncated!", MEDIA_TYPE);
+    }
+
+    private long readVarint() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        require(1);
+        byte next = bytes[position++];
+        value |= (long) (next & 0x7f) << shift;
+        if (next >= 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Varint of " + MEDIA_TYPE + " is too long!");
+    }
+
+    private int readFixed32() {
+      require(4);
+      int value = 0;
+      for (int i = 0; i < 4; i++) {
+        value |= (bytes[position++] & 0xff) << 8 * i;
+      }
+      return value;
+    }
+
+    private long readFixed64() {
+      require(8);
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value |= (bytes[position++] & 0xffL) << 8 * i;
+      }
+      return value;
+    }
+
+    private String readString() {
+      int length = (int) readVarint();
+      require(length);
+      String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    private void skip(int wireType) {
+      switch (wireType) {
+        case VARINT:
+          readVarint();
+          break;
+        case FIXED64:
+          require(8);
+          position += 8;
+          break;
+        case LENGTH_DELIMITED:
+          int length = (int) readVarint();
+          require(length);
+          position += length;
+          break;
+        case FIXED32:
+          require(4);
+          position += 4;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown wire type " + wireType + "!");
+      }
+    }
+  }
+}
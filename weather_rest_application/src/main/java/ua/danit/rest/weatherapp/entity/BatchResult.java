@@ -0,0 +1,37 @@
+package ua.danit.rest.weatherapp.entity;
+
+/**
+ * Result of submitting batch of weather measurements.
+ *
+ * @author Andrey Minov
+ */
+public class BatchResult {
+  private long accepted;
+  private long rejected;
+  private String error;
+
+  /**
+   * Instantiates a new batch result.
+   *
+   * @param accepted the number of stored measurements.
+   * @param rejected the number of measurements which are not correct.
+   * @param error    the reason batch was not read to the end, or null when it was.
+   */
+  public BatchResult(long accepted, long rejected, String error) {
+    this.accepted = accepted;
+    this.rejected = rejected;
+    this.error = error;
+  }
+
+  public long getAccepted() {
+    return accepted;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  public String getError() {
+    return error;
+  }
+}
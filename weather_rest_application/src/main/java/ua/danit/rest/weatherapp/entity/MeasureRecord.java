@@ -0,0 +1,106 @@
+package ua.danit.rest.weatherapp.entity;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Measure of the weather together with the place it is stored for, either city and country or
+ * geo location. Used for bulk storing of measurements.
+ *
+ * @author Andrey Minov
+ */
+public class MeasureRecord {
+  private final String city;
+  private final String country;
+  private final Weather.Location location;
+  private final Measure measure;
+
+  private MeasureRecord(String city, String country, Weather.Location location,
+                        Measure measure) {
+    this.city = city;
+    this.country = country;
+    this.location = location;
+    this.measure = measure;
+  }
+
+  /**
+   * Create record of measure in the city.
+   *
+   * @param city    the city of the measure
+   * @param country the country of the city
+   * @param measure the measure of the weather
+   * @return the new measure record.
+   */
+  public static MeasureRecord forCity(String city, String country, Measure measure) {
+    return new MeasureRecord(city, country, null, measure);
+  }
+
+  /**
+   * Create record of measure at geo location.
+   *
+   * @param longitude the longitude of the place
+   * @param latitude  the latitude of the place
+   * @param measure   the measure of the weather
+   * @return the new measure record.
+   */
+  public static MeasureRecord forLocation(double longitude, double latitude, Measure measure) {
+    return new MeasureRecord(null, null, new Weather.Location(longitude, latitude), measure);
+  }
+
+  public boolean isCityRecord() {
+    return location == null;
+  }
+
+  public String getCity() {
+    return city;
+  }
+
+  public String getCountry() {
+    return country;
+  }
+
+  public Weather.Location getLocation() {
+    return location;
+  }
+
+  public Measure getMeasure() {
+    return measure;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    MeasureRecord that = (MeasureRecord) o;
+
+    if (city != null ? !city.equals(that.city) : that.city != null) {
+      return false;
+    }
+    if (country != null ? !country.equals(that.country) : that.country != null) {
+      return false;
+    }
+    if (location != null ? !location.equals(that.location) : that.location != null) {
+      return false;
+    }
+    return measure != null ? measure.equals(that.measure) : that.measure == null;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = city != null ? city.hashCode() : 0;
+    result = 31 * result + (country != null ? country.hashCode() : 0);
+    result = 31 * result + (location != null ? location.hashCode() : 0);
+    result = 31 * result + (measure != null ? measure.hashCode() : 0);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("city", city).add("country", country)
+                      .add("location", location).add("measure", measure).toString();
+  }
+}
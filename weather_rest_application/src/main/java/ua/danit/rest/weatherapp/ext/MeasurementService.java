@@ -1,6 +1,13 @@
 package ua.danit.rest.weatherapp.ext;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
 import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
 
 /**
  * Service which calls third party weather service and return measurement.
@@ -26,6 +33,117 @@ public interface MeasurementService {
    */
   Measure getCurrentWeather(double longitude, double latitude);
 
+  /**
+   * Gets last weather measurement in the city encoded before, so it is sent without
+   * serialization.
+   *
+   * @param city    the city to check weather.
+   * @param country the country of the provided city.
+   * @return the encoded weather of the city, null when there is no measurement or service does
+   *         not keep encoded measurements.
+   */
+  default EncodedWeather getEncodedWeather(String city, String country) {
+    return null;
+  }
+
+  /**
+   * Gets last weather measurement at geo location encoded before, see
+   * {@link #getEncodedWeather(String, String)}.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @return the encoded measurement without location, null when there is no measurement or
+   *         service does not keep encoded measurements.
+   */
+  default EncodedWeather getEncodedWeather(double longitude, double latitude) {
+    return null;
+  }
+
+  /**
+   * Gets version of measurements in the city, it is changed every time measurement of the city is
+   * stored. Version should be taken before the measurement, so it is not newer than measurement.
+   *
+   * @param city    the city of measurements.
+   * @param country the country of the city.
+   * @return the version of measurements, 0 when versions are not supported.
+   */
+  default long getVersion(String city, String country) {
+    return 0;
+  }
+
+  /**
+   * Gets version of measurements at geo location, see {@link #getVersion(String, String)}.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @return the version of measurements, 0 when versions are not supported.
+   */
+  default long getVersion(double longitude, double latitude) {
+    return 0;
+  }
+
+  /**
+   * Gets last weather at geo locations nearest to the point.
+   *
+   * @param longitude the longitude of the point.
+   * @param latitude  the latitude of the point.
+   * @param count     the maximal number of locations.
+   * @return the records of locations from the nearest one, empty when service does not index
+   *         locations.
+   */
+  default List<MeasureRecord> getNearestWeather(double longitude, double latitude, int count) {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Gets last weather at geo locations within radius from the point.
+   *
+   * @param longitude the longitude of the point.
+   * @param latitude  the latitude of the point.
+   * @param radius    the radius in kilometers.
+   * @return the records of locations from the nearest one, empty when service does not index
+   *         locations.
+   */
+  default List<MeasureRecord> getWeatherWithin(double longitude, double latitude,
+                                               double radius) {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Gets history of weather measurements in the city within time range. At most limit oldest
+   * measurements of the range are returned, the next ones are read from the time after the last
+   * returned measurement.
+   *
+   * @param city    the city of measurements.
+   * @param country the country of the city.
+   * @param from    the time of the oldest measurement, inclusive.
+   * @param to      the time of the newest measurement, inclusive.
+   * @param limit   the maximal number of measurements returned.
+   * @return the measurements from the oldest to the newest, empty when service does not keep
+   *         history.
+   */
+  default List<Measure> getMeasures(String city, String country, Instant from, Instant to,
+                                    int limit) {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Gets history of weather measurements at geo location within time range, see
+   * {@link #getMeasures(String, String, Instant, Instant, int)}.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @param from      the time of the oldest measurement, inclusive.
+   * @param to        the time of the newest measurement, inclusive.
+   * @param limit     the maximal number of measurements returned.
+   * @return the measurements from the oldest to the newest, empty when service does not keep
+   *         history.
+   */
+  default List<Measure> getMeasures(double longitude, double latitude, Instant from,
+                                    Instant to, int limit) {
+    return Collections.emptyList();
+  }
+
   /**
    * Store measurement of the weather for location city.
    *
@@ -44,5 +162,20 @@ public interface MeasurementService {
    */
   void storeMeasure(double longitude, double latitude, Measure measure);
 
-
+  /**
+   * Store batch of measurements. Implementations are expected to group records of the same place,
+   * by default records are stored one by one.
+   *
+   * @param records the measurements to store together with their places.
+   */
+  default void storeMeasures(Collection<MeasureRecord> records) {
+    for (MeasureRecord record : records) {
+      if (record.isCityRecord()) {
+        storeMeasure(record.getCity(), record.getCountry(), record.getMeasure());
+      } else {
+        storeMeasure(record.getLocation().getLongitude(), record.getLocation().getLatitude(),
+            record.getMeasure());
+      }
+    }
+  }
 }
@@ -0,0 +1,58 @@
+package ua.danit.rest.weatherapp.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Test;
+import ua.danit.rest.core.convertors.EncodedEntity;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.Weather;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Test for weather encoded before it is read.
+ *
+ * @author Andrey Minov
+ */
+public class EncodedWeatherTest {
+  private static final Gson GSON = new Gson();
+  private static final WeatherBinaryCodec CODEC = new WeatherBinaryCodec();
+  private static final Measure MEASURE = new Measure(-1.5, WeatherCode.SNOW,
+      LocalDateTime.parse("2017-12-24T18:45:00").atZone(ZoneOffset.UTC));
+
+  @Test
+  public void testCityEncodedAsSerializedWeather() {
+    Weather weather = new Weather("Kiev", "Ukraine", null, WeatherCode.SNOW, -1.5,
+        "2017-12-24T18:45:00");
+    EncodedEntity entity = EncodedWeather.ofCity("Kiev", "Ukraine", MEASURE).toEntity();
+
+    assertEquals(GSON.toJson(weather),
+        new String(entity.getBytes(MediaType.APPLICATION_JSON), StandardCharsets.UTF_8));
+    assertArrayEquals(CODEC.encode(weather), entity.getBytes(WeatherBinaryCodec.MEDIA_TYPE));
+  }
+
+  @Test
+  public void testLocationAddedToEncodedMeasure() {
+    Weather weather = new Weather(null, null, new Weather.Location(30.52, -50.45),
+        WeatherCode.SNOW, -1.5, "2017-12-24T18:45:00");
+    EncodedEntity entity = EncodedWeather.ofLocation(MEASURE).toEntity(30.52, -50.45);
+
+    assertEquals(GSON.toJson(weather),
+        new String(entity.getBytes(MediaType.APPLICATION_JSON), StandardCharsets.UTF_8));
+    Weather decoded = CODEC.decode(entity.getBytes(WeatherBinaryCodec.MEDIA_TYPE));
+    assertEquals(weather.getLocation(), decoded.getLocation());
+    assertEquals(GSON.toJson(weather), GSON.toJson(decoded));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCityWeatherHasNoLocation() {
+    EncodedWeather.ofCity("Kiev", "Ukraine", MEASURE).toEntity(30, 50);
+  }
+}
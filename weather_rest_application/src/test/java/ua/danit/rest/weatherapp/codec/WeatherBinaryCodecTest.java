@@ -0,0 +1,71 @@
+package ua.danit.rest.weatherapp.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import ua.danit.rest.weatherapp.entity.Weather;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Test for binary weather codec.
+ *
+ * @author Andrey Minov
+ */
+public class WeatherBinaryCodecTest {
+  private final WeatherBinaryCodec codec = new WeatherBinaryCodec();
+
+  @Test
+  public void testRoundTrip() {
+    Weather weather = new Weather("Kiev", "Ukraine", new Weather.Location(30.5234, 50.4501),
+        WeatherCode.THUNDER_STORMS, 21.3, "2017-11-11T10:00:00");
+    byte[] message = codec.encode(weather);
+    Weather decoded = codec.decode(message);
+
+    assertEquals("Kiev", decoded.getCity());
+    assertEquals("Ukraine", decoded.getCountry());
+    assertEquals(weather.getLocation(), decoded.getLocation());
+    assertEquals(WeatherCode.THUNDER_STORMS, decoded.getWeatherCode());
+    assertEquals(21.3, decoded.getTemperature(), 0);
+    assertEquals("2017-11-11T10:00:00", decoded.getMeasureTime());
+    assertTrue(message.length < 60);
+  }
+
+  @Test
+  public void testAbsentFieldsAreNotWritten() {
+    Weather decoded = codec.decode(codec.encode(new Weather("Kiev", null, null, null, null,
+        null)));
+
+    assertEquals("Kiev", decoded.getCity());
+    assertNull(decoded.getCountry());
+    assertNull(decoded.getLocation());
+    assertNull(decoded.getWeatherCode());
+    assertNull(decoded.getTemperature());
+    assertNull(decoded.getMeasureTime());
+  }
+
+  @Test
+  public void testUnknownFieldsSkipped() {
+    byte[] message = codec.encode(new Weather("Kiev", null, null, WeatherCode.FOG, null, null));
+    // insert field 15 of length delimited type before the end of the message.
+    byte[] extended = Arrays.copyOf(message, message.length + 4);
+    extended[message.length - 1] = 15 << 3 | 2;
+    extended[message.length] = 2;
+    extended[message.length + 1] = 'x';
+    extended[message.length + 2] = 'y';
+    extended[message.length + 3] = 0;
+    Weather decoded = codec.decode(extended);
+
+    assertEquals("Kiev", decoded.getCity());
+    assertEquals(WeatherCode.FOG, decoded.getWeatherCode());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedMessageRejected() {
+    byte[] message = codec.encode(new Weather("Kiev", "Ukraine", null, null, null, null));
+    codec.decode(Arrays.copyOf(message, message.length - 5));
+  }
+}
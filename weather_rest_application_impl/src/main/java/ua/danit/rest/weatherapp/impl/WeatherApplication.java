@@ -2,11 +2,23 @@ package ua.danit.rest.weatherapp.impl;
 
 import static ua.danit.rest.core.ApplicationBuilder.builder;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import ua.danit.rest.core.ReflectionServiceSupplier;
 import ua.danit.rest.core.RestApplication;
 import ua.danit.rest.core.RestApplicationDelegate;
 import ua.danit.rest.core.parsing.RealReflectionServiceParser;
+import ua.danit.rest.weatherapp.codec.WeatherBinaryCodec;
+import ua.danit.rest.weatherapp.ext.MeasurementService;
 import ua.danit.rest.weatherapp.impl.ext.InMemoryMeasureService;
+import ua.danit.rest.weatherapp.impl.ext.LoggedMeasureService;
+import ua.danit.rest.weatherapp.impl.ext.LsmMeasureService;
+import ua.danit.rest.weatherapp.impl.ext.LsmSettings;
+import ua.danit.rest.weatherapp.impl.ext.MeasureLogSettings;
+import ua.danit.rest.weatherapp.impl.ext.MeasureRetention;
+import ua.danit.rest.weatherapp.impl.ext.SyncPolicy;
 import ua.danit.rest.weatherapp.impl.resources.WeatherSelectResource;
 import ua.danit.rest.weatherapp.impl.resources.WeatherStoreResource;
 
@@ -23,12 +35,31 @@ public class WeatherApplication {
    * @throws Exception the exception
    */
   public static void main(String[] args) throws Exception {
-    InMemoryMeasureService measureService = new InMemoryMeasureService();
+    MeasureLogSettings logSettings = MeasureLogSettings.defaults()
+        .withSyncPolicy(SyncPolicy.valueOf(System.getProperty("weather.log.sync", "EVERY_BATCH")));
+    MeasurementService store = "lsm".equals(System.getProperty("weather.store"))
+        ? LsmMeasureService.open(Paths.get(System.getProperty("weather.lsm", "measures-lsm")),
+            LsmSettings.defaults(), true)
+        : new InMemoryMeasureService(MeasureRetention.defaults(), true,
+            Paths.get(System.getProperty("weather.snapshot", "measures.snapshot")));
+    LoggedMeasureService measureService = LoggedMeasureService.open(store,
+        Paths.get(System.getProperty("weather.log", "measures.log")), logSettings);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        measureService.close();
+        if (store instanceof Closeable) {
+          ((Closeable) store).close();
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }));
     WeatherSelectResource weatherService = new WeatherSelectResource(measureService);
     WeatherStoreResource weatherStoreResource = new WeatherStoreResource(measureService);
     RestApplication delegate = builder().withPort(8080).withMatchingUrls("/resources/*")
                                         .withServiceInstance(weatherService)
                                         .withServiceInstance(weatherStoreResource)
+                                        .withMediaCodec(new WeatherBinaryCodec())
                                         .build(new ReflectionServiceSupplier(),
                                             new RealReflectionServiceParser()::parse);
     RestApplicationDelegate application = new RestApplicationDelegate(delegate);
@@ -1,16 +1,27 @@
 package ua.danit.rest.weatherapp.impl.ext;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.lang.Math.floor;
-import static java.util.Comparator.comparing;
-import static java.util.Optional.ofNullable;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.function.Function;
+import java.util.concurrent.atomic.LongAdder;
 
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
 import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
 import ua.danit.rest.weatherapp.entity.Weather.Location;
 import ua.danit.rest.weatherapp.ext.MeasurementService;
 
@@ -18,51 +29,367 @@ import ua.danit.rest.weatherapp.ext.MeasurementService;
  * Service for holding information about weather measurements in memory.
  * <p/>
  * Location is truncated to integral number (in floor model).
+ * <p/>
+ * Measurements of every place are kept in time ordered ring bounded by {@link MeasureRetention},
+ * so memory does not grow under constant ingestion. Measurement older than retained ones or than
+ * reorder window is dropped. The newest measurement is read without locking. Measurements are
+ * stored in columns of primitive arrays and read in UTC, see {@link MeasureBuffer}.
+ * <p/>
+ * Every place has version increased after each stored measurement, so clients can check
+ * whether weather they already have is current.
+ * <p/>
+ * Service created with encoding of last measurements keeps the newest measurement of every place
+ * encoded into response bytes, so weather is read without serialization. Measurement is encoded
+ * when it is stored, which is cheap as weather is read much more often than stored.
+ * <p/>
+ * Service created with snapshot path maps the snapshot of measurements when it exists, see
+ * {@link MeasureSnapshot}, and serves places from it straight away. Place is restored from the
+ * snapshot into memory when it is read or stored first time, snapshot written later takes places
+ * from memory and copies others from the current snapshot.
+ * <p/>
+ * Locations are indexed by {@link SpatialIndex} for queries of the nearest locations and locations
+ * within radius, distance is measured to the center of degree cell of the location.
  *
  * @author Andrey Minov
  */
-public class InMemoryMeasureService implements MeasurementService {
+public class InMemoryMeasureService implements MeasurementService, SnapshotStore {
 
   private static final String CITY_COUNTRY_PATTERN = "%1$s/%2$s";
-  private static final int INITIAL_CAPACITY = 100;
+  private static final double CELL_CENTER = 0.5;
 
-  private Map<String, Queue<Measure>> cityMeasurement;
-  private Map<Location, Queue<Measure>> locationMeasurement;
+  private final MeasureRetention retention;
+  private final boolean encodeLatest;
+  private final Map<String, MeasureBuffer> cityMeasurement;
+  private final Map<Location, MeasureBuffer> locationMeasurement;
+  private final SpatialIndex<Location> locationIndex;
+  private final LongAdder dropped;
+  private final Path snapshotPath;
+  private volatile MeasureSnapshot snapshot;
 
   /**
    * Instantiates a new In memory measure service.
    */
   public InMemoryMeasureService() {
+    this(false);
+  }
+
+  /**
+   * Instantiates a new In memory measure service.
+   *
+   * @param encodeLatest keep the newest measurement of every place encoded, so it is returned by
+   *                     {@link #getEncodedWeather(String, String)}.
+   */
+  public InMemoryMeasureService(boolean encodeLatest) {
+    this(MeasureRetention.defaults(), encodeLatest);
+  }
+
+  /**
+   * Instantiates a new In memory measure service.
+   *
+   * @param retention    the retention of measurements of every place.
+   * @param encodeLatest keep the newest measurement of every place encoded, so it is returned by
+   *                     {@link #getEncodedWeather(String, String)}.
+   */
+  public InMemoryMeasureService(MeasureRetention retention, boolean encodeLatest) {
+    this(retention, encodeLatest, null, null);
+  }
+
+  /**
+   * Instantiates a new In memory measure service with measurements of the snapshot.
+   *
+   * @param retention    the retention of measurements of every place.
+   * @param encodeLatest keep the newest measurement of every place encoded, so it is returned by
+   *                     {@link #getEncodedWeather(String, String)}.
+   * @param snapshotPath the path of snapshot, it is mapped when it exists.
+   * @throws IOException when existing snapshot cannot be mapped.
+   */
+  public InMemoryMeasureService(MeasureRetention retention, boolean encodeLatest,
+                                Path snapshotPath) throws IOException {
+    this(retention, encodeLatest, snapshotPath,
+        Files.exists(snapshotPath) ? MeasureSnapshot.open(snapshotPath) : null);
+  }
+
+  private InMemoryMeasureService(MeasureRetention retention, boolean encodeLatest,
+                                 Path snapshotPath, MeasureSnapshot snapshot) {
+    this.snapshotPath = snapshotPath;
+    this.snapshot = snapshot;
+    this.retention = retention;
+    this.encodeLatest = encodeLatest;
     this.cityMeasurement = new ConcurrentHashMap<>();
     this.locationMeasurement = new ConcurrentHashMap<>();
+    this.locationIndex = new SpatialIndex<>();
+    this.dropped = new LongAdder();
+    if (snapshot != null) {
+      for (int i = 0; i < snapshot.getLocationCount(); i++) {
+        index(snapshot.getLocation(i));
+      }
+    }
+  }
+
+  private static String cityKey(String city, String country) {
+    return String.format(CITY_COUNTRY_PATTERN, city, country);
+  }
+
+  private static Location locationKey(double longitude, double latitude) {
+    return new Location(floor(longitude), floor(latitude));
   }
 
   @Override
   public Measure getCurrentWeather(String city, String country) {
-    String key = String.format(CITY_COUNTRY_PATTERN, city, country);
-    return ofNullable(cityMeasurement.get(key)).map(Queue::peek).orElse(null);
+    MeasureBuffer buffer = findCity(city, country);
+    return buffer != null ? buffer.getLatest() : null;
   }
 
   @Override
   public Measure getCurrentWeather(double longitude, double latitude) {
-    Location key = new Location(floor(longitude), floor(latitude));
-    return ofNullable(locationMeasurement.get(key)).map(Queue::peek).orElse(null);
+    MeasureBuffer buffer = findLocation(longitude, latitude);
+    return buffer != null ? buffer.getLatest() : null;
+  }
+
+  @Override
+  public List<MeasureRecord> getNearestWeather(double longitude, double latitude, int count) {
+    return records(locationIndex.nearest(longitude, latitude, count));
+  }
+
+  @Override
+  public List<MeasureRecord> getWeatherWithin(double longitude, double latitude,
+                                              double radius) {
+    return records(locationIndex.within(longitude, latitude, radius));
   }
 
   @Override
   public void storeMeasure(String city, String country, Measure measure) {
-    String key = String.format(CITY_COUNTRY_PATTERN, city, country);
-    cityMeasurement.computeIfAbsent(key, createEntrySupplier()).offer(measure);
+    if (!cityBuffer(city, country).add(measure)) {
+      dropped.increment();
+    }
   }
 
   @Override
   public void storeMeasure(double longitude, double latitude, Measure measure) {
-    Location key = new Location(floor(longitude), floor(latitude));
-    locationMeasurement.computeIfAbsent(key, createEntrySupplier()).offer(measure);
+    if (!locationBuffer(longitude, latitude).add(measure)) {
+      dropped.increment();
+    }
+  }
+
+  @Override
+  public EncodedWeather getEncodedWeather(String city, String country) {
+    MeasureBuffer buffer = findCity(city, country);
+    return buffer != null ? buffer.getEncoded() : null;
+  }
+
+  @Override
+  public EncodedWeather getEncodedWeather(double longitude, double latitude) {
+    MeasureBuffer buffer = findLocation(longitude, latitude);
+    return buffer != null ? buffer.getEncoded() : null;
+  }
+
+  @Override
+  public long getVersion(String city, String country) {
+    MeasureBuffer buffer = findCity(city, country);
+    return buffer != null ? buffer.getVersion() : 0;
+  }
+
+  @Override
+  public long getVersion(double longitude, double latitude) {
+    MeasureBuffer buffer = findLocation(longitude, latitude);
+    return buffer != null ? buffer.getVersion() : 0;
+  }
+
+  /**
+   * Store batch of measurements. Records are grouped by city or location first, so buffer of
+   * every place is locked and filled once per batch.
+   *
+   * @param records the measurements to store together with their places.
+   */
+  @Override
+  public void storeMeasures(Collection<MeasureRecord> records) {
+    Map<MeasureBuffer, List<Measure>> byPlace = new HashMap<>();
+    for (MeasureRecord record : records) {
+      MeasureBuffer buffer = record.isCityRecord()
+          ? cityBuffer(record.getCity(), record.getCountry())
+          : locationBuffer(record.getLocation().getLongitude(),
+              record.getLocation().getLatitude());
+      byPlace.computeIfAbsent(buffer, k -> new ArrayList<>()).add(record.getMeasure());
+    }
+    byPlace.forEach((buffer, measures) -> dropped.add(measures.size() - buffer.addAll(measures)));
+  }
+
+  /**
+   * Gets measurements kept for the city.
+   *
+   * @param city    the city of measurements.
+   * @param country the country of the city.
+   * @return the measurements from the oldest to the newest.
+   */
+  public List<Measure> getMeasures(String city, String country) {
+    MeasureBuffer buffer = findCity(city, country);
+    return buffer != null ? buffer.getMeasures() : Collections.emptyList();
+  }
+
+  /**
+   * Gets measurements kept for geo location.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @return the measurements from the oldest to the newest.
+   */
+  public List<Measure> getMeasures(double longitude, double latitude) {
+    MeasureBuffer buffer = findLocation(longitude, latitude);
+    return buffer != null ? buffer.getMeasures() : Collections.emptyList();
+  }
+
+  @Override
+  public List<Measure> getMeasures(String city, String country, Instant from, Instant to,
+                                   int limit) {
+    MeasureBuffer buffer = findCity(city, country);
+    return buffer != null ? buffer.getMeasures(from.toEpochMilli(), to.toEpochMilli(), limit)
+        : Collections.emptyList();
+  }
+
+  @Override
+  public List<Measure> getMeasures(double longitude, double latitude, Instant from, Instant to,
+                                   int limit) {
+    MeasureBuffer buffer = findLocation(longitude, latitude);
+    return buffer != null ? buffer.getMeasures(from.toEpochMilli(), to.toEpochMilli(), limit)
+        : Collections.emptyList();
+  }
+
+  /**
+   * Gets number of measurements dropped as older than retained measurements or reorder window.
+   *
+   * @return the number of dropped measurements.
+   */
+  public long getDroppedMeasures() {
+    return dropped.sum();
+  }
+
+  @Override
+  public long getSnapshotPosition() {
+    MeasureSnapshot current = snapshot;
+    return current != null ? current.getLogPosition() : 0;
+  }
+
+  /**
+   * Write snapshot of measurements and map it instead of the current one. Measurements of every
+   * place are copied under lock of the place only, so stores are not paused.
+   *
+   * @param logPosition the position of measurement log.
+   * @throws IOException when snapshot cannot be written.
+   */
+  @Override
+  public synchronized void writeSnapshot(long logPosition) throws IOException {
+    checkState(snapshotPath != null, "Service is created without snapshot path!");
+    MeasureSnapshot current = snapshot;
+    List<Entry<byte[], MeasureSnapshot.Block>> cities = new ArrayList<>();
+    List<Entry<Location, MeasureSnapshot.Block>> locations = new ArrayList<>();
+    if (current != null) {
+      // place restored after it is checked is added from memory as well, later entry is written.
+      for (int i = 0; i < current.getCityCount(); i++) {
+        long entry = current.getCityEntry(i);
+        byte[] key = current.getCityKey(entry);
+        if (!cityMeasurement.containsKey(new String(key, UTF_8))) {
+          long block = current.getCityBlock(entry);
+          cities.add(new SimpleImmutableEntry<>(key, output -> current.copyBlock(block, output)));
+        }
+      }
+      for (int i = 0; i < current.getLocationCount(); i++) {
+        Location location = current.getLocation(i);
+        if (!locationMeasurement.containsKey(location)) {
+          long block = current.getLocationBlock(i);
+          locations.add(new SimpleImmutableEntry<>(location,
+              output -> current.copyBlock(block, output)));
+        }
+      }
+    }
+    cityMeasurement.forEach((key, buffer) -> cities.add(new SimpleImmutableEntry<>(key
+        .getBytes(UTF_8), buffer::writeTo)));
+    locationMeasurement.forEach((location, buffer) -> locations.add(
+        new SimpleImmutableEntry<>(location, buffer::writeTo)));
+    snapshot = MeasureSnapshot.write(snapshotPath, logPosition, cities, locations);
+  }
+
+  private MeasureBuffer findCity(String city, String country) {
+    String key = cityKey(city, country);
+    MeasureBuffer buffer = cityMeasurement.get(key);
+    if (buffer != null || snapshot == null) {
+      return buffer;
+    }
+    return cityMeasurement.computeIfAbsent(key, k -> restoreCity(k, city, country));
+  }
+
+  private MeasureBuffer findLocation(double longitude, double latitude) {
+    Location key = locationKey(longitude, latitude);
+    MeasureBuffer buffer = locationMeasurement.get(key);
+    if (buffer != null || snapshot == null) {
+      return buffer;
+    }
+    return locationMeasurement.computeIfAbsent(key, this::restoreLocation);
+  }
+
+  private MeasureBuffer cityBuffer(String city, String country) {
+    return cityMeasurement.computeIfAbsent(cityKey(city, country), k -> {
+      MeasureBuffer restored = restoreCity(k, city, country);
+      return restored != null ? restored : newCityBuffer(city, country);
+    });
+  }
+
+  private MeasureBuffer locationBuffer(double longitude, double latitude) {
+    return locationMeasurement.computeIfAbsent(locationKey(longitude, latitude), k -> {
+      MeasureBuffer restored = restoreLocation(k);
+      if (restored != null) {
+        return restored;
+      }
+      // locations of snapshot are indexed when service is created.
+      index(k);
+      return newLocationBuffer();
+    });
+  }
+
+  private void index(Location location) {
+    locationIndex.add(location.getLongitude() + CELL_CENTER, location.getLatitude() + CELL_CENTER,
+        location);
+  }
+
+  private List<MeasureRecord> records(List<Location> locations) {
+    List<MeasureRecord> records = new ArrayList<>(locations.size());
+    for (Location location : locations) {
+      Measure measure = getCurrentWeather(location.getLongitude(), location.getLatitude());
+      if (measure != null) {
+        records.add(MeasureRecord.forLocation(location.getLongitude(), location.getLatitude(),
+            measure));
+      }
+    }
+    return records;
+  }
+
+  private MeasureBuffer restoreCity(String key, String city, String country) {
+    MeasureSnapshot current = snapshot;
+    long block = current != null ? current.findCity(key.getBytes(UTF_8)) : -1;
+    if (block < 0) {
+      return null;
+    }
+    MeasureBuffer buffer = newCityBuffer(city, country);
+    current.restore(block, buffer);
+    return buffer;
+  }
+
+  private MeasureBuffer restoreLocation(Location key) {
+    MeasureSnapshot current = snapshot;
+    long block = current != null ? current.findLocation(key) : -1;
+    if (block < 0) {
+      return null;
+    }
+    MeasureBuffer buffer = newLocationBuffer();
+    current.restore(block, buffer);
+    return buffer;
+  }
+
+  private MeasureBuffer newCityBuffer(String city, String country) {
+    return new MeasureBuffer(retention,
+        encodeLatest ? m -> EncodedWeather.ofCity(city, country, m) : null);
   }
 
-  private <T> Function<? super T, Queue<Measure>> createEntrySupplier() {
-    return k -> new PriorityBlockingQueue<>(INITIAL_CAPACITY,
-        comparing(Measure::getMeasureTimeUtc));
+  private MeasureBuffer newLocationBuffer() {
+    return new MeasureBuffer(retention, encodeLatest ? EncodedWeather::ofLocation : null);
   }
 }
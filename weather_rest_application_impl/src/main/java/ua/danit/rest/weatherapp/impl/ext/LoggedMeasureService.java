@@ -0,0 +1,235 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.ext.MeasurementService;
+
+/**
+ * Measurement service writing measurements into {@link MeasureLog} before they are stored by
+ * delegate service, so stored measurement is acknowledged when it is committed to the log. Log is
+ * replayed into delegate service when service is opened, so measurements are restored after
+ * restart.
+ * <p/>
+ * Delegate supporting snapshots ({@link SnapshotStore}) gets the log replayed from position of
+ * its snapshot and writes snapshot every snapshot interval. Stores are held only while the log
+ * position of snapshot is taken, so every measurement before the position is in delegate, and
+ * snapshot is written concurrently with stores. Log segments before the snapshot are deleted
+ * once it is written.
+ *
+ * @author Andrey Minov
+ */
+public class LoggedMeasureService implements MeasurementService, Closeable {
+  private final MeasurementService delegate;
+  private final MeasureLog log;
+  private final ReadWriteLock barrier;
+  private final ScheduledExecutorService snapshots;
+  private volatile IOException snapshotFailure;
+
+  private LoggedMeasureService(MeasurementService delegate, MeasureLog log,
+                               long snapshotInterval) {
+    this.delegate = delegate;
+    this.log = log;
+    this.barrier = new ReentrantReadWriteLock();
+    if (delegate instanceof SnapshotStore && snapshotInterval > 0) {
+      this.snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "measure-snapshot");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.snapshots.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotInterval,
+          snapshotInterval, TimeUnit.MILLISECONDS);
+    } else {
+      this.snapshots = null;
+    }
+  }
+
+  /**
+   * Open measurement log and replay its records into delegate service.
+   *
+   * @param delegate the service storing and selecting measurements.
+   * @param path     the path of the log file.
+   * @param settings the settings of log group commit and snapshots.
+   * @return the service writing measurements into the log.
+   * @throws IOException when log cannot be read or opened.
+   */
+  public static LoggedMeasureService open(MeasurementService delegate, Path path,
+                                          MeasureLogSettings settings) throws IOException {
+    long position = delegate instanceof SnapshotStore
+        ? ((SnapshotStore) delegate).getSnapshotPosition() : 0;
+    return new LoggedMeasureService(delegate,
+        MeasureLog.open(path, settings, position, delegate::storeMeasures),
+        settings.getSnapshotInterval());
+  }
+
+  @Override
+  public Measure getCurrentWeather(String city, String country) {
+    return delegate.getCurrentWeather(city, country);
+  }
+
+  @Override
+  public Measure getCurrentWeather(double longitude, double latitude) {
+    return delegate.getCurrentWeather(longitude, latitude);
+  }
+
+  @Override
+  public EncodedWeather getEncodedWeather(String city, String country) {
+    return delegate.getEncodedWeather(city, country);
+  }
+
+  @Override
+  public EncodedWeather getEncodedWeather(double longitude, double latitude) {
+    return delegate.getEncodedWeather(longitude, latitude);
+  }
+
+  @Override
+  public long getVersion(String city, String country) {
+    return delegate.getVersion(city, country);
+  }
+
+  @Override
+  public long getVersion(double longitude, double latitude) {
+    return delegate.getVersion(longitude, latitude);
+  }
+
+  @Override
+  public List<MeasureRecord> getNearestWeather(double longitude, double latitude, int count) {
+    return delegate.getNearestWeather(longitude, latitude, count);
+  }
+
+  @Override
+  public List<MeasureRecord> getWeatherWithin(double longitude, double latitude,
+                                              double radius) {
+    return delegate.getWeatherWithin(longitude, latitude, radius);
+  }
+
+  @Override
+  public List<Measure> getMeasures(String city, String country, Instant from, Instant to,
+                                   int limit) {
+    return delegate.getMeasures(city, country, from, to, limit);
+  }
+
+  @Override
+  public List<Measure> getMeasures(double longitude, double latitude, Instant from, Instant to,
+                                   int limit) {
+    return delegate.getMeasures(longitude, latitude, from, to, limit);
+  }
+
+  @Override
+  public void storeMeasure(String city, String country, Measure measure) {
+    barrier.readLock().lock();
+    try {
+      append(Collections.singletonList(MeasureRecord.forCity(city, country, measure)));
+      delegate.storeMeasure(city, country, measure);
+    } finally {
+      barrier.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void storeMeasure(double longitude, double latitude, Measure measure) {
+    barrier.readLock().lock();
+    try {
+      append(Collections.singletonList(MeasureRecord.forLocation(longitude, latitude, measure)));
+      delegate.storeMeasure(longitude, latitude, measure);
+    } finally {
+      barrier.readLock().unlock();
+    }
+  }
+
+  /**
+   * Store batch of measurements, whole batch is appended to the log with single commit.
+   *
+   * @param records the measurements to store together with their places.
+   */
+  @Override
+  public void storeMeasures(Collection<MeasureRecord> records) {
+    barrier.readLock().lock();
+    try {
+      append(records);
+      delegate.storeMeasures(records);
+    } finally {
+      barrier.readLock().unlock();
+    }
+  }
+
+  /**
+   * Write snapshot of delegate service consistent with the current log position and delete log
+   * segments before the position.
+   *
+   * @return the log position of the snapshot.
+   * @throws IOException when snapshot cannot be written.
+   * @throws IllegalStateException when delegate does not support snapshots.
+   */
+  public long snapshot() throws IOException {
+    checkState(delegate instanceof SnapshotStore, "Measurement service has no snapshots!");
+    long position;
+    barrier.writeLock().lock();
+    try {
+      position = log.getPosition();
+    } finally {
+      barrier.writeLock().unlock();
+    }
+    ((SnapshotStore) delegate).writeSnapshot(position);
+    log.release(position);
+    return position;
+  }
+
+  public MeasureLog getLog() {
+    return log;
+  }
+
+  /**
+   * Gets failure of the last periodic snapshot.
+   *
+   * @return the failure or null when the last snapshot is written.
+   */
+  public IOException getSnapshotFailure() {
+    return snapshotFailure;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (snapshots != null) {
+      snapshots.shutdown();
+      try {
+        snapshots.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    log.close();
+  }
+
+  private void scheduledSnapshot() {
+    try {
+      snapshot();
+      snapshotFailure = null;
+    } catch (IOException e) {
+      snapshotFailure = e;
+    }
+  }
+
+  private void append(Collection<MeasureRecord> records) {
+    try {
+      log.append(records);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
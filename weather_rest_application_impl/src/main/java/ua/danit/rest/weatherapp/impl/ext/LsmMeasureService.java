@@ -0,0 +1,680 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.floor;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparingInt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.entity.Weather.Location;
+import ua.danit.rest.weatherapp.ext.MeasurementService;
+import ua.danit.rest.weatherapp.impl.ext.MeasureSegment.Row;
+import ua.danit.rest.weatherapp.impl.ext.MeasureSegment.RowSource;
+
+/**
+ * Log-structured measurement service keeping full history of measurements on disk, so history is
+ * not limited by the heap.
+ * <p/>
+ * Measurements are put into memtable sorted by key of the place and time. Full memtable is flushed
+ * by background thread into immutable segment file ({@link MeasureSegment}) with sparse index and
+ * Bloom filter of keys. Segments are compacted by tiers: when the newest segments of the same tier
+ * reach compaction threshold they are merged into one segment of the next tier, measurement of
+ * the same place and time from newer segment replaces older one. History of the place is read
+ * from memtables and sequentially from segments having the place in Bloom filter.
+ * <p/>
+ * The newest measurement, its encoded form and version of every place are kept in memory, so
+ * weather is read without disk access. They are restored from latest blocks of segments on open.
+ * Locations are indexed by {@link SpatialIndex} for queries of the nearest locations and locations
+ * within radius, as in {@link InMemoryMeasureService}.
+ * <p/>
+ * Manifest lists segments and position of measurement log stored in them. Memtable is durable
+ * under {@link LoggedMeasureService}, which replays the log from the position of the manifest.
+ * Snapshot of the store flushes memtable and writes the position into the manifest.
+ *
+ * @author Andrey Minov
+ */
+public class LsmMeasureService implements MeasurementService, SnapshotStore, Closeable {
+  private static final String MANIFEST = "MANIFEST";
+  private static final int MANIFEST_MAGIC = 0x4d4c534d;
+  private static final char CITY = 'C';
+  private static final char LOCATION = 'L';
+  private static final int MAX_FLUSHING = 2;
+  private static final double CELL_CENTER = 0.5;
+  private static final MeasureRetention LATEST = MeasureRetention.defaults().withMaxCount(1);
+
+  private final Path directory;
+  private final LsmSettings settings;
+  private final boolean encodeLatest;
+  private final Map<String, MeasureBuffer> latest;
+  private final SpatialIndex<Location> locationIndex;
+  private final ReadWriteLock memtableLock;
+  private final List<Memtable> flushing;
+  private final ReadWriteLock segmentsLock;
+  private final ExecutorService flusher;
+  private volatile Memtable memtable;
+  private volatile List<MeasureSegment> segments;
+  private volatile long logPosition;
+  private volatile boolean closed;
+  private long nextSegment;
+
+  private LsmMeasureService(Path directory, LsmSettings settings, boolean encodeLatest) {
+    this.directory = directory;
+    this.settings = settings;
+    this.encodeLatest = encodeLatest;
+    this.latest = new ConcurrentHashMap<>();
+    this.locationIndex = new SpatialIndex<>();
+    this.memtableLock = new ReentrantReadWriteLock();
+    this.flushing = new CopyOnWriteArrayList<>();
+    this.segmentsLock = new ReentrantReadWriteLock();
+    this.flusher = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "measure-lsm");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.memtable = new Memtable();
+    this.segments = Collections.emptyList();
+  }
+
+  /**
+   * Open store in the directory, creating it when it does not exist.
+   *
+   * @param directory    the directory of manifest and segments.
+   * @param settings     the settings of memtable, segments and compaction.
+   * @param encodeLatest keep the newest measurement of every place encoded, so it is returned by
+   *                     {@link #getEncodedWeather(String, String)}.
+   * @return the opened store.
+   * @throws IOException when store cannot be read.
+   */
+  public static LsmMeasureService open(Path directory, LsmSettings settings,
+                                       boolean encodeLatest) throws IOException {
+    Files.createDirectories(directory);
+    LsmMeasureService service = new LsmMeasureService(directory, settings, encodeLatest);
+    try {
+      service.load();
+    } catch (IOException | RuntimeException e) {
+      service.close();
+      throw e;
+    }
+    return service;
+  }
+
+  private static String cityKey(String city, String country) {
+    return CITY + city + '\0' + country;
+  }
+
+  private static String locationKey(double longitude, double latitude) {
+    return LOCATION + String.valueOf(floor(longitude)) + ',' + floor(latitude);
+  }
+
+  @Override
+  public Measure getCurrentWeather(String city, String country) {
+    MeasureBuffer buffer = latest.get(cityKey(city, country));
+    return buffer != null ? buffer.getLatest() : null;
+  }
+
+  @Override
+  public Measure getCurrentWeather(double longitude, double latitude) {
+    MeasureBuffer buffer = latest.get(locationKey(longitude, latitude));
+    return buffer != null ? buffer.getLatest() : null;
+  }
+
+  @Override
+  public EncodedWeather getEncodedWeather(String city, String country) {
+    MeasureBuffer buffer = latest.get(cityKey(city, country));
+    return buffer != null ? buffer.getEncoded() : null;
+  }
+
+  @Override
+  public EncodedWeather getEncodedWeather(double longitude, double latitude) {
+    MeasureBuffer buffer = latest.get(locationKey(longitude, latitude));
+    return buffer != null ? buffer.getEncoded() : null;
+  }
+
+  @Override
+  public long getVersion(String city, String country) {
+    MeasureBuffer buffer = latest.get(cityKey(city, country));
+    return buffer != null ? buffer.getVersion() : 0;
+  }
+
+  @Override
+  public long getVersion(double longitude, double latitude) {
+    MeasureBuffer buffer = latest.get(locationKey(longitude, latitude));
+    return buffer != null ? buffer.getVersion() : 0;
+  }
+
+  @Override
+  public List<MeasureRecord> getNearestWeather(double longitude, double latitude, int count) {
+    return records(locationIndex.nearest(longitude, latitude, count));
+  }
+
+  @Override
+  public List<MeasureRecord> getWeatherWithin(double longitude, double latitude,
+                                              double radius) {
+    return records(locationIndex.within(longitude, latitude, radius));
+  }
+
+  @Override
+  public void storeMeasure(String city, String country, Measure measure) {
+    store(cityKey(city, country), measure);
+  }
+
+  @Override
+  public void storeMeasure(double longitude, double latitude, Measure measure) {
+    store(locationKey(longitude, latitude), measure);
+  }
+
+  @Override
+  public void storeMeasures(Collection<MeasureRecord> records) {
+    for (MeasureRecord record : records) {
+      store(record.isCityRecord() ? cityKey(record.getCity(), record.getCountry())
+          : locationKey(record.getLocation().getLongitude(), record.getLocation().getLatitude()),
+          record.getMeasure());
+    }
+  }
+
+  /**
+   * Gets history of the city.
+   *
+   * @param city    the city of measurements.
+   * @param country the country of the city.
+   * @return the measurements from the oldest to the newest.
+   */
+  public List<Measure> getMeasures(String city, String country) {
+    return scan(cityKey(city, country), Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Gets the oldest measurements of the city within time range.
+   *
+   * @param city    the city of measurements.
+   * @param country the country of the city.
+   * @param from    the time of the oldest measurement, inclusive.
+   * @param to      the time of the newest measurement, inclusive.
+   * @param limit   the maximal number of measurements returned.
+   * @return the measurements from the oldest to the newest.
+   */
+  @Override
+  public List<Measure> getMeasures(String city, String country, Instant from, Instant to,
+                                   int limit) {
+    return scan(cityKey(city, country), from.toEpochMilli(), to.toEpochMilli(), limit);
+  }
+
+  /**
+   * Gets history of geo location.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @return the measurements from the oldest to the newest.
+   */
+  public List<Measure> getMeasures(double longitude, double latitude) {
+    return scan(locationKey(longitude, latitude), Long.MIN_VALUE, Long.MAX_VALUE,
+        Integer.MAX_VALUE);
+  }
+
+  /**
+   * Gets the oldest measurements of geo location within time range.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @param from      the time of the oldest measurement, inclusive.
+   * @param to        the time of the newest measurement, inclusive.
+   * @param limit     the maximal number of measurements returned.
+   * @return the measurements from the oldest to the newest.
+   */
+  @Override
+  public List<Measure> getMeasures(double longitude, double latitude, Instant from, Instant to,
+                                   int limit) {
+    return scan(locationKey(longitude, latitude), from.toEpochMilli(), to.toEpochMilli(),
+        limit);
+  }
+
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  @Override
+  public long getSnapshotPosition() {
+    return logPosition;
+  }
+
+  /**
+   * Flush memtable into segment and write log position into manifest.
+   *
+   * @param logPosition the position of measurement log.
+   * @throws IOException when segment or manifest cannot be written.
+   */
+  @Override
+  public void writeSnapshot(long logPosition) throws IOException {
+    flushMemtable(logPosition);
+  }
+
+  /**
+   * Flush memtable into segment and wait until it is written.
+   *
+   * @throws IOException when segment cannot be written.
+   */
+  public void flush() throws IOException {
+    flushMemtable(-1);
+  }
+
+  /**
+   * Flush memtable, stop background thread and close segments.
+   *
+   * @throws IOException when memtable cannot be flushed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      closed = true;
+      flusher.shutdown();
+      try {
+        flusher.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      for (MeasureSegment segment : segments) {
+        segment.close();
+      }
+    }
+  }
+
+  private void store(String key, Measure measure) {
+    checkState(!closed, "Measure store is closed!");
+    Row row = Row.of(key.getBytes(UTF_8), measure);
+    Memtable current;
+    memtableLock.readLock().lock();
+    try {
+      current = memtable;
+      current.put(row);
+    } finally {
+      memtableLock.readLock().unlock();
+    }
+    latest.computeIfAbsent(key, this::newBuffer).add(measure);
+    if (current.size() >= settings.getMemtableSize()) {
+      scheduleFlush(current);
+    }
+  }
+
+  private List<Measure> scan(String key, long from, long to, int limit) {
+    byte[] bytes = key.getBytes(UTF_8);
+    // rows move from memtable to flushing and to segments, so sources are taken in the same
+    // order, which is also the order from the newest source.
+    List<RowSource> sources = new ArrayList<>();
+    sources.add(memtable.scan(bytes, from, to));
+    for (Memtable table : flushing) {
+      sources.add(table.scan(bytes, from, to));
+    }
+    List<Measure> measures = new ArrayList<>();
+    segmentsLock.readLock().lock();
+    try {
+      for (MeasureSegment segment : segments) {
+        sources.add(segment.scan(bytes, from, to));
+      }
+      // rows of the key come from every source in time order, so they are merged as they are read.
+      RowSource rows = merge(sources);
+      for (Row row = rows.next(); row != null; row = rows.next()) {
+        measures.add(row.toMeasure());
+        if (measures.size() >= limit) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      segmentsLock.readLock().unlock();
+    }
+    return measures;
+  }
+
+  private List<MeasureRecord> records(List<Location> locations) {
+    List<MeasureRecord> records = new ArrayList<>(locations.size());
+    for (Location location : locations) {
+      Measure measure = getCurrentWeather(location.getLongitude(), location.getLatitude());
+      if (measure != null) {
+        records.add(MeasureRecord.forLocation(location.getLongitude(), location.getLatitude(),
+            measure));
+      }
+    }
+    return records;
+  }
+
+  private MeasureBuffer newBuffer(String key) {
+    if (key.charAt(0) == LOCATION) {
+      // buffer is created once for every key, when it is stored first time or restored.
+      int separator = key.indexOf(',');
+      Location location = new Location(Double.parseDouble(key.substring(1, separator)),
+          Double.parseDouble(key.substring(separator + 1)));
+      locationIndex.add(location.getLongitude() + CELL_CENTER,
+          location.getLatitude() + CELL_CENTER, location);
+    }
+    if (!encodeLatest) {
+      return new MeasureBuffer(LATEST, null);
+    }
+    if (key.charAt(0) == LOCATION) {
+      return new MeasureBuffer(LATEST, EncodedWeather::ofLocation);
+    }
+    int separator = key.indexOf('\0');
+    String city = key.substring(1, separator);
+    String country = key.substring(separator + 1);
+    return new MeasureBuffer(LATEST, m -> EncodedWeather.ofCity(city, country, m));
+  }
+
+  private long version(byte[] key) {
+    MeasureBuffer buffer = latest.get(new String(key, UTF_8));
+    return buffer != null ? buffer.getVersion() : 0;
+  }
+
+  private void scheduleFlush(Memtable full) {
+    Future<?> flush;
+    memtableLock.writeLock().lock();
+    try {
+      if (memtable != full) {
+        return;
+      }
+      flushing.add(0, full);
+      memtable = new Memtable();
+      flush = flusher.submit(() -> {
+        flushPending();
+        return null;
+      });
+    } finally {
+      memtableLock.writeLock().unlock();
+    }
+    if (flushing.size() > MAX_FLUSHING) {
+      // writers wait for flush when they are faster than disk.
+      try {
+        await(flush);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private void flushMemtable(long position) throws IOException {
+    Future<?> flush;
+    memtableLock.writeLock().lock();
+    try {
+      if (memtable.size() > 0) {
+        flushing.add(0, memtable);
+        memtable = new Memtable();
+      }
+      flush = flusher.submit(() -> {
+        flushPending();
+        if (position >= 0) {
+          logPosition = position;
+          writeManifest();
+        }
+        return null;
+      });
+    } finally {
+      memtableLock.writeLock().unlock();
+    }
+    await(flush);
+  }
+
+  private static void await(Future<?> future) throws IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted waiting for flush of measurements!", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private void flushPending() throws IOException {
+    // memtable failed to flush before stays in the list and is flushed again.
+    while (!flushing.isEmpty()) {
+      Memtable oldest = flushing.get(flushing.size() - 1);
+      MeasureSegment segment = MeasureSegment.write(nextSegmentPath(), oldest.rows(),
+          this::version, settings);
+      List<MeasureSegment> updated = new ArrayList<>(segments.size() + 1);
+      updated.add(segment);
+      updated.addAll(segments);
+      segments = Collections.unmodifiableList(updated);
+      flushing.remove(oldest);
+      writeManifest();
+      compact();
+    }
+  }
+
+  private void compact() throws IOException {
+    while (true) {
+      List<MeasureSegment> current = segments;
+      int tier = tier(current.get(0));
+      int run = 1;
+      while (run < current.size() && tier(current.get(run)) == tier) {
+        run++;
+      }
+      if (run < settings.getCompactionThreshold()) {
+        return;
+      }
+      List<MeasureSegment> inputs = current.subList(0, run);
+      List<RowSource> sources = new ArrayList<>(run);
+      for (MeasureSegment segment : inputs) {
+        sources.add(segment.rows());
+      }
+      MeasureSegment merged = MeasureSegment.write(nextSegmentPath(), merge(sources),
+          this::version, settings);
+      List<MeasureSegment> updated = new ArrayList<>(current.size() - run + 1);
+      updated.add(merged);
+      updated.addAll(current.subList(run, current.size()));
+      segmentsLock.writeLock().lock();
+      try {
+        segments = Collections.unmodifiableList(updated);
+        for (MeasureSegment segment : inputs) {
+          segment.close();
+        }
+      } finally {
+        segmentsLock.writeLock().unlock();
+      }
+      writeManifest();
+      for (MeasureSegment segment : inputs) {
+        Files.deleteIfExists(segment.getPath());
+      }
+    }
+  }
+
+  private int tier(MeasureSegment segment) {
+    long memtables = segment.getRowCount() / settings.getMemtableSize();
+    int tier = 0;
+    while (memtables >= settings.getCompactionThreshold()) {
+      memtables /= settings.getCompactionThreshold();
+      tier++;
+    }
+    return tier;
+  }
+
+  private static RowSource merge(List<RowSource> sources) throws IOException {
+    // sources are listed from the newest, of equal rows the row of newer source is polled first.
+    PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.<Cursor, Row>comparing(
+        c -> c.row, MeasureSegment.ORDER).thenComparing(comparingInt(c -> c.age)));
+    for (int i = 0; i < sources.size(); i++) {
+      RowSource rows = sources.get(i);
+      Row row = rows.next();
+      if (row != null) {
+        queue.add(new Cursor(rows, row, i));
+      }
+    }
+    Row[] last = new Row[1];
+    return () -> {
+      while (!queue.isEmpty()) {
+        Cursor cursor = queue.poll();
+        Row row = cursor.row;
+        cursor.row = cursor.rows.next();
+        if (cursor.row != null) {
+          queue.add(cursor);
+        }
+        if (last[0] == null || MeasureSegment.ORDER.compare(last[0], row) != 0) {
+          last[0] = row;
+          return row;
+        }
+      }
+      return null;
+    };
+  }
+
+  private Path nextSegmentPath() {
+    return directory.resolve(String.format("%016d.seg", nextSegment++));
+  }
+
+  private void writeManifest() throws IOException {
+    Path temporary = directory.resolve(MANIFEST + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels
+          .newOutputStream(channel)));
+      output.writeInt(MANIFEST_MAGIC);
+      output.writeLong(logPosition);
+      output.writeLong(nextSegment);
+      output.writeInt(segments.size());
+      for (MeasureSegment segment : segments) {
+        output.writeUTF(segment.getPath().getFileName().toString());
+      }
+      output.flush();
+      channel.force(true);
+    }
+    Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void load() throws IOException {
+    Path manifest = directory.resolve(MANIFEST);
+    List<String> names = new ArrayList<>();
+    if (Files.exists(manifest)) {
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files
+          .newInputStream(manifest)))) {
+        if (input.readInt() != MANIFEST_MAGIC) {
+          throw new IOException("File " + manifest + " is not measure store manifest!");
+        }
+        logPosition = input.readLong();
+        nextSegment = input.readLong();
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+          names.add(input.readUTF());
+        }
+      }
+    }
+    // files not listed in manifest are left by interrupted flush or compaction.
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{seg,tmp}")) {
+      for (Path file : files) {
+        if (!names.contains(file.getFileName().toString())) {
+          Files.delete(file);
+        }
+      }
+    }
+    List<MeasureSegment> opened = new ArrayList<>(names.size());
+    segments = Collections.unmodifiableList(opened);
+    for (String name : names) {
+      opened.add(MeasureSegment.open(directory.resolve(name)));
+    }
+
+    Map<String, Row> newest = new HashMap<>();
+    Map<String, Long> versions = new HashMap<>();
+    for (int i = opened.size() - 1; i >= 0; i--) {
+      opened.get(i).readLatest((row, version) -> {
+        String key = new String(row.key, UTF_8);
+        newest.merge(key, row, (older, newer) -> newer.time >= older.time ? newer : older);
+        versions.merge(key, version, Math::max);
+      });
+    }
+    newest.forEach((key, row) -> {
+      MeasureBuffer buffer = newBuffer(key);
+      buffer.restore(versions.get(key), new long[] {row.time}, new float[] {row.temperature},
+          new byte[] {row.code});
+      latest.put(key, buffer);
+    });
+  }
+
+  /**
+   * Measurements put into memory sorted by key and time, measurement of the same key and time
+   * replaces stored one.
+   */
+  private static final class Memtable {
+    private final ConcurrentSkipListMap<Row, Row> rows =
+        new ConcurrentSkipListMap<>(MeasureSegment.ORDER);
+    private final AtomicInteger size = new AtomicInteger();
+
+    private void put(Row row) {
+      if (rows.put(row, row) == null) {
+        size.incrementAndGet();
+      }
+    }
+
+    private int size() {
+      return size.get();
+    }
+
+    private RowSource scan(byte[] key, long from, long to) {
+      Iterator<Row> iterator = rows.subMap(new Row(key, from, 0, (byte) 0), true,
+          new Row(key, to, 0, (byte) 0), true).values().iterator();
+      return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private RowSource rows() {
+      Iterator<Row> iterator = rows.values().iterator();
+      return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+  }
+
+  /**
+   * Current row of source merged by compaction or history scan.
+   */
+  private static final class Cursor {
+    private final RowSource rows;
+    private final int age;
+    private Row row;
+
+    private Cursor(RowSource rows, Row row, int age) {
+      this.rows = rows;
+      this.row = row;
+      this.age = age;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Settings of log-structured measurement store ({@link LsmMeasureService}): size of memtable
+ * flushed into segment file, interval of sparse index of segment, false positive probability of
+ * Bloom filter of segment keys and number of segments compacted into one.
+ *
+ * @author Andrey Minov
+ */
+public class LsmSettings {
+  /**
+   * Default number of measurements in memtable flushed into segment.
+   */
+  public static final int DEFAULT_MEMTABLE_SIZE = 65_536;
+  /**
+   * Default number of measurements between entries of sparse index.
+   */
+  public static final int DEFAULT_INDEX_INTERVAL = 128;
+  /**
+   * Default false positive probability of Bloom filter.
+   */
+  public static final double DEFAULT_BLOOM_FALSE_POSITIVES = 0.01;
+  /**
+   * Default number of segments compacted into one.
+   */
+  public static final int DEFAULT_COMPACTION_THRESHOLD = 4;
+
+  private int memtableSize = DEFAULT_MEMTABLE_SIZE;
+  private int indexInterval = DEFAULT_INDEX_INTERVAL;
+  private double bloomFalsePositives = DEFAULT_BLOOM_FALSE_POSITIVES;
+  private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+  /**
+   * Create settings with default values.
+   *
+   * @return the new store settings.
+   */
+  public static LsmSettings defaults() {
+    return new LsmSettings();
+  }
+
+  /**
+   * Set number of measurements in memtable flushed into segment.
+   *
+   * @param memtableSize the maximal number of measurements in memtable.
+   * @return the store settings instance.
+   */
+  public LsmSettings withMemtableSize(int memtableSize) {
+    checkArgument(memtableSize > 0, "Memtable size must be positive!");
+    this.memtableSize = memtableSize;
+    return this;
+  }
+
+  /**
+   * Set number of measurements between entries of sparse index of segment.
+   *
+   * @param indexInterval the index interval.
+   * @return the store settings instance.
+   */
+  public LsmSettings withIndexInterval(int indexInterval) {
+    checkArgument(indexInterval > 0, "Index interval must be positive!");
+    this.indexInterval = indexInterval;
+    return this;
+  }
+
+  /**
+   * Set false positive probability of Bloom filter of segment keys.
+   *
+   * @param bloomFalsePositives the probability between 0 and 1 exclusive.
+   * @return the store settings instance.
+   */
+  public LsmSettings withBloomFalsePositives(double bloomFalsePositives) {
+    checkArgument(bloomFalsePositives > 0 && bloomFalsePositives < 1,
+        "False positive probability must be between 0 and 1!");
+    this.bloomFalsePositives = bloomFalsePositives;
+    return this;
+  }
+
+  /**
+   * Set number of segments compacted into one.
+   *
+   * @param compactionThreshold the number of segments, at least 2.
+   * @return the store settings instance.
+   */
+  public LsmSettings withCompactionThreshold(int compactionThreshold) {
+    checkArgument(compactionThreshold > 1, "Compaction threshold must be at least 2!");
+    this.compactionThreshold = compactionThreshold;
+    return this;
+  }
+
+  public int getMemtableSize() {
+    return memtableSize;
+  }
+
+  public int getIndexInterval() {
+    return indexInterval;
+  }
+
+  public double getBloomFalsePositives() {
+    return bloomFalsePositives;
+  }
+
+  public int getCompactionThreshold() {
+    return compactionThreshold;
+  }
+
+  @Override
+  public String toString() {
+    return "LsmSettings{memtableSize=" + memtableSize + ", indexInterval=" + indexInterval
+        + ", bloomFalsePositives=" + bloomFalsePositives + ", compactionThreshold="
+        + compactionThreshold + '}';
+  }
+}
@@ -0,0 +1,402 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static java.util.Comparator.comparing;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Measurements of single place in time order, kept in ring bounded by {@link MeasureRetention}.
+ * <p/>
+ * The newest measurements within reorder window are kept in ring stored in columns of primitive
+ * arrays: epoch milliseconds, temperature as float and ordinal of weather code. Measurements older
+ * than reorder window are not changed any more, they are moved from the ring into compressed
+ * chunks ({@link MeasureChunk}). Chunk is dropped as a whole when measurements after it are enough
+ * for retention, measurements of partly retained chunk are skipped when they are read.
+ * {@link Measure} objects are created only when measurements are read, in UTC and with
+ * temperature of float precision.
+ * <p/>
+ * Writers lock the buffer. The newest measurement, its encoded form and version are published
+ * through volatile fields after every write, so readers get them without locking. Ring grows by
+ * doubling up to reorder window, so places with few measurements do not take memory of full ring.
+ * <p/>
+ * Measurement of the same time as stored one replaces it, so measurements replayed from the log
+ * after snapshot are not doubled.
+ *
+ * @author Andrey Minov
+ */
+final class MeasureBuffer {
+  private static final int INITIAL_CAPACITY = 2;
+  private static final WeatherCode[] CODES = WeatherCode.values();
+
+  private final int maxCount;
+  private final long maxAge;
+  private final int reorderWindow;
+  private final int ringCapacity;
+  private final Function<Measure, EncodedWeather> encoder;
+
+  private long[] times;
+  private float[] temperatures;
+  private byte[] codes;
+  private int head;
+  private int size;
+  private ArrayDeque<MeasureChunk> chunks;
+  private int compressed;
+  private boolean newestChanged;
+
+  private volatile Measure latest;
+  private volatile EncodedWeather encoded;
+  private volatile long version;
+
+  /**
+   * Instantiates a new measure buffer.
+   *
+   * @param retention the retention of measurements.
+   * @param encoder   the encoder of the newest measurement, or null when it is not encoded.
+   */
+  MeasureBuffer(MeasureRetention retention, Function<Measure, EncodedWeather> encoder) {
+    Duration age = retention.getMaxAge();
+    this.maxCount = retention.getMaxCount();
+    this.maxAge = age != null ? age.toMillis() : -1;
+    this.reorderWindow = retention.getReorderWindow();
+    this.encoder = encoder;
+    this.ringCapacity = Math.min(maxCount, Math.max(1, reorderWindow));
+    int capacity = Math.min(INITIAL_CAPACITY, ringCapacity);
+    this.times = new long[capacity];
+    this.temperatures = new float[capacity];
+    this.codes = new byte[capacity];
+  }
+
+  Measure getLatest() {
+    return latest;
+  }
+
+  EncodedWeather getEncoded() {
+    return encoded;
+  }
+
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Add measurement to the buffer.
+   *
+   * @param measure the measurement.
+   * @return true when measurement is added, false when it is dropped as too old.
+   */
+  synchronized boolean add(Measure measure) {
+    if (!insert(measure)) {
+      return false;
+    }
+    publish();
+    return true;
+  }
+
+  /**
+   * Add batch of measurements to the buffer, they are sorted by time first.
+   *
+   * @param batch the measurements.
+   * @return the number of measurements added, others are dropped as too old.
+   */
+  synchronized int addAll(List<Measure> batch) {
+    List<Measure> sorted = new ArrayList<>(batch);
+    sorted.sort(comparing(Measure::getMeasureTimeUtc));
+    int added = 0;
+    for (Measure measure : sorted) {
+      if (insert(measure)) {
+        added++;
+      }
+    }
+    if (added > 0) {
+      publish();
+    }
+    return added;
+  }
+
+  /**
+   * Gets measurements of the buffer.
+   *
+   * @return the copy of measurements from the oldest to the newest.
+   */
+  List<Measure> getMeasures() {
+    return getMeasures(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Gets the oldest measurements of the buffer within time range. Measurement objects are created
+   * only for returned measurements.
+   *
+   * @param from  the epoch milliseconds of the oldest measurement, inclusive.
+   * @param to    the epoch milliseconds of the newest measurement, inclusive.
+   * @param limit the maximal number of measurements returned.
+   * @return the copy of measurements from the oldest to the newest.
+   */
+  synchronized List<Measure> getMeasures(long from, long to, int limit) {
+    int count = retainedSize();
+    long[] retainedTimes = new long[count];
+    float[] retainedTemperatures = new float[count];
+    byte[] retainedCodes = new byte[count];
+    copyRetained(retainedTimes, retainedTemperatures, retainedCodes);
+    List<Measure> result = new ArrayList<>();
+    for (int i = 0; i < count && result.size() < limit; i++) {
+      if (retainedTimes[i] >= from && retainedTimes[i] <= to) {
+        result.add(toMeasure(retainedTimes[i], retainedTemperatures[i], retainedCodes[i]));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Write version and measurements of the buffer into snapshot block, see {@link MeasureSnapshot}.
+   *
+   * @param output the output of snapshot.
+   * @throws IOException when block cannot be written.
+   */
+  synchronized void writeTo(DataOutputStream output) throws IOException {
+    int count = retainedSize();
+    long[] retainedTimes = new long[count];
+    float[] retainedTemperatures = new float[count];
+    byte[] retainedCodes = new byte[count];
+    copyRetained(retainedTimes, retainedTemperatures, retainedCodes);
+    output.writeLong(version);
+    output.writeInt(count);
+    for (long time : retainedTimes) {
+      output.writeLong(time);
+    }
+    for (float temperature : retainedTemperatures) {
+      output.writeFloat(temperature);
+    }
+    for (byte code : retainedCodes) {
+      output.writeByte(code);
+    }
+  }
+
+  /**
+   * Restore version and measurements of empty buffer from snapshot, only the newest measurements
+   * are kept when there are more than maximal count.
+   *
+   * @param version      the version of the place.
+   * @param times        the epoch milliseconds of measurements from the oldest to the newest.
+   * @param temperatures the temperatures of measurements.
+   * @param codes        the ordinals of weather codes of measurements.
+   */
+  synchronized void restore(long version, long[] times, float[] temperatures, byte[] codes) {
+    final int from = Math.max(0, times.length - maxCount);
+    int ringFrom = Math.max(from, times.length - ringCapacity);
+    chunks = null;
+    compressed = 0;
+    for (int i = from; i < ringFrom; i++) {
+      compress(times[i], temperatures[i], codes[i]);
+    }
+    int count = times.length - ringFrom;
+    if (count > this.times.length) {
+      this.times = new long[count];
+      this.temperatures = new float[count];
+      this.codes = new byte[count];
+    }
+    System.arraycopy(times, ringFrom, this.times, 0, count);
+    System.arraycopy(temperatures, ringFrom, this.temperatures, 0, count);
+    System.arraycopy(codes, ringFrom, this.codes, 0, count);
+    head = 0;
+    size = count;
+    if (count > 0) {
+      newestChanged = true;
+      publish();
+    }
+    this.version = version;
+  }
+
+  private int index(int position) {
+    return (head + position) % times.length;
+  }
+
+  private Measure toMeasure(int index) {
+    return toMeasure(times[index], temperatures[index], codes[index]);
+  }
+
+  private static Measure toMeasure(long time, float temperature, byte code) {
+    // float is printed as the shortest decimal, so 21.3 is read as 21.3.
+    return new Measure(Double.parseDouble(Float.toString(temperature)), CODES[code],
+        Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC));
+  }
+
+  private int retainedSize() {
+    int count = Math.min(maxCount, compressed + size);
+    if (maxAge >= 0 && compressed > 0) {
+      long oldest = times[index(size - 1)] - maxAge;
+      int skipped = compressed + size - count;
+      for (MeasureChunk chunk : chunks) {
+        MeasureChunk.Cursor cursor = chunk.cursor();
+        while (cursor.next()) {
+          if (skipped-- <= 0 && cursor.getTime() < oldest) {
+            count--;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  private void copyRetained(long[] times, float[] temperatures, byte[] codes) {
+    // retained measurements are the newest ones, the oldest are skipped.
+    int position = times.length - (compressed + size);
+    if (chunks != null) {
+      for (MeasureChunk chunk : chunks) {
+        MeasureChunk.Cursor cursor = chunk.cursor();
+        while (cursor.next()) {
+          if (position >= 0) {
+            times[position] = cursor.getTime();
+            temperatures[position] = cursor.getTemperature();
+            codes[position] = cursor.getCode();
+          }
+          position++;
+        }
+      }
+    }
+    for (int i = 0; i < size; i++, position++) {
+      if (position >= 0) {
+        int index = index(i);
+        times[position] = this.times[index];
+        temperatures[position] = this.temperatures[index];
+        codes[position] = this.codes[index];
+      }
+    }
+  }
+
+  private void compress(long time, float temperature, byte code) {
+    if (chunks == null) {
+      chunks = new ArrayDeque<>();
+    }
+    MeasureChunk last = chunks.peekLast();
+    if (last == null || !last.append(time, temperature, code)) {
+      last = new MeasureChunk();
+      last.append(time, temperature, code);
+      chunks.addLast(last);
+    }
+    compressed++;
+  }
+
+  private void dropChunks(long oldest) {
+    while (compressed > 0) {
+      MeasureChunk chunk = chunks.peekFirst();
+      if (compressed - chunk.getCount() + size < maxCount && chunk.getLastTime() >= oldest) {
+        return;
+      }
+      chunks.removeFirst();
+      compressed -= chunk.getCount();
+    }
+    chunks = null;
+  }
+
+  private boolean insert(Measure measure) {
+    long time = measure.getMeasureTimeUtc().toInstant().toEpochMilli();
+    if (size > 0 && maxAge >= 0 && time < times[index(size - 1)] - maxAge) {
+      return false;
+    }
+    int position = size;
+    int lowest = Math.max(0, size - reorderWindow);
+    while (position > lowest && times[index(position - 1)] > time) {
+      position--;
+    }
+    if (position > 0 && times[index(position - 1)] > time) {
+      // older than measurements of reorder window.
+      return false;
+    }
+    if (position == 0 && compressed > 0 && chunks.peekLast().getLastTime() >= time) {
+      // compressed measurements are not changed.
+      return false;
+    }
+    if (position > 0 && times[index(position - 1)] == time) {
+      int slot = index(position - 1);
+      temperatures[slot] = (float) measure.getTemperature();
+      codes[slot] = (byte) measure.getCode().ordinal();
+      newestChanged |= position == size;
+      return true;
+    }
+    if (size == times.length) {
+      if (size < ringCapacity) {
+        grow();
+      } else if (ringCapacity < maxCount) {
+        if (position == 0) {
+          compress(time, (float) measure.getTemperature(), (byte) measure.getCode().ordinal());
+          dropChunks(maxAge >= 0 ? times[index(size - 1)] - maxAge : Long.MIN_VALUE);
+          return true;
+        }
+        compress(times[head], temperatures[head], codes[head]);
+        removeOldest();
+        position--;
+      } else if (position == 0) {
+        return false;
+      } else {
+        removeOldest();
+        position--;
+      }
+    }
+    for (int i = size; i > position; i--) {
+      int to = index(i);
+      int from = index(i - 1);
+      times[to] = times[from];
+      temperatures[to] = temperatures[from];
+      codes[to] = codes[from];
+    }
+    int slot = index(position);
+    times[slot] = time;
+    temperatures[slot] = (float) measure.getTemperature();
+    codes[slot] = (byte) measure.getCode().ordinal();
+    size++;
+    newestChanged |= position == size - 1;
+    long oldest = maxAge >= 0 ? times[index(size - 1)] - maxAge : Long.MIN_VALUE;
+    if (compressed > 0) {
+      dropChunks(oldest);
+    }
+    while (times[head] < oldest) {
+      removeOldest();
+    }
+    return true;
+  }
+
+  private void grow() {
+    int capacity = (int) Math.min((long) times.length * 2, ringCapacity);
+    long[] grownTimes = new long[capacity];
+    float[] grownTemperatures = new float[capacity];
+    byte[] grownCodes = new byte[capacity];
+    for (int i = 0; i < size; i++) {
+      int from = index(i);
+      grownTimes[i] = times[from];
+      grownTemperatures[i] = temperatures[from];
+      grownCodes[i] = codes[from];
+    }
+    times = grownTimes;
+    temperatures = grownTemperatures;
+    codes = grownCodes;
+    head = 0;
+  }
+
+  private void removeOldest() {
+    head = (head + 1) % times.length;
+    size--;
+  }
+
+  private void publish() {
+    if (newestChanged) {
+      Measure measure = toMeasure(index(size - 1));
+      // encoded before the newest measurement is visible, version is increased last.
+      encoded = encoder != null ? encoder.apply(measure) : null;
+      latest = measure;
+      newestChanged = false;
+    }
+    version++;
+  }
+}
@@ -0,0 +1,253 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+/**
+ * Measurements of single place compressed into block of fixed size in the way of Gorilla time
+ * series store: time is written as delta of delta from previous measurement, temperature as XOR
+ * with bits of previous temperature and weather code only when run of the same code ends.
+ * <p/>
+ * Measurements of regular station take few bits: the same interval between measurements takes 1
+ * bit, the same temperature 1 bit and the same weather code 1 bit. Measurements are appended in
+ * time order until the block is full, and read by {@link Cursor} without decoding whole block.
+ * <p/>
+ * The first measurement is written as 64 bits of time, 32 bits of temperature and 8 bits of code,
+ * next measurements as:
+ * <ul>
+ * <li>time - '0' when delta of delta is 0, otherwise '10', '110', '1110' or '1111' followed by
+ * delta of delta in 8, 16, 24 or 64 bits;</li>
+ * <li>temperature - '0' when it is the same, '10' and meaningful bits of XOR when they fit between
+ * leading and trailing zeros of previous XOR, otherwise '11', 5 bits of leading zeros, 5 bits of
+ * meaningful length minus one and meaningful bits;</li>
+ * <li>code - '0' when it is the same, otherwise '1' and 8 bits of code.</li>
+ * </ul>
+ *
+ * @author Andrey Minov
+ */
+final class MeasureChunk {
+  /**
+   * Size of block in bytes.
+   */
+  static final int BLOCK_SIZE = 512;
+  private static final int BLOCK_BITS = BLOCK_SIZE * 8;
+
+  private final byte[] block = new byte[BLOCK_SIZE];
+  private int bits;
+  private int count;
+  private long lastTime;
+  private long lastDelta;
+  private int lastTemperature;
+  private int leading = Integer.SIZE;
+  private int trailing;
+  private byte lastCode;
+
+  private static int timeBits(long deltaOfDelta) {
+    if (deltaOfDelta == 0) {
+      return 1;
+    }
+    if (fits(deltaOfDelta, 8)) {
+      return 2 + 8;
+    }
+    if (fits(deltaOfDelta, 16)) {
+      return 3 + 16;
+    }
+    return fits(deltaOfDelta, 24) ? 4 + 24 : 4 + 64;
+  }
+
+  private static boolean fits(long value, int bits) {
+    return value >= -(1L << (bits - 1)) && value < 1L << (bits - 1);
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  long getLastTime() {
+    return lastTime;
+  }
+
+  /**
+   * Append measurement newer than measurements of the chunk.
+   *
+   * @param time        the epoch milliseconds of measurement.
+   * @param temperature the temperature of measurement.
+   * @param code        the ordinal of weather code.
+   * @return true when measurement is appended, false when block is full.
+   */
+  boolean append(long time, float temperature, byte code) {
+    int temperatureBits = Float.floatToRawIntBits(temperature);
+    if (count == 0) {
+      write(time, 64);
+      write(temperatureBits, 32);
+      write(code, 8);
+    } else {
+      long delta = time - lastTime;
+      long deltaOfDelta = delta - lastDelta;
+      int xor = temperatureBits ^ lastTemperature;
+      int leadingZeros = Integer.numberOfLeadingZeros(xor);
+      int trailingZeros = Integer.numberOfTrailingZeros(xor);
+      boolean inWindow = xor != 0 && leadingZeros >= leading && trailingZeros >= trailing;
+      int temperatureSize = xor == 0 ? 1 : inWindow ? 2 + Integer.SIZE - leading - trailing
+          : 12 + Integer.SIZE - leadingZeros - trailingZeros;
+      if (bits + timeBits(deltaOfDelta) + temperatureSize + (code == lastCode ? 1 : 9)
+          > BLOCK_BITS) {
+        return false;
+      }
+      writeTime(deltaOfDelta);
+      if (xor == 0) {
+        write(0, 1);
+      } else if (inWindow) {
+        write(0b10, 2);
+        write(xor >>> trailing, Integer.SIZE - leading - trailing);
+      } else {
+        leading = leadingZeros;
+        trailing = trailingZeros;
+        write(0b11, 2);
+        write(leading, 5);
+        write(Integer.SIZE - leading - trailing - 1, 5);
+        write(xor >>> trailing, Integer.SIZE - leading - trailing);
+      }
+      if (code == lastCode) {
+        write(0, 1);
+      } else {
+        write(1, 1);
+        write(code, 8);
+      }
+      lastDelta = delta;
+    }
+    lastTime = time;
+    lastTemperature = temperatureBits;
+    lastCode = code;
+    count++;
+    return true;
+  }
+
+  /**
+   * Cursor over measurements of the chunk appended before the call.
+   *
+   * @return the cursor before the first measurement.
+   */
+  Cursor cursor() {
+    return new Cursor(block, count);
+  }
+
+  private void writeTime(long deltaOfDelta) {
+    if (deltaOfDelta == 0) {
+      write(0, 1);
+    } else if (fits(deltaOfDelta, 8)) {
+      write(0b10, 2);
+      write(deltaOfDelta, 8);
+    } else if (fits(deltaOfDelta, 16)) {
+      write(0b110, 3);
+      write(deltaOfDelta, 16);
+    } else if (fits(deltaOfDelta, 24)) {
+      write(0b1110, 4);
+      write(deltaOfDelta, 24);
+    } else {
+      write(0b1111, 4);
+      write(deltaOfDelta, 64);
+    }
+  }
+
+  private void write(long value, int length) {
+    int remaining = length;
+    while (remaining > 0) {
+      int free = 8 - (bits & 7);
+      int take = Math.min(free, remaining);
+      int part = (int) (value >>> (remaining - take)) & ((1 << take) - 1);
+      block[bits >>> 3] |= part << (free - take);
+      bits += take;
+      remaining -= take;
+    }
+  }
+
+  /**
+   * Reads measurements of chunk one by one from the oldest to the newest.
+   */
+  static final class Cursor {
+    private final byte[] block;
+    private final int count;
+    private int index;
+    private int position;
+    private long time;
+    private long delta;
+    private int temperature;
+    private int leading;
+    private int trailing;
+    private byte code;
+
+    private Cursor(byte[] block, int count) {
+      this.block = block;
+      this.count = count;
+    }
+
+    /**
+     * Move to the next measurement.
+     *
+     * @return true when cursor is moved, false when there are no more measurements.
+     */
+    boolean next() {
+      if (index == count) {
+        return false;
+      }
+      if (index == 0) {
+        time = read(64);
+        temperature = (int) read(32);
+        code = (byte) read(8);
+      } else {
+        delta += readDeltaOfDelta();
+        time += delta;
+        if (read(1) == 1) {
+          if (read(1) == 1) {
+            leading = (int) read(5);
+            trailing = Integer.SIZE - leading - (int) read(5) - 1;
+          }
+          temperature ^= (int) read(Integer.SIZE - leading - trailing) << trailing;
+        }
+        if (read(1) == 1) {
+          code = (byte) read(8);
+        }
+      }
+      index++;
+      return true;
+    }
+
+    long getTime() {
+      return time;
+    }
+
+    float getTemperature() {
+      return Float.intBitsToFloat(temperature);
+    }
+
+    byte getCode() {
+      return code;
+    }
+
+    private long readDeltaOfDelta() {
+      int length;
+      if (read(1) == 0) {
+        return 0;
+      } else if (read(1) == 0) {
+        length = 8;
+      } else if (read(1) == 0) {
+        length = 16;
+      } else {
+        length = read(1) == 0 ? 24 : 64;
+      }
+      return read(length) << (64 - length) >> (64 - length);
+    }
+
+    private long read(int length) {
+      long value = 0;
+      int remaining = length;
+      while (remaining > 0) {
+        int available = 8 - (position & 7);
+        int take = Math.min(available, remaining);
+        int part = (block[position >>> 3] & 0xff) >>> (available - take) & ((1 << take) - 1);
+        value = (value << take) | part;
+        position += take;
+        remaining -= take;
+      }
+      return value;
+    }
+  }
+}
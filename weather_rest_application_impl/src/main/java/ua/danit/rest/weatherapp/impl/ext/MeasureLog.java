@@ -0,0 +1,569 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Write-ahead log of measurements appended to the file through {@link FileChannel}.
+ * <p/>
+ * Record is framed by its length and CRC32 of its body. Body is kind of the place (city or
+ * location), city and country in modified UTF-8 or longitude and latitude as doubles, epoch
+ * milliseconds of the measurement, temperature as float and ordinal of weather code. Replay stops
+ * at the first truncated or corrupted record and the log is cut there, so record partially
+ * written on crash is dropped.
+ * <p/>
+ * Records are committed in groups: {@link #append(Collection)} adds records to the pending batch
+ * and waits until committer thread writes it. Committer waits commit delay after the first
+ * pending record, or less when maximal batch is reached, writes all pending records in single
+ * write and syncs the file according to {@link SyncPolicy}. Concurrent writers share single
+ * sync instead of syncing for every record.
+ * <p/>
+ * Log is split into segment files next to the log path, named by the log path and position of
+ * the first record of the segment. Committer starts new segment when the current one reaches
+ * segment size, and segments before position stored elsewhere are deleted by
+ * {@link #release(long)}, so log does not grow after every snapshot. Log file written before
+ * segments is taken as the first segment.
+ *
+ * @author Andrey Minov
+ */
+public class MeasureLog implements Closeable {
+  private static final byte CITY = 1;
+  private static final byte LOCATION = 2;
+  private static final int HEADER_SIZE = 8;
+  private static final int MAX_RECORD_SIZE = 256 * 1024;
+  private static final int REPLAY_BATCH = 1024;
+  private static final int SEGMENT_DIGITS = 20;
+  private static final WeatherCode[] CODES = WeatherCode.values();
+
+  private final Path path;
+  private final SyncPolicy syncPolicy;
+  private final long commitDelay;
+  private final int maxBatch;
+  private final long syncInterval;
+  private final long segmentSize;
+  private final Thread committer;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition pendingChanged = lock.newCondition();
+  private final Condition committedChanged = lock.newCondition();
+  private RecordBuffer pending = new RecordBuffer();
+  private RecordBuffer spare = new RecordBuffer();
+  private final List<Long> segments;
+  private int pendingRecords;
+  private long appended;
+  private long committed;
+  private IOException failure;
+  private boolean closed;
+
+  private FileChannel channel;
+  private long segmentBase;
+  private long lastSync = System.nanoTime();
+  private boolean unsynced;
+  private volatile long position;
+  private volatile long commits;
+  private volatile long syncs;
+
+  private MeasureLog(Path path, List<Long> segments, FileChannel channel, long position,
+                     MeasureLogSettings settings) {
+    this.path = path;
+    this.segments = segments;
+    this.channel = channel;
+    this.segmentBase = segments.get(segments.size() - 1);
+    this.position = position;
+    this.syncPolicy = settings.getSyncPolicy();
+    this.commitDelay = TimeUnit.MICROSECONDS.toNanos(settings.getCommitDelay());
+    this.maxBatch = settings.getMaxBatch();
+    this.syncInterval = TimeUnit.MILLISECONDS.toNanos(settings.getSyncInterval());
+    this.segmentSize = settings.getSegmentSize();
+    this.committer = new Thread(this::commitLoop, "measure-log-committer");
+    this.committer.setDaemon(true);
+  }
+
+  /**
+   * Open log file, creating it when it does not exist. Records of the existing log are passed to
+   * replay consumer in batches before the log is opened for append.
+   *
+   * @param path     the path of the log file.
+   * @param settings the settings of group commit.
+   * @param replay   the consumer of records of the existing log.
+   * @return the opened log.
+   * @throws IOException when log cannot be read or opened.
+   */
+  public static MeasureLog open(Path path, MeasureLogSettings settings,
+                                Consumer<List<MeasureRecord>> replay) throws IOException {
+    return open(path, settings, 0, replay);
+  }
+
+  /**
+   * Open log file, creating it when it does not exist. Records of the existing log starting from
+   * the position are passed to replay consumer in batches before the log is opened for append.
+   * Whole remaining log is replayed when no segment contains the position.
+   *
+   * @param path     the path of the log file.
+   * @param settings the settings of group commit.
+   * @param position the position of the first replayed record, see {@link #getPosition()}.
+   * @param replay   the consumer of records of the existing log.
+   * @return the opened log.
+   * @throws IOException when log cannot be read or opened.
+   */
+  public static MeasureLog open(Path path, MeasureLogSettings settings, long position,
+                                Consumer<List<MeasureRecord>> replay) throws IOException {
+    if (Files.isRegularFile(path)) {
+      Files.move(path, segmentPath(path, 0));
+    }
+    List<Long> segments = listSegments(path);
+    int last = 0;
+    long end = 0;
+    for (int i = 0; i < segments.size(); i++) {
+      long base = segments.get(i);
+      if (base <= position && position - base <= segmentLength(path, base)) {
+        last = i;
+        end = position - base;
+        break;
+      }
+    }
+    if (segments.isEmpty()) {
+      segments.add(0L);
+    }
+    FileChannel channel = null;
+    try {
+      while (true) {
+        channel = FileChannel.open(segmentPath(path, segments.get(last)),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = replay(channel, end, replay);
+        if (end < channel.size() || last == segments.size() - 1) {
+          break;
+        }
+        channel.close();
+        last++;
+        end = 0;
+      }
+      // replay stops at the first corrupted record, segments after it are dropped.
+      while (segments.size() > last + 1) {
+        Files.delete(segmentPath(path, segments.remove(segments.size() - 1)));
+      }
+      channel.truncate(end);
+      channel.position(end);
+    } catch (IOException | RuntimeException e) {
+      if (channel != null) {
+        channel.close();
+      }
+      throw e;
+    }
+    MeasureLog log = new MeasureLog(path, segments, channel, segments.get(last) + end, settings);
+    log.committer.start();
+    return log;
+  }
+
+  /**
+   * Gets path of the log segment starting at the position.
+   *
+   * @param path the path of the log file.
+   * @param base the position of the first record of the segment.
+   * @return the path of the segment file.
+   */
+  static Path segmentPath(Path path, long base) {
+    return path.resolveSibling(String.format("%s.%0" + SEGMENT_DIGITS + "d", path.getFileName(),
+        base));
+  }
+
+  private static long segmentLength(Path path, long base) throws IOException {
+    return Files.size(segmentPath(path, base));
+  }
+
+  private static List<Long> listSegments(Path path) throws IOException {
+    String prefix = path.getFileName() + ".";
+    List<Long> segments = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath()
+        .getParent(), file -> file.getFileName().toString().startsWith(prefix))) {
+      for (Path file : files) {
+        String suffix = file.getFileName().toString().substring(prefix.length());
+        if (suffix.length() == SEGMENT_DIGITS && suffix.chars().allMatch(c -> c >= '0'
+            && c <= '9')) {
+          segments.add(Long.parseLong(suffix));
+        }
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private static long replay(FileChannel channel, long start,
+                             Consumer<List<MeasureRecord>> replay) throws IOException {
+    channel.position(start);
+    DataInputStream input = new DataInputStream(new BufferedInputStream(Channels
+        .newInputStream(channel), 64 * 1024));
+    CRC32 crc = new CRC32();
+    List<MeasureRecord> batch = new ArrayList<>(REPLAY_BATCH);
+    long end = start;
+    try {
+      while (true) {
+        int length = input.readInt();
+        final int checksum = input.readInt();
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+          break;
+        }
+        byte[] body = new byte[length];
+        input.readFully(body);
+        crc.reset();
+        crc.update(body, 0, length);
+        MeasureRecord record = (int) crc.getValue() == checksum ? decode(body) : null;
+        if (record == null) {
+          break;
+        }
+        batch.add(record);
+        end += HEADER_SIZE + length;
+        if (batch.size() == REPLAY_BATCH) {
+          replay.accept(batch);
+          batch = new ArrayList<>(REPLAY_BATCH);
+        }
+      }
+    } catch (EOFException e) {
+      // log ends with truncated record.
+    }
+    if (!batch.isEmpty()) {
+      replay.accept(batch);
+    }
+    return end;
+  }
+
+  private static MeasureRecord decode(byte[] body) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(body));
+    byte kind = input.readByte();
+    String city = null;
+    String country = null;
+    double longitude = 0;
+    double latitude = 0;
+    if (kind == CITY) {
+      city = input.readUTF();
+      country = input.readUTF();
+    } else if (kind == LOCATION) {
+      longitude = input.readDouble();
+      latitude = input.readDouble();
+    } else {
+      return null;
+    }
+    long time = input.readLong();
+    float temperature = input.readFloat();
+    int code = input.readByte();
+    if (code < 0 || code >= CODES.length) {
+      return null;
+    }
+    Measure measure = new Measure(Double.parseDouble(Float.toString(temperature)), CODES[code],
+        Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC));
+    return kind == CITY ? MeasureRecord.forCity(city, country, measure)
+        : MeasureRecord.forLocation(longitude, latitude, measure);
+  }
+
+  /**
+   * Append records to the log and wait until they are committed, and synced when sync policy is
+   * {@link SyncPolicy#EVERY_BATCH}.
+   *
+   * @param records the records to append.
+   * @throws IOException when log cannot be written or waiting is interrupted.
+   * @throws IllegalStateException when log is closed.
+   */
+  public void append(Collection<MeasureRecord> records) throws IOException {
+    if (records.isEmpty()) {
+      return;
+    }
+    lock.lock();
+    try {
+      checkState(!closed, "Measure log is closed!");
+      throwFailure();
+      int mark = pending.size();
+      try {
+        for (MeasureRecord record : records) {
+          pending.writeRecord(record);
+        }
+      } catch (IOException | RuntimeException e) {
+        // records of failed append are not committed.
+        pending.truncate(mark);
+        throw e;
+      }
+      int before = pendingRecords;
+      pendingRecords += records.size();
+      long sequence = ++appended;
+      if (before == 0 || pendingRecords >= maxBatch) {
+        pendingChanged.signal();
+      }
+      while (committed < sequence && failure == null) {
+        committedChanged.await();
+      }
+      throwFailure();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for commit of measurements!");
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets position of the log end after the last commit. Records appended before are located
+   * before the position, so log is replayed from it when they are already stored elsewhere.
+   *
+   * @return the position of the end of committed records.
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Delete segments containing only records before the position, when they are already stored
+   * elsewhere. Segment being appended is never deleted.
+   *
+   * @param position the position records before which are not replayed any more.
+   * @throws IOException when segment cannot be deleted.
+   */
+  public void release(long position) throws IOException {
+    List<Long> released = new ArrayList<>();
+    lock.lock();
+    try {
+      while (segments.size() > 1 && segments.get(1) <= position) {
+        released.add(segments.remove(0));
+      }
+    } finally {
+      lock.unlock();
+    }
+    for (long base : released) {
+      Files.deleteIfExists(segmentPath(path, base));
+    }
+  }
+
+  public long getCommits() {
+    return commits;
+  }
+
+  public long getSyncs() {
+    return syncs;
+  }
+
+  /**
+   * Commit pending records, stop committer and close the file.
+   *
+   * @throws IOException when log cannot be synced or closed.
+   */
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      pendingChanged.signal();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      committer.join();
+      if (syncPolicy != SyncPolicy.NONE && failure == null) {
+        channel.force(false);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void throwFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Measure log cannot be written!", failure);
+    }
+  }
+
+  private void commitLoop() {
+    try {
+      while (true) {
+        RecordBuffer batch;
+        long sequence;
+        lock.lock();
+        try {
+          awaitRecords();
+          if (pendingRecords == 0) {
+            if (closed) {
+              return;
+            }
+            // sync interval passed without new records.
+            batch = null;
+            sequence = committed;
+          } else {
+            long remaining = commitDelay;
+            while (pendingRecords < maxBatch && !closed && remaining > 0) {
+              remaining = pendingChanged.awaitNanos(remaining);
+            }
+            batch = pending;
+            pending = spare;
+            sequence = appended;
+            pendingRecords = 0;
+          }
+        } finally {
+          lock.unlock();
+        }
+        if (batch != null) {
+          ByteBuffer buffer = batch.toByteBuffer();
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+          position = segmentBase + channel.position();
+          commits++;
+          unsynced = true;
+        }
+        sync();
+        lock.lock();
+        try {
+          if (batch != null) {
+            batch.reset();
+            spare = batch;
+          }
+          committed = sequence;
+          committedChanged.signalAll();
+        } finally {
+          lock.unlock();
+        }
+        if (channel.position() >= segmentSize) {
+          roll();
+        }
+      }
+    } catch (IOException e) {
+      fail(e);
+    } catch (InterruptedException e) {
+      fail(new InterruptedIOException("Measure log committer is interrupted!"));
+    }
+  }
+
+  private void awaitRecords() throws InterruptedException {
+    while (pendingRecords == 0 && !closed) {
+      if (syncPolicy != SyncPolicy.INTERVAL || !unsynced) {
+        pendingChanged.await();
+      } else {
+        long remaining = lastSync + syncInterval - System.nanoTime();
+        if (remaining <= 0) {
+          return;
+        }
+        pendingChanged.awaitNanos(remaining);
+      }
+    }
+  }
+
+  private void sync() throws IOException {
+    if (!unsynced || syncPolicy == SyncPolicy.NONE) {
+      return;
+    }
+    if (syncPolicy == SyncPolicy.EVERY_BATCH || System.nanoTime() - lastSync >= syncInterval) {
+      force();
+    }
+  }
+
+  private void force() throws IOException {
+    channel.force(false);
+    syncs++;
+    lastSync = System.nanoTime();
+    unsynced = false;
+  }
+
+  private void roll() throws IOException {
+    if (unsynced && syncPolicy != SyncPolicy.NONE) {
+      force();
+    }
+    long base = segmentBase + channel.position();
+    FileChannel next = FileChannel.open(segmentPath(path, base), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    channel.close();
+    channel = next;
+    segmentBase = base;
+    lock.lock();
+    try {
+      segments.add(base);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void fail(IOException e) {
+    lock.lock();
+    try {
+      failure = e;
+      committedChanged.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Buffer of encoded records exposing its bytes without copy.
+   */
+  private static class RecordBuffer extends ByteArrayOutputStream {
+    private final DataOutputStream output = new DataOutputStream(this);
+    private final CRC32 crc = new CRC32();
+
+    private RecordBuffer() {
+      super(64 * 1024);
+    }
+
+    private void writeRecord(MeasureRecord record) throws IOException {
+      final int start = count;
+      output.writeLong(0);
+      if (record.isCityRecord()) {
+        output.writeByte(CITY);
+        output.writeUTF(record.getCity());
+        output.writeUTF(record.getCountry());
+      } else {
+        output.writeByte(LOCATION);
+        output.writeDouble(record.getLocation().getLongitude());
+        output.writeDouble(record.getLocation().getLatitude());
+      }
+      Measure measure = record.getMeasure();
+      output.writeLong(measure.getMeasureTimeUtc().toInstant().toEpochMilli());
+      output.writeFloat((float) measure.getTemperature());
+      output.writeByte(measure.getCode().ordinal());
+      int length = count - start - HEADER_SIZE;
+      crc.reset();
+      crc.update(buf, start + HEADER_SIZE, length);
+      ByteBuffer header = ByteBuffer.wrap(buf, start, HEADER_SIZE);
+      header.putInt(length);
+      header.putInt((int) crc.getValue());
+    }
+
+    private void truncate(int size) {
+      count = size;
+    }
+
+    private ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Settings of measurement log group commit: records appended concurrently are written and
+ * synced together when commit delay passes since the first of them or when number of records
+ * reaches the maximal batch.
+ * <p/>
+ * Store supporting snapshots ({@link SnapshotStore}) writes snapshot every snapshot interval, so
+ * only the log after the snapshot is replayed on start. Log is split into segments of segment
+ * size, segments before the snapshot are deleted.
+ *
+ * @author Andrey Minov
+ */
+public class MeasureLogSettings {
+  /**
+   * Default time in microseconds appended records wait for other records to commit with.
+   */
+  public static final long DEFAULT_COMMIT_DELAY = 200;
+  /**
+   * Default number of records committed without waiting for commit delay.
+   */
+  public static final int DEFAULT_MAX_BATCH = 1024;
+  /**
+   * Default interval of sync in milliseconds for {@link SyncPolicy#INTERVAL}.
+   */
+  public static final long DEFAULT_SYNC_INTERVAL = 1000;
+  /**
+   * Default interval of snapshots in milliseconds.
+   */
+  public static final long DEFAULT_SNAPSHOT_INTERVAL = 600_000;
+  /**
+   * Default size in bytes log segment is rolled at.
+   */
+  public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+  private SyncPolicy syncPolicy = SyncPolicy.EVERY_BATCH;
+  private long commitDelay = DEFAULT_COMMIT_DELAY;
+  private int maxBatch = DEFAULT_MAX_BATCH;
+  private long syncInterval = DEFAULT_SYNC_INTERVAL;
+  private long snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+  private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+  /**
+   * Create settings syncing every commit.
+   *
+   * @return the new log settings.
+   */
+  public static MeasureLogSettings defaults() {
+    return new MeasureLogSettings();
+  }
+
+  /**
+   * Set policy of syncing log to the disk.
+   *
+   * @param syncPolicy the sync policy.
+   * @return the log settings instance.
+   */
+  public MeasureLogSettings withSyncPolicy(SyncPolicy syncPolicy) {
+    this.syncPolicy = checkNotNull(syncPolicy, "Sync policy cannot be null!");
+    return this;
+  }
+
+  /**
+   * Set time appended records wait for other records to commit with.
+   *
+   * @param commitDelay the commit delay in microseconds, 0 commits records immediately.
+   * @return the log settings instance.
+   */
+  public MeasureLogSettings withCommitDelay(long commitDelay) {
+    checkArgument(commitDelay >= 0, "Commit delay cannot be negative!");
+    this.commitDelay = commitDelay;
+    return this;
+  }
+
+  /**
+   * Set number of records committed without waiting for commit delay.
+   *
+   * @param maxBatch the maximal number of records in commit.
+   * @return the log settings instance.
+   */
+  public MeasureLogSettings withMaxBatch(int maxBatch) {
+    checkArgument(maxBatch > 0, "Max batch must be positive!");
+    this.maxBatch = maxBatch;
+    return this;
+  }
+
+  /**
+   * Set interval of sync for {@link SyncPolicy#INTERVAL}.
+   *
+   * @param syncInterval the sync interval in milliseconds.
+   * @return the log settings instance.
+   */
+  public MeasureLogSettings withSyncInterval(long syncInterval) {
+    checkArgument(syncInterval > 0, "Sync interval must be positive!");
+    this.syncInterval = syncInterval;
+    return this;
+  }
+
+  /**
+   * Set interval of snapshots of store supporting them.
+   *
+   * @param snapshotInterval the snapshot interval in milliseconds, 0 disables periodic snapshots.
+   * @return the log settings instance.
+   */
+  public MeasureLogSettings withSnapshotInterval(long snapshotInterval) {
+    checkArgument(snapshotInterval >= 0, "Snapshot interval cannot be negative!");
+    this.snapshotInterval = snapshotInterval;
+    return this;
+  }
+
+  /**
+   * Set size of log segment, new segment is started when the current one reaches it.
+   *
+   * @param segmentSize the segment size in bytes.
+   * @return the log settings instance.
+   */
+  public MeasureLogSettings withSegmentSize(long segmentSize) {
+    checkArgument(segmentSize > 0, "Segment size must be positive!");
+    this.segmentSize = segmentSize;
+    return this;
+  }
+
+  public SyncPolicy getSyncPolicy() {
+    return syncPolicy;
+  }
+
+  public long getCommitDelay() {
+    return commitDelay;
+  }
+
+  public int getMaxBatch() {
+    return maxBatch;
+  }
+
+  public long getSyncInterval() {
+    return syncInterval;
+  }
+
+  public long getSnapshotInterval() {
+    return snapshotInterval;
+  }
+
+  public long getSegmentSize() {
+    return segmentSize;
+  }
+
+  @Override
+  public String toString() {
+    return "MeasureLogSettings{syncPolicy=" + syncPolicy + ", commitDelay=" + commitDelay
+        + ", maxBatch=" + maxBatch + ", syncInterval=" + syncInterval + ", snapshotInterval="
+        + snapshotInterval + ", segmentSize=" + segmentSize + '}';
+  }
+}
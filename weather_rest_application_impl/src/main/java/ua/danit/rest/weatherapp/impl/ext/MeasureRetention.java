@@ -0,0 +1,93 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Duration;
+
+/**
+ * Settings of measurements kept in memory for every city or location. Measurement is removed
+ * when place has more than maximal count of measurements, or when it is older than maximal age
+ * counted from the newest measurement of the place.
+ * <p/>
+ * Measurements coming out of time order are inserted in their place when they are not older
+ * than last measurements of reorder window, older ones are dropped.
+ *
+ * @author Andrey Minov
+ */
+public class MeasureRetention {
+  /**
+   * Default maximal number of measurements of the place.
+   */
+  public static final int DEFAULT_MAX_COUNT = 1024;
+  /**
+   * Default number of last measurements out of order measurement can be inserted between.
+   */
+  public static final int DEFAULT_REORDER_WINDOW = 16;
+
+  private int maxCount = DEFAULT_MAX_COUNT;
+  private Duration maxAge;
+  private int reorderWindow = DEFAULT_REORDER_WINDOW;
+
+  /**
+   * Create retention with default settings, measurements are not removed by age.
+   *
+   * @return the new retention settings.
+   */
+  public static MeasureRetention defaults() {
+    return new MeasureRetention();
+  }
+
+  /**
+   * Set maximal number of measurements kept for the place.
+   *
+   * @param maxCount the maximal number of measurements.
+   * @return the retention instance.
+   */
+  public MeasureRetention withMaxCount(int maxCount) {
+    checkArgument(maxCount > 0, "Max count must be positive!");
+    this.maxCount = maxCount;
+    return this;
+  }
+
+  /**
+   * Set maximal age of measurements kept for the place.
+   *
+   * @param maxAge the maximal age from the newest measurement, or null to keep any age.
+   * @return the retention instance.
+   */
+  public MeasureRetention withMaxAge(Duration maxAge) {
+    checkArgument(maxAge == null || !maxAge.isNegative(), "Max age cannot be negative!");
+    this.maxAge = maxAge;
+    return this;
+  }
+
+  /**
+   * Set number of last measurements out of order measurement can be inserted between.
+   *
+   * @param reorderWindow the size of reorder window, 0 drops every out of order measurement.
+   * @return the retention instance.
+   */
+  public MeasureRetention withReorderWindow(int reorderWindow) {
+    checkArgument(reorderWindow >= 0, "Reorder window cannot be negative!");
+    this.reorderWindow = reorderWindow;
+    return this;
+  }
+
+  public int getMaxCount() {
+    return maxCount;
+  }
+
+  public Duration getMaxAge() {
+    return maxAge;
+  }
+
+  public int getReorderWindow() {
+    return reorderWindow;
+  }
+
+  @Override
+  public String toString() {
+    return "MeasureRetention{maxCount=" + maxCount + ", maxAge=" + maxAge + ", reorderWindow="
+        + reorderWindow + '}';
+  }
+}
@@ -0,0 +1,378 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Immutable segment file of log-structured measurement store holding measurements sorted by key
+ * of the place and time.
+ * <p/>
+ * Rows are key prefixed by its length, epoch milliseconds, temperature as float and ordinal of
+ * weather code. Rows are followed by latest block holding the newest row and version of every
+ * key, sparse index holding key, time and position of every n-th row, Bloom filter of keys and
+ * footer with positions of the blocks. Index and Bloom filter are read into memory when segment is
+ * opened, so rows of the key absent from the segment are not read, and rows of present key are
+ * read sequentially from the closest preceding index entry.
+ *
+ * @author Andrey Minov
+ */
+final class MeasureSegment implements Closeable {
+  static final Comparator<Row> ORDER = Comparator.<Row, byte[]>comparing(r -> r.key,
+      UnsignedBytes.lexicographicalComparator()).thenComparingLong(r -> r.time);
+
+  private static final int MAGIC = 0x4d534547;
+  private static final int FORMAT = 1;
+  private static final int FOOTER_SIZE = 40;
+  private static final int MAX_KEY_SIZE = 0xffff;
+  private static final int READ_BUFFER = 64 * 1024;
+  private static final WeatherCode[] CODES = WeatherCode.values();
+
+  private final Path path;
+  private final FileChannel channel;
+  private final long latestPosition;
+  private final long rowCount;
+  private final BloomFilter<byte[]> keys;
+  private final Row[] index;
+  private final long[] indexPositions;
+
+  private MeasureSegment(Path path, FileChannel channel, long latestPosition, long rowCount,
+                         BloomFilter<byte[]> keys, Row[] index, long[] indexPositions) {
+    this.path = path;
+    this.channel = channel;
+    this.latestPosition = latestPosition;
+    this.rowCount = rowCount;
+    this.keys = keys;
+    this.index = index;
+    this.indexPositions = indexPositions;
+  }
+
+  /**
+   * Open segment file, read its index and Bloom filter.
+   *
+   * @param path the path of segment file.
+   * @return the opened segment.
+   * @throws IOException when segment cannot be read or it is not a segment.
+   */
+  static MeasureSegment open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+      long size = channel.size();
+      if (size < FOOTER_SIZE) {
+        throw new IOException("Measure segment " + path + " is truncated!");
+      }
+      readFully(channel, footer, size - FOOTER_SIZE);
+      if (footer.getInt(32) != FORMAT || footer.getInt(36) != MAGIC) {
+        throw new IOException("File " + path + " is not measure segment!");
+      }
+      long latestPosition = footer.getLong(0);
+      long indexPosition = footer.getLong(8);
+      long bloomPosition = footer.getLong(16);
+      long rowCount = footer.getLong(24);
+
+      DataInputStream input = input(channel, indexPosition);
+      Row[] index = new Row[input.readInt()];
+      long[] indexPositions = new long[index.length];
+      for (int i = 0; i < index.length; i++) {
+        byte[] key = new byte[input.readUnsignedShort()];
+        input.readFully(key);
+        index[i] = new Row(key, input.readLong(), 0, (byte) 0);
+        indexPositions[i] = input.readLong();
+      }
+      BloomFilter<byte[]> keys = BloomFilter.readFrom(input(channel, bloomPosition),
+          Funnels.byteArrayFunnel());
+      return new MeasureSegment(path, channel, latestPosition, rowCount, keys, index,
+          indexPositions);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Write segment into temporary file, sync it and move it to the path.
+   *
+   * @param path     the path of segment file.
+   * @param rows     the rows sorted by {@link #ORDER} without equal keys and times.
+   * @param versions the versions of keys written into latest block.
+   * @param settings the settings of index interval and Bloom filter.
+   * @return the opened written segment.
+   * @throws IOException when segment cannot be written.
+   */
+  static MeasureSegment write(Path path, RowSource rows, ToLongFunction<byte[]> versions,
+                              LsmSettings settings) throws IOException {
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    List<Row> latest = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Channels
+          .newOutputStream(channel), READ_BUFFER));
+      DataOutputStream output = new DataOutputStream(counter);
+      List<Row> index = new ArrayList<>();
+      List<Long> indexPositions = new ArrayList<>();
+      long count = 0;
+      Row previous = null;
+      for (Row row = rows.next(); row != null; row = rows.next(), count++) {
+        checkArgument(row.key.length <= MAX_KEY_SIZE, "Measure key is too long!");
+        if (count % settings.getIndexInterval() == 0) {
+          index.add(row);
+          indexPositions.add(counter.getCount());
+        }
+        if (previous != null && !Arrays.equals(previous.key, row.key)) {
+          latest.add(previous);
+        }
+        writeRow(output, row);
+        previous = row;
+      }
+      if (previous != null) {
+        latest.add(previous);
+      }
+
+      final long latestPosition = counter.getCount();
+      output.writeInt(latest.size());
+      for (Row row : latest) {
+        writeRow(output, row);
+        output.writeLong(versions.applyAsLong(row.key));
+      }
+      final long indexPosition = counter.getCount();
+      output.writeInt(index.size());
+      for (int i = 0; i < index.size(); i++) {
+        output.writeShort(index.get(i).key.length);
+        output.write(index.get(i).key);
+        output.writeLong(index.get(i).time);
+        output.writeLong(indexPositions.get(i));
+      }
+      final long bloomPosition = counter.getCount();
+      BloomFilter<byte[]> keys = BloomFilter.create(Funnels.byteArrayFunnel(),
+          Math.max(1, latest.size()), settings.getBloomFalsePositives());
+      latest.forEach(row -> keys.put(row.key));
+      keys.writeTo(output);
+      output.writeLong(latestPosition);
+      output.writeLong(indexPosition);
+      output.writeLong(bloomPosition);
+      output.writeLong(count);
+      output.writeInt(FORMAT);
+      output.writeInt(MAGIC);
+      output.flush();
+      channel.force(true);
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return open(path);
+  }
+
+  private static void writeRow(DataOutputStream output, Row row) throws IOException {
+    output.writeShort(row.key.length);
+    output.write(row.key);
+    output.writeLong(row.time);
+    output.writeFloat(row.temperature);
+    output.writeByte(row.code);
+  }
+
+  private static Row readRow(DataInputStream input) throws IOException {
+    byte[] key = new byte[input.readUnsignedShort()];
+    input.readFully(key);
+    return new Row(key, input.readLong(), input.readFloat(), input.readByte());
+  }
+
+  private static DataInputStream input(FileChannel channel, long position) {
+    return new DataInputStream(new BufferedInputStream(new ChannelInput(channel, position),
+        READ_BUFFER));
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  long getRowCount() {
+    return rowCount;
+  }
+
+  boolean mightContain(byte[] key) {
+    return keys.mightContain(key);
+  }
+
+  /**
+   * Read the newest row and version of every key of the segment.
+   *
+   * @param consumer the consumer of the newest rows and their versions.
+   * @throws IOException when segment cannot be read.
+   */
+  void readLatest(LatestConsumer consumer) throws IOException {
+    DataInputStream input = input(channel, latestPosition);
+    int count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      Row row = readRow(input);
+      consumer.accept(row, input.readLong());
+    }
+  }
+
+  /**
+   * Read rows of the key within time range sequentially, starting from the closest index entry.
+   * Rows are read when they are requested from the source.
+   *
+   * @param key  the key of the place.
+   * @param from the epoch milliseconds of the oldest row, inclusive.
+   * @param to   the epoch milliseconds of the newest row, inclusive.
+   * @return the source of rows in time order.
+   */
+  RowSource scan(byte[] key, long from, long to) {
+    if (rowCount == 0 || !keys.mightContain(key)) {
+      return () -> null;
+    }
+    Row start = new Row(key, from, 0, (byte) 0);
+    int low = 0;
+    int high = index.length - 1;
+    while (low < high) {
+      // the last index entry before the start.
+      int middle = (low + high + 1) >>> 1;
+      if (ORDER.compare(index[middle], start) < 0) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    RowSource rows = rows(indexPositions[low]);
+    return () -> {
+      for (Row row = rows.next(); row != null; row = rows.next()) {
+        if (ORDER.compare(row, start) < 0) {
+          continue;
+        }
+        return Arrays.equals(row.key, key) && row.time <= to ? row : null;
+      }
+      return null;
+    };
+  }
+
+  /**
+   * Gets all rows of the segment in order.
+   *
+   * @return the source of rows.
+   */
+  RowSource rows() {
+    return rows(0);
+  }
+
+  private RowSource rows(long position) {
+    CountingInputStream counter = new CountingInputStream(new BufferedInputStream(
+        new ChannelInput(channel, position), READ_BUFFER));
+    DataInputStream input = new DataInputStream(counter);
+    return () -> position + counter.getCount() < latestPosition ? readRow(input) : null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Measurement of the place stored in segment.
+   */
+  static final class Row {
+    final byte[] key;
+    final long time;
+    final float temperature;
+    final byte code;
+
+    Row(byte[] key, long time, float temperature, byte code) {
+      this.key = key;
+      this.time = time;
+      this.temperature = temperature;
+      this.code = code;
+    }
+
+    static Row of(byte[] key, Measure measure) {
+      return new Row(key, measure.getMeasureTimeUtc().toInstant().toEpochMilli(),
+          (float) measure.getTemperature(), (byte) measure.getCode().ordinal());
+    }
+
+    Measure toMeasure() {
+      // float is printed as the shortest decimal, so 21.3 is read as 21.3.
+      return new Measure(Double.parseDouble(Float.toString(temperature)), CODES[code],
+          Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC));
+    }
+  }
+
+  /**
+   * Source of rows in order, returns null after the last row.
+   */
+  interface RowSource {
+    Row next() throws IOException;
+  }
+
+  /**
+   * Consumer of the newest row of the key and version of the key.
+   */
+  interface LatestConsumer {
+    void accept(Row row, long version);
+  }
+
+  /**
+   * Input stream reading channel from the position with positional reads, so segment is read by
+   * many readers at once.
+   */
+  private static final class ChannelInput extends InputStream {
+    private final FileChannel channel;
+    private long position;
+
+    private ChannelInput(FileChannel channel, long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      int read = channel.read(ByteBuffer.wrap(bytes, offset, length), position);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+  }
+}
@@ -0,0 +1,358 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Comparator.comparingDouble;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import ua.danit.rest.weatherapp.entity.Weather.Location;
+
+/**
+ * Snapshot of measurements of all places written into file sorted by place and read through
+ * memory mapping, so it is opened without parsing and place is found by binary search.
+ * <p/>
+ * File starts with header: magic number, format version, position of measurement log the
+ * snapshot is consistent with, numbers of cities and locations, positions of their indexes and
+ * maximal size of entry. Header is followed by entries: city entry is UTF-8 key of city and
+ * country prefixed by its length and followed by measurements block, location entry is
+ * measurements block only. Block holds version of the place, number of measurements and columns
+ * of their epoch milliseconds, temperatures and weather codes from the oldest to the newest.
+ * City index holds positions of city entries sorted by unsigned bytes of the key, location index
+ * holds longitude, latitude and position of location entry sorted by longitude and latitude.
+ * <p/>
+ * File is mapped in segments of 1 GB extended by maximal entry size, so entry starting in the
+ * segment is read from it whole and snapshot is not limited by 2 GB of single mapping.
+ *
+ * @author Andrey Minov
+ */
+final class MeasureSnapshot {
+  private static final int MAGIC = 0x4d534e50;
+  private static final int FORMAT = 1;
+  private static final int HEADER_SIZE = 48;
+  private static final int SEGMENT_SHIFT = 30;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+  private static final int CITY_INDEX_ENTRY = 8;
+  private static final int LOCATION_INDEX_ENTRY = 24;
+  private static final int MAX_KEY_SIZE = 0xffff;
+  private static final Comparator<byte[]> KEY_ORDER = UnsignedBytes.lexicographicalComparator();
+  private static final Comparator<Location> LOCATION_ORDER =
+      comparingDouble(Location::getLongitude).thenComparingDouble(Location::getLatitude);
+
+  private final ByteBuffer[] segments;
+  private final long logPosition;
+  private final int cityCount;
+  private final int locationCount;
+  private final long cityIndex;
+  private final long locationIndex;
+
+  private MeasureSnapshot(ByteBuffer[] segments) {
+    ByteBuffer header = segments[0];
+    this.segments = segments;
+    this.logPosition = header.getLong(8);
+    this.cityCount = header.getInt(16);
+    this.locationCount = header.getInt(20);
+    this.cityIndex = header.getLong(24);
+    this.locationIndex = header.getLong(32);
+  }
+
+  /**
+   * Map snapshot file.
+   *
+   * @param path the path of snapshot file.
+   * @return the mapped snapshot.
+   * @throws IOException when file cannot be mapped or it is not a snapshot.
+   */
+  static MeasureSnapshot open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE) {
+        throw new IOException("Measure snapshot " + path + " is truncated!");
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+        throw new IOException("File " + path + " is not measure snapshot!");
+      }
+      int maxEntry = header.getInt(40);
+      ByteBuffer[] segments = new ByteBuffer[(int) ((size - 1) >>> SEGMENT_SHIFT) + 1];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i << SEGMENT_SHIFT;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(size - start, SEGMENT_MASK + 1 + maxEntry));
+      }
+      return new MeasureSnapshot(segments);
+    }
+  }
+
+  /**
+   * Write snapshot into temporary file and replace snapshot file with it.
+   * <p/>
+   * Entries are sorted in place, of entries with equal places the last one is written.
+   *
+   * @param path        the path of snapshot file.
+   * @param logPosition the position of measurement log the snapshot is consistent with.
+   * @param cities      the blocks of cities by UTF-8 keys of city and country.
+   * @param locations   the blocks of locations.
+   * @return the mapped written snapshot.
+   * @throws IOException when snapshot cannot be written.
+   */
+  static MeasureSnapshot write(Path path, long logPosition, List<Entry<byte[], Block>> cities,
+                               List<Entry<Location, Block>> locations) throws IOException {
+    sortUnique(cities, KEY_ORDER);
+    sortUnique(locations, LOCATION_ORDER);
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    long[] cityEntries = new long[cities.size()];
+    long[] locationEntries = new long[locations.size()];
+    long maxEntry = LOCATION_INDEX_ENTRY;
+    final long cityIndex;
+    final long locationIndex;
+    CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files
+        .newOutputStream(temporary), 64 * 1024));
+    try (DataOutputStream output = new DataOutputStream(counter)) {
+      output.write(new byte[HEADER_SIZE]);
+      for (int i = 0; i < cityEntries.length; i++) {
+        Entry<byte[], Block> city = cities.get(i);
+        byte[] key = city.getKey();
+        checkArgument(key.length <= MAX_KEY_SIZE, "City key is too long!");
+        cityEntries[i] = counter.getCount();
+        output.writeShort(key.length);
+        output.write(key);
+        city.getValue().writeTo(output);
+        maxEntry = Math.max(maxEntry, counter.getCount() - cityEntries[i]);
+      }
+      for (int i = 0; i < locationEntries.length; i++) {
+        locationEntries[i] = counter.getCount();
+        locations.get(i).getValue().writeTo(output);
+        maxEntry = Math.max(maxEntry, counter.getCount() - locationEntries[i]);
+      }
+      cityIndex = counter.getCount();
+      for (long entry : cityEntries) {
+        output.writeLong(entry);
+      }
+      locationIndex = counter.getCount();
+      for (int i = 0; i < locationEntries.length; i++) {
+        Location location = locations.get(i).getKey();
+        output.writeDouble(location.getLongitude());
+        output.writeDouble(location.getLatitude());
+        output.writeLong(locationEntries[i]);
+      }
+    }
+    checkState(maxEntry <= Integer.MAX_VALUE - SEGMENT_MASK - 1, "Snapshot entry is too large!");
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(FORMAT).putLong(logPosition).putInt(cityEntries.length)
+          .putInt(locationEntries.length).putLong(cityIndex).putLong(locationIndex)
+          .putInt((int) maxEntry);
+    header.clear();
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.force(false);
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return open(path);
+  }
+
+  private static <K> void sortUnique(List<Entry<K, Block>> entries, Comparator<K> order) {
+    // sort is stable, so the last of equal places stays the last.
+    entries.sort(Map.Entry.comparingByKey(order));
+    int unique = 0;
+    for (Entry<K, Block> entry : entries) {
+      if (unique > 0 && order.compare(entries.get(unique - 1).getKey(), entry.getKey()) == 0) {
+        unique--;
+      }
+      entries.set(unique++, entry);
+    }
+    entries.subList(unique, entries.size()).clear();
+  }
+
+  long getLogPosition() {
+    return logPosition;
+  }
+
+  int getCityCount() {
+    return cityCount;
+  }
+
+  int getLocationCount() {
+    return locationCount;
+  }
+
+  /**
+   * Gets position of city entry.
+   *
+   * @param index the index of the city in key order.
+   * @return the position of the entry.
+   */
+  long getCityEntry(int index) {
+    long position = cityIndex + (long) index * CITY_INDEX_ENTRY;
+    return segment(position).getLong(offset(position));
+  }
+
+  byte[] getCityKey(long entry) {
+    ByteBuffer segment = segment(entry);
+    int offset = offset(entry);
+    byte[] key = new byte[segment.getShort(offset) & MAX_KEY_SIZE];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = segment.get(offset + 2 + i);
+    }
+    return key;
+  }
+
+  long getCityBlock(long entry) {
+    return entry + 2 + (segment(entry).getShort(offset(entry)) & MAX_KEY_SIZE);
+  }
+
+  Location getLocation(int index) {
+    long position = locationIndex + (long) index * LOCATION_INDEX_ENTRY;
+    ByteBuffer segment = segment(position);
+    int offset = offset(position);
+    return new Location(segment.getDouble(offset), segment.getDouble(offset + 8));
+  }
+
+  long getLocationBlock(int index) {
+    long position = locationIndex + (long) index * LOCATION_INDEX_ENTRY + 16;
+    return segment(position).getLong(offset(position));
+  }
+
+  /**
+   * Find measurements block of the city.
+   *
+   * @param key the UTF-8 key of city and country.
+   * @return the position of the block or -1 when city is not in snapshot.
+   */
+  long findCity(byte[] key) {
+    int low = 0;
+    int high = cityCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long entry = getCityEntry(middle);
+      int compare = compareKey(entry, key);
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return getCityBlock(entry);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find measurements block of the location.
+   *
+   * @param location the location truncated to integral numbers.
+   * @return the position of the block or -1 when location is not in snapshot.
+   */
+  long findLocation(Location location) {
+    int low = 0;
+    int high = locationCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int compare = LOCATION_ORDER.compare(getLocation(middle), location);
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return getLocationBlock(middle);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Restore measurements of the block into empty buffer.
+   *
+   * @param block  the position of the block.
+   * @param buffer the buffer to restore.
+   */
+  void restore(long block, MeasureBuffer buffer) {
+    ByteBuffer segment = segment(block);
+    int offset = offset(block);
+    final long version = segment.getLong(offset);
+    int count = segment.getInt(offset + 8);
+    long[] times = new long[count];
+    float[] temperatures = new float[count];
+    byte[] codes = new byte[count];
+    int position = offset + 12;
+    for (int i = 0; i < count; i++, position += 8) {
+      times[i] = segment.getLong(position);
+    }
+    for (int i = 0; i < count; i++, position += 4) {
+      temperatures[i] = segment.getFloat(position);
+    }
+    for (int i = 0; i < count; i++) {
+      codes[i] = segment.get(position++);
+    }
+    buffer.restore(version, times, temperatures, codes);
+  }
+
+  /**
+   * Copy measurements block as is.
+   *
+   * @param block  the position of the block.
+   * @param output the output to copy block to.
+   * @throws IOException when block cannot be written.
+   */
+  void copyBlock(long block, DataOutputStream output) throws IOException {
+    ByteBuffer segment = segment(block).duplicate();
+    int offset = offset(block);
+    byte[] bytes = new byte[12 + segment.getInt(offset + 8) * 13];
+    segment.position(offset);
+    segment.get(bytes);
+    output.write(bytes);
+  }
+
+  private int compareKey(long entry, byte[] key) {
+    ByteBuffer segment = segment(entry);
+    int offset = offset(entry);
+    int length = segment.getShort(offset) & MAX_KEY_SIZE;
+    for (int i = 0; i < Math.min(length, key.length); i++) {
+      int compare = UnsignedBytes.compare(segment.get(offset + 2 + i), key[i]);
+      if (compare != 0) {
+        return compare;
+      }
+    }
+    return length - key.length;
+  }
+
+  private ByteBuffer segment(long position) {
+    return segments[(int) (position >>> SEGMENT_SHIFT)];
+  }
+
+  private static int offset(long position) {
+    return (int) (position & SEGMENT_MASK);
+  }
+
+  /**
+   * Measurements block of the place written into snapshot.
+   */
+  interface Block {
+    /**
+     * Write version and measurements of the place.
+     *
+     * @param output the output of snapshot.
+     * @throws IOException when block cannot be written.
+     */
+    void writeTo(DataOutputStream output) throws IOException;
+  }
+}
@@ -0,0 +1,27 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import java.io.IOException;
+
+/**
+ * Measurement store writing its measurements into snapshot, so measurement log is replayed into
+ * the store starting from position of the snapshot instead of the log start.
+ *
+ * @author Andrey Minov
+ */
+public interface SnapshotStore {
+  /**
+   * Gets position of measurement log the current snapshot is consistent with.
+   *
+   * @return the log position of the snapshot or 0 when store has no snapshot.
+   */
+  long getSnapshotPosition();
+
+  /**
+   * Write snapshot of stored measurements. All measurements located in the log before the
+   * position must be stored, measurements located after it may be in snapshot as well.
+   *
+   * @param logPosition the position of measurement log.
+   * @throws IOException when snapshot cannot be written.
+   */
+  void writeSnapshot(long logPosition) throws IOException;
+}
@@ -0,0 +1,404 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of places on the Earth surface for queries of the nearest places and places within radius.
+ * <p/>
+ * Places are kept as unit vectors in k-d tree. Straight distance between unit vectors grows with
+ * great circle distance, so tree searched by straight distance answers by great circle distance
+ * exactly, with no special cases at date line and poles.
+ * <p/>
+ * Trees are immutable. Places are appended to pending buffer of 1024 places, which is scanned by
+ * every query. Full buffer is built into tree, which is merged with following trees not larger
+ * than it, so index keeps logarithmic number of trees of decreasing size and every place is
+ * rebuilt logarithmic number of times. Readers take trees and buffer from volatile state without
+ * locking, places are added under lock of the index.
+ *
+ * @param <T> the type of values of places.
+ * @author Andrey Minov
+ */
+public final class SpatialIndex<T> {
+  /**
+   * Mean radius of the Earth in kilometers.
+   */
+  public static final double EARTH_RADIUS = 6371.0088;
+  private static final int PENDING = 1024;
+
+  private volatile State state = new State(new Tree[0], new double[3][PENDING],
+      new Object[PENDING], 0);
+
+  private static double[] vector(double longitude, double latitude) {
+    double lambda = Math.toRadians(longitude);
+    double phi = Math.toRadians(latitude);
+    return new double[] {Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda),
+        Math.sin(phi)};
+  }
+
+  private static double distance(double chordSquare) {
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(chordSquare) / 2));
+  }
+
+  /**
+   * Gets great circle distance between points.
+   *
+   * @param longitude      the longitude of the first point.
+   * @param latitude       the latitude of the first point.
+   * @param otherLongitude the longitude of the second point.
+   * @param otherLatitude  the latitude of the second point.
+   * @return the distance in kilometers.
+   */
+  public static double distance(double longitude, double latitude, double otherLongitude,
+                                double otherLatitude) {
+    double[] point = vector(longitude, latitude);
+    double[] other = vector(otherLongitude, otherLatitude);
+    double square = 0;
+    for (int axis = 0; axis < 3; axis++) {
+      square += (point[axis] - other[axis]) * (point[axis] - other[axis]);
+    }
+    return distance(square);
+  }
+
+  /**
+   * Add place to the index.
+   *
+   * @param longitude the longitude of the place.
+   * @param latitude  the latitude of the place.
+   * @param value     the value returned for the place.
+   */
+  public synchronized void add(double longitude, double latitude, T value) {
+    State current = state;
+    if (current.pendingCount == PENDING) {
+      current = rebuild(current);
+    }
+    int index = current.pendingCount;
+    double[] vector = vector(longitude, latitude);
+    for (int axis = 0; axis < 3; axis++) {
+      current.pending[axis][index] = vector[axis];
+    }
+    current.pendingValues[index] = value;
+    // slots after published count are not read, so buffer is shared with the next state.
+    state = new State(current.trees, current.pending, current.pendingValues, index + 1);
+  }
+
+  /**
+   * Gets number of places in the index.
+   *
+   * @return the number of places.
+   */
+  public int size() {
+    State current = state;
+    int size = current.pendingCount;
+    for (Tree tree : current.trees) {
+      size += tree.values.length;
+    }
+    return size;
+  }
+
+  /**
+   * Find the nearest places.
+   *
+   * @param longitude the longitude of the point.
+   * @param latitude  the latitude of the point.
+   * @param count     the maximal number of places.
+   * @return the values of places from the nearest one.
+   */
+  public List<T> nearest(double longitude, double latitude, int count) {
+    checkArgument(count >= 0, "Count cannot be negative!");
+    if (count == 0) {
+      return Collections.emptyList();
+    }
+    State current = state;
+    Neighbors neighbors = new Neighbors(count);
+    double[] point = vector(longitude, latitude);
+    for (Tree tree : current.trees) {
+      tree.nearest(point, 0, tree.values.length, 0, neighbors);
+    }
+    for (int i = 0; i < current.pendingCount; i++) {
+      neighbors.offer(current.distance(point, i), current.pendingValues[i]);
+    }
+    return neighbors.sorted();
+  }
+
+  /**
+   * Find places within radius.
+   *
+   * @param longitude the longitude of the point.
+   * @param latitude  the latitude of the point.
+   * @param radius    the radius in kilometers.
+   * @return the values of places from the nearest one.
+   */
+  public List<T> within(double longitude, double latitude, double radius) {
+    checkArgument(radius >= 0, "Radius cannot be negative!");
+    double chord = radius >= Math.PI * EARTH_RADIUS ? 2 : 2 * Math.sin(radius / EARTH_RADIUS / 2);
+    State current = state;
+    double[] point = vector(longitude, latitude);
+    Neighbors found = new Neighbors(Integer.MAX_VALUE);
+    for (Tree tree : current.trees) {
+      tree.within(point, chord * chord, 0, tree.values.length, 0, found);
+    }
+    for (int i = 0; i < current.pendingCount; i++) {
+      double distance = current.distance(point, i);
+      if (distance <= chord * chord) {
+        found.add(distance, current.pendingValues[i]);
+      }
+    }
+    return found.sorted();
+  }
+
+  private State rebuild(State current) {
+    Tree[] trees = current.trees;
+    int merged = trees.length;
+    int size = current.pendingCount;
+    while (merged > 0 && trees[merged - 1].values.length <= size) {
+      size += trees[--merged].values.length;
+    }
+    double[][] points = new double[3][size];
+    Object[] values = new Object[size];
+    int position = 0;
+    for (int i = merged; i < trees.length; i++) {
+      position = copy(trees[i].points, trees[i].values, trees[i].values.length, points, values,
+          position);
+    }
+    copy(current.pending, current.pendingValues, current.pendingCount, points, values, position);
+    Tree tree = new Tree(points, values);
+    tree.build(0, size, 0);
+    Tree[] rebuilt = Arrays.copyOf(trees, merged + 1);
+    rebuilt[merged] = tree;
+    return new State(rebuilt, new double[3][PENDING], new Object[PENDING], 0);
+  }
+
+  private static int copy(double[][] fromPoints, Object[] fromValues, int count,
+                          double[][] points, Object[] values, int position) {
+    for (int axis = 0; axis < 3; axis++) {
+      System.arraycopy(fromPoints[axis], 0, points[axis], position, count);
+    }
+    System.arraycopy(fromValues, 0, values, position, count);
+    return position + count;
+  }
+
+  /**
+   * Trees from the largest one and pending places seen by query.
+   */
+  private static final class State {
+    private final Tree[] trees;
+    private final double[][] pending;
+    private final Object[] pendingValues;
+    private final int pendingCount;
+
+    private State(Tree[] trees, double[][] pending, Object[] pendingValues, int pendingCount) {
+      this.trees = trees;
+      this.pending = pending;
+      this.pendingValues = pendingValues;
+      this.pendingCount = pendingCount;
+    }
+
+    private double distance(double[] point, int index) {
+      double square = 0;
+      for (int axis = 0; axis < 3; axis++) {
+        double difference = point[axis] - pending[axis][index];
+        square += difference * difference;
+      }
+      return square;
+    }
+  }
+
+  /**
+   * Implicit k-d tree: node of range is its middle element, split by axis of the depth, nodes of
+   * left subtree are not greater and nodes of right subtree are not less by the axis.
+   */
+  private static final class Tree {
+    private final double[][] points;
+    private final Object[] values;
+
+    private Tree(double[][] points, Object[] values) {
+      this.points = points;
+      this.values = values;
+    }
+
+    private void build(int from, int to, int depth) {
+      if (to - from < 2) {
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      select(from, to - 1, middle, depth % 3);
+      build(from, middle, depth + 1);
+      build(middle + 1, to, depth + 1);
+    }
+
+    private void select(int from, int to, int nth, int axis) {
+      double[] coordinates = points[axis];
+      int left = from;
+      int right = to;
+      while (left < right) {
+        double pivot = coordinates[(left + right) >>> 1];
+        int i = left;
+        int j = right;
+        while (i <= j) {
+          while (coordinates[i] < pivot) {
+            i++;
+          }
+          while (coordinates[j] > pivot) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        if (nth <= j) {
+          right = j;
+        } else if (nth >= i) {
+          left = i;
+        } else {
+          return;
+        }
+      }
+    }
+
+    private void swap(int i, int j) {
+      for (double[] coordinates : points) {
+        double coordinate = coordinates[i];
+        coordinates[i] = coordinates[j];
+        coordinates[j] = coordinate;
+      }
+      Object value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+
+    private double distance(double[] point, int index) {
+      double square = 0;
+      for (int axis = 0; axis < 3; axis++) {
+        double difference = point[axis] - points[axis][index];
+        square += difference * difference;
+      }
+      return square;
+    }
+
+    private void nearest(double[] point, int from, int to, int depth, Neighbors neighbors) {
+      if (from >= to) {
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      neighbors.offer(distance(point, middle), values[middle]);
+      double difference = point[depth % 3] - points[depth % 3][middle];
+      if (difference < 0) {
+        nearest(point, from, middle, depth + 1, neighbors);
+        if (difference * difference < neighbors.bound()) {
+          nearest(point, middle + 1, to, depth + 1, neighbors);
+        }
+      } else {
+        nearest(point, middle + 1, to, depth + 1, neighbors);
+        if (difference * difference < neighbors.bound()) {
+          nearest(point, from, middle, depth + 1, neighbors);
+        }
+      }
+    }
+
+    private void within(double[] point, double bound, int from, int to, int depth,
+                        Neighbors found) {
+      if (from >= to) {
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      double distance = distance(point, middle);
+      if (distance <= bound) {
+        found.add(distance, values[middle]);
+      }
+      double difference = point[depth % 3] - points[depth % 3][middle];
+      if (difference <= 0 || difference * difference <= bound) {
+        within(point, bound, from, middle, depth + 1, found);
+      }
+      if (difference >= 0 || difference * difference <= bound) {
+        within(point, bound, middle + 1, to, depth + 1, found);
+      }
+    }
+  }
+
+  /**
+   * Places found by query with square of straight distance, bounded one keeps the nearest places
+   * in max-heap.
+   */
+  private static final class Neighbors {
+    private final int capacity;
+    private double[] distances;
+    private Object[] values;
+    private int size;
+
+    private Neighbors(int capacity) {
+      this.capacity = capacity;
+      int initial = Math.min(capacity, 16);
+      this.distances = new double[initial];
+      this.values = new Object[initial];
+    }
+
+    private double bound() {
+      return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    private void add(double distance, Object value) {
+      if (size == distances.length) {
+        distances = Arrays.copyOf(distances, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      distances[size] = distance;
+      values[size++] = value;
+    }
+
+    private void offer(double distance, Object value) {
+      if (size < capacity) {
+        add(distance, value);
+        int child = size - 1;
+        while (child > 0 && distances[(child - 1) / 2] < distances[child]) {
+          swap(child, (child - 1) / 2);
+          child = (child - 1) / 2;
+        }
+      } else if (distance < distances[0]) {
+        distances[0] = distance;
+        values[0] = value;
+        int parent = 0;
+        while (true) {
+          int largest = parent;
+          for (int child = parent * 2 + 1; child <= parent * 2 + 2 && child < size; child++) {
+            if (distances[child] > distances[largest]) {
+              largest = child;
+            }
+          }
+          if (largest == parent) {
+            return;
+          }
+          swap(parent, largest);
+          parent = largest;
+        }
+      }
+    }
+
+    private void swap(int i, int j) {
+      double distance = distances[i];
+      distances[i] = distances[j];
+      distances[j] = distance;
+      Object value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> List<V> sorted() {
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+      List<V> result = new ArrayList<>(size);
+      for (Integer index : order) {
+        result.add((V) values[index]);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+/**
+ * Policy of syncing measurement log to the disk.
+ *
+ * @author Andrey Minov
+ */
+public enum SyncPolicy {
+  /**
+   * Every commit of records is synced before writers are acknowledged, acknowledged measurement
+   * is never lost.
+   */
+  EVERY_BATCH,
+  /**
+   * Log is synced when sync interval passes since the last sync, measurements acknowledged
+   * during the interval are lost on system crash.
+   */
+  INTERVAL,
+  /**
+   * Log is never synced explicitly, operating system writes it when it decides.
+   */
+  NONE
+}
@@ -1,27 +1,82 @@
 package ua.danit.rest.weatherapp.impl.resources;
 
 import static java.lang.Math.floor;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.hibernate.validator.constraints.NotEmpty;
+import ua.danit.rest.core.annotations.Cacheable;
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
+import ua.danit.rest.weatherapp.codec.WeatherBinaryCodec;
 import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
 import ua.danit.rest.weatherapp.entity.Weather;
 import ua.danit.rest.weatherapp.ext.MeasurementService;
 
 /**
  * The type Weather service.
+ * <p/>
+ * Weather is tagged by weak ETag of the place version and Last-Modified of measurement time, so
+ * clients polling the same place are answered with 304 Not Modified until new measurement is
+ * stored.
+ * <p/>
+ * When measurement service keeps encoded weather, its bytes are returned as they are.
+ * <p/>
+ * Weather at the nearest locations and at locations within radius is returned as list from the
+ * nearest location, with location of measurement as it is stored.
+ * <p/>
+ * History of the place is returned as list of weather from the oldest measurement, optionally
+ * within range of measurement time in UTC, in the same format as measurement time of weather.
+ * At most limit measurements are returned, the next ones are read from the time after the last
+ * returned measurement.
  */
 @Path("/weather/get")
 public class WeatherSelectResource {
+  /**
+   * Name of the cache of last measured weather. Submitted measurements do not clear it, cached
+   * weather expires after {@value #WEATHER_CACHE_TTL} milliseconds.
+   */
+  public static final String WEATHER_CACHE = "weather";
+  /**
+   * Time in milliseconds last measured weather is served from cache.
+   */
+  public static final long WEATHER_CACHE_TTL = 1000;
+  /**
+   * Maximal number of the nearest locations returned.
+   */
+  public static final int MAX_NEAREST = 100;
+  /**
+   * Maximal number of history measurements returned by single request.
+   */
+  public static final int MAX_HISTORY = 1000;
+  /**
+   * Maximal radius of locations in kilometers.
+   */
+  public static final String MAX_RADIUS = "1000";
+
+  private static final Instant OLDEST = Instant.ofEpochMilli(Long.MIN_VALUE);
+  private static final Instant NEWEST = Instant.ofEpochMilli(Long.MAX_VALUE);
 
   private MeasurementService measurementService;
 
@@ -43,18 +98,22 @@ public class WeatherSelectResource {
    */
   @GET
   @Path("/byCity")
-  @Produces(MediaType.APPLICATION_JSON)
+  @Cacheable(value = WEATHER_CACHE, ttl = WEATHER_CACHE_TTL)
+  @Produces({MediaType.APPLICATION_JSON, WeatherBinaryCodec.MEDIA_TYPE})
   public Response getWeather(
       @NotEmpty(message = "City cannot be empty!") @QueryParam("city") String city,
       @NotEmpty(message = "Country cannot be empty!") @QueryParam("country") String country) {
+    long version = measurementService.getVersion(city, country);
+    EncodedWeather encoded = measurementService.getEncodedWeather(city, country);
+    if (encoded != null) {
+      return validated(encoded.getMeasure(), version).entity(encoded.toEntity()).build();
+    }
     Measure measure = measurementService.getCurrentWeather(city, country);
     if (measure == null) {
       return Response.ok().build();
     }
-    return Response.ok().entity(
-        new Weather(city, country, null, measure.getCode(), measure.getTemperature(),
-            measure.getMeasureTimeUtc().withZoneSameInstant(ZoneOffset.UTC)
-                   .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))).build();
+    return validated(measure, version)
+        .entity(EncodedWeather.toWeather(city, country, null, measure)).build();
   }
 
   /**
@@ -66,18 +125,162 @@ public class WeatherSelectResource {
    */
   @GET
   @Path("/byLocation")
-  @Produces(MediaType.APPLICATION_JSON)
+  @Cacheable(value = WEATHER_CACHE, ttl = WEATHER_CACHE_TTL)
+  @Produces({MediaType.APPLICATION_JSON, WeatherBinaryCodec.MEDIA_TYPE})
   public Response getWeather(
       @NotNull(message = "Longitute cannot be empty!") @QueryParam("longitude") double longitude,
       @NotNull(message = "Latitude cannot be empty!") @QueryParam("latitude") double latitude) {
+    long version = measurementService.getVersion(floor(longitude), floor(latitude));
+    EncodedWeather encoded = measurementService.getEncodedWeather(floor(longitude),
+        floor(latitude));
+    if (encoded != null) {
+      return validated(encoded.getMeasure(), version)
+          .entity(encoded.toEntity(longitude, latitude)).build();
+    }
     Measure measure = measurementService.getCurrentWeather(floor(longitude), floor(latitude));
     if (measure == null) {
       return Response.ok().build();
     }
-    return Response.ok().entity(
-        new Weather(null, null, new Weather.Location(longitude, latitude), measure.getCode(),
-            measure.getTemperature(),
-            measure.getMeasureTimeUtc().withZoneSameInstant(ZoneOffset.UTC)
-                   .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))).build();
+    return validated(measure, version).entity(EncodedWeather
+        .toWeather(null, null, new Weather.Location(longitude, latitude), measure)).build();
+  }
+
+  /**
+   * Gets last measured weather at locations nearest to the point.
+   *
+   * @param longitude the longitude of the point.
+   * @param latitude  the latitude of the point.
+   * @param count     the maximal number of locations.
+   * @return list of weather from the nearest location.
+   */
+  @GET
+  @Path("/nearest")
+  @Cacheable(value = WEATHER_CACHE, ttl = WEATHER_CACHE_TTL)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getNearestWeather(
+      @NotNull(message = "Longitute cannot be empty!") @QueryParam("longitude") double longitude,
+      @NotNull(message = "Latitude cannot be empty!") @QueryParam("latitude") double latitude,
+      @Min(value = 1, message = "Count must be positive!")
+      @Max(value = MAX_NEAREST, message = "Count cannot be more than " + MAX_NEAREST + "!")
+      @DefaultValue("1") @QueryParam("count") int count) {
+    return Response.ok(toWeather(measurementService.getNearestWeather(longitude, latitude, count)))
+                   .build();
+  }
+
+  /**
+   * Gets last measured weather at locations within radius from the point.
+   *
+   * @param longitude the longitude of the point.
+   * @param latitude  the latitude of the point.
+   * @param radius    the radius in kilometers.
+   * @return list of weather from the nearest location.
+   */
+  @GET
+  @Path("/withinRadius")
+  @Cacheable(value = WEATHER_CACHE, ttl = WEATHER_CACHE_TTL)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getWeatherWithin(
+      @NotNull(message = "Longitute cannot be empty!") @QueryParam("longitude") double longitude,
+      @NotNull(message = "Latitude cannot be empty!") @QueryParam("latitude") double latitude,
+      @NotNull(message = "Radius cannot be empty!")
+      @DecimalMin(value = "0", message = "Radius cannot be negative!")
+      @DecimalMax(value = MAX_RADIUS, message = "Radius cannot be more than " + MAX_RADIUS
+          + " km!") @QueryParam("radius") double radius) {
+    return Response.ok(toWeather(measurementService.getWeatherWithin(longitude, latitude,
+        radius))).build();
+  }
+
+  /**
+   * Gets history of weather measurements in the city.
+   *
+   * @param city    the city of measurements.
+   * @param country the country of the city.
+   * @param from    the time of the oldest measurement in UTC, inclusive, or null for all history.
+   * @param to      the time of the newest measurement in UTC, inclusive, or null for all history.
+   * @param limit   the maximal number of measurements.
+   * @return list of weather from the oldest measurement.
+   */
+  @GET
+  @Path("/history/byCity")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getHistory(
+      @NotEmpty(message = "City cannot be empty!") @QueryParam("city") String city,
+      @NotEmpty(message = "Country cannot be empty!") @QueryParam("country") String country,
+      @QueryParam("from") String from, @QueryParam("to") String to,
+      @Min(value = 1, message = "Limit must be positive!")
+      @Max(value = MAX_HISTORY, message = "Limit cannot be more than " + MAX_HISTORY + "!")
+      @DefaultValue("" + MAX_HISTORY) @QueryParam("limit") int limit) {
+    Instant fromTime = parseTime(from, OLDEST);
+    Instant toTime = parseTime(to, NEWEST);
+    if (fromTime == null || toTime == null || fromTime.isAfter(toTime)) {
+      return Response.status(SC_BAD_REQUEST).build();
+    }
+    return Response.ok(measurementService.getMeasures(city, country, fromTime, toTime, limit)
+        .stream().map(m -> EncodedWeather.toWeather(city, country, null, m))
+        .collect(Collectors.toList())).build();
+  }
+
+  /**
+   * Gets history of weather measurements at geo location.
+   *
+   * @param longitude the longitude of the location.
+   * @param latitude  the latitude of the location.
+   * @param from      the time of the oldest measurement in UTC, inclusive, or null for all
+   *                  history.
+   * @param to        the time of the newest measurement in UTC, inclusive, or null for all
+   *                  history.
+   * @param limit     the maximal number of measurements.
+   * @return list of weather from the oldest measurement.
+   */
+  @GET
+  @Path("/history/byLocation")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getHistory(
+      @NotNull(message = "Longitute cannot be empty!") @QueryParam("longitude") double longitude,
+      @NotNull(message = "Latitude cannot be empty!") @QueryParam("latitude") double latitude,
+      @QueryParam("from") String from, @QueryParam("to") String to,
+      @Min(value = 1, message = "Limit must be positive!")
+      @Max(value = MAX_HISTORY, message = "Limit cannot be more than " + MAX_HISTORY + "!")
+      @DefaultValue("" + MAX_HISTORY) @QueryParam("limit") int limit) {
+    Instant fromTime = parseTime(from, OLDEST);
+    Instant toTime = parseTime(to, NEWEST);
+    if (fromTime == null || toTime == null || fromTime.isAfter(toTime)) {
+      return Response.status(SC_BAD_REQUEST).build();
+    }
+    Weather.Location location = new Weather.Location(longitude, latitude);
+    return Response.ok(measurementService.getMeasures(floor(longitude), floor(latitude),
+        fromTime, toTime, limit).stream()
+        .map(m -> EncodedWeather.toWeather(null, null, location, m))
+        .collect(Collectors.toList())).build();
+  }
+
+  private static Instant parseTime(String time, Instant missing) {
+    if (time == null || time.isEmpty()) {
+      return missing;
+    }
+    Instant instant;
+    try {
+      instant = LocalDateTime.parse(time).toInstant(ZoneOffset.UTC);
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+    // years beyond epoch milliseconds are parsed as well, range is bounded by them.
+    if (instant.isBefore(OLDEST)) {
+      return OLDEST;
+    }
+    return instant.isAfter(NEWEST) ? NEWEST : instant;
+  }
+
+  private static List<Weather> toWeather(List<MeasureRecord> records) {
+    return records.stream().map(r -> EncodedWeather.toWeather(null, null, r.getLocation(),
+        r.getMeasure())).collect(Collectors.toList());
+  }
+
+  private static Response.ResponseBuilder validated(Measure measure, long version) {
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setNoCache(true);
+    return Response.ok().tag(new EntityTag(String.valueOf(version), true))
+                   .lastModified(Date.from(measure.getMeasureTimeUtc().toInstant()))
+                   .cacheControl(cacheControl);
   }
 }
@@ -3,17 +3,35 @@ package ua.danit.rest.weatherapp.impl.resources;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 
 import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import ua.danit.rest.core.annotations.MaxBodySize;
+import ua.danit.rest.weatherapp.codec.WeatherBinaryCodec;
+import ua.danit.rest.weatherapp.entity.BatchResult;
 import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
 import ua.danit.rest.weatherapp.entity.Weather;
 import ua.danit.rest.weatherapp.ext.MeasurementService;
 
@@ -24,7 +42,16 @@ import ua.danit.rest.weatherapp.ext.MeasurementService;
  */
 @Path("/weather/submit")
 public class WeatherStoreResource {
+  /**
+   * Media type of newline delimited JSON, stream of JSON objects one by one.
+   */
+  public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  private static final int CHUNK_SIZE = 1024;
+  private static final long MAX_BATCH_SIZE = 256 * 1024 * 1024;
 
+  private final Gson gson = new Gson();
+  private final JsonParser parser = new JsonParser();
   private MeasurementService measurementService;
 
   /**
@@ -44,7 +71,7 @@ public class WeatherStoreResource {
    */
   @POST
   @Path("/measurement")
-  @Consumes(MediaType.APPLICATION_JSON)
+  @Consumes({MediaType.APPLICATION_JSON, WeatherBinaryCodec.MEDIA_TYPE})
   public Response submit(@NotNull(message = "Measurement cannot be null!") Weather measure) {
     Measure entity = new Measure(measure.getTemperature(), measure.getWeatherCode(),
         LocalDateTime.parse(measure.getMeasureTime()).atZone(ZoneOffset.UTC));
@@ -58,4 +85,95 @@ public class WeatherStoreResource {
     }
     return Response.status(SC_BAD_REQUEST).build();
   }
+
+  /**
+   * Submit batch of weather measurements, either JSON array or newline delimited JSON objects.
+   * <p/>
+   * Records are read from the body one by one and stored by chunks of {@value #CHUNK_SIZE}, so
+   * the whole batch is never held in memory. Record which is not correct measurement is counted as
+   * rejected and does not fail others. When body is not correct JSON, reading stops and records
+   * stored before are reported together with the error.
+   *
+   * @param body the body of the request.
+   * @return the response with numbers of accepted and rejected measurements.
+   */
+  @POST
+  @Path("/measurements")
+  @Consumes({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+  @Produces(MediaType.APPLICATION_JSON)
+  @MaxBodySize(MAX_BATCH_SIZE)
+  public Response submitBatch(InputStream body) {
+    List<MeasureRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+    long accepted = 0;
+    long rejected = 0;
+    String error = null;
+    try (JsonReader reader = new JsonReader(new InputStreamReader(body,
+        StandardCharsets.UTF_8))) {
+      // lenient reader accepts many top level values, that is newline delimited JSON.
+      reader.setLenient(true);
+      boolean array = peekFirst(reader) == JsonToken.BEGIN_ARRAY;
+      if (array) {
+        reader.beginArray();
+      }
+      while (array ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT) {
+        MeasureRecord record = toRecord(parser.parse(reader));
+        if (record == null) {
+          rejected++;
+          continue;
+        }
+        chunk.add(record);
+        if (chunk.size() == CHUNK_SIZE) {
+          // service owns the stored chunk, so next records are collected into new one.
+          measurementService.storeMeasures(chunk);
+          accepted += chunk.size();
+          chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+      }
+      if (array) {
+        reader.endArray();
+      }
+    } catch (IOException | JsonParseException e) {
+      error = e.getMessage();
+    }
+    if (!chunk.isEmpty()) {
+      measurementService.storeMeasures(chunk);
+      accepted += chunk.size();
+    }
+    return Response.ok().entity(new BatchResult(accepted, rejected, error)).build();
+  }
+
+  private static JsonToken peekFirst(JsonReader reader) throws IOException {
+    try {
+      return reader.peek();
+    } catch (EOFException e) {
+      // empty body is empty batch.
+      return JsonToken.END_DOCUMENT;
+    }
+  }
+
+  private MeasureRecord toRecord(JsonElement element) {
+    if (!element.isJsonObject()) {
+      return null;
+    }
+    try {
+      Weather weather = gson.fromJson(element, Weather.class);
+      if (weather.getTemperature() == null || weather.getWeatherCode() == null
+          || weather.getMeasureTime() == null) {
+        return null;
+      }
+      Measure measure = new Measure(weather.getTemperature(), weather.getWeatherCode(),
+          LocalDateTime.parse(weather.getMeasureTime()).atZone(ZoneOffset.UTC));
+      if (!Strings.isNullOrEmpty(weather.getCity())
+          && !Strings.isNullOrEmpty(weather.getCountry())) {
+        return MeasureRecord.forCity(weather.getCity(), weather.getCountry(), measure);
+      } else if (weather.getLocation() != null) {
+        Weather.Location location = weather.getLocation();
+        return MeasureRecord.forLocation(location.getLongitude(), location.getLatitude(), measure);
+      }
+      return null;
+    } catch (RuntimeException e) {
+      // tree adapters of Gson fail on wrong field types with different exceptions.
+      return null;
+    }
+  }
 }
@@ -0,0 +1,170 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Test for measurements kept in memory.
+ *
+ * @author Andrey Minov
+ */
+public class InMemoryMeasureServiceTest {
+  private static final LocalDateTime START = LocalDateTime.parse("2017-01-01T00:00:00");
+
+  private static Measure measure(int minutes) {
+    return new Measure(minutes, WeatherCode.CLOUDY,
+        START.plusMinutes(minutes).atZone(ZoneOffset.UTC));
+  }
+
+  private static List<Integer> minutes(List<Measure> measures) {
+    return measures.stream().map(m -> (int) m.getTemperature()).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testLatestIsNewestMeasurement() {
+    InMemoryMeasureService service = new InMemoryMeasureService();
+    assertNull(service.getCurrentWeather("Kiev", "Ukraine"));
+
+    service.storeMeasure("Kiev", "Ukraine", measure(2));
+    service.storeMeasure("Kiev", "Ukraine", measure(1));
+    service.storeMeasure(30.5, 50.4, measure(5));
+
+    assertEquals(measure(2), service.getCurrentWeather("Kiev", "Ukraine"));
+    assertEquals(Arrays.asList(1, 2), minutes(service.getMeasures("Kiev", "Ukraine")));
+    assertEquals(measure(5), service.getCurrentWeather(30.9, 50.1));
+    assertEquals(2, service.getVersion("Kiev", "Ukraine"));
+  }
+
+  @Test
+  public void testOldestRemovedByCount() {
+    InMemoryMeasureService service = new InMemoryMeasureService(MeasureRetention.defaults()
+        .withMaxCount(10), false);
+    for (int i = 0; i < 100; i++) {
+      service.storeMeasure("Kiev", "Ukraine", measure(i));
+    }
+
+    List<Integer> kept = minutes(service.getMeasures("Kiev", "Ukraine"));
+    assertEquals(10, kept.size());
+    assertEquals(90, (int) kept.get(0));
+    assertEquals(Arrays.asList(95, 96), minutes(service.getMeasures("Kiev", "Ukraine",
+        measure(95).getMeasureTimeUtc().toInstant(),
+        measure(96).getMeasureTimeUtc().toInstant(), 10)));
+    assertEquals(measure(99), service.getCurrentWeather("Kiev", "Ukraine"));
+  }
+
+  @Test
+  public void testOldestRemovedByAge() {
+    InMemoryMeasureService service = new InMemoryMeasureService(MeasureRetention.defaults()
+        .withMaxAge(Duration.ofMinutes(60)), false);
+    for (int i = 0; i <= 300; i += 30) {
+      service.storeMeasure("Kiev", "Ukraine", measure(i));
+    }
+    service.storeMeasure("Kiev", "Ukraine", measure(200));
+
+    assertEquals(Arrays.asList(240, 270, 300), minutes(service.getMeasures("Kiev", "Ukraine")));
+    assertEquals(1, service.getDroppedMeasures());
+  }
+
+  @Test
+  public void testNearestAndWithinRadiusLocations() {
+    InMemoryMeasureService service = new InMemoryMeasureService();
+    service.storeMeasure(30.5, 50.4, measure(1));
+    service.storeMeasure(31.2, 50.6, measure(2));
+    service.storeMeasure(24.0, 49.8, measure(3));
+    service.storeMeasure("Kiev", "Ukraine", measure(4));
+
+    // exact lookup across degree line finds nothing.
+    assertNull(service.getCurrentWeather(29.99, 50.4));
+    List<MeasureRecord> nearest = service.getNearestWeather(29.99, 50.4, 2);
+    assertEquals(Arrays.asList(MeasureRecord.forLocation(30, 50, measure(1)),
+        MeasureRecord.forLocation(31, 50, measure(2))), nearest);
+    assertEquals(3, service.getNearestWeather(0, 0, 10).size());
+    assertEquals(2, service.getWeatherWithin(30.99, 50.5, 100).size());
+    assertEquals(3, service.getWeatherWithin(30.99, 50.5, 600).size());
+  }
+
+  @Test
+  public void testCompressedHistoryRetained() {
+    InMemoryMeasureService service = new InMemoryMeasureService(MeasureRetention.defaults()
+        .withMaxCount(500).withMaxAge(Duration.ofMinutes(5000)).withReorderWindow(4), false);
+    List<Measure> stored = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      int minute = i * 3 + i % 2;
+      Measure measure = new Measure(i % 7 == 0 ? -12.5 : minute / 10.0,
+          WeatherCode.values()[i / 50 % WeatherCode.values().length],
+          START.plusMinutes(minute).plusSeconds(i % 3).atZone(ZoneOffset.UTC));
+      service.storeMeasure("Kiev", "Ukraine", measure);
+      stored.add(measure);
+    }
+
+    assertEquals(stored.subList(1500, 2000), service.getMeasures("Kiev", "Ukraine"));
+    assertEquals(stored.subList(1600, 1999), service.getMeasures("Kiev", "Ukraine",
+        stored.get(1600).getMeasureTimeUtc().toInstant(),
+        stored.get(1998).getMeasureTimeUtc().toInstant(), 1000));
+    assertEquals(stored.subList(1600, 1650), service.getMeasures("Kiev", "Ukraine",
+        stored.get(1600).getMeasureTimeUtc().toInstant(),
+        stored.get(1998).getMeasureTimeUtc().toInstant(), 50));
+    service.storeMeasure("Kiev", "Ukraine", stored.get(1990));
+    assertEquals(1, service.getDroppedMeasures());
+
+    service.storeMeasure("Kiev", "Ukraine", measure(10_000));
+    List<Measure> kept = service.getMeasures("Kiev", "Ukraine");
+    assertEquals(stored.subList(1667, 2000), kept.subList(0, kept.size() - 1));
+  }
+
+  @Test
+  public void testLateMeasurementInsertedWithinReorderWindow() {
+    InMemoryMeasureService service = new InMemoryMeasureService(MeasureRetention.defaults()
+        .withReorderWindow(2), false);
+    for (int i = 1; i <= 5; i++) {
+      service.storeMeasure("Kiev", "Ukraine", measure(i * 10));
+    }
+    service.storeMeasure("Kiev", "Ukraine", measure(45));
+    service.storeMeasure("Kiev", "Ukraine", measure(25));
+
+    assertEquals(Arrays.asList(10, 20, 30, 40, 45, 50),
+        minutes(service.getMeasures("Kiev", "Ukraine")));
+    assertEquals(1, service.getDroppedMeasures());
+    assertEquals(measure(50), service.getCurrentWeather("Kiev", "Ukraine"));
+  }
+
+  @Test
+  public void testBatchStoredInTimeOrder() {
+    InMemoryMeasureService service = new InMemoryMeasureService(MeasureRetention.defaults()
+        .withReorderWindow(0), true);
+    service.storeMeasures(Arrays.asList(MeasureRecord.forCity("Kiev", "Ukraine", measure(3)),
+        MeasureRecord.forCity("Kiev", "Ukraine", measure(1)),
+        MeasureRecord.forCity("Kiev", "Ukraine", measure(2))));
+
+    assertEquals(Arrays.asList(1, 2, 3), minutes(service.getMeasures("Kiev", "Ukraine")));
+    assertEquals(1, service.getVersion("Kiev", "Ukraine"));
+    assertEquals(measure(3), service.getEncodedWeather("Kiev", "Ukraine").getMeasure());
+  }
+
+  @Test
+  public void testMeasurementReadInUtc() {
+    InMemoryMeasureService service = new InMemoryMeasureService();
+    service.storeMeasure("Kiev", "Ukraine", new Measure(21.3, WeatherCode.SUNNY,
+        START.atZone(ZoneId.of("Europe/Kiev"))));
+
+    Measure measure = service.getCurrentWeather("Kiev", "Ukraine");
+    assertEquals(21.3, measure.getTemperature(), 0);
+    assertEquals(WeatherCode.SUNNY, measure.getCode());
+    assertEquals(LocalDateTime.parse("2016-12-31T22:00:00").atZone(ZoneOffset.UTC),
+        measure.getMeasureTimeUtc());
+  }
+}
@@ -0,0 +1,121 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Test for log-structured measurement store.
+ *
+ * @author Andrey Minov
+ */
+public class LsmMeasureServiceTest {
+  private static final LocalDateTime START = LocalDateTime.parse("2017-01-01T00:00:00");
+  private static final LsmSettings SETTINGS = LsmSettings.defaults().withMemtableSize(10)
+      .withIndexInterval(4).withCompactionThreshold(3);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+
+  private static Measure measure(int minutes) {
+    return new Measure(minutes + 0.5, WeatherCode.FOG,
+        START.plusMinutes(minutes).atZone(ZoneOffset.UTC));
+  }
+
+  @Before
+  public void setUp() {
+    directory = folder.getRoot().toPath().resolve("lsm");
+  }
+
+  @Test
+  public void testHistoryReadFromMemtableAndSegments() throws IOException {
+    try (LsmMeasureService service = LsmMeasureService.open(directory, SETTINGS, true)) {
+      for (int i = 0; i < 95; i++) {
+        service.storeMeasure("City" + i % 5, "Ukraine", measure(i));
+        service.storeMeasure(30.5, 50.4, measure(i));
+      }
+      service.storeMeasure("City0", "Ukraine", measure(90));
+
+      assertEquals(IntStream.range(0, 19).mapToObj(i -> measure(i * 5 + 2))
+          .collect(Collectors.toList()), service.getMeasures("City2", "Ukraine"));
+      assertEquals(95, service.getMeasures(30.9, 50.1).size());
+      assertEquals(19, service.getMeasures("City0", "Ukraine").size());
+      assertEquals(measure(94), service.getCurrentWeather(30.5, 50.4));
+      assertEquals(measure(94), service.getEncodedWeather(30.5, 50.4).getMeasure());
+      assertEquals(20, service.getVersion("City0", "Ukraine"));
+      assertEquals(Arrays.asList(measure(10), measure(15)), service.getMeasures("City0",
+          "Ukraine", measure(8).getMeasureTimeUtc().toInstant(),
+          measure(15).getMeasureTimeUtc().toInstant(), 10));
+      assertEquals(Arrays.asList(measure(0), measure(1)), service.getMeasures(30.5, 50.4,
+          measure(0).getMeasureTimeUtc().toInstant(),
+          measure(94).getMeasureTimeUtc().toInstant(), 2));
+      assertTrue(service.getMeasures("Odessa", "Ukraine").isEmpty());
+    }
+  }
+
+  @Test
+  public void testHistoryReadThroughLoggedService() throws IOException {
+    try (LsmMeasureService store = LsmMeasureService.open(directory, SETTINGS, true);
+         LoggedMeasureService service = LoggedMeasureService.open(store,
+             folder.getRoot().toPath().resolve("measures.log"), MeasureLogSettings.defaults())) {
+      for (int i = 0; i < 25; i++) {
+        service.storeMeasure(30.5, 50.4, measure(i));
+      }
+      store.flush();
+
+      assertEquals(Arrays.asList(measure(9), measure(10), measure(11)), service.getMeasures(30.1,
+          50.9, measure(9).getMeasureTimeUtc().toInstant(),
+          measure(11).getMeasureTimeUtc().toInstant(), 10));
+    }
+  }
+
+  @Test
+  public void testReopenedFromSegments() throws IOException {
+    try (LsmMeasureService service = LsmMeasureService.open(directory, SETTINGS, false)) {
+      for (int i = 0; i < 25; i++) {
+        service.storeMeasure("Kiev", "Ukraine", measure(i));
+      }
+      service.storeMeasure("Kiev", "Ukraine", measure(3));
+      service.writeSnapshot(42);
+    }
+
+    try (LsmMeasureService service = LsmMeasureService.open(directory, SETTINGS, true)) {
+      assertEquals(42, service.getSnapshotPosition());
+      assertEquals(measure(24), service.getCurrentWeather("Kiev", "Ukraine"));
+      assertEquals(measure(24), service.getEncodedWeather("Kiev", "Ukraine").getMeasure());
+      assertEquals(25, service.getVersion("Kiev", "Ukraine"));
+      assertEquals(25, service.getMeasures("Kiev", "Ukraine").size());
+      assertNull(service.getCurrentWeather("Lviv", "Ukraine"));
+    }
+  }
+
+  @Test
+  public void testSegmentsCompacted() throws IOException {
+    try (LsmMeasureService service = LsmMeasureService.open(directory, SETTINGS, false)) {
+      for (int i = 0; i < 1000; i++) {
+        service.storeMeasure(i % 7, 0, measure(i));
+      }
+      service.flush();
+      assertTrue(service.getSegmentCount() < 10);
+      assertEquals(143, service.getMeasures(0, 0).size());
+      assertEquals(142, service.getMeasures(6, 0).size());
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Test for measurement write-ahead log.
+ *
+ * @author Andrey Minov
+ */
+public class MeasureLogTest {
+  private static final LocalDateTime START = LocalDateTime.parse("2017-01-01T00:00:00");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static Measure measure(int minutes) {
+    return new Measure(minutes + 0.5, WeatherCode.RAINING,
+        START.plusMinutes(minutes).atZone(ZoneOffset.UTC));
+  }
+
+  @Test
+  public void testMeasurementsReplayedAfterReopen() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("measures.log");
+    try (LoggedMeasureService service = LoggedMeasureService.open(new InMemoryMeasureService(),
+        path, MeasureLogSettings.defaults())) {
+      service.storeMeasure("Kiev", "Ukraine", measure(1));
+      service.storeMeasure("Kiev", "Ukraine", measure(2));
+      service.storeMeasure(30.5, 50.4, measure(3));
+    }
+
+    InMemoryMeasureService restored = new InMemoryMeasureService();
+    try (LoggedMeasureService service = LoggedMeasureService.open(restored, path,
+        MeasureLogSettings.defaults())) {
+      assertEquals(measure(2), service.getCurrentWeather("Kiev", "Ukraine"));
+      assertEquals(measure(3), service.getCurrentWeather(30.5, 50.4));
+      assertEquals(2, restored.getMeasures("Kiev", "Ukraine").size());
+    }
+  }
+
+  @Test
+  public void testTruncatedRecordDropped() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("measures.log");
+    try (MeasureLog log = MeasureLog.open(path, MeasureLogSettings.defaults()
+        .withSyncPolicy(SyncPolicy.NONE), records -> { })) {
+      log.append(Collections.singletonList(MeasureRecord.forCity("Kiev", "Ukraine", measure(1))));
+      log.append(Collections.singletonList(MeasureRecord.forCity("Kiev", "Ukraine", measure(2))));
+    }
+    try (FileChannel channel = FileChannel.open(MeasureLog.segmentPath(path, 0),
+        StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    List<MeasureRecord> replayed = new ArrayList<>();
+    try (MeasureLog log = MeasureLog.open(path, MeasureLogSettings.defaults(),
+        replayed::addAll)) {
+      log.append(Collections.singletonList(MeasureRecord.forCity("Kiev", "Ukraine", measure(3))));
+    }
+    assertEquals(1, replayed.size());
+    assertEquals(measure(1), replayed.get(0).getMeasure());
+
+    replayed.clear();
+    MeasureLog.open(path, MeasureLogSettings.defaults(), replayed::addAll).close();
+    assertEquals(2, replayed.size());
+    assertEquals(measure(3), replayed.get(1).getMeasure());
+  }
+
+  @Test
+  public void testConcurrentAppendsShareCommit() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("measures.log");
+    int writers = 8;
+    int appends = 50;
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    try (MeasureLog log = MeasureLog.open(path, MeasureLogSettings.defaults()
+        .withCommitDelay(2000), records -> { })) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int w = 0; w < writers; w++) {
+        String city = "City" + w;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < appends; i++) {
+            log.append(Collections.singletonList(MeasureRecord.forCity(city, "Ukraine",
+                measure(i))));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      assertTrue(log.getCommits() < writers * appends);
+      assertEquals(log.getCommits(), log.getSyncs());
+    } finally {
+      executor.shutdown();
+    }
+
+    List<MeasureRecord> replayed = new ArrayList<>();
+    MeasureLog.open(path, MeasureLogSettings.defaults(), replayed::addAll).close();
+    assertEquals(writers * appends, replayed.size());
+  }
+
+  @Test
+  public void testReplayedAcrossSegments() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("measures.log");
+    Files.write(path, new byte[0]);
+    MeasureLogSettings settings = MeasureLogSettings.defaults().withSegmentSize(100)
+        .withCommitDelay(0);
+    long position;
+    try (MeasureLog log = MeasureLog.open(path, settings, records -> { })) {
+      for (int i = 0; i < 10; i++) {
+        log.append(Collections.singletonList(MeasureRecord.forCity("Kiev", "Ukraine",
+            measure(i))));
+      }
+      position = log.getPosition();
+      for (int i = 10; i < 20; i++) {
+        log.append(Collections.singletonList(MeasureRecord.forCity("Kiev", "Ukraine",
+            measure(i))));
+      }
+      log.release(position);
+    }
+    assertFalse(Files.exists(path));
+    assertFalse(Files.exists(MeasureLog.segmentPath(path, 0)));
+
+    List<MeasureRecord> replayed = new ArrayList<>();
+    MeasureLog.open(path, settings, position, replayed::addAll).close();
+    assertEquals(10, replayed.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(measure(i + 10), replayed.get(i).getMeasure());
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.WeatherCode;
+
+/**
+ * Test for measurements restored from snapshot and log tail.
+ *
+ * @author Andrey Minov
+ */
+public class MeasureSnapshotTest {
+  private static final LocalDateTime START = LocalDateTime.parse("2017-01-01T00:00:00");
+  private static final MeasureLogSettings SETTINGS = MeasureLogSettings.defaults()
+      .withSyncPolicy(SyncPolicy.NONE).withSnapshotInterval(0);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path logPath;
+  private Path snapshotPath;
+
+  private static Measure measure(int minutes) {
+    return new Measure(minutes + 0.5, WeatherCode.SNOW,
+        START.plusMinutes(minutes).atZone(ZoneOffset.UTC));
+  }
+
+  @Before
+  public void setUp() {
+    logPath = folder.getRoot().toPath().resolve("measures.log");
+    snapshotPath = folder.getRoot().toPath().resolve("measures.snapshot");
+  }
+
+  private InMemoryMeasureService store() throws IOException {
+    return new InMemoryMeasureService(MeasureRetention.defaults(), false, snapshotPath);
+  }
+
+  @Test
+  public void testRestoredFromSnapshotAndLogTail() throws IOException {
+    long position;
+    try (LoggedMeasureService service = LoggedMeasureService.open(store(), logPath, SETTINGS)) {
+      service.storeMeasure("Kiev", "Ukraine", measure(1));
+      service.storeMeasure("Kiev", "Ukraine", measure(2));
+      service.storeMeasure("Lviv", "Ukraine", measure(1));
+      service.storeMeasure(30.5, 50.4, measure(1));
+      position = service.snapshot();
+      service.storeMeasure("Kiev", "Ukraine", measure(3));
+      service.storeMeasure(-0.1, 51.5, measure(4));
+    }
+
+    InMemoryMeasureService store = store();
+    assertEquals(position, store.getSnapshotPosition());
+    assertEquals(measure(2), store.getCurrentWeather("Kiev", "Ukraine"));
+    assertEquals(measure(1), store.getCurrentWeather(30.9, 50.1));
+    assertNull(store.getCurrentWeather("Odessa", "Ukraine"));
+    assertNull(store.getCurrentWeather(-0.1, 51.5));
+
+    try (LoggedMeasureService service = LoggedMeasureService.open(store, logPath, SETTINGS)) {
+      assertEquals(measure(3), service.getCurrentWeather("Kiev", "Ukraine"));
+      assertEquals(3, store.getMeasures("Kiev", "Ukraine").size());
+      assertEquals(3, service.getVersion("Kiev", "Ukraine"));
+      assertEquals(measure(1), service.getCurrentWeather("Lviv", "Ukraine"));
+      assertEquals(measure(4), service.getCurrentWeather(-0.1, 51.5));
+    }
+  }
+
+  @Test
+  public void testLogReplayedOverSnapshotIsNotDoubled() throws IOException {
+    InMemoryMeasureService store = store();
+    try (LoggedMeasureService service = LoggedMeasureService.open(store, logPath, SETTINGS)) {
+      service.storeMeasure("Kiev", "Ukraine", measure(1));
+      service.storeMeasure("Kiev", "Ukraine", measure(2));
+      store.writeSnapshot(0);
+    }
+
+    store = store();
+    LoggedMeasureService.open(store, logPath, SETTINGS).close();
+    assertEquals(2, store.getMeasures("Kiev", "Ukraine").size());
+    assertEquals(0, store.getDroppedMeasures());
+  }
+
+  @Test
+  public void testSnapshotKeepsPlacesNotRestored() throws IOException {
+    try (LoggedMeasureService service = LoggedMeasureService.open(store(), logPath, SETTINGS)) {
+      for (int i = 0; i < 100; i++) {
+        service.storeMeasure("City" + i, "Ukraine", measure(i));
+        service.storeMeasure(i, -i, measure(i));
+      }
+      service.snapshot();
+    }
+
+    try (LoggedMeasureService service = LoggedMeasureService.open(store(), logPath, SETTINGS)) {
+      service.storeMeasure("City7", "Ukraine", measure(200));
+      assertTrue(service.snapshot() > 0);
+    }
+
+    InMemoryMeasureService store = store();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(measure(i == 7 ? 200 : i), store.getCurrentWeather("City" + i, "Ukraine"));
+      assertEquals(measure(i), store.getCurrentWeather(i, -i));
+    }
+  }
+
+  @Test
+  public void testLogSegmentsDeletedAfterSnapshot() throws IOException {
+    MeasureLogSettings settings = MeasureLogSettings.defaults().withSyncPolicy(SyncPolicy.NONE)
+        .withSnapshotInterval(0).withCommitDelay(0).withSegmentSize(256);
+    try (LoggedMeasureService service = LoggedMeasureService.open(store(), logPath, settings)) {
+      for (int i = 0; i < 100; i++) {
+        service.storeMeasure("City" + i, "Ukraine", measure(i));
+      }
+      assertTrue(segments() > 10);
+      service.snapshot();
+      assertEquals(1, segments());
+      service.storeMeasure("City7", "Ukraine", measure(200));
+    }
+
+    InMemoryMeasureService store = store();
+    LoggedMeasureService.open(store, logPath, settings).close();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(measure(i == 7 ? 200 : i), store.getCurrentWeather("City" + i, "Ukraine"));
+    }
+  }
+
+  private long segments() throws IOException {
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      return files.filter(file -> file.getFileName().toString().startsWith("measures.log."))
+          .count();
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package ua.danit.rest.weatherapp.impl.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for queries of spatial index against scan of all places.
+ *
+ * @author Andrey Minov
+ */
+public class SpatialIndexTest {
+  private static final int PLACES = 5000;
+  private static final double[][] QUERIES = {{30.5, 50.4}, {179.9, 0}, {-179.9, 10}, {0, 89.9},
+      {120, -89.5}, {-73.9, 40.7}};
+
+  private SpatialIndex<Integer> index;
+  private double[] longitudes;
+  private double[] latitudes;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(7);
+    index = new SpatialIndex<>();
+    longitudes = new double[PLACES];
+    latitudes = new double[PLACES];
+    for (int i = 0; i < PLACES; i++) {
+      longitudes[i] = random.nextDouble() * 360 - 180;
+      latitudes[i] = Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+      index.add(longitudes[i], latitudes[i], i);
+    }
+  }
+
+  private List<Integer> scan(double longitude, double latitude, double radius) {
+    return IntStream.range(0, PLACES).boxed()
+        .filter(i -> distance(longitude, latitude, i) <= radius)
+        .sorted(Comparator.comparingDouble(i -> distance(longitude, latitude, i)))
+        .collect(Collectors.toList());
+  }
+
+  private double distance(double longitude, double latitude, int place) {
+    return SpatialIndex.distance(longitude, latitude, longitudes[place], latitudes[place]);
+  }
+
+  @Test
+  public void testNearestMatchesScan() {
+    assertEquals(PLACES, index.size());
+    for (double[] query : QUERIES) {
+      List<Integer> expected = scan(query[0], query[1], Double.MAX_VALUE).subList(0, 10);
+      assertEquals(expected, index.nearest(query[0], query[1], 10));
+    }
+    assertEquals(PLACES, index.nearest(0, 0, PLACES * 2).size());
+    assertTrue(new SpatialIndex<Integer>().nearest(0, 0, 5).isEmpty());
+  }
+
+  @Test
+  public void testWithinMatchesScan() {
+    for (double[] query : QUERIES) {
+      List<Integer> expected = scan(query[0], query[1], 700);
+      assertTrue(expected.size() > 3);
+      assertEquals(expected, index.within(query[0], query[1], 700));
+    }
+    assertEquals(PLACES, index.within(0, 0, 30_000).size());
+  }
+
+  @Test
+  public void testDistance() {
+    // Kiev - London.
+    assertEquals(2131, SpatialIndex.distance(30.5234, 50.4501, -0.1276, 51.5072), 5);
+    assertEquals(0, SpatialIndex.distance(180, 10, -180, 10), 1e-6);
+  }
+}
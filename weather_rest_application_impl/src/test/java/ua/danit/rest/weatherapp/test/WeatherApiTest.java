@@ -3,27 +3,37 @@ package ua.danit.rest.weatherapp.test;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static ua.danit.rest.core.ApplicationBuilder.builder;
 
 import java.nio.charset.Charset;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -34,7 +44,11 @@ import ua.danit.rest.core.RestApplication;
 import ua.danit.rest.core.RestApplicationDelegate;
 import ua.danit.rest.core.parsing.RealReflectionServiceParser;
 import ua.danit.rest.core.parsing.ReflectionServiceParser;
+import ua.danit.rest.weatherapp.codec.EncodedWeather;
+import ua.danit.rest.weatherapp.codec.WeatherBinaryCodec;
 import ua.danit.rest.weatherapp.entity.Measure;
+import ua.danit.rest.weatherapp.entity.MeasureRecord;
+import ua.danit.rest.weatherapp.entity.Weather;
 import ua.danit.rest.weatherapp.entity.WeatherCode;
 import ua.danit.rest.weatherapp.ext.MeasurementService;
 import ua.danit.rest.weatherapp.impl.resources.WeatherSelectResource;
@@ -52,6 +66,8 @@ public class WeatherApiTest {
   private static final int HTTP_TIMEOUT = 1000;
   private static final String SERVER_URI_PATTERN = "http://localhost:%1$d%2$s";
 
+  private static final WeatherBinaryCodec CODEC = new WeatherBinaryCodec();
+
   private static RestApplication application;
 
   private static MeasurementService measurementService;
@@ -65,6 +81,7 @@ public class WeatherApiTest {
                                                        .withMatchingUrls(SERVICE_URLS)
                                                        .withServiceInstance(new WeatherSelectResource(measurementService))
                                                        .withServiceInstance(new WeatherStoreResource(measurementService))
+                                                       .withMediaCodec(CODEC)
                                                        .build(Mockito::mock, parser::parse));
     application.start(false);
     httpClient = HttpClientBuilder.create().build();
@@ -100,18 +117,67 @@ public class WeatherApiTest {
 
   private static Response callPost(String uri, Map<String, String> parameters,
                                    String entity) throws Exception {
+    return callPost(uri, parameters, new StringEntity(entity, ContentType.APPLICATION_JSON));
+  }
+
+  private static Response callPost(String uri, Map<String, String> parameters,
+                                   HttpEntity entity) throws Exception {
     URIBuilder builder = new URIBuilder(String.format(SERVER_URI_PATTERN, SERVICE_PORT, uri));
     if (parameters != null) {
       parameters.forEach(builder::addParameter);
     }
     HttpPost post = new HttpPost(builder.build());
-    post.setEntity(new StringEntity(entity));
+    post.setEntity(entity);
     post.setConfig(RequestConfig.custom().setConnectTimeout(HTTP_TIMEOUT).build());
     try (CloseableHttpResponse response = httpClient.execute(post)) {
-      return new Response(response.getStatusLine().getStatusCode(), null);
+      if (response.getEntity() == null) {
+        return new Response(response.getStatusLine().getStatusCode(), null);
+      }
+      byte[] bytes = ByteStreams.toByteArray(response.getEntity().getContent());
+      return new Response(response.getStatusLine().getStatusCode(),
+          new String(bytes, Charset.forName("UTF-8")));
     }
   }
 
+  @Test
+  public void testGetKievMeasurementBinary() throws Exception {
+    Measure measure = new Measure(-3.5, WeatherCode.SNOW, LocalDateTime
+        .parse("2017-12-01T06:30:00").atZone(ZoneOffset.UTC));
+    when(measurementService.getCurrentWeather("Lviv", "Ukraine")).thenReturn(measure);
+
+    URIBuilder builder = new URIBuilder(String.format(SERVER_URI_PATTERN, SERVICE_PORT,
+        "/resources/weather/get/byCity")).addParameter("city", "Lviv")
+                                         .addParameter("country", "Ukraine");
+    HttpGet get = new HttpGet(builder.build());
+    get.setHeader("Accept", "application/json;q=0.5, " + WeatherBinaryCodec.MEDIA_TYPE);
+    try (CloseableHttpResponse response = httpClient.execute(get)) {
+      assertEquals(SC_OK, response.getStatusLine().getStatusCode());
+      assertEquals(WeatherBinaryCodec.MEDIA_TYPE,
+          response.getFirstHeader("Content-Type").getValue());
+      Weather weather = CODEC.decode(ByteStreams.toByteArray(response.getEntity().getContent()));
+      assertEquals("Lviv", weather.getCity());
+      assertEquals(WeatherCode.SNOW, weather.getWeatherCode());
+      assertEquals(-3.5, weather.getTemperature(), 0);
+      assertEquals("2017-12-01T06:30:00", weather.getMeasureTime());
+    }
+  }
+
+  @Test
+  public void testSaveMeasurementBinary() throws Exception {
+    byte[] measurement = CODEC.encode(new Weather("Odessa", "Ukraine", null, WeatherCode.FOG,
+        12.25, "2017-10-01T08:15:00"));
+    HttpPost post = new HttpPost(String.format(SERVER_URI_PATTERN, SERVICE_PORT,
+        "/resources/weather/submit/measurement"));
+    post.setEntity(new ByteArrayEntity(measurement,
+        ContentType.create(WeatherBinaryCodec.MEDIA_TYPE)));
+    try (CloseableHttpResponse response = httpClient.execute(post)) {
+      assertEquals(SC_OK, response.getStatusLine().getStatusCode());
+    }
+    verify(measurementService, times(1))
+           .storeMeasure("Odessa", "Ukraine", new Measure(12.25, WeatherCode.FOG, LocalDateTime
+            .parse("2017-10-01T08:15:00").atZone(ZoneOffset.UTC)));
+  }
+
   @Test
   public void testNotFoundOnNotExistedService() throws Exception {
     Response response = callGet("/resources/cars", Collections.emptyMap());
@@ -213,6 +279,86 @@ public class WeatherApiTest {
                         + "\"measureTime\":\"2017-05-12T00:00:00\"}", response.getResponse());
   }
 
+  @Test
+  public void testGetNearestLocations() throws Exception {
+    Measure measure = new Measure(3.0, WeatherCode.SNOW, LocalDateTime
+        .parse("2017-02-01T06:00:00").atZone(ZoneOffset.UTC));
+    when(measurementService.getNearestWeather(29.99, 50.4, 2)).thenReturn(Arrays.asList(
+        MeasureRecord.forLocation(30, 50, measure), MeasureRecord.forLocation(29, 50, measure)));
+
+    Response response = callGet("/resources/weather/get/nearest", ImmutableMap
+        .of("longitude", "29.99", "latitude", "50.4", "count", "2"));
+    assertEquals("Not correct status code!", SC_OK, response.getCode());
+    assertEquals("[{\"location\":{\"longitude\":30.0,\"latitude\":50.0},"
+                 + "\"weatherCode\":\"SNOW\",\"temperature\":3.0,"
+                 + "\"measureTime\":\"2017-02-01T06:00:00\"},"
+                 + "{\"location\":{\"longitude\":29.0,\"latitude\":50.0},"
+                 + "\"weatherCode\":\"SNOW\",\"temperature\":3.0,"
+                 + "\"measureTime\":\"2017-02-01T06:00:00\"}]", response.getResponse());
+
+    response = callGet("/resources/weather/get/nearest", ImmutableMap
+        .of("longitude", "29.99", "latitude", "50.4", "count", "0"));
+    assertEquals("Not correct status code!", SC_BAD_REQUEST, response.getCode());
+  }
+
+  @Test
+  public void testGetCityHistory() throws Exception {
+    Measure measure = new Measure(-1.5, WeatherCode.FOG, LocalDateTime
+        .parse("2017-03-02T09:00:00").atZone(ZoneOffset.UTC));
+    when(measurementService.getMeasures("Dnipro", "Ukraine",
+        Instant.parse("2017-03-01T00:00:00Z"), Instant.parse("2017-03-03T00:00:00Z"),
+        WeatherSelectResource.MAX_HISTORY)).thenReturn(Collections.singletonList(measure));
+
+    Response response = callGet("/resources/weather/get/history/byCity", ImmutableMap
+        .of("city", "Dnipro", "country", "Ukraine", "from", "2017-03-01T00:00:00", "to",
+            "2017-03-03T00:00:00"));
+    assertEquals("Not correct status code!", SC_OK, response.getCode());
+    assertEquals("[{\"city\":\"Dnipro\",\"country\":\"Ukraine\",\"weatherCode\":\"FOG\","
+                 + "\"temperature\":-1.5,\"measureTime\":\"2017-03-02T09:00:00\"}]",
+        response.getResponse());
+
+    response = callGet("/resources/weather/get/history/byCity", ImmutableMap
+        .of("city", "Dnipro", "country", "Ukraine", "from", "yesterday"));
+    assertEquals("Not correct status code!", SC_BAD_REQUEST, response.getCode());
+
+    when(measurementService.getMeasures("Dnipro", "Ukraine",
+        Instant.parse("2017-03-01T00:00:00Z"), Instant.ofEpochMilli(Long.MAX_VALUE), 5))
+        .thenReturn(Collections.singletonList(measure));
+    response = callGet("/resources/weather/get/history/byCity", ImmutableMap
+        .of("city", "Dnipro", "country", "Ukraine", "from", "2017-03-01T00:00:00", "to",
+            "+999999999-12-31T23:59:59", "limit", "5"));
+    assertEquals("Not correct status code!", SC_OK, response.getCode());
+    assertEquals("[{\"city\":\"Dnipro\",\"country\":\"Ukraine\",\"weatherCode\":\"FOG\","
+                 + "\"temperature\":-1.5,\"measureTime\":\"2017-03-02T09:00:00\"}]",
+        response.getResponse());
+
+    response = callGet("/resources/weather/get/history/byCity", ImmutableMap
+        .of("city", "Dnipro", "country", "Ukraine", "limit", "0"));
+    assertEquals("Not correct status code!", SC_BAD_REQUEST, response.getCode());
+    response = callGet("/resources/weather/get/history/byCity", ImmutableMap
+        .of("city", "Dnipro", "country", "Ukraine", "limit",
+            String.valueOf(WeatherSelectResource.MAX_HISTORY + 1)));
+    assertEquals("Not correct status code!", SC_BAD_REQUEST, response.getCode());
+  }
+
+  @Test
+  public void testGetLocationsWithinRadius() throws Exception {
+    when(measurementService.getWeatherWithin(10.0, 20.0, 50.0)).thenReturn(
+        Collections.emptyList());
+
+    Response response = callGet("/resources/weather/get/withinRadius", ImmutableMap
+        .of("longitude", "10.0", "latitude", "20.0", "radius", "50"));
+    assertEquals("Not correct status code!", SC_OK, response.getCode());
+    assertEquals("[]", response.getResponse());
+
+    response = callGet("/resources/weather/get/withinRadius", ImmutableMap
+        .of("longitude", "10.0", "latitude", "20.0", "radius", "-1"));
+    assertEquals("Not correct status code!", SC_BAD_REQUEST, response.getCode());
+    response = callGet("/resources/weather/get/withinRadius", ImmutableMap
+        .of("longitude", "10.0", "latitude", "20.0"));
+    assertEquals("Not correct status code!", SC_BAD_REQUEST, response.getCode());
+  }
+
 
   @Test
   public void testSaveKievMeasument() throws Exception {
@@ -228,6 +374,20 @@ public class WeatherApiTest {
             .parse("2017-11-11T10:00:00").atZone(ZoneOffset.UTC)));
   }
 
+  @Test
+  public void testUnsupportedMeasurementTypeRejected() throws Exception {
+    String measurement = "{\"city\":\"Dnipro\",\"country\":\"Ukraine\",\"weatherCode\":"
+                         + "\"CLOUDY\",\"temperature\":5.0,\"measureTime\":"
+                         + "\"2017-11-12T10:00:00\"}";
+
+    Response response = callPost("/resources/weather/submit/measurement", Collections
+        .emptyMap(), new StringEntity(measurement, ContentType.TEXT_PLAIN));
+    assertEquals("Not correct status code!", SC_UNSUPPORTED_MEDIA_TYPE, response.getCode());
+    verify(measurementService, never())
+           .storeMeasure("Dnipro", "Ukraine", new Measure(5.0, WeatherCode.CLOUDY, LocalDateTime
+            .parse("2017-11-12T10:00:00").atZone(ZoneOffset.UTC)));
+  }
+
   @Test
   public void testSaveLocationMeasument() throws Exception {
     String measurement =
@@ -244,6 +404,150 @@ public class WeatherApiTest {
   }
 
 
+  @Test
+  public void testSaveMeasurementsBatch() throws Exception {
+    String measurements = "[{\"city\":\"Lutsk\",\"country\":\"Ukraine\",\"weatherCode\":\"FOG\","
+                          + "\"temperature\":2.0,\"measureTime\":\"2017-02-01T10:00:00\"},"
+                          + "{\"city\":\"Lutsk\",\"weatherCode\":\"FOG\",\"temperature\":2.0,"
+                          + "\"measureTime\":\"2017-02-01T11:00:00\"},"
+                          + "{\"location\":{\"longitude\":25.0,\"latitude\":50.0},"
+                          + "\"weatherCode\":\"SNOW\",\"temperature\":-1.0,"
+                          + "\"measureTime\":\"2017-02-01T12:00:00\"}]";
+
+    Response response = callPost("/resources/weather/submit/measurements", Collections
+        .emptyMap(), measurements);
+    assertEquals("Not correct status code!", SC_OK, response.getCode());
+    assertEquals("{\"accepted\":2,\"rejected\":1}", response.getResponse());
+    verify(measurementService, times(1)).storeMeasures(Arrays.asList(
+        MeasureRecord.forCity("Lutsk", "Ukraine", new Measure(2.0, WeatherCode.FOG, LocalDateTime
+            .parse("2017-02-01T10:00:00").atZone(ZoneOffset.UTC))),
+        MeasureRecord.forLocation(25.0, 50.0, new Measure(-1.0, WeatherCode.SNOW, LocalDateTime
+            .parse("2017-02-01T12:00:00").atZone(ZoneOffset.UTC)))));
+  }
+
+  @Test
+  public void testSaveMeasurementsStream() throws Exception {
+    String measurements = "{\"city\":\"Rivne\",\"country\":\"Ukraine\",\"weatherCode\":\"SUNNY\","
+                          + "\"temperature\":9.5,\"measureTime\":\"2017-03-01T10:00:00\"}\n"
+                          + "{\"city\":\"Rivne\",\"country\":\"Ukraine\",\"weatherCode\":\"SUNNY\","
+                          + "\"temperature\":\"warm\",\"measureTime\":\"2017-03-01T11:00:00\"}\n"
+                          + "{\"city\":\"Rivne\",\"country\":\"Ukraine\",\"weatherCode\":\"SUNNY\",";
+
+    Response response = callPost("/resources/weather/submit/measurements", Collections
+        .emptyMap(), measurements);
+    assertEquals("Not correct status code!", SC_OK, response.getCode());
+    assertTrue(response.getResponse().startsWith("{\"accepted\":1,\"rejected\":1,\"error\":"));
+    verify(measurementService, times(1)).storeMeasures(Collections.singletonList(
+        MeasureRecord.forCity("Rivne", "Ukraine", new Measure(9.5, WeatherCode.SUNNY, LocalDateTime
+            .parse("2017-03-01T10:00:00").atZone(ZoneOffset.UTC)))));
+  }
+
+  @Test
+  public void testMeasurementCachedUntilExpired() throws Exception {
+    Measure measure = new Measure(4.0, WeatherCode.RAINING, LocalDateTime
+        .parse("2017-04-01T00:00:00").atZone(ZoneOffset.UTC));
+    when(measurementService.getCurrentWeather("Kharkiv", "Ukraine")).thenReturn(measure);
+    Map<String, String> parameters = ImmutableMap.of("city", "Kharkiv", "country", "Ukraine");
+
+    Response first = callGet("/resources/weather/get/byCity", parameters);
+    Response second = callGet("/resources/weather/get/byCity", parameters);
+    assertEquals(SC_OK, second.getCode());
+    assertEquals(first.getResponse(), second.getResponse());
+    verify(measurementService, times(1)).getCurrentWeather("Kharkiv", "Ukraine");
+    assertTrue(application.getCacheStats(WeatherSelectResource.WEATHER_CACHE).getHits() > 0);
+
+    callPost("/resources/weather/submit/measurement", Collections.emptyMap(),
+        "{\"city\":\"Kharkiv\",\"country\":\"Ukraine\",\"weatherCode\":\"RAINING\","
+        + "\"temperature\":5.0,\"measureTime\":\"2017-04-01T01:00:00\"}");
+    callGet("/resources/weather/get/byCity", parameters);
+    verify(measurementService, times(1)).getCurrentWeather("Kharkiv", "Ukraine");
+
+    Thread.sleep(WeatherSelectResource.WEATHER_CACHE_TTL + 100);
+    callGet("/resources/weather/get/byCity", parameters);
+    verify(measurementService, times(2)).getCurrentWeather("Kharkiv", "Ukraine");
+  }
+
+  @Test
+  public void testNotModifiedWhenVersionMatches() throws Exception {
+    Measure measure = new Measure(15.0, WeatherCode.SUNNY, LocalDateTime
+        .parse("2017-06-01T12:00:00").atZone(ZoneOffset.UTC));
+    when(measurementService.getVersion("Dnipro", "Ukraine")).thenReturn(7L);
+    when(measurementService.getCurrentWeather("Dnipro", "Ukraine")).thenReturn(measure);
+    URIBuilder builder = new URIBuilder(String.format(SERVER_URI_PATTERN, SERVICE_PORT,
+        "/resources/weather/get/byCity")).addParameter("city", "Dnipro")
+                                         .addParameter("country", "Ukraine");
+
+    HttpGet get = new HttpGet(builder.build());
+    String etag;
+    try (CloseableHttpResponse response = httpClient.execute(get)) {
+      assertEquals(SC_OK, response.getStatusLine().getStatusCode());
+      etag = response.getFirstHeader("ETag").getValue();
+      assertEquals("W/\"7\"", etag);
+      assertEquals("Thu, 01 Jun 2017 12:00:00 GMT",
+          response.getFirstHeader("Last-Modified").getValue());
+      assertEquals("no-cache, no-transform",
+          response.getFirstHeader("Cache-Control").getValue());
+    }
+
+    get.setHeader("If-None-Match", etag);
+    try (CloseableHttpResponse response = httpClient.execute(get)) {
+      assertEquals(SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+      assertEquals(etag, response.getFirstHeader("ETag").getValue());
+      assertNull(response.getEntity());
+    }
+
+    get.setHeader("If-None-Match", "W/\"6\"");
+    try (CloseableHttpResponse response = httpClient.execute(get)) {
+      assertEquals(SC_OK, response.getStatusLine().getStatusCode());
+    }
+  }
+
+  @Test
+  public void testNotModifiedSinceMeasurement() throws Exception {
+    Measure measure = new Measure(20.0, WeatherCode.SUNNY, LocalDateTime
+        .parse("2017-07-01T09:00:00").atZone(ZoneOffset.UTC));
+    when(measurementService.getCurrentWeather(32.0, 49.0)).thenReturn(measure);
+    URIBuilder builder = new URIBuilder(String.format(SERVER_URI_PATTERN, SERVICE_PORT,
+        "/resources/weather/get/byLocation")).addParameter("longitude", "32.5")
+                                             .addParameter("latitude", "49.5");
+
+    HttpGet get = new HttpGet(builder.build());
+    get.setHeader("If-Modified-Since", "Sat, 01 Jul 2017 09:00:00 GMT");
+    try (CloseableHttpResponse response = httpClient.execute(get)) {
+      assertEquals(SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+    }
+
+    get.setHeader("If-Modified-Since", "Sat, 01 Jul 2017 08:59:59 GMT");
+    try (CloseableHttpResponse response = httpClient.execute(get)) {
+      assertEquals(SC_OK, response.getStatusLine().getStatusCode());
+    }
+  }
+
+  @Test
+  public void testEncodedWeatherSentAsIs() throws Exception {
+    Measure measure = new Measure(9.5, WeatherCode.CLOUDY, LocalDateTime
+        .parse("2017-09-01T07:00:00").atZone(ZoneOffset.UTC));
+    when(measurementService.getEncodedWeather("Zhytomyr", "Ukraine"))
+        .thenReturn(EncodedWeather.ofCity("Zhytomyr", "Ukraine", measure));
+    when(measurementService.getEncodedWeather(28.0, 50.0))
+        .thenReturn(EncodedWeather.ofLocation(measure));
+
+    Response byCity = callGet("/resources/weather/get/byCity",
+        ImmutableMap.of("city", "Zhytomyr", "country", "Ukraine"));
+    assertEquals(SC_OK, byCity.getCode());
+    assertEquals("{\"city\":\"Zhytomyr\",\"country\":\"Ukraine\",\"weatherCode\":\"CLOUDY\","
+                 + "\"temperature\":9.5,\"measureTime\":\"2017-09-01T07:00:00\"}",
+        byCity.getResponse());
+    verify(measurementService, never()).getCurrentWeather("Zhytomyr", "Ukraine");
+
+    Response byLocation = callGet("/resources/weather/get/byLocation",
+        ImmutableMap.of("longitude", "28.65", "latitude", "50.25"));
+    assertEquals(SC_OK, byLocation.getCode());
+    assertEquals("{\"location\":{\"longitude\":28.65,\"latitude\":50.25},"
+                 + "\"weatherCode\":\"CLOUDY\",\"temperature\":9.5,"
+                 + "\"measureTime\":\"2017-09-01T07:00:00\"}", byLocation.getResponse());
+  }
+
   @Test
   public void testInternalError() throws Exception {
     when(measurementService.getCurrentWeather("Odessa", "Ukraine"))